@@ -1,5 +1,13 @@
 package de.jungblut.math;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.google.common.collect.Iterators;
+
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+
 /**
  * Standard matrix interface for double elements. Every implementation should
  * return a fresh new Matrix when operating with other elements.
@@ -155,6 +163,23 @@ public interface DoubleMatrix {
    */
   public double sum();
 
+  /**
+   * Sums the signed values of all elements with the given strategy. Other than
+   * {@link #sum()}, which sums the absolute values on dense matrices, negative
+   * elements are subtracted on every matrix.
+   * 
+   * @param strategy the summation strategy to accumulate with.
+   */
+  public default double signedSum(SummationStrategy strategy) {
+    int[] rows = rowIndices();
+    List<Iterator<DoubleVectorElement>> iterators = new ArrayList<>(
+        rows.length);
+    for (int row : rows) {
+      iterators.add(getRowVector(row).iterateNonZero());
+    }
+    return strategy.sum(Iterators.concat(iterators.iterator()));
+  }
+
   /**
    * @return an array of column indices existing in this matrix.
    */
@@ -4,6 +4,7 @@ import java.util.Iterator;
 
 import de.jungblut.math.function.DoubleDoubleVectorFunction;
 import de.jungblut.math.function.DoubleVectorFunction;
+import de.jungblut.math.lazy.VectorExpression;
 
 /**
  * Vector with doubles. Some of the operations are mutable, unlike the apply and
@@ -193,6 +194,22 @@ public interface DoubleVector {
    */
   public double sum();
 
+  /**
+   * @param strategy the summation strategy to accumulate with.
+   * @return the sum of all elements in this vector.
+   */
+  public default double sum(SummationStrategy strategy) {
+    return strategy.sum(iterateNonZero());
+  }
+
+  /**
+   * @return a lazy expression on this vector, chained operations on it are
+   *         evaluated in a single pass without intermediate vectors.
+   */
+  public default VectorExpression lazy() {
+    return VectorExpression.of(this);
+  }
+
   /**
    * Calculates the dot product between this vector and the given vector.
    * 
@@ -201,6 +218,17 @@ public interface DoubleVector {
    */
   public double dot(DoubleVector s);
 
+  /**
+   * Calculates the dot product between this vector and the given vector.
+   * 
+   * @param s the given vector s.
+   * @param strategy the summation strategy to accumulate with.
+   * @return the dot product as a double.
+   */
+  public default double dot(DoubleVector s, SummationStrategy strategy) {
+    return strategy.dot(iterateNonZero(), s);
+  }
+
   /**
    * Slices this vector from index 0 to the end index.
    * 
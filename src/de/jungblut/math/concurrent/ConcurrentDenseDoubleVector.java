@@ -0,0 +1,516 @@
+package de.jungblut.math.concurrent;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.locks.StampedLock;
+
+import com.google.common.collect.AbstractIterator;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.function.DoubleDoubleVectorFunction;
+import de.jungblut.math.function.DoubleVectorFunction;
+
+/**
+ * Dense vector that can be shared and updated by many threads, for example the
+ * weights of a model that is trained with parallel stochastic gradient
+ * descent. Every element access goes through a {@link VarHandle} on the
+ * backing array, so reads and writes of single elements never tear. Three
+ * kinds of updates are offered:
+ *
+ * <ul>
+ * <li>Hogwild updates ({@link #set(int, double)}, {@link #hogwildAdd(int,
+ * double)} and {@link #hogwildAxpy(double, DoubleVector)}) are plain racy read
+ * and writes without any synchronization. Concurrent updates of the same
+ * element may get lost, which SGD on sparse gradients tolerates.</li>
+ * <li>Atomic updates ({@link #addAndGet(int, double)} and
+ * {@link #compareAndSet(int, double, double)}) never lose an update.</li>
+ * <li>Striped updates ({@link #axpy(double, DoubleVector)}) apply a whole
+ * gradient under the locks of the stripes of
+ * {@value #STRIPE_SIZE} elements that it touches. They never lose an update and
+ * a {@link #snapshot()} either sees the whole update of a stripe or nothing of
+ * it.</li>
+ * </ul>
+ *
+ * All math operations work on a {@link #snapshot()} and return a fresh
+ * {@link DenseDoubleVector}. Snapshots are consistent with respect to striped
+ * updates only, hogwild and atomic updates may be partially visible.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class ConcurrentDenseDoubleVector implements DoubleVector {
+
+  /**
+   * The number of consecutive elements that are guarded by the same lock.
+   */
+  public static final int STRIPE_SIZE = 1024;
+
+  // the maximum number of locks, stripes beyond share them round robin
+  private static final int MAX_LOCKS = 64;
+
+  private static final VarHandle ARRAY = MethodHandles
+      .arrayElementVarHandle(double[].class);
+
+  private final double[] vector;
+  private final StampedLock[] locks;
+
+  /**
+   * Creates a new zero vector of the given dimension.
+   */
+  public ConcurrentDenseDoubleVector(int dimension) {
+    this.vector = new double[dimension];
+    int stripes = (dimension + STRIPE_SIZE - 1) / STRIPE_SIZE;
+    this.locks = new StampedLock[Math.max(1, Math.min(MAX_LOCKS, stripes))];
+    for (int i = 0; i < locks.length; i++) {
+      locks[i] = new StampedLock();
+    }
+  }
+
+  /**
+   * Creates a new vector with a copy of the given array.
+   */
+  public ConcurrentDenseDoubleVector(double[] array) {
+    this(array.length);
+    System.arraycopy(array, 0, vector, 0, array.length);
+  }
+
+  /**
+   * Creates a new vector with a copy of the values of the given vector.
+   */
+  public ConcurrentDenseDoubleVector(DoubleVector vector) {
+    this(vector.getDimension());
+    Iterator<DoubleVectorElement> iterator = vector.iterateNonZero();
+    while (iterator.hasNext()) {
+      DoubleVectorElement next = iterator.next();
+      this.vector[next.getIndex()] = next.getValue();
+    }
+  }
+
+  @Override
+  public double get(int index) {
+    return (double) ARRAY.getOpaque(vector, index);
+  }
+
+  /**
+   * Sets the value without any synchronization (a hogwild write).
+   */
+  @Override
+  public void set(int index, double value) {
+    ARRAY.setOpaque(vector, index, value);
+  }
+
+  /**
+   * Adds the delta to the element without any synchronization, concurrent
+   * updates of the same element may get lost.
+   */
+  public void hogwildAdd(int index, double delta) {
+    ARRAY.setOpaque(vector, index, (double) ARRAY.getOpaque(vector, index)
+        + delta);
+  }
+
+  /**
+   * Computes this = this + alpha * x without any synchronization, only the
+   * non-zero elements of sparse vectors are touched. Concurrent updates of the
+   * same element may get lost.
+   */
+  public void hogwildAxpy(double alpha, DoubleVector x) {
+    checkDimension(x);
+    if (x.isSparse()) {
+      Iterator<DoubleVectorElement> iterator = x.iterateNonZero();
+      while (iterator.hasNext()) {
+        DoubleVectorElement next = iterator.next();
+        hogwildAdd(next.getIndex(), alpha * next.getValue());
+      }
+    } else {
+      for (int i = 0; i < vector.length; i++) {
+        double value = x.get(i);
+        if (value != 0d) {
+          hogwildAdd(i, alpha * value);
+        }
+      }
+    }
+  }
+
+  /**
+   * Atomically adds the delta to the element.
+   *
+   * @return the updated value.
+   */
+  public double addAndGet(int index, double delta) {
+    while (true) {
+      double current = (double) ARRAY.getVolatile(vector, index);
+      double next = current + delta;
+      if (ARRAY.weakCompareAndSet(vector, index, current, next)) {
+        return next;
+      }
+    }
+  }
+
+  /**
+   * Atomically sets the element to the update if it currently holds the
+   * expected value. The values are compared by their bits, so NaN can be
+   * expected and 0d and -0d are different.
+   *
+   * @return true if the element was updated.
+   */
+  public boolean compareAndSet(int index, double expected, double update) {
+    return ARRAY.compareAndSet(vector, index, expected, update);
+  }
+
+  /**
+   * Computes this = this + alpha * x under the locks of the touched stripes,
+   * only the non-zero elements of sparse vectors are touched. Every stripe is
+   * locked once, even if the non-zeros of x are unordered.
+   */
+  public void axpy(double alpha, DoubleVector x) {
+    checkDimension(x);
+    if (x.isSparse()) {
+      axpySparse(alpha, x);
+      return;
+    }
+    for (int start = 0; start < vector.length; start += STRIPE_SIZE) {
+      int end = Math.min(start + STRIPE_SIZE, vector.length);
+      StampedLock lock = lock(start);
+      long stamp = lock.writeLock();
+      try {
+        for (int i = start; i < end; i++) {
+          double value = x.get(i);
+          if (value != 0d) {
+            addAndGet(i, alpha * value);
+          }
+        }
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+  }
+
+  /**
+   * @return a copy of the values, consistent with respect to the striped
+   *         updates.
+   */
+  public DenseDoubleVector snapshot() {
+    DenseDoubleVector result = new DenseDoubleVector(vector.length);
+    double[] copy = result.toArray();
+    long[] stamps = new long[locks.length];
+    for (int i = 0; i < locks.length; i++) {
+      stamps[i] = locks[i].readLock();
+    }
+    try {
+      for (int i = 0; i < vector.length; i++) {
+        copy[i] = (double) ARRAY.getOpaque(vector, i);
+      }
+    } finally {
+      for (int i = 0; i < locks.length; i++) {
+        locks[i].unlockRead(stamps[i]);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public int getLength() {
+    return vector.length;
+  }
+
+  @Override
+  public int getDimension() {
+    return vector.length;
+  }
+
+  @Override
+  public DoubleVector apply(DoubleVectorFunction func) {
+    return snapshot().apply(func);
+  }
+
+  @Override
+  public DoubleVector apply(DoubleVector other, DoubleDoubleVectorFunction func) {
+    return snapshot().apply(other, func);
+  }
+
+  @Override
+  public DoubleVector add(DoubleVector v) {
+    return snapshot().add(v);
+  }
+
+  @Override
+  public DoubleVector add(double scalar) {
+    return snapshot().add(scalar);
+  }
+
+  @Override
+  public DoubleVector subtract(DoubleVector v) {
+    return snapshot().subtract(v);
+  }
+
+  @Override
+  public DoubleVector subtract(double scalar) {
+    return snapshot().subtract(scalar);
+  }
+
+  @Override
+  public DoubleVector subtractFrom(double scalar) {
+    return snapshot().subtractFrom(scalar);
+  }
+
+  @Override
+  public DoubleVector multiply(double scalar) {
+    return snapshot().multiply(scalar);
+  }
+
+  @Override
+  public DoubleVector multiply(DoubleVector vector) {
+    return snapshot().multiply(vector);
+  }
+
+  @Override
+  public DoubleVector divide(double scalar) {
+    return snapshot().divide(scalar);
+  }
+
+  @Override
+  public DoubleVector divideFrom(double scalar) {
+    return snapshot().divideFrom(scalar);
+  }
+
+  @Override
+  public DoubleVector divideFrom(DoubleVector vector) {
+    return snapshot().divideFrom(vector);
+  }
+
+  @Override
+  public DoubleVector divide(DoubleVector vector) {
+    return snapshot().divide(vector);
+  }
+
+  @Override
+  public DoubleVector pow(double x) {
+    return snapshot().pow(x);
+  }
+
+  @Override
+  public DoubleVector abs() {
+    return snapshot().abs();
+  }
+
+  @Override
+  public DoubleVector sqrt() {
+    return snapshot().sqrt();
+  }
+
+  @Override
+  public DoubleVector log() {
+    return snapshot().log();
+  }
+
+  @Override
+  public DoubleVector exp() {
+    return snapshot().exp();
+  }
+
+  @Override
+  public double sum() {
+    double sum = 0d;
+    for (int i = 0; i < vector.length; i++) {
+      sum += get(i);
+    }
+    return sum;
+  }
+
+  /**
+   * Computes the dot product with racy reads of the current values, which is
+   * what a hogwild trainer needs for its predictions.
+   */
+  @Override
+  public double dot(DoubleVector s) {
+    checkDimension(s);
+    double sum = 0d;
+    if (s.isSparse()) {
+      Iterator<DoubleVectorElement> iterator = s.iterateNonZero();
+      while (iterator.hasNext()) {
+        DoubleVectorElement next = iterator.next();
+        sum += get(next.getIndex()) * next.getValue();
+      }
+    } else {
+      for (int i = 0; i < vector.length; i++) {
+        sum += get(i) * s.get(i);
+      }
+    }
+    return sum;
+  }
+
+  @Override
+  public DoubleVector slice(int end) {
+    return slice(0, end);
+  }
+
+  @Override
+  public DoubleVector slice(int start, int end) {
+    return snapshot().slice(start, end);
+  }
+
+  @Override
+  public DoubleVector sliceByLength(int start, int length) {
+    return snapshot().sliceByLength(start, length);
+  }
+
+  @Override
+  public double max() {
+    return snapshot().max();
+  }
+
+  @Override
+  public double min() {
+    return snapshot().min();
+  }
+
+  @Override
+  public int maxIndex() {
+    return snapshot().maxIndex();
+  }
+
+  @Override
+  public int minIndex() {
+    return snapshot().minIndex();
+  }
+
+  /**
+   * @return a snapshot of the values, not the backing array.
+   */
+  @Override
+  public double[] toArray() {
+    return snapshot().toArray();
+  }
+
+  @Override
+  public DoubleVector deepCopy() {
+    return new ConcurrentDenseDoubleVector(snapshot().toArray());
+  }
+
+  @Override
+  public Iterator<DoubleVectorElement> iterateNonZero() {
+    return new AbstractIterator<DoubleVectorElement>() {
+      private final DoubleVectorElement element = new DoubleVectorElement();
+      private int index = 0;
+
+      @Override
+      protected DoubleVectorElement computeNext() {
+        while (index < vector.length) {
+          double value = get(index);
+          if (value != 0d) {
+            element.setIndex(index);
+            element.setValue(value);
+            index++;
+            return element;
+          }
+          index++;
+        }
+        return endOfData();
+      }
+    };
+  }
+
+  @Override
+  public Iterator<DoubleVectorElement> iterate() {
+    return new AbstractIterator<DoubleVectorElement>() {
+      private final DoubleVectorElement element = new DoubleVectorElement();
+      private int index = 0;
+
+      @Override
+      protected DoubleVectorElement computeNext() {
+        if (index < vector.length) {
+          element.setIndex(index);
+          element.setValue(get(index));
+          index++;
+          return element;
+        }
+        return endOfData();
+      }
+    };
+  }
+
+  @Override
+  public boolean isSparse() {
+    return false;
+  }
+
+  @Override
+  public boolean isNamed() {
+    return false;
+  }
+
+  @Override
+  public boolean isSingle() {
+    return false;
+  }
+
+  @Override
+  public String getName() {
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    if (vector.length < 50) {
+      return snapshot().toString();
+    } else {
+      return vector.length + "x1";
+    }
+  }
+
+  private void axpySparse(double alpha, DoubleVector x) {
+    // sort the non-zeros by index, so every stripe is locked once
+    long[] entries = new long[Math.max(16, x.getLength())];
+    double[] values = new double[entries.length];
+    int nnz = 0;
+    boolean sorted = true;
+    Iterator<DoubleVectorElement> iterator = x.iterateNonZero();
+    while (iterator.hasNext()) {
+      DoubleVectorElement next = iterator.next();
+      if (nnz == entries.length) {
+        entries = Arrays.copyOf(entries, nnz * 2);
+        values = Arrays.copyOf(values, nnz * 2);
+      }
+      // index in the upper bits, position in the lower bits
+      entries[nnz] = ((long) next.getIndex() << 32) | nnz;
+      values[nnz] = next.getValue();
+      sorted &= nnz == 0 || entries[nnz - 1] < entries[nnz];
+      nnz++;
+    }
+    if (!sorted) {
+      Arrays.sort(entries, 0, nnz);
+    }
+    int i = 0;
+    while (i < nnz) {
+      int stripe = (int) (entries[i] >>> 32) / STRIPE_SIZE;
+      StampedLock lock = lock(stripe * STRIPE_SIZE);
+      long stamp = lock.writeLock();
+      try {
+        for (; i < nnz; i++) {
+          int index = (int) (entries[i] >>> 32);
+          if (index / STRIPE_SIZE != stripe) {
+            break;
+          }
+          addAndGet(index, alpha * values[(int) entries[i]]);
+        }
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+  }
+
+  private StampedLock lock(int index) {
+    return locks[(index / STRIPE_SIZE) % locks.length];
+  }
+
+  private void checkDimension(DoubleVector other) {
+    if (other.getDimension() != vector.length) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + vector.length + " != " + other.getDimension());
+    }
+  }
+
+}
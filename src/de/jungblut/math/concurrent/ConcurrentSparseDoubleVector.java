@@ -0,0 +1,403 @@
+package de.jungblut.math.concurrent;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.locks.ReentrantLock;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.function.DoubleDoubleVectorFunction;
+import de.jungblut.math.function.DoubleVectorFunction;
+import de.jungblut.math.sparse.FastIntDoubleHashMap;
+import de.jungblut.math.sparse.SequentialSparseDoubleVector;
+
+/**
+ * Sparse vector that many threads can update at the same time, for example to
+ * accumulate sparse gradients. The indices are hashed onto a power of two
+ * number of segments, every segment is a primitive hash map that is guarded by
+ * its own lock. Threads that update different segments never contend, so the
+ * throughput of {@link #increment(int, double)} scales with the number of
+ * segments.
+ *
+ * Elements that become zero are removed. {@link #snapshot()} locks all
+ * segments and compacts the entries into a {@link SequentialSparseDoubleVector}
+ * ordered by index, {@link #drain()} additionally resets this vector. All math
+ * operations work on a snapshot.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class ConcurrentSparseDoubleVector implements DoubleVector {
+
+  private final int dimension;
+  private final FastIntDoubleHashMap[] segments;
+  private final ReentrantLock[] locks;
+  private final int segmentShift;
+
+  /**
+   * Creates a new empty vector with four segments per available processor.
+   */
+  public ConcurrentSparseDoubleVector(int dimension) {
+    this(dimension, 4 * Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Creates a new empty vector.
+   *
+   * @param dimension the dimension of the vector.
+   * @param concurrencyLevel the expected number of concurrently updating
+   *          threads, rounded up to the next power of two segments.
+   */
+  public ConcurrentSparseDoubleVector(int dimension, int concurrencyLevel) {
+    if (concurrencyLevel < 1) {
+      throw new IllegalArgumentException(
+          "Concurrency level must be > 0, but was " + concurrencyLevel);
+    }
+    int bits = 32 - Integer.numberOfLeadingZeros(Math.min(1 << 16,
+        concurrencyLevel) - 1);
+    this.dimension = dimension;
+    this.segments = new FastIntDoubleHashMap[1 << bits];
+    this.locks = new ReentrantLock[segments.length];
+    this.segmentShift = 32 - bits;
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = new FastIntDoubleHashMap();
+      locks[i] = new ReentrantLock();
+    }
+  }
+
+  /**
+   * Creates a new vector with the values of the given vector.
+   */
+  public ConcurrentSparseDoubleVector(DoubleVector vector) {
+    this(vector.getDimension());
+    Iterator<DoubleVectorElement> iterator = vector.iterateNonZero();
+    while (iterator.hasNext()) {
+      DoubleVectorElement next = iterator.next();
+      set(next.getIndex(), next.getValue());
+    }
+  }
+
+  @Override
+  public double get(int index) {
+    int segment = segment(index);
+    locks[segment].lock();
+    try {
+      return segments[segment].get(index);
+    } finally {
+      locks[segment].unlock();
+    }
+  }
+
+  @Override
+  public void set(int index, double value) {
+    int segment = segment(index);
+    locks[segment].lock();
+    try {
+      if (value == 0d) {
+        segments[segment].remove(index);
+      } else {
+        segments[segment].put(index, value);
+      }
+    } finally {
+      locks[segment].unlock();
+    }
+  }
+
+  /**
+   * Atomically adds the delta to the element at the given index.
+   *
+   * @return the updated value.
+   */
+  public double increment(int index, double delta) {
+    int segment = segment(index);
+    locks[segment].lock();
+    try {
+      return segments[segment].add(index, delta);
+    } finally {
+      locks[segment].unlock();
+    }
+  }
+
+  /**
+   * Atomically adds alpha times the non-zero elements of the given vector, one
+   * element at a time.
+   */
+  public void increment(double alpha, DoubleVector gradient) {
+    if (gradient.getDimension() != dimension) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + dimension + " != " + gradient.getDimension());
+    }
+    Iterator<DoubleVectorElement> iterator = gradient.iterateNonZero();
+    while (iterator.hasNext()) {
+      DoubleVectorElement next = iterator.next();
+      increment(next.getIndex(), alpha * next.getValue());
+    }
+  }
+
+  /**
+   * @return a sequential sparse vector of the current values, taken while all
+   *         segments are locked.
+   */
+  public SequentialSparseDoubleVector snapshot() {
+    return compact(false);
+  }
+
+  /**
+   * Atomically takes a snapshot and resets this vector to zero, so every
+   * increment ends up in exactly one drained vector.
+   *
+   * @return a sequential sparse vector of the drained values.
+   */
+  public SequentialSparseDoubleVector drain() {
+    return compact(true);
+  }
+
+  @Override
+  public int getLength() {
+    int length = 0;
+    for (int i = 0; i < segments.length; i++) {
+      locks[i].lock();
+      try {
+        length += segments[i].size();
+      } finally {
+        locks[i].unlock();
+      }
+    }
+    return length;
+  }
+
+  @Override
+  public int getDimension() {
+    return dimension;
+  }
+
+  @Override
+  public DoubleVector apply(DoubleVectorFunction func) {
+    return snapshot().apply(func);
+  }
+
+  @Override
+  public DoubleVector apply(DoubleVector other, DoubleDoubleVectorFunction func) {
+    return snapshot().apply(other, func);
+  }
+
+  @Override
+  public DoubleVector add(DoubleVector v) {
+    return snapshot().add(v);
+  }
+
+  @Override
+  public DoubleVector add(double scalar) {
+    return snapshot().add(scalar);
+  }
+
+  @Override
+  public DoubleVector subtract(DoubleVector v) {
+    return snapshot().subtract(v);
+  }
+
+  @Override
+  public DoubleVector subtract(double scalar) {
+    return snapshot().subtract(scalar);
+  }
+
+  @Override
+  public DoubleVector subtractFrom(double scalar) {
+    return snapshot().subtractFrom(scalar);
+  }
+
+  @Override
+  public DoubleVector multiply(double scalar) {
+    return snapshot().multiply(scalar);
+  }
+
+  @Override
+  public DoubleVector multiply(DoubleVector vector) {
+    return snapshot().multiply(vector);
+  }
+
+  @Override
+  public DoubleVector divide(double scalar) {
+    return snapshot().divide(scalar);
+  }
+
+  @Override
+  public DoubleVector divideFrom(double scalar) {
+    return snapshot().divideFrom(scalar);
+  }
+
+  @Override
+  public DoubleVector divideFrom(DoubleVector vector) {
+    return snapshot().divideFrom(vector);
+  }
+
+  @Override
+  public DoubleVector divide(DoubleVector vector) {
+    return snapshot().divide(vector);
+  }
+
+  @Override
+  public DoubleVector pow(double x) {
+    return snapshot().pow(x);
+  }
+
+  @Override
+  public DoubleVector abs() {
+    return snapshot().abs();
+  }
+
+  @Override
+  public DoubleVector sqrt() {
+    return snapshot().sqrt();
+  }
+
+  @Override
+  public DoubleVector log() {
+    return snapshot().log();
+  }
+
+  @Override
+  public DoubleVector exp() {
+    return snapshot().exp();
+  }
+
+  @Override
+  public double sum() {
+    return snapshot().sum();
+  }
+
+  @Override
+  public double dot(DoubleVector s) {
+    return snapshot().dot(s);
+  }
+
+  @Override
+  public DoubleVector slice(int end) {
+    return slice(0, end);
+  }
+
+  @Override
+  public DoubleVector slice(int start, int end) {
+    return snapshot().slice(start, end);
+  }
+
+  @Override
+  public DoubleVector sliceByLength(int start, int length) {
+    return snapshot().sliceByLength(start, length);
+  }
+
+  @Override
+  public double max() {
+    return snapshot().max();
+  }
+
+  @Override
+  public double min() {
+    return snapshot().min();
+  }
+
+  @Override
+  public int maxIndex() {
+    return snapshot().maxIndex();
+  }
+
+  @Override
+  public int minIndex() {
+    return snapshot().minIndex();
+  }
+
+  @Override
+  public double[] toArray() {
+    return snapshot().toArray();
+  }
+
+  @Override
+  public DoubleVector deepCopy() {
+    return new ConcurrentSparseDoubleVector(snapshot());
+  }
+
+  /**
+   * @return an iterator over the non-zero elements of a snapshot, ordered by
+   *         index.
+   */
+  @Override
+  public Iterator<DoubleVectorElement> iterateNonZero() {
+    return snapshot().iterateNonZero();
+  }
+
+  @Override
+  public Iterator<DoubleVectorElement> iterate() {
+    return snapshot().iterate();
+  }
+
+  @Override
+  public boolean isSparse() {
+    return true;
+  }
+
+  @Override
+  public boolean isNamed() {
+    return false;
+  }
+
+  @Override
+  public boolean isSingle() {
+    return false;
+  }
+
+  @Override
+  public String getName() {
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return snapshot().toString();
+  }
+
+  private SequentialSparseDoubleVector compact(boolean reset) {
+    long[] entries;
+    double[] values;
+    int nnz = 0;
+    // always in the same order, so concurrent snapshots can't deadlock
+    for (ReentrantLock lock : locks) {
+      lock.lock();
+    }
+    try {
+      int size = 0;
+      for (FastIntDoubleHashMap segment : segments) {
+        size += segment.size();
+      }
+      // index in the upper bits, position in the lower bits
+      entries = new long[size];
+      values = new double[size];
+      for (FastIntDoubleHashMap segment : segments) {
+        FastIntDoubleHashMap.Cursor cursor = segment.cursor();
+        while (cursor.advance()) {
+          entries[nnz] = ((long) cursor.key() << 32) | nnz;
+          values[nnz++] = cursor.value();
+        }
+        if (reset) {
+          segment.clear();
+        }
+      }
+    } finally {
+      for (ReentrantLock lock : locks) {
+        lock.unlock();
+      }
+    }
+    Arrays.sort(entries);
+    SequentialSparseDoubleVector result = new SequentialSparseDoubleVector(
+        dimension, Math.max(1, nnz));
+    for (long entry : entries) {
+      // appends, as the indices are increasing
+      result.set((int) (entry >>> 32), values[(int) entry]);
+    }
+    return result;
+  }
+
+  // fibonacci hashing, so consecutive indices spread over the segments
+  private int segment(int index) {
+    return segmentShift == 32 ? 0 : (index * 0x9E3779B9) >>> segmentShift;
+  }
+
+}
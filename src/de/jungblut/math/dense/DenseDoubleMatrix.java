@@ -4,12 +4,15 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.apache.commons.math3.util.FastMath;
 
 import de.jungblut.math.DoubleMatrix;
 import de.jungblut.math.DoubleVector;
 import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.SummationStrategy;
 
 /**
  * Dense double matrix implementation. Internally a column major ordering is
@@ -27,6 +30,13 @@ public final class DenseDoubleMatrix implements DoubleMatrix {
   private final int numRows;
   private final int numColumns;
 
+  // matrices with less elements are multiplied sequentially
+  private static final int PARALLEL_THRESHOLD = 1 << 16;
+  // the number of rows or columns below which a GEMV task isn't split
+  private static final int GEMV_BLOCK = 1024;
+  // the edge length of a block that is transposed without further halving
+  private static final int TRANSPOSE_BLOCK = 32;
+
   /**
    * Creates a new empty matrix from the rows and columns.
    * 
@@ -306,120 +316,498 @@ public final class DenseDoubleMatrix implements DoubleMatrix {
 
   @Override
   public DenseDoubleMatrix multiply(double scalar) {
-    double[] csjr = new double[this.numRows * this.numColumns];
+    return multiply(scalar, new DenseDoubleMatrix(numRows, numColumns));
+  }
+
+  /**
+   * Multiplies every element with the scalar and writes the results into the
+   * given matrix, which may be this matrix.
+   *
+   * @return the result matrix.
+   */
+  public DenseDoubleMatrix multiply(double scalar, DenseDoubleMatrix result) {
+    checkResult(result);
     for (int i = 0; i < matrix.length; i++) {
-      csjr[i] = this.matrix[i] * scalar;
+      result.matrix[i] = this.matrix[i] * scalar;
     }
-    return new DenseDoubleMatrix(csjr, this.numRows, this.numColumns, false);
+    return result;
   }
 
   @Override
   public DoubleMatrix multiply(DoubleMatrix other) {
-    int m = this.numRows;
-    int n = this.numColumns;
-    int p = other.getColumnCount();
-
-    DenseDoubleMatrix matrix = new DenseDoubleMatrix(m, p);
-    for (int k = 0; k < n; k++) {
-      for (int i = 0; i < m; i++) {
-        for (int j = 0; j < p; j++) {
-          matrix.set(i, j, matrix.get(i, j) + get(i, k) * other.get(k, j));
-        }
-      }
-    }
+    return multiply(other, new DenseDoubleMatrix(numRows,
+        other.getColumnCount()));
+  }
 
-    return matrix;
+  /**
+   * Multiplies this matrix with the given matrix (A * B) and writes the result
+   * into the given matrix, which must neither be A nor B. Every column of the
+   * result is a GEMV of A with the same column of B, for sparse matrices only
+   * the non-zeros of B are visited and each of them adds a contiguous column
+   * of A to a contiguous column of the result.
+   *
+   * @return the result matrix.
+   */
+  public DenseDoubleMatrix multiply(DoubleMatrix other,
+      DenseDoubleMatrix result) {
+    VectorOperand[] columns = columnOperands(other, result);
+    multiplyMatrix(columns, result.matrix, 0, numRows);
+    return result;
   }
 
-  @Override
-  public DoubleMatrix multiplyElementWise(DoubleMatrix other) {
-    DenseDoubleMatrix matrix = new DenseDoubleMatrix(this.numRows,
-        this.numColumns);
+  /**
+   * Multiplies this matrix with the given matrix (A * B) in parallel and
+   * writes the result into the given matrix, which must neither be A nor B.
+   * The rows of the result are split into blocks that are computed on the
+   * pool, so the tasks never write to the same elements.
+   *
+   * @return the result matrix.
+   */
+  public DenseDoubleMatrix multiply(DoubleMatrix other,
+      DenseDoubleMatrix result, ForkJoinPool pool) {
+    VectorOperand[] columns = columnOperands(other, result);
+    if ((long) numRows * numColumns < PARALLEL_THRESHOLD
+        || numRows < 2 * GEMV_BLOCK) {
+      multiplyMatrix(columns, result.matrix, 0, numRows);
+    } else {
+      pool.invoke(new GemmTask(this, columns, result.matrix, 0, numRows));
+    }
+    return result;
+  }
 
-    for (int i = 0; i < numRows; i++) {
-      for (int j = 0; j < numColumns; j++) {
-        matrix.set(i, j, this.get(i, j) * (other.get(i, j)));
+  // gathers the columns of B once, sparse matrices are transposed from their
+  // row-wise non-zeros into compressed columns
+  private VectorOperand[] columnOperands(DoubleMatrix other,
+      DenseDoubleMatrix result) {
+    if (other.getRowCount() != numColumns) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + numColumns + " != " + other.getRowCount());
+    }
+    if (result.numRows != numRows
+        || result.numColumns != other.getColumnCount()) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + numRows + "x" + other.getColumnCount() + " != "
+          + result.sizeToString());
+    }
+    if (result == this || result == other) {
+      throw new IllegalArgumentException(
+          "The result must neither be this nor the other matrix.");
+    }
+    int p = other.getColumnCount();
+    VectorOperand[] columns = new VectorOperand[p];
+    if (!other.isSparse()) {
+      // row major matrices are transposed once with the blocked transpose
+      // instead of gathering every column with a stride
+      DoubleMatrix b = other;
+      if (other instanceof RowMajorDenseDoubleMatrix) {
+        b = ((RowMajorDenseDoubleMatrix) other).toColumnMajor();
+      }
+      for (int col = 0; col < p; col++) {
+        columns[col] = VectorOperand.of(b.getColumnVector(col), numColumns);
       }
+      return columns;
     }
-
-    return matrix;
+    int[] rows = other.rowIndices();
+    int[] counts = new int[p];
+    for (int row : rows) {
+      Iterator<DoubleVectorElement> iterateNonZero = other.getRowVector(row)
+          .iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        counts[iterateNonZero.next().getIndex()]++;
+      }
+    }
+    for (int col = 0; col < p; col++) {
+      columns[col] = new VectorOperand(new double[counts[col]],
+          new int[counts[col]], 0);
+    }
+    for (int row : rows) {
+      Iterator<DoubleVectorElement> iterateNonZero = other.getRowVector(row)
+          .iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        DoubleVectorElement next = iterateNonZero.next();
+        VectorOperand column = columns[next.getIndex()];
+        column.indices[column.size] = row;
+        column.values[column.size++] = next.getValue();
+      }
+    }
+    return columns;
   }
 
   @Override
-  public DoubleVector multiplyVectorRow(DoubleVector v) {
-    DoubleVector vector = new DenseDoubleVector(this.getRowCount());
-    for (int row = 0; row < numRows; row++) {
-      double sum = 0.0d;
-      if (v.isSparse()) {
-        Iterator<DoubleVectorElement> iterateNonZero = v.iterateNonZero();
+  public DenseDoubleMatrix multiplyElementWise(DoubleMatrix other) {
+    return multiplyElementWise(other, new DenseDoubleMatrix(numRows,
+        numColumns));
+  }
+
+  /**
+   * Multiplies this matrix element-wise with the given matrix and writes the
+   * results into the given matrix, which may be this or the other matrix.
+   * Dense matrices are multiplied in a single pass over the arrays, for sparse
+   * matrices only the non-zeros are visited.
+   *
+   * @return the result matrix.
+   */
+  public DenseDoubleMatrix multiplyElementWise(DoubleMatrix other,
+      DenseDoubleMatrix result) {
+    checkOperand(other);
+    checkResult(result);
+    if (other instanceof DenseDoubleMatrix) {
+      double[] values = ((DenseDoubleMatrix) other).matrix;
+      for (int i = 0; i < matrix.length; i++) {
+        result.matrix[i] = this.matrix[i] * values[i];
+      }
+    } else if (other.isSparse()) {
+      // the products are gathered first, so the result can be this matrix
+      int[] rows = other.rowIndices();
+      int size = 0;
+      for (int row : rows) {
+        size += other.getRowVector(row).getLength();
+      }
+      int[] offsets = new int[size];
+      double[] products = new double[size];
+      size = 0;
+      for (int row : rows) {
+        Iterator<DoubleVectorElement> iterateNonZero = other
+            .getRowVector(row).iterateNonZero();
         while (iterateNonZero.hasNext()) {
           DoubleVectorElement next = iterateNonZero.next();
-          sum += (matrix[translate(row, next.getIndex(), numRows)] * next
-              .getValue());
+          int offset = translate(row, next.getIndex(), numRows);
+          offsets[size] = offset;
+          products[size++] = this.matrix[offset] * next.getValue();
         }
-      } else {
-        for (int col = 0; col < numColumns; col++) {
-          sum += (matrix[translate(row, col, numRows)] * v.get(col));
+      }
+      Arrays.fill(result.matrix, 0d);
+      for (int i = 0; i < size; i++) {
+        result.matrix[offsets[i]] = products[i];
+      }
+    } else {
+      for (int j = 0; j < numColumns; j++) {
+        for (int i = 0; i < numRows; i++) {
+          int offset = translate(i, j, numRows);
+          result.matrix[offset] = this.matrix[offset] * other.get(i, j);
         }
       }
-      vector.set(row, sum);
     }
+    return result;
+  }
+
+  @Override
+  public DoubleVector multiplyVectorRow(DoubleVector v) {
+    return multiplyVectorRow(v, new DenseDoubleVector(numRows));
+  }
 
+  /**
+   * Multiplies this matrix with the given column vector (A * v) and writes the
+   * result into the given vector, which must not be v. The columns are
+   * accumulated one after another (column-wise AXPY), so the storage is read
+   * contiguously and sparse vectors are traversed once.
+   *
+   * @return the result vector.
+   */
+  public DenseDoubleVector multiplyVectorRow(DoubleVector v,
+      DenseDoubleVector vector) {
+    checkVectorResult(v, vector, numRows);
+    VectorOperand x = VectorOperand.of(v, numColumns);
+    multiplyRows(x, vector.toArray(), 0, 0, numRows);
+    return vector;
+  }
+
+  /**
+   * Multiplies this matrix with the given column vector (A * v) in parallel
+   * and writes the result into the given vector, which must not be v. Tall
+   * matrices are split into blocks of rows that are computed on the pool.
+   *
+   * @return the result vector.
+   */
+  public DenseDoubleVector multiplyVectorRow(DoubleVector v,
+      DenseDoubleVector vector, ForkJoinPool pool) {
+    checkVectorResult(v, vector, numRows);
+    VectorOperand x = VectorOperand.of(v, numColumns);
+    double[] out = vector.toArray();
+    if ((long) numRows * numColumns < PARALLEL_THRESHOLD
+        || numRows < 2 * GEMV_BLOCK) {
+      multiplyRows(x, out, 0, 0, numRows);
+    } else {
+      pool.invoke(new GemvTask(this, x, out, 0, numRows, true));
+    }
     return vector;
   }
 
   @Override
   public DoubleVector multiplyVectorColumn(DoubleVector v) {
-    DoubleVector vector = new DenseDoubleVector(this.getColumnCount());
-    for (int col = 0; col < numColumns; col++) {
-      double sum = 0.0d;
-      for (int row = 0; row < numRows; row++) {
-        sum += (matrix[translate(row, col, numRows)] * v.get(row));
+    return multiplyVectorColumn(v, new DenseDoubleVector(numColumns));
+  }
+
+  /**
+   * Multiplies the given row vector with this matrix (v * A) and writes the
+   * result into the given vector, which must not be v. Every entry is the dot
+   * product of a contiguous column with v, sparse vectors are gathered once.
+   *
+   * @return the result vector.
+   */
+  public DenseDoubleVector multiplyVectorColumn(DoubleVector v,
+      DenseDoubleVector vector) {
+    checkVectorResult(v, vector, numColumns);
+    VectorOperand x = VectorOperand.of(v, numRows);
+    multiplyColumns(x, vector.toArray(), 0, numColumns);
+    return vector;
+  }
+
+  /**
+   * Multiplies the given row vector with this matrix (v * A) in parallel and
+   * writes the result into the given vector, which must not be v. The columns
+   * are split into blocks that are computed on the pool.
+   *
+   * @return the result vector.
+   */
+  public DenseDoubleVector multiplyVectorColumn(DoubleVector v,
+      DenseDoubleVector vector, ForkJoinPool pool) {
+    checkVectorResult(v, vector, numColumns);
+    VectorOperand x = VectorOperand.of(v, numRows);
+    double[] out = vector.toArray();
+    if ((long) numRows * numColumns < PARALLEL_THRESHOLD || numColumns < 2) {
+      multiplyColumns(x, out, 0, numColumns);
+    } else {
+      pool.invoke(new GemvTask(this, x, out, 0, numColumns, false));
+    }
+    return vector;
+  }
+
+  // out[offset + from, offset + to) = A[from, to) * x, four columns at a time
+  private void multiplyRows(VectorOperand x, double[] out, int offset,
+      int from, int to) {
+    Arrays.fill(out, offset + from, offset + to, 0d);
+    if (x.indices != null) {
+      for (int k = 0; k < x.size; k++) {
+        double value = x.values[k];
+        int column = x.indices[k] * numRows;
+        for (int row = from; row < to; row++) {
+          out[offset + row] += matrix[column + row] * value;
+        }
+      }
+      return;
+    }
+    double[] values = x.values;
+    int col = 0;
+    for (; col + 3 < numColumns; col += 4) {
+      double x0 = values[col];
+      double x1 = values[col + 1];
+      double x2 = values[col + 2];
+      double x3 = values[col + 3];
+      int o0 = col * numRows;
+      int o1 = o0 + numRows;
+      int o2 = o1 + numRows;
+      int o3 = o2 + numRows;
+      for (int row = from; row < to; row++) {
+        out[offset + row] += matrix[o0 + row] * x0 + matrix[o1 + row] * x1
+            + matrix[o2 + row] * x2 + matrix[o3 + row] * x3;
       }
-      vector.set(col, sum);
     }
+    for (; col < numColumns; col++) {
+      double value = values[col];
+      int column = col * numRows;
+      for (int row = from; row < to; row++) {
+        out[offset + row] += matrix[column + row] * value;
+      }
+    }
+  }
 
-    return vector;
+  // out[from, to) of every result column j = A[from, to) * B[:, j]
+  private void multiplyMatrix(VectorOperand[] columns, double[] out,
+      int from, int to) {
+    for (int col = 0; col < columns.length; col++) {
+      multiplyRows(columns[col], out, col * numRows, from, to);
+    }
+  }
+
+  // out[from, to) = x * A[:, from, to), one contiguous dot per column
+  private void multiplyColumns(VectorOperand x, double[] out, int from,
+      int to) {
+    double[] values = x.values;
+    for (int col = from; col < to; col++) {
+      int offset = col * numRows;
+      if (x.indices != null) {
+        double sum = 0d;
+        for (int k = 0; k < x.size; k++) {
+          sum += matrix[offset + x.indices[k]] * values[k];
+        }
+        out[col] = sum;
+      } else {
+        double s0 = 0d, s1 = 0d, s2 = 0d, s3 = 0d;
+        int row = 0;
+        for (; row + 3 < numRows; row += 4) {
+          s0 += matrix[offset + row] * values[row];
+          s1 += matrix[offset + row + 1] * values[row + 1];
+          s2 += matrix[offset + row + 2] * values[row + 2];
+          s3 += matrix[offset + row + 3] * values[row + 3];
+        }
+        for (; row < numRows; row++) {
+          s0 += matrix[offset + row] * values[row];
+        }
+        out[col] = (s0 + s1) + (s2 + s3);
+      }
+    }
   }
 
   @Override
   public DenseDoubleMatrix transpose() {
-    DenseDoubleMatrix m = new DenseDoubleMatrix(this.numColumns, this.numRows);
-    for (int i = 0; i < numRows; i++) {
-      for (int j = 0; j < numColumns; j++) {
-        m.set(j, i, this.matrix[translate(i, j, numRows)]);
+    return transpose(new DenseDoubleMatrix(numColumns, numRows));
+  }
+
+  /**
+   * Transposes this matrix into the given matrix, which must not be this
+   * matrix. The matrix is recursively halved along its larger dimension until
+   * a block fits into the cache (cache-oblivious), so neither the reads nor
+   * the writes miss the cache on every element.
+   *
+   * @return the transposed matrix.
+   */
+  public DenseDoubleMatrix transpose(DenseDoubleMatrix result) {
+    checkTransposeResult(result);
+    transposeBlock(result.matrix, 0, numRows, 0, numColumns);
+    return result;
+  }
+
+  /**
+   * Transposes this matrix in parallel into the given matrix, which must not
+   * be this matrix. The blocks of the recursive halving are computed on the
+   * pool.
+   *
+   * @return the transposed matrix.
+   */
+  public DenseDoubleMatrix transpose(DenseDoubleMatrix result,
+      ForkJoinPool pool) {
+    checkTransposeResult(result);
+    if ((long) numRows * numColumns < PARALLEL_THRESHOLD) {
+      transposeBlock(result.matrix, 0, numRows, 0, numColumns);
+    } else {
+      pool.invoke(new TransposeTask(this, result.matrix, 0, numRows, 0,
+          numColumns));
+    }
+    return result;
+  }
+
+  /**
+   * Transposes this square matrix in place by swapping the tiles above the
+   * diagonal with the ones below it, so no second buffer is needed.
+   *
+   * @return this matrix.
+   */
+  public DenseDoubleMatrix transposeInPlace() {
+    if (numRows != numColumns) {
+      throw new IllegalArgumentException(
+          "Only square matrices can be transposed in place, but was "
+              + sizeToString());
+    }
+    int n = numRows;
+    for (int rowBlock = 0; rowBlock < n; rowBlock += TRANSPOSE_BLOCK) {
+      int rowEnd = Math.min(n, rowBlock + TRANSPOSE_BLOCK);
+      for (int colBlock = rowBlock; colBlock < n; colBlock += TRANSPOSE_BLOCK) {
+        int colEnd = Math.min(n, colBlock + TRANSPOSE_BLOCK);
+        for (int col = colBlock; col < colEnd; col++) {
+          // on the diagonal tile only the elements below the diagonal swap
+          int rowTo = Math.min(rowEnd, col);
+          for (int row = rowBlock; row < rowTo; row++) {
+            int lower = row + col * n;
+            int upper = col + row * n;
+            double tmp = matrix[lower];
+            matrix[lower] = matrix[upper];
+            matrix[upper] = tmp;
+          }
+        }
       }
     }
-    return m;
+    return this;
+  }
+
+  // result[col, row] = this[row, col] for the rows and columns of the block
+  private void transposeBlock(double[] out, int rowFrom, int rowTo,
+      int colFrom, int colTo) {
+    int rows = rowTo - rowFrom;
+    int cols = colTo - colFrom;
+    if (rows <= TRANSPOSE_BLOCK && cols <= TRANSPOSE_BLOCK) {
+      for (int row = rowFrom; row < rowTo; row++) {
+        int offset = row * numColumns;
+        for (int col = colFrom; col < colTo; col++) {
+          out[offset + col] = matrix[row + col * numRows];
+        }
+      }
+    } else if (rows >= cols) {
+      int mid = (rowFrom + rowTo) >>> 1;
+      transposeBlock(out, rowFrom, mid, colFrom, colTo);
+      transposeBlock(out, mid, rowTo, colFrom, colTo);
+    } else {
+      int mid = (colFrom + colTo) >>> 1;
+      transposeBlock(out, rowFrom, rowTo, colFrom, mid);
+      transposeBlock(out, rowFrom, rowTo, mid, colTo);
+    }
+  }
+
+  private void checkTransposeResult(DenseDoubleMatrix result) {
+    if (result == this) {
+      throw new IllegalArgumentException(
+          "Result must not be this matrix, use transposeInPlace() instead.");
+    }
+    if (result.numRows != numColumns || result.numColumns != numRows) {
+      throw new IllegalArgumentException("Result must be a " + numColumns
+          + "x" + numRows + " matrix, but was " + result.sizeToString());
+    }
   }
 
   @Override
   public DenseDoubleMatrix subtractBy(double amount) {
-    double[] csjr = new double[this.numRows * this.numColumns];
+    return subtractBy(amount, new DenseDoubleMatrix(numRows, numColumns));
+  }
+
+  /**
+   * Subtracts every element from the given amount and writes the results into
+   * the given matrix, which may be this matrix.
+   *
+   * @return the result matrix.
+   */
+  public DenseDoubleMatrix subtractBy(double amount, DenseDoubleMatrix result) {
+    checkResult(result);
     for (int i = 0; i < matrix.length; i++) {
-      csjr[i] = amount - this.matrix[i];
+      result.matrix[i] = amount - this.matrix[i];
     }
-    return new DenseDoubleMatrix(csjr, this.numRows, this.numColumns, false);
+    return result;
   }
 
   @Override
   public DenseDoubleMatrix subtract(double amount) {
-    double[] csjr = new double[this.numRows * this.numColumns];
+    return subtract(amount, new DenseDoubleMatrix(numRows, numColumns));
+  }
+
+  /**
+   * Subtracts the amount from every element and writes the results into the
+   * given matrix, which may be this matrix.
+   *
+   * @return the result matrix.
+   */
+  public DenseDoubleMatrix subtract(double amount, DenseDoubleMatrix result) {
+    checkResult(result);
     for (int i = 0; i < matrix.length; i++) {
-      csjr[i] = this.matrix[i] - amount;
+      result.matrix[i] = this.matrix[i] - amount;
     }
-    return new DenseDoubleMatrix(csjr, this.numRows, this.numColumns, false);
+    return result;
   }
 
   @Override
-  public DoubleMatrix subtract(DoubleMatrix other) {
-    DoubleMatrix m = new DenseDoubleMatrix(this.numRows, this.numColumns);
-    for (int i = 0; i < numRows; i++) {
-      for (int j = 0; j < numColumns; j++) {
-        m.set(i, j, this.matrix[translate(i, j, numRows)] - other.get(i, j));
-      }
-    }
-    return m;
+  public DenseDoubleMatrix subtract(DoubleMatrix other) {
+    return subtract(other, new DenseDoubleMatrix(numRows, numColumns));
+  }
+
+  /**
+   * Subtracts the given matrix from this matrix and writes the results into
+   * the given matrix, which may be this or the other matrix. Dense matrices
+   * are subtracted in a single pass over the arrays, for sparse matrices only
+   * the non-zeros are visited.
+   *
+   * @return the result matrix.
+   */
+  public DenseDoubleMatrix subtract(DoubleMatrix other,
+      DenseDoubleMatrix result) {
+    return add(-1d, other, result);
   }
 
   @Override
@@ -443,52 +831,142 @@ public final class DenseDoubleMatrix implements DoubleMatrix {
   }
 
   @Override
-  public DoubleMatrix divide(DoubleMatrix other) {
-    DoubleMatrix m = new DenseDoubleMatrix(this.numRows, this.numColumns);
-    for (int i = 0; i < numRows; i++) {
+  public DenseDoubleMatrix divide(DoubleMatrix other) {
+    return divide(other, new DenseDoubleMatrix(numRows, numColumns));
+  }
+
+  /**
+   * Divides this matrix element-wise by the given matrix and writes the
+   * results into the given matrix, which may be this or the other matrix.
+   * Dense matrices are divided in a single pass over the arrays.
+   *
+   * @return the result matrix.
+   */
+  public DenseDoubleMatrix divide(DoubleMatrix other,
+      DenseDoubleMatrix result) {
+    checkOperand(other);
+    checkResult(result);
+    if (other instanceof DenseDoubleMatrix) {
+      double[] values = ((DenseDoubleMatrix) other).matrix;
+      for (int i = 0; i < matrix.length; i++) {
+        result.matrix[i] = this.matrix[i] / values[i];
+      }
+    } else {
       for (int j = 0; j < numColumns; j++) {
-        m.set(i, j, this.matrix[translate(i, j, numRows)] / other.get(i, j));
+        for (int i = 0; i < numRows; i++) {
+          int offset = translate(i, j, numRows);
+          result.matrix[offset] = this.matrix[offset] / other.get(i, j);
+        }
       }
     }
-    return m;
+    return result;
   }
 
   @Override
-  public DoubleMatrix divide(double scalar) {
-    double[] csjr = new double[this.numRows * this.numColumns];
+  public DenseDoubleMatrix divide(double scalar) {
+    return divide(scalar, new DenseDoubleMatrix(numRows, numColumns));
+  }
+
+  /**
+   * Divides every element by the scalar and writes the results into the given
+   * matrix, which may be this matrix.
+   *
+   * @return the result matrix.
+   */
+  public DenseDoubleMatrix divide(double scalar, DenseDoubleMatrix result) {
+    checkResult(result);
     for (int i = 0; i < matrix.length; i++) {
-      csjr[i] = this.matrix[i] / scalar;
+      result.matrix[i] = this.matrix[i] / scalar;
     }
-    return new DenseDoubleMatrix(csjr, this.numRows, this.numColumns, false);
+    return result;
   }
 
   @Override
-  public DoubleMatrix add(DoubleMatrix other) {
-    DoubleMatrix m = new DenseDoubleMatrix(this.numRows, this.numColumns);
-    for (int i = 0; i < numRows; i++) {
+  public DenseDoubleMatrix add(DoubleMatrix other) {
+    return add(other, new DenseDoubleMatrix(numRows, numColumns));
+  }
+
+  /**
+   * Adds the given matrix to this matrix and writes the results into the given
+   * matrix, which may be this or the other matrix. Dense matrices are added in
+   * a single pass over the arrays, for sparse matrices only the non-zeros are
+   * visited.
+   *
+   * @return the result matrix.
+   */
+  public DenseDoubleMatrix add(DoubleMatrix other, DenseDoubleMatrix result) {
+    return add(1d, other, result);
+  }
+
+  /**
+   * Adds alpha times the given matrix to this matrix (this + alpha * other)
+   * and writes the results into the given matrix, which may be this or the
+   * other matrix. With this matrix as the result it is a gradient step that
+   * doesn't allocate anything, e.g. weights.add(-learningRate, gradient,
+   * weights).
+   *
+   * @return the result matrix.
+   */
+  public DenseDoubleMatrix add(double alpha, DoubleMatrix other,
+      DenseDoubleMatrix result) {
+    checkOperand(other);
+    checkResult(result);
+    if (other instanceof DenseDoubleMatrix) {
+      double[] values = ((DenseDoubleMatrix) other).matrix;
+      for (int i = 0; i < matrix.length; i++) {
+        result.matrix[i] = this.matrix[i] + alpha * values[i];
+      }
+    } else if (other.isSparse()) {
+      if (result != this) {
+        System.arraycopy(this.matrix, 0, result.matrix, 0, matrix.length);
+      }
+      for (int row : other.rowIndices()) {
+        Iterator<DoubleVectorElement> iterateNonZero = other
+            .getRowVector(row).iterateNonZero();
+        while (iterateNonZero.hasNext()) {
+          DoubleVectorElement next = iterateNonZero.next();
+          result.matrix[translate(row, next.getIndex(), numRows)] += alpha
+              * next.getValue();
+        }
+      }
+    } else {
       for (int j = 0; j < numColumns; j++) {
-        m.set(i, j, this.matrix[translate(i, j, numRows)] + other.get(i, j));
+        for (int i = 0; i < numRows; i++) {
+          int offset = translate(i, j, numRows);
+          result.matrix[offset] = this.matrix[offset] + alpha
+              * other.get(i, j);
+        }
       }
     }
-    return m;
+    return result;
   }
 
   @Override
-  public DoubleMatrix pow(double x) {
-    double[] csjr = new double[this.numRows * this.numColumns];
+  public DenseDoubleMatrix pow(double x) {
+    return pow(x, new DenseDoubleMatrix(numRows, numColumns));
+  }
+
+  /**
+   * Raises every element to the power of x and writes the results into the
+   * given matrix, which may be this matrix.
+   *
+   * @return the result matrix.
+   */
+  public DenseDoubleMatrix pow(double x, DenseDoubleMatrix result) {
+    checkResult(result);
     for (int i = 0; i < matrix.length; i++) {
       if (x == 2d) {
-        csjr[i] = this.matrix[i] * this.matrix[i];
+        result.matrix[i] = this.matrix[i] * this.matrix[i];
       } else {
-        csjr[i] = FastMath.pow(this.matrix[i], x);
+        result.matrix[i] = FastMath.pow(this.matrix[i], x);
       }
     }
-    return new DenseDoubleMatrix(csjr, this.numRows, this.numColumns, false);
+    return result;
   }
 
   @Override
   public double max(int column) {
-    double max = Double.MIN_VALUE;
+    double max = -Double.MAX_VALUE;
     int offset = translate(0, column, numRows);
     for (int i = 0; i < getRowCount(); i++) {
       double d = matrix[offset + i];
@@ -543,6 +1021,16 @@ public final class DenseDoubleMatrix implements DoubleMatrix {
     return x;
   }
 
+  /**
+   * Sums the signed values of all elements. Other than {@link #sum()}, which
+   * sums the absolute values, negative elements are subtracted like on the
+   * sparse matrices.
+   */
+  @Override
+  public double signedSum(SummationStrategy strategy) {
+    return strategy.sum(matrix, 0, matrix.length);
+  }
+
   @Override
   public int[] columnIndices() {
     int[] x = new int[getColumnCount()];
@@ -561,7 +1049,7 @@ public final class DenseDoubleMatrix implements DoubleMatrix {
 
   @Override
   public DoubleMatrix deepCopy() {
-    return new DenseDoubleMatrix(toArray());
+    return new DenseDoubleMatrix(matrix, numRows, numColumns, true);
   }
 
   @Override
@@ -586,6 +1074,34 @@ public final class DenseDoubleMatrix implements DoubleMatrix {
     return numRows + "x" + numColumns;
   }
 
+  private void checkResult(DenseDoubleMatrix result) {
+    if (result.numRows != numRows || result.numColumns != numColumns) {
+      throw new IllegalArgumentException("Result must be a " + sizeToString()
+          + " matrix, but was " + result.sizeToString());
+    }
+  }
+
+  private void checkOperand(DoubleMatrix other) {
+    if (other.getRowCount() != numRows
+        || other.getColumnCount() != numColumns) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + sizeToString() + " != " + other.getRowCount() + "x"
+          + other.getColumnCount());
+    }
+  }
+
+  private static void checkVectorResult(DoubleVector v,
+      DenseDoubleVector result, int length) {
+    if (result.getDimension() != length) {
+      throw new IllegalArgumentException("Dimensions do not match: " + length
+          + " != " + result.getDimension());
+    }
+    if (result == v) {
+      throw new IllegalArgumentException(
+          "The result must not be the multiplied vector.");
+    }
+  }
+
   /**
    * Translates the 2D addressing to a single offset in the 1D matrix.
    * 
@@ -598,4 +1114,156 @@ public final class DenseDoubleMatrix implements DoubleMatrix {
     return row + col * numRows;
   }
 
+  /**
+   * The vector operand of a GEMV, either the dense values or the gathered
+   * non-zero indices and values of a sparse vector.
+   */
+  private static final class VectorOperand {
+
+    private final double[] values;
+    private final int[] indices;
+    private int size;
+
+    private VectorOperand(double[] values, int[] indices, int size) {
+      this.values = values;
+      this.indices = indices;
+      this.size = size;
+    }
+
+    static VectorOperand of(DoubleVector v, int length) {
+      if (v.getDimension() != length) {
+        throw new IllegalArgumentException("Dimensions do not match: "
+            + length + " != " + v.getDimension());
+      }
+      if (!v.isSparse()) {
+        return new VectorOperand(v.toArray(), null, length);
+      }
+      int[] indices = new int[Math.max(1, v.getLength())];
+      double[] values = new double[indices.length];
+      int size = 0;
+      Iterator<DoubleVectorElement> iterateNonZero = v.iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        DoubleVectorElement next = iterateNonZero.next();
+        if (size == indices.length) {
+          indices = Arrays.copyOf(indices, size * 2);
+          values = Arrays.copyOf(values, size * 2);
+        }
+        indices[size] = next.getIndex();
+        values[size++] = next.getValue();
+      }
+      return new VectorOperand(values, indices, size);
+    }
+  }
+
+  private static final class GemvTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final DenseDoubleMatrix a;
+    private final VectorOperand x;
+    private final double[] out;
+    private final int from;
+    private final int to;
+    private final boolean rows;
+
+    GemvTask(DenseDoubleMatrix a, VectorOperand x, double[] out, int from,
+        int to, boolean rows) {
+      this.a = a;
+      this.x = x;
+      this.out = out;
+      this.from = from;
+      this.to = to;
+      this.rows = rows;
+    }
+
+    @Override
+    protected void compute() {
+      // columns are split until a block holds about as many elements as a
+      // block of rows
+      int block = rows ? GEMV_BLOCK : Math.max(1, GEMV_BLOCK * GEMV_BLOCK
+          / Math.max(1, a.numRows));
+      if (to - from <= block) {
+        if (rows) {
+          a.multiplyRows(x, out, 0, from, to);
+        } else {
+          a.multiplyColumns(x, out, from, to);
+        }
+      } else {
+        int mid = (from + to) >>> 1;
+        invokeAll(new GemvTask(a, x, out, from, mid, rows), new GemvTask(a, x,
+            out, mid, to, rows));
+      }
+    }
+  }
+
+  private static final class GemmTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final DenseDoubleMatrix a;
+    private final VectorOperand[] columns;
+    private final double[] out;
+    private final int from;
+    private final int to;
+
+    GemmTask(DenseDoubleMatrix a, VectorOperand[] columns, double[] out,
+        int from, int to) {
+      this.a = a;
+      this.columns = columns;
+      this.out = out;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= GEMV_BLOCK) {
+        a.multiplyMatrix(columns, out, from, to);
+      } else {
+        int mid = (from + to) >>> 1;
+        invokeAll(new GemmTask(a, columns, out, from, mid), new GemmTask(a,
+            columns, out, mid, to));
+      }
+    }
+  }
+
+  private static final class TransposeTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final DenseDoubleMatrix a;
+    private final double[] out;
+    private final int rowFrom;
+    private final int rowTo;
+    private final int colFrom;
+    private final int colTo;
+
+    TransposeTask(DenseDoubleMatrix a, double[] out, int rowFrom, int rowTo,
+        int colFrom, int colTo) {
+      this.a = a;
+      this.out = out;
+      this.rowFrom = rowFrom;
+      this.rowTo = rowTo;
+      this.colFrom = colFrom;
+      this.colTo = colTo;
+    }
+
+    @Override
+    protected void compute() {
+      int rows = rowTo - rowFrom;
+      int cols = colTo - colFrom;
+      if ((long) rows * cols <= PARALLEL_THRESHOLD) {
+        a.transposeBlock(out, rowFrom, rowTo, colFrom, colTo);
+      } else if (rows >= cols) {
+        int mid = (rowFrom + rowTo) >>> 1;
+        invokeAll(new TransposeTask(a, out, rowFrom, mid, colFrom, colTo),
+            new TransposeTask(a, out, mid, rowTo, colFrom, colTo));
+      } else {
+        int mid = (colFrom + colTo) >>> 1;
+        invokeAll(new TransposeTask(a, out, rowFrom, rowTo, colFrom, mid),
+            new TransposeTask(a, out, rowFrom, rowTo, mid, colTo));
+      }
+    }
+  }
+
 }
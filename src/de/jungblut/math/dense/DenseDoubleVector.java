@@ -8,6 +8,7 @@ import org.apache.commons.math3.util.FastMath;
 import com.google.common.collect.AbstractIterator;
 
 import de.jungblut.math.DoubleVector;
+import de.jungblut.math.SummationStrategy;
 import de.jungblut.math.function.DoubleDoubleVectorFunction;
 import de.jungblut.math.function.DoubleVectorFunction;
 
@@ -114,76 +115,141 @@ public final class DenseDoubleVector implements DoubleVector {
 
   @Override
   public DoubleVector apply(DoubleVectorFunction func) {
-    DenseDoubleVector newV = new DenseDoubleVector(this.vector);
+    return apply(func, new DenseDoubleVector(vector.length));
+  }
+
+  /**
+   * Applies the given function to every element and writes the results into
+   * the given vector, which may be this vector.
+   *
+   * @return the result vector.
+   */
+  public DenseDoubleVector apply(DoubleVectorFunction func,
+      DenseDoubleVector result) {
+    checkResult(result);
     for (int i = 0; i < vector.length; i++) {
-      newV.vector[i] = func.calculate(i, vector[i]);
+      result.vector[i] = func.calculate(i, vector[i]);
     }
-    return newV;
+    return result;
   }
 
   @Override
   public DoubleVector apply(DoubleVector other, DoubleDoubleVectorFunction func) {
-    DenseDoubleVector newV = (DenseDoubleVector) deepCopy();
+    return apply(other, func, new DenseDoubleVector(vector.length));
+  }
+
+  /**
+   * Applies the given function to every pair of elements and writes the
+   * results into the given vector, which may be this vector.
+   *
+   * @return the result vector.
+   */
+  public DenseDoubleVector apply(DoubleVector other,
+      DoubleDoubleVectorFunction func, DenseDoubleVector result) {
+    checkResult(result);
     for (int i = 0; i < vector.length; i++) {
-      newV.vector[i] = func.calculate(i, vector[i], other.get(i));
+      result.vector[i] = func.calculate(i, vector[i], other.get(i));
     }
-    return newV;
+    return result;
   }
 
   @Override
   public final DoubleVector add(DoubleVector v) {
-    DoubleVector newv = null;
+    return add(v, new DenseDoubleVector(vector.length));
+  }
+
+  /**
+   * Adds the given vector and writes the sum into the given vector, which may
+   * be this vector.
+   *
+   * @return the result vector.
+   */
+  public final DenseDoubleVector add(DoubleVector v, DenseDoubleVector result) {
+    checkResult(result);
     if (v.isSparse()) {
-      newv = new DenseDoubleVector(vector);
+      if (result != this) {
+        System.arraycopy(vector, 0, result.vector, 0, vector.length);
+      }
       Iterator<DoubleVectorElement> iterateNonZero = v.iterateNonZero();
       while (iterateNonZero.hasNext()) {
         DoubleVectorElement next = iterateNonZero.next();
-        newv.set(next.getIndex(), this.get(next.getIndex()) + next.getValue());
+        result.vector[next.getIndex()] += next.getValue();
       }
     } else {
-      newv = new DenseDoubleVector(this.getLength());
       for (int i = 0; i < v.getLength(); i++) {
-        newv.set(i, this.get(i) + v.get(i));
+        result.vector[i] = vector[i] + v.get(i);
       }
     }
-    return newv;
+    return result;
   }
 
   @Override
   public final DoubleVector add(double scalar) {
-    DoubleVector newv = new DenseDoubleVector(this.getLength());
-    for (int i = 0; i < this.getLength(); i++) {
-      newv.set(i, this.get(i) + scalar);
+    return add(scalar, new DenseDoubleVector(vector.length));
+  }
+
+  /**
+   * Adds the scalar to every element and writes the results into the given
+   * vector, which may be this vector.
+   *
+   * @return the result vector.
+   */
+  public final DenseDoubleVector add(double scalar, DenseDoubleVector result) {
+    checkResult(result);
+    for (int i = 0; i < vector.length; i++) {
+      result.vector[i] = vector[i] + scalar;
     }
-    return newv;
+    return result;
   }
 
   @Override
   public final DoubleVector subtract(DoubleVector v) {
-    DoubleVector newv = null;
+    return subtract(v, new DenseDoubleVector(vector.length));
+  }
+
+  /**
+   * Subtracts the given vector and writes the difference into the given
+   * vector, which may be this vector.
+   *
+   * @return the result vector.
+   */
+  public final DenseDoubleVector subtract(DoubleVector v,
+      DenseDoubleVector result) {
+    checkResult(result);
     if (v.isSparse()) {
-      newv = new DenseDoubleVector(vector);
+      if (result != this) {
+        System.arraycopy(vector, 0, result.vector, 0, vector.length);
+      }
       Iterator<DoubleVectorElement> iterateNonZero = v.iterateNonZero();
       while (iterateNonZero.hasNext()) {
         DoubleVectorElement next = iterateNonZero.next();
-        newv.set(next.getIndex(), this.get(next.getIndex()) - next.getValue());
+        result.vector[next.getIndex()] -= next.getValue();
       }
     } else {
-      newv = new DenseDoubleVector(this.getLength());
       for (int i = 0; i < v.getLength(); i++) {
-        newv.set(i, this.get(i) - v.get(i));
+        result.vector[i] = vector[i] - v.get(i);
       }
     }
-    return newv;
+    return result;
   }
 
   @Override
   public final DoubleVector subtract(double v) {
-    DenseDoubleVector newv = new DenseDoubleVector(vector.length);
+    return subtract(v, new DenseDoubleVector(vector.length));
+  }
+
+  /**
+   * Subtracts the scalar from every element and writes the results into the
+   * given vector, which may be this vector.
+   *
+   * @return the result vector.
+   */
+  public final DenseDoubleVector subtract(double v, DenseDoubleVector result) {
+    checkResult(result);
     for (int i = 0; i < vector.length; i++) {
-      newv.set(i, vector[i] - v);
+      result.vector[i] = vector[i] - v;
     }
-    return newv;
+    return result;
   }
 
   @Override
@@ -197,28 +263,55 @@ public final class DenseDoubleVector implements DoubleVector {
 
   @Override
   public DoubleVector multiply(double scalar) {
-    DoubleVector v = new DenseDoubleVector(this.getLength());
-    for (int i = 0; i < v.getLength(); i++) {
-      v.set(i, this.get(i) * scalar);
+    return multiply(scalar, new DenseDoubleVector(vector.length));
+  }
+
+  /**
+   * Multiplies every element with the scalar and writes the results into the
+   * given vector, which may be this vector.
+   *
+   * @return the result vector.
+   */
+  public DenseDoubleVector multiply(double scalar, DenseDoubleVector result) {
+    checkResult(result);
+    for (int i = 0; i < vector.length; i++) {
+      result.vector[i] = vector[i] * scalar;
     }
-    return v;
+    return result;
   }
 
   @Override
   public DoubleVector multiply(DoubleVector v) {
-    DoubleVector newv = new DenseDoubleVector(this.getLength());
-    if (v.isSparse()) {
+    return multiply(v, new DenseDoubleVector(vector.length));
+  }
+
+  /**
+   * Multiplies element-wise with the given vector and writes the results into
+   * the given vector, which may be this vector.
+   *
+   * @return the result vector.
+   */
+  public DenseDoubleVector multiply(DoubleVector v, DenseDoubleVector result) {
+    checkResult(result);
+    if (v.isSparse() && result != this) {
+      Arrays.fill(result.vector, 0d);
       Iterator<DoubleVectorElement> iterateNonZero = v.iterateNonZero();
       while (iterateNonZero.hasNext()) {
         DoubleVectorElement next = iterateNonZero.next();
-        newv.set(next.getIndex(), this.get(next.getIndex()) * next.getValue());
+        result.vector[next.getIndex()] = vector[next.getIndex()]
+            * next.getValue();
+      }
+    } else if (v.isSparse()) {
+      // in place, so the zeros of v have to be multiplied too
+      for (int i = 0; i < vector.length; i++) {
+        result.vector[i] = vector[i] * v.get(i);
       }
     } else {
       for (int i = 0; i < v.getLength(); i++) {
-        newv.set(i, this.get(i) * v.get(i));
+        result.vector[i] = vector[i] * v.get(i);
       }
     }
-    return newv;
+    return result;
   }
 
   @Override
@@ -309,6 +402,11 @@ public final class DenseDoubleVector implements DoubleVector {
     return sum;
   }
 
+  @Override
+  public double sum(SummationStrategy strategy) {
+    return strategy.sum(vector, 0, vector.length);
+  }
+
   @Override
   public DoubleVector abs() {
     DoubleVector v = new DenseDoubleVector(getLength());
@@ -335,6 +433,14 @@ public final class DenseDoubleVector implements DoubleVector {
     return dotProduct;
   }
 
+  @Override
+  public double dot(DoubleVector s, SummationStrategy strategy) {
+    if (s.isSparse()) {
+      return strategy.dot(s.iterateNonZero(), this);
+    }
+    return strategy.dot(vector, s.toArray(), 0, vector.length);
+  }
+
   @Override
   public DoubleVector slice(int length) {
     return slice(0, length);
@@ -463,6 +569,13 @@ public final class DenseDoubleVector implements DoubleVector {
     return v;
   }
 
+  private void checkResult(DenseDoubleVector result) {
+    if (result.vector.length != vector.length) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + vector.length + " != " + result.vector.length);
+    }
+  }
+
   @Override
   public final String toString() {
     if (getLength() < 50) {
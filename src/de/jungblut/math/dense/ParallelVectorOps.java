@@ -0,0 +1,348 @@
+package de.jungblut.math.dense;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.SummationStrategy;
+import de.jungblut.math.function.DoubleDoubleVectorFunction;
+import de.jungblut.math.function.DoubleVectorFunction;
+
+/**
+ * Parallel reductions and element-wise operations for very large
+ * {@link DenseDoubleVector}s. The backing array is split into chunks of a
+ * fixed size of {@value #CHUNK_SIZE} elements that are processed on a
+ * {@link ForkJoinPool}. Every chunk computes its partial result sequentially,
+ * the partial results are then combined in a fixed pairwise order. As neither
+ * the chunking nor the combine order depends on the number of threads or the
+ * scheduling, the floating point results are bit for bit reproducible.
+ *
+ * Vectors that fit into a single chunk are computed in the calling thread and
+ * yield exactly the same result as the sequential methods on the vector.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class ParallelVectorOps {
+
+  /**
+   * The number of elements that are processed in a single task.
+   */
+  public static final int CHUNK_SIZE = 1 << 16;
+
+  private ParallelVectorOps() {
+    throw new IllegalAccessError();
+  }
+
+  /**
+   * @return the sum of all elements, computed on the common pool.
+   */
+  public static double sum(DenseDoubleVector v) {
+    return sum(v, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * @return the sum of all elements, computed on the given pool.
+   */
+  public static double sum(DenseDoubleVector v, ForkJoinPool pool) {
+    final double[] array = v.toArray();
+    final double[] partials = new double[numChunks(array.length)];
+    forEachChunk(partials.length, pool, chunk -> {
+      int end = end(chunk, array.length);
+      double sum = 0d;
+      for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+        sum += array[i];
+      }
+      partials[chunk] = sum;
+    });
+    return combine(partials, 0, partials.length);
+  }
+
+  /**
+   * @return the sum of all elements, computed on the given pool. Both the
+   *         chunks and their partial sums are summed with the given strategy.
+   */
+  public static double sum(DenseDoubleVector v, SummationStrategy strategy,
+      ForkJoinPool pool) {
+    final double[] array = v.toArray();
+    final double[] partials = new double[numChunks(array.length)];
+    forEachChunk(partials.length, pool, chunk -> partials[chunk] = strategy
+        .sum(array, chunk * CHUNK_SIZE, end(chunk, array.length)));
+    return strategy.sum(partials);
+  }
+
+  /**
+   * @return the dot product of both vectors, computed on the common pool.
+   */
+  public static double dot(DenseDoubleVector a, DoubleVector b) {
+    return dot(a, b, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * @return the dot product of both vectors, computed on the given pool. If b
+   *         is sparse, the dot product is computed sequentially over its
+   *         non-zeros.
+   */
+  public static double dot(DenseDoubleVector a, DoubleVector b,
+      ForkJoinPool pool) {
+    checkDimension(a, b);
+    if (b.isSparse()) {
+      return a.dot(b);
+    }
+    final double[] x = a.toArray();
+    final double[] y = b.toArray();
+    final double[] partials = new double[numChunks(x.length)];
+    forEachChunk(partials.length, pool, chunk -> {
+      int end = end(chunk, x.length);
+      double sum = 0d;
+      for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+        sum += x[i] * y[i];
+      }
+      partials[chunk] = sum;
+    });
+    return combine(partials, 0, partials.length);
+  }
+
+  /**
+   * @return the dot product of both vectors, computed on the given pool. Both
+   *         the chunks and their partial sums are summed with the given
+   *         strategy.
+   */
+  public static double dot(DenseDoubleVector a, DoubleVector b,
+      SummationStrategy strategy, ForkJoinPool pool) {
+    checkDimension(a, b);
+    if (b.isSparse()) {
+      return a.dot(b, strategy);
+    }
+    final double[] x = a.toArray();
+    final double[] y = b.toArray();
+    final double[] partials = new double[numChunks(x.length)];
+    forEachChunk(partials.length, pool, chunk -> partials[chunk] = strategy
+        .dot(x, y, chunk * CHUNK_SIZE, end(chunk, x.length)));
+    return strategy.sum(partials);
+  }
+
+  /**
+   * @return the maximum element, computed on the common pool.
+   */
+  public static double max(DenseDoubleVector v) {
+    return max(v, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * @return the maximum element, computed on the given pool.
+   */
+  public static double max(DenseDoubleVector v, ForkJoinPool pool) {
+    double[] array = v.toArray();
+    int index = extremeIndex(array, pool, true);
+    // like the sequential max, -Double.MAX_VALUE if nothing is larger
+    return array.length > 0 && array[index] > -Double.MAX_VALUE ? array[index]
+        : -Double.MAX_VALUE;
+  }
+
+  /**
+   * @return the minimum element, computed on the common pool.
+   */
+  public static double min(DenseDoubleVector v) {
+    return min(v, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * @return the minimum element, computed on the given pool.
+   */
+  public static double min(DenseDoubleVector v, ForkJoinPool pool) {
+    double[] array = v.toArray();
+    int index = extremeIndex(array, pool, false);
+    // like the sequential min, Double.MAX_VALUE if nothing is smaller
+    return array.length > 0 && array[index] < Double.MAX_VALUE ? array[index]
+        : Double.MAX_VALUE;
+  }
+
+  /**
+   * @return the index of the first maximum element, computed on the common
+   *         pool.
+   */
+  public static int maxIndex(DenseDoubleVector v) {
+    return maxIndex(v, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * @return the index of the first maximum element, computed on the given
+   *         pool. Like {@link DenseDoubleVector#maxIndex()} NaNs are ignored
+   *         and zero is returned if no element is larger than
+   *         -Double.MAX_VALUE.
+   */
+  public static int maxIndex(DenseDoubleVector v, ForkJoinPool pool) {
+    return extremeIndex(v.toArray(), pool, true);
+  }
+
+  /**
+   * @return the index of the first minimum element, computed on the common
+   *         pool.
+   */
+  public static int minIndex(DenseDoubleVector v) {
+    return minIndex(v, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * @return the index of the first minimum element, computed on the given
+   *         pool. Like {@link DenseDoubleVector#minIndex()} NaNs are ignored
+   *         and zero is returned if no element is smaller than
+   *         Double.MAX_VALUE.
+   */
+  public static int minIndex(DenseDoubleVector v, ForkJoinPool pool) {
+    return extremeIndex(v.toArray(), pool, false);
+  }
+
+  /**
+   * Applies the given function to every element on the common pool.
+   *
+   * @return a new vector with the results.
+   */
+  public static DenseDoubleVector apply(DenseDoubleVector v,
+      DoubleVectorFunction func) {
+    return apply(v, func, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Applies the given function to every element on the given pool. The
+   * function must be safe to be called from multiple threads.
+   *
+   * @return a new vector with the results.
+   */
+  public static DenseDoubleVector apply(DenseDoubleVector v,
+      DoubleVectorFunction func, ForkJoinPool pool) {
+    final double[] array = v.toArray();
+    final DenseDoubleVector result = new DenseDoubleVector(array.length);
+    final double[] out = result.toArray();
+    forEachChunk(numChunks(array.length), pool, chunk -> {
+      int end = end(chunk, array.length);
+      for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+        out[i] = func.calculate(i, array[i]);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Applies the given function to every pair of elements on the common pool.
+   *
+   * @return a new vector with the results.
+   */
+  public static DenseDoubleVector apply(DenseDoubleVector v,
+      DoubleVector other, DoubleDoubleVectorFunction func) {
+    return apply(v, other, func, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Applies the given function to every pair of elements on the given pool.
+   * The function must be safe to be called from multiple threads.
+   *
+   * @return a new vector with the results.
+   */
+  public static DenseDoubleVector apply(DenseDoubleVector v,
+      DoubleVector other, DoubleDoubleVectorFunction func, ForkJoinPool pool) {
+    checkDimension(v, other);
+    final double[] array = v.toArray();
+    final DenseDoubleVector result = new DenseDoubleVector(array.length);
+    final double[] out = result.toArray();
+    forEachChunk(numChunks(array.length), pool, chunk -> {
+      int end = end(chunk, array.length);
+      for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+        out[i] = func.calculate(i, array[i], other.get(i));
+      }
+    });
+    return result;
+  }
+
+  private static int extremeIndex(final double[] array, ForkJoinPool pool,
+      final boolean max) {
+    final int[] partials = new int[numChunks(array.length)];
+    forEachChunk(partials.length, pool, chunk -> {
+      int end = end(chunk, array.length);
+      int index = -1;
+      double best = max ? -Double.MAX_VALUE : Double.MAX_VALUE;
+      for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+        double d = array[i];
+        if (max ? d > best : d < best) {
+          best = d;
+          index = i;
+        }
+      }
+      partials[chunk] = index;
+    });
+    // combine in chunk order, so the first of equal elements wins
+    int index = -1;
+    for (int candidate : partials) {
+      if (candidate >= 0
+          && (index < 0 || (max ? array[candidate] > array[index]
+              : array[candidate] < array[index]))) {
+        index = candidate;
+      }
+    }
+    return index < 0 ? 0 : index;
+  }
+
+  private static double combine(double[] partials, int from, int to) {
+    int length = to - from;
+    if (length == 0) {
+      return 0d;
+    } else if (length == 1) {
+      return partials[from];
+    }
+    int mid = from + (length >>> 1);
+    return combine(partials, from, mid) + combine(partials, mid, to);
+  }
+
+  private static void forEachChunk(int chunks, ForkJoinPool pool,
+      IntConsumer action) {
+    if (chunks == 1) {
+      action.accept(0);
+    } else if (chunks > 1) {
+      pool.invoke(new ChunkTask(0, chunks, action));
+    }
+  }
+
+  private static int numChunks(int length) {
+    return (length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+  }
+
+  private static int end(int chunk, int length) {
+    return (int) Math.min((long) (chunk + 1) * CHUNK_SIZE, length);
+  }
+
+  private static void checkDimension(DoubleVector a, DoubleVector b) {
+    if (a.getDimension() != b.getDimension()) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + a.getDimension() + " != " + b.getDimension());
+    }
+  }
+
+  private static final class ChunkTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int from;
+    private final int to;
+    private final IntConsumer action;
+
+    ChunkTask(int from, int to, IntConsumer action) {
+      this.from = from;
+      this.to = to;
+      this.action = action;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from == 1) {
+        action.accept(from);
+      } else {
+        int mid = (from + to) >>> 1;
+        invokeAll(new ChunkTask(from, mid, action), new ChunkTask(mid, to,
+            action));
+      }
+    }
+  }
+
+}
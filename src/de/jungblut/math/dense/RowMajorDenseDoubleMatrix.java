@@ -0,0 +1,846 @@
+package de.jungblut.math.dense;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.commons.math3.util.FastMath;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.SummationStrategy;
+
+/**
+ * Dense double matrix implementation with a row major ordering, so every row
+ * is a contiguous part of the array. This fits workloads where each row is a
+ * sample: reading, writing and multiplying rows never strides through the
+ * memory.
+ *
+ * The row major array of a matrix is the column major array of its transpose,
+ * so the GEMV kernels and the transpose work on a {@link DenseDoubleMatrix}
+ * view of the same array, which makes them pick the contiguous traversal for
+ * this layout as well. Converting between both layouts is a blocked
+ * transpose.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class RowMajorDenseDoubleMatrix implements DoubleMatrix {
+
+  private final double[] matrix;
+  private final int numRows;
+  private final int numColumns;
+
+  // products with less multiply-adds are computed sequentially
+  private static final int PARALLEL_THRESHOLD = 1 << 16;
+  // the number of rows below which a product task isn't split
+  private static final int ROW_BLOCK = 64;
+
+  /**
+   * Creates a new empty matrix from the rows and columns.
+   *
+   * @param rows the num of rows.
+   * @param columns the num of columns.
+   */
+  public RowMajorDenseDoubleMatrix(int rows, int columns) {
+    this(rows, columns, new double[rows * columns]);
+  }
+
+  /**
+   * Creates a new matrix from the rows and columns filled with the given
+   * default value.
+   *
+   * @param rows the num of rows.
+   * @param columns the num of columns.
+   * @param defaultValue the default value.
+   */
+  public RowMajorDenseDoubleMatrix(int rows, int columns, double defaultValue) {
+    this(rows, columns);
+    Arrays.fill(matrix, defaultValue);
+  }
+
+  /**
+   * Creates a new matrix from the rows and columns filled with the given
+   * random values.
+   *
+   * @param rows the num of rows.
+   * @param columns the num of columns.
+   * @param rand the random instance to use.
+   */
+  public RowMajorDenseDoubleMatrix(int rows, int columns, Random rand) {
+    this(rows, columns);
+    for (int i = 0; i < matrix.length; i++) {
+      matrix[i] = rand.nextDouble();
+    }
+  }
+
+  /**
+   * Creates a new matrix from the rows and columns, given the row major array
+   * input. This method does not copy the given array.
+   *
+   * @param rows the num of rows.
+   * @param columns the num of columns.
+   * @param rowMajorArray the array that has a row major layout.
+   */
+  public RowMajorDenseDoubleMatrix(int rows, int columns,
+      double[] rowMajorArray) {
+    if (rowMajorArray.length != rows * columns) {
+      throw new IllegalArgumentException("Array length must be " + rows
+          * columns + ", but was " + rowMajorArray.length);
+    }
+    this.numRows = rows;
+    this.numColumns = columns;
+    this.matrix = rowMajorArray;
+  }
+
+  /**
+   * Simple copy constructor, does a deep copy of the given parameter.
+   *
+   * @param otherMatrix the other matrix.
+   */
+  public RowMajorDenseDoubleMatrix(double[][] otherMatrix) {
+    this(otherMatrix.length, otherMatrix[0].length);
+    for (int row = 0; row < numRows; row++) {
+      System.arraycopy(otherMatrix[row], 0, matrix, row * numColumns,
+          numColumns);
+    }
+  }
+
+  /**
+   * Generates a matrix out of a vector list. It treats the entries as rows and
+   * the vector itself contains the values of the columns.
+   *
+   * @param vec the list of vectors.
+   */
+  public RowMajorDenseDoubleMatrix(List<DoubleVector> vec) {
+    this(vec.size(), vec.get(0).getDimension());
+    for (int row = 0; row < numRows; row++) {
+      setRowVector(row, vec.get(row));
+    }
+  }
+
+  /**
+   * Converts the given column major matrix to row major with a blocked
+   * transpose.
+   *
+   * @param columnMajor the matrix to convert.
+   */
+  public RowMajorDenseDoubleMatrix(DenseDoubleMatrix columnMajor) {
+    this(columnMajor.getRowCount(), columnMajor.getColumnCount(), columnMajor
+        .transpose().getColumnMajorMatrix());
+  }
+
+  /**
+   * Converts the given column major matrix to row major with a blocked
+   * transpose that is computed on the given pool.
+   *
+   * @param columnMajor the matrix to convert.
+   * @param pool the pool to transpose large matrices on.
+   */
+  public RowMajorDenseDoubleMatrix(DenseDoubleMatrix columnMajor,
+      ForkJoinPool pool) {
+    this(columnMajor.getRowCount(), columnMajor.getColumnCount(), columnMajor
+        .transpose(new DenseDoubleMatrix(columnMajor.getColumnCount(),
+            columnMajor.getRowCount()), pool).getColumnMajorMatrix());
+  }
+
+  /*
+   * ------------CONSTRUCTOR END------------
+   */
+
+  /**
+   * @return the internal matrix representation, no defensive copy is made.
+   */
+  public double[] getRowMajorMatrix() {
+    return this.matrix;
+  }
+
+  /**
+   * @return this matrix in column major layout, converted with a blocked
+   *         transpose.
+   */
+  public DenseDoubleMatrix toColumnMajor() {
+    return transposedView().transpose();
+  }
+
+  /**
+   * @return this matrix in column major layout, converted with a blocked
+   *         transpose that is computed on the given pool.
+   */
+  public DenseDoubleMatrix toColumnMajor(ForkJoinPool pool) {
+    return transposedView().transpose(
+        new DenseDoubleMatrix(numRows, numColumns), pool);
+  }
+
+  @Override
+  public double get(int row, int col) {
+    return matrix[row * numColumns + col];
+  }
+
+  @Override
+  public void set(int row, int col, double value) {
+    matrix[row * numColumns + col] = value;
+  }
+
+  /**
+   * Get a single row of the matrix as a double array.
+   */
+  public double[] getRow(int row) {
+    return Arrays.copyOfRange(matrix, row * numColumns, (row + 1)
+        * numColumns);
+  }
+
+  /**
+   * Gets a whole column of the matrix as a double array.
+   */
+  public double[] getColumn(int col) {
+    double[] column = new double[numRows];
+    for (int row = 0; row < numRows; row++) {
+      column[row] = matrix[row * numColumns + col];
+    }
+    return column;
+  }
+
+  /**
+   * Sets the row to a given double array.
+   */
+  public void setRow(int row, double[] value) {
+    System.arraycopy(value, 0, matrix, row * numColumns, value.length);
+  }
+
+  /**
+   * Sets the column to a given double array.
+   */
+  public void setColumn(int col, double[] values) {
+    for (int row = 0; row < values.length; row++) {
+      matrix[row * numColumns + col] = values[row];
+    }
+  }
+
+  @Override
+  public int getColumnCount() {
+    return numColumns;
+  }
+
+  @Override
+  public int getRowCount() {
+    return numRows;
+  }
+
+  @Override
+  public DoubleVector getColumnVector(int col) {
+    return new DenseDoubleVector(getColumn(col));
+  }
+
+  @Override
+  public DoubleVector getRowVector(int row) {
+    return new DenseDoubleVector(getRow(row));
+  }
+
+  @Override
+  public void setColumnVector(int col, DoubleVector column) {
+    setColumn(col, column.toArray());
+  }
+
+  @Override
+  public void setRowVector(int rowIndex, DoubleVector row) {
+    int offset = rowIndex * numColumns;
+    if (row.isSparse()) {
+      Arrays.fill(matrix, offset, offset + numColumns, 0d);
+      Iterator<DoubleVectorElement> iterateNonZero = row.iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        DoubleVectorElement next = iterateNonZero.next();
+        matrix[offset + next.getIndex()] = next.getValue();
+      }
+    } else {
+      System.arraycopy(row.toArray(), 0, matrix, offset, row.getDimension());
+    }
+  }
+
+  @Override
+  public RowMajorDenseDoubleMatrix multiply(double scalar) {
+    return multiply(scalar,
+        new RowMajorDenseDoubleMatrix(numRows, numColumns));
+  }
+
+  /**
+   * Multiplies every element with the scalar and writes the results into the
+   * given matrix, which may be this matrix.
+   *
+   * @return the result matrix.
+   */
+  public RowMajorDenseDoubleMatrix multiply(double scalar,
+      RowMajorDenseDoubleMatrix result) {
+    checkResult(result);
+    for (int i = 0; i < matrix.length; i++) {
+      result.matrix[i] = matrix[i] * scalar;
+    }
+    return result;
+  }
+
+  @Override
+  public RowMajorDenseDoubleMatrix multiply(DoubleMatrix other) {
+    return multiply(other, new RowMajorDenseDoubleMatrix(numRows,
+        other.getColumnCount()));
+  }
+
+  /**
+   * Multiplies this matrix with the given matrix (A * B) and writes the result
+   * into the given matrix, which must neither be A nor B. Every row of the
+   * result is computed from a contiguous row of A: row major matrices add
+   * their contiguous rows, sparse matrices only their non-zeros and column
+   * major matrices are multiplied with contiguous dot products.
+   *
+   * @return the result matrix.
+   */
+  public RowMajorDenseDoubleMatrix multiply(DoubleMatrix other,
+      RowMajorDenseDoubleMatrix result) {
+    MatrixOperand b = operand(other, result);
+    multiplyRows(b, result.matrix, 0, numRows);
+    return result;
+  }
+
+  /**
+   * Multiplies this matrix with the given matrix (A * B) in parallel and
+   * writes the result into the given matrix, which must neither be A nor B.
+   * The rows are split into blocks that are computed on the pool.
+   *
+   * @return the result matrix.
+   */
+  public RowMajorDenseDoubleMatrix multiply(DoubleMatrix other,
+      RowMajorDenseDoubleMatrix result, ForkJoinPool pool) {
+    MatrixOperand b = operand(other, result);
+    long work = (long) numRows * numColumns * other.getColumnCount();
+    if (work < PARALLEL_THRESHOLD || numRows < 2 * ROW_BLOCK) {
+      multiplyRows(b, result.matrix, 0, numRows);
+    } else {
+      pool.invoke(new MultiplyTask(this, b, result.matrix, 0, numRows));
+    }
+    return result;
+  }
+
+  @Override
+  public RowMajorDenseDoubleMatrix multiplyElementWise(DoubleMatrix other) {
+    checkOperand(other);
+    double[] values = rowMajorValues(other);
+    double[] result = new double[matrix.length];
+    for (int i = 0; i < matrix.length; i++) {
+      result[i] = matrix[i] * values[i];
+    }
+    return new RowMajorDenseDoubleMatrix(numRows, numColumns, result);
+  }
+
+  @Override
+  public DoubleVector multiplyVectorRow(DoubleVector v) {
+    return transposedView().multiplyVectorColumn(v);
+  }
+
+  /**
+   * Multiplies this matrix with the given column vector (A * v) and writes the
+   * result into the given vector, which must not be v. Every entry is the dot
+   * product of a contiguous row with v.
+   *
+   * @return the result vector.
+   */
+  public DenseDoubleVector multiplyVectorRow(DoubleVector v,
+      DenseDoubleVector vector) {
+    return transposedView().multiplyVectorColumn(v, vector);
+  }
+
+  /**
+   * Multiplies this matrix with the given column vector (A * v) in parallel
+   * and writes the result into the given vector, which must not be v.
+   *
+   * @return the result vector.
+   */
+  public DenseDoubleVector multiplyVectorRow(DoubleVector v,
+      DenseDoubleVector vector, ForkJoinPool pool) {
+    return transposedView().multiplyVectorColumn(v, vector, pool);
+  }
+
+  @Override
+  public DoubleVector multiplyVectorColumn(DoubleVector v) {
+    return transposedView().multiplyVectorRow(v);
+  }
+
+  /**
+   * Multiplies the given row vector with this matrix (v * A) and writes the
+   * result into the given vector, which must not be v. The contiguous rows
+   * are accumulated one after another (row-wise AXPY).
+   *
+   * @return the result vector.
+   */
+  public DenseDoubleVector multiplyVectorColumn(DoubleVector v,
+      DenseDoubleVector vector) {
+    return transposedView().multiplyVectorRow(v, vector);
+  }
+
+  /**
+   * Multiplies the given row vector with this matrix (v * A) in parallel and
+   * writes the result into the given vector, which must not be v.
+   *
+   * @return the result vector.
+   */
+  public DenseDoubleVector multiplyVectorColumn(DoubleVector v,
+      DenseDoubleVector vector, ForkJoinPool pool) {
+    return transposedView().multiplyVectorRow(v, vector, pool);
+  }
+
+  @Override
+  public RowMajorDenseDoubleMatrix transpose() {
+    return new RowMajorDenseDoubleMatrix(numColumns, numRows, transposedView()
+        .transpose().getColumnMajorMatrix());
+  }
+
+  /**
+   * Transposes this matrix in parallel with a blocked transpose that is
+   * computed on the given pool.
+   *
+   * @return the transposed matrix.
+   */
+  public RowMajorDenseDoubleMatrix transpose(ForkJoinPool pool) {
+    DenseDoubleMatrix result = new DenseDoubleMatrix(numRows, numColumns);
+    transposedView().transpose(result, pool);
+    return new RowMajorDenseDoubleMatrix(numColumns, numRows,
+        result.getColumnMajorMatrix());
+  }
+
+  /**
+   * Transposes this square matrix in place, so no second buffer is needed.
+   *
+   * @return this matrix.
+   */
+  public RowMajorDenseDoubleMatrix transposeInPlace() {
+    transposedView().transposeInPlace();
+    return this;
+  }
+
+  @Override
+  public RowMajorDenseDoubleMatrix subtractBy(double amount) {
+    double[] result = new double[matrix.length];
+    for (int i = 0; i < matrix.length; i++) {
+      result[i] = amount - matrix[i];
+    }
+    return new RowMajorDenseDoubleMatrix(numRows, numColumns, result);
+  }
+
+  @Override
+  public RowMajorDenseDoubleMatrix subtract(double amount) {
+    double[] result = new double[matrix.length];
+    for (int i = 0; i < matrix.length; i++) {
+      result[i] = matrix[i] - amount;
+    }
+    return new RowMajorDenseDoubleMatrix(numRows, numColumns, result);
+  }
+
+  @Override
+  public RowMajorDenseDoubleMatrix subtract(DoubleMatrix other) {
+    checkOperand(other);
+    double[] values = rowMajorValues(other);
+    double[] result = new double[matrix.length];
+    for (int i = 0; i < matrix.length; i++) {
+      result[i] = matrix[i] - values[i];
+    }
+    return new RowMajorDenseDoubleMatrix(numRows, numColumns, result);
+  }
+
+  /**
+   * Subtracts the i-th element of the vector from every element of the i-th
+   * row, just like the column major matrix subtracts it from every column.
+   */
+  @Override
+  public RowMajorDenseDoubleMatrix subtract(DoubleVector vec) {
+    double[] result = new double[matrix.length];
+    for (int row = 0; row < numRows; row++) {
+      int offset = row * numColumns;
+      double value = vec.get(row);
+      for (int col = 0; col < numColumns; col++) {
+        result[offset + col] = matrix[offset + col] - value;
+      }
+    }
+    return new RowMajorDenseDoubleMatrix(numRows, numColumns, result);
+  }
+
+  /**
+   * Divides every element of the i-th row by the i-th element of the vector,
+   * just like the column major matrix divides every column by it.
+   */
+  @Override
+  public RowMajorDenseDoubleMatrix divide(DoubleVector vec) {
+    double[] result = new double[matrix.length];
+    for (int row = 0; row < numRows; row++) {
+      int offset = row * numColumns;
+      double value = vec.get(row);
+      for (int col = 0; col < numColumns; col++) {
+        result[offset + col] = matrix[offset + col] / value;
+      }
+    }
+    return new RowMajorDenseDoubleMatrix(numRows, numColumns, result);
+  }
+
+  @Override
+  public RowMajorDenseDoubleMatrix divide(DoubleMatrix other) {
+    checkOperand(other);
+    double[] values = rowMajorValues(other);
+    double[] result = new double[matrix.length];
+    for (int i = 0; i < matrix.length; i++) {
+      result[i] = matrix[i] / values[i];
+    }
+    return new RowMajorDenseDoubleMatrix(numRows, numColumns, result);
+  }
+
+  @Override
+  public RowMajorDenseDoubleMatrix divide(double scalar) {
+    double[] result = new double[matrix.length];
+    for (int i = 0; i < matrix.length; i++) {
+      result[i] = matrix[i] / scalar;
+    }
+    return new RowMajorDenseDoubleMatrix(numRows, numColumns, result);
+  }
+
+  @Override
+  public RowMajorDenseDoubleMatrix add(DoubleMatrix other) {
+    checkOperand(other);
+    double[] values = rowMajorValues(other);
+    double[] result = new double[matrix.length];
+    for (int i = 0; i < matrix.length; i++) {
+      result[i] = matrix[i] + values[i];
+    }
+    return new RowMajorDenseDoubleMatrix(numRows, numColumns, result);
+  }
+
+  @Override
+  public RowMajorDenseDoubleMatrix pow(double x) {
+    double[] result = new double[matrix.length];
+    for (int i = 0; i < matrix.length; i++) {
+      if (x == 2d) {
+        result[i] = matrix[i] * matrix[i];
+      } else {
+        result[i] = FastMath.pow(matrix[i], x);
+      }
+    }
+    return new RowMajorDenseDoubleMatrix(numRows, numColumns, result);
+  }
+
+  @Override
+  public double max(int column) {
+    double max = -Double.MAX_VALUE;
+    for (int offset = column; offset < matrix.length; offset += numColumns) {
+      if (matrix[offset] > max) {
+        max = matrix[offset];
+      }
+    }
+    return max;
+  }
+
+  @Override
+  public double min(int column) {
+    double min = Double.MAX_VALUE;
+    for (int offset = column; offset < matrix.length; offset += numColumns) {
+      if (matrix[offset] < min) {
+        min = matrix[offset];
+      }
+    }
+    return min;
+  }
+
+  /**
+   * Sums the absolute values of all elements, like
+   * {@link DenseDoubleMatrix#sum()}.
+   */
+  @Override
+  public double sum() {
+    double x = 0.0d;
+    for (int i = 0; i < matrix.length; i++) {
+      x += Math.abs(matrix[i]);
+    }
+    return x;
+  }
+
+  @Override
+  public double signedSum(SummationStrategy strategy) {
+    return strategy.sum(matrix, 0, matrix.length);
+  }
+
+  @Override
+  public int[] columnIndices() {
+    int[] x = new int[numColumns];
+    for (int i = 0; i < numColumns; i++) {
+      x[i] = i;
+    }
+    return x;
+  }
+
+  @Override
+  public int[] rowIndices() {
+    int[] x = new int[numRows];
+    for (int i = 0; i < numRows; i++) {
+      x[i] = i;
+    }
+    return x;
+  }
+
+  @Override
+  public double[][] toArray() {
+    double[][] array = new double[numRows][];
+    for (int row = 0; row < numRows; row++) {
+      array[row] = getRow(row);
+    }
+    return array;
+  }
+
+  @Override
+  public boolean isSparse() {
+    return false;
+  }
+
+  @Override
+  public RowMajorDenseDoubleMatrix slice(int rows, int cols) {
+    return slice(0, rows, 0, cols);
+  }
+
+  /**
+   * Slices the given rows and columns, the contiguous part of every row is
+   * copied at once.
+   */
+  @Override
+  public RowMajorDenseDoubleMatrix slice(int rowOffset, int rowMax,
+      int colOffset, int colMax) {
+    int columns = colMax - colOffset;
+    RowMajorDenseDoubleMatrix m = new RowMajorDenseDoubleMatrix(rowMax
+        - rowOffset, columns);
+    for (int row = rowOffset; row < rowMax; row++) {
+      System.arraycopy(matrix, row * numColumns + colOffset, m.matrix,
+          (row - rowOffset) * columns, columns);
+    }
+    return m;
+  }
+
+  @Override
+  public RowMajorDenseDoubleMatrix deepCopy() {
+    return new RowMajorDenseDoubleMatrix(numRows, numColumns, matrix.clone());
+  }
+
+  @Override
+  public String toString() {
+    if (numRows * numColumns < 100) {
+      StringBuilder sb = new StringBuilder();
+      for (int row = 0; row < numRows; row++) {
+        sb.append(Arrays.toString(getRow(row)));
+        sb.append('\n');
+      }
+      return sb.toString();
+    } else {
+      return sizeToString();
+    }
+  }
+
+  /**
+   * Returns the size of the matrix as string (ROWSxCOLUMNS).
+   */
+  public String sizeToString() {
+    return numRows + "x" + numColumns;
+  }
+
+  // the column major transpose shares the array with this matrix
+  private DenseDoubleMatrix transposedView() {
+    return new DenseDoubleMatrix(numColumns, numRows, matrix);
+  }
+
+  // the values of a matrix of the same size in row major order
+  private double[] rowMajorValues(DoubleMatrix other) {
+    if (other instanceof RowMajorDenseDoubleMatrix) {
+      return ((RowMajorDenseDoubleMatrix) other).matrix;
+    }
+    if (other instanceof DenseDoubleMatrix) {
+      return ((DenseDoubleMatrix) other).transpose().getColumnMajorMatrix();
+    }
+    double[] values = new double[numRows * other.getColumnCount()];
+    int columns = other.getColumnCount();
+    if (other.isSparse()) {
+      for (int row : other.rowIndices()) {
+        Iterator<DoubleVectorElement> iterateNonZero = other.getRowVector(row)
+            .iterateNonZero();
+        while (iterateNonZero.hasNext()) {
+          DoubleVectorElement next = iterateNonZero.next();
+          values[row * columns + next.getIndex()] = next.getValue();
+        }
+      }
+    } else {
+      for (int row = 0; row < other.getRowCount(); row++) {
+        for (int col = 0; col < columns; col++) {
+          values[row * columns + col] = other.get(row, col);
+        }
+      }
+    }
+    return values;
+  }
+
+  private MatrixOperand operand(DoubleMatrix other,
+      RowMajorDenseDoubleMatrix result) {
+    if (other.getRowCount() != numColumns) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + numColumns + " != " + other.getRowCount());
+    }
+    if (result.numRows != numRows
+        || result.numColumns != other.getColumnCount()) {
+      throw new IllegalArgumentException("Result must be a " + numRows + "x"
+          + other.getColumnCount() + " matrix, but was "
+          + result.sizeToString());
+    }
+    int columns = other.getColumnCount();
+    if (other instanceof DenseDoubleMatrix) {
+      return new MatrixOperand(columns,
+          ((DenseDoubleMatrix) other).getColumnMajorMatrix(), null, null,
+          null, null);
+    }
+    if (!other.isSparse()) {
+      return new MatrixOperand(columns, null, rowMajorValues(other), null,
+          null, null);
+    }
+    // the non-zeros of the sparse rows in compressed sparse row format
+    int[] offsets = new int[numColumns + 1];
+    for (int row : other.rowIndices()) {
+      offsets[row + 1] = other.getRowVector(row).getLength();
+    }
+    for (int row = 0; row < numColumns; row++) {
+      offsets[row + 1] += offsets[row];
+    }
+    int[] indices = new int[offsets[numColumns]];
+    double[] values = new double[indices.length];
+    for (int row : other.rowIndices()) {
+      int k = offsets[row];
+      Iterator<DoubleVectorElement> iterateNonZero = other.getRowVector(row)
+          .iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        DoubleVectorElement next = iterateNonZero.next();
+        indices[k] = next.getIndex();
+        values[k++] = next.getValue();
+      }
+    }
+    return new MatrixOperand(columns, null, null, offsets, indices, values);
+  }
+
+  // out[from, to) = A[from, to) * B, row by row
+  private void multiplyRows(MatrixOperand b, double[] out, int from, int to) {
+    int p = b.columns;
+    int n = numColumns;
+    for (int row = from; row < to; row++) {
+      int aOffset = row * n;
+      int outOffset = row * p;
+      if (b.columnMajor != null) {
+        // contiguous dot of the row of A with every column of B
+        for (int col = 0; col < p; col++) {
+          int bOffset = col * n;
+          double s0 = 0d, s1 = 0d, s2 = 0d, s3 = 0d;
+          int k = 0;
+          for (; k + 3 < n; k += 4) {
+            s0 += matrix[aOffset + k] * b.columnMajor[bOffset + k];
+            s1 += matrix[aOffset + k + 1] * b.columnMajor[bOffset + k + 1];
+            s2 += matrix[aOffset + k + 2] * b.columnMajor[bOffset + k + 2];
+            s3 += matrix[aOffset + k + 3] * b.columnMajor[bOffset + k + 3];
+          }
+          for (; k < n; k++) {
+            s0 += matrix[aOffset + k] * b.columnMajor[bOffset + k];
+          }
+          out[outOffset + col] = (s0 + s1) + (s2 + s3);
+        }
+        continue;
+      }
+      Arrays.fill(out, outOffset, outOffset + p, 0d);
+      for (int k = 0; k < n; k++) {
+        double a = matrix[aOffset + k];
+        if (a == 0d) {
+          continue;
+        }
+        if (b.rowMajor != null) {
+          // adds the contiguous row k of B to the contiguous result row
+          int bOffset = k * p;
+          for (int col = 0; col < p; col++) {
+            out[outOffset + col] += a * b.rowMajor[bOffset + col];
+          }
+        } else {
+          for (int i = b.offsets[k]; i < b.offsets[k + 1]; i++) {
+            out[outOffset + b.indices[i]] += a * b.values[i];
+          }
+        }
+      }
+    }
+  }
+
+  private void checkResult(RowMajorDenseDoubleMatrix result) {
+    if (result.numRows != numRows || result.numColumns != numColumns) {
+      throw new IllegalArgumentException("Result must be a " + sizeToString()
+          + " matrix, but was " + result.sizeToString());
+    }
+  }
+
+  private void checkOperand(DoubleMatrix other) {
+    if (other.getRowCount() != numRows
+        || other.getColumnCount() != numColumns) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + sizeToString() + " != " + other.getRowCount() + "x"
+          + other.getColumnCount());
+    }
+  }
+
+  /**
+   * The right operand of a product in the layout it is traversed in: either
+   * column major, row major or the non-zeros of the sparse rows.
+   */
+  private static final class MatrixOperand {
+
+    private final int columns;
+    private final double[] columnMajor;
+    private final double[] rowMajor;
+    private final int[] offsets;
+    private final int[] indices;
+    private final double[] values;
+
+    MatrixOperand(int columns, double[] columnMajor, double[] rowMajor,
+        int[] offsets, int[] indices, double[] values) {
+      this.columns = columns;
+      this.columnMajor = columnMajor;
+      this.rowMajor = rowMajor;
+      this.offsets = offsets;
+      this.indices = indices;
+      this.values = values;
+    }
+  }
+
+  private static final class MultiplyTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final RowMajorDenseDoubleMatrix a;
+    private final MatrixOperand b;
+    private final double[] out;
+    private final int from;
+    private final int to;
+
+    MultiplyTask(RowMajorDenseDoubleMatrix a, MatrixOperand b, double[] out,
+        int from, int to) {
+      this.a = a;
+      this.b = b;
+      this.out = out;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= ROW_BLOCK) {
+        a.multiplyRows(b, out, from, to);
+      } else {
+        int mid = (from + to) >>> 1;
+        invokeAll(new MultiplyTask(a, b, out, from, mid), new MultiplyTask(a,
+            b, out, mid, to));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,135 @@
+package de.jungblut.math.distance;
+
+import java.util.List;
+
+import de.jungblut.math.DoubleVector;
+
+/**
+ * The distance measures of {@link Distances}, lower is more similar for all of
+ * them. Besides the pairwise distance every measure can compute the distances
+ * of a query to many vectors into a caller supplied array.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public enum DistanceMeasure {
+
+  /**
+   * The euclidean (L2) distance.
+   */
+  EUCLIDEAN {
+    @Override
+    public double distance(DoubleVector a, DoubleVector b) {
+      return Distances.euclidean(a, b);
+    }
+  },
+  /**
+   * The squared euclidean distance, saves the square root.
+   */
+  SQUARED_EUCLIDEAN {
+    @Override
+    public double distance(DoubleVector a, DoubleVector b) {
+      return Distances.squaredEuclidean(a, b);
+    }
+  },
+  /**
+   * The manhattan (L1) distance.
+   */
+  MANHATTAN {
+    @Override
+    public double distance(DoubleVector a, DoubleVector b) {
+      return Distances.manhattan(a, b);
+    }
+  },
+  /**
+   * The chebyshev (L-infinity) distance.
+   */
+  CHEBYSHEV {
+    @Override
+    public double distance(DoubleVector a, DoubleVector b) {
+      return Distances.chebyshev(a, b);
+    }
+  },
+  /**
+   * 1 - cosine similarity.
+   */
+  COSINE {
+    @Override
+    public double distance(DoubleVector a, DoubleVector b) {
+      return Distances.cosineDistance(a, b);
+    }
+  },
+  /**
+   * 1 - Jaccard similarity of the non-zero indices.
+   */
+  JACCARD {
+    @Override
+    public double distance(DoubleVector a, DoubleVector b) {
+      return Distances.jaccardDistance(a, b);
+    }
+  };
+
+  /**
+   * @return the distance between a and b.
+   */
+  public abstract double distance(DoubleVector a, DoubleVector b);
+
+  /**
+   * Computes the distances between the query and all given vectors.
+   *
+   * @param query the query vector.
+   * @param vectors the vectors to measure the distance to.
+   * @param out the output, out[i] is the distance to the i-th vector. Must be
+   *          at least as large as the list.
+   * @return the given output array.
+   */
+  public double[] distances(DoubleVector query,
+      List<? extends DoubleVector> vectors, double[] out) {
+    return distances(query, vectors, out, 0);
+  }
+
+  /**
+   * Computes the distances between the query and all given vectors.
+   *
+   * @param query the query vector.
+   * @param vectors the vectors to measure the distance to.
+   * @param out the output, out[offset + i] is the distance to the i-th vector.
+   * @param offset the offset in the output array.
+   * @return the given output array.
+   */
+  public double[] distances(DoubleVector query,
+      List<? extends DoubleVector> vectors, double[] out, int offset) {
+    if (out.length - offset < vectors.size()) {
+      throw new IllegalArgumentException("Output array can't hold "
+          + vectors.size() + " distances at offset " + offset);
+    }
+    DoubleVector q = Distances.unwrap(query);
+    for (int i = 0; i < vectors.size(); i++) {
+      out[offset + i] = distance(q, vectors.get(i));
+    }
+    return out;
+  }
+
+  /**
+   * Computes the distances between the query and all given vectors.
+   *
+   * @param query the query vector.
+   * @param vectors the vectors to measure the distance to.
+   * @param out the output, out[i] is the distance to the i-th vector. Must be
+   *          at least as large as the array of vectors.
+   * @return the given output array.
+   */
+  public double[] distances(DoubleVector query, DoubleVector[] vectors,
+      double[] out) {
+    if (out.length < vectors.length) {
+      throw new IllegalArgumentException("Output array can't hold "
+          + vectors.length + " distances.");
+    }
+    DoubleVector q = Distances.unwrap(query);
+    for (int i = 0; i < vectors.length; i++) {
+      out[i] = distance(q, vectors[i]);
+    }
+    return out;
+  }
+
+}
@@ -0,0 +1,481 @@
+package de.jungblut.math.distance;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.named.KeyedDoubleVector;
+import de.jungblut.math.named.NamedDoubleVector;
+import de.jungblut.math.quantized.QuantizedDoubleVector;
+import de.jungblut.math.sparse.OrderedIntDoubleMapping;
+import de.jungblut.math.sparse.SequentialSparseDoubleVector;
+import de.jungblut.math.sparse.SparseBitVector;
+
+/**
+ * Distance and similarity kernels that work directly on the storage of the
+ * vectors, instead of chaining operations like
+ * <code>a.subtract(b).pow(2).sum()</code> that allocate a new vector per step
+ * and lose the sparsity. The kernels are specialized by the type of both
+ * vectors:
+ *
+ * <ul>
+ * <li>dense/dense: a single loop over both backing arrays.</li>
+ * <li>dense/sparse: a single loop over the dense array, merged with the sorted
+ * indices of a {@link SequentialSparseDoubleVector}. The non-zeros of other
+ * sparse vectors are gathered and sorted once to be merged the same way.</li>
+ * <li>sparse/sparse: a merge join over the sorted indices of two
+ * {@link SequentialSparseDoubleVector}s, otherwise a pass over the non-zeros
+ * of each side with lookups into the other.</li>
+ * <li>bit/bit: counts on the set bits of two {@link SparseBitVector}s.</li>
+ * </ul>
+ *
+ * The dense, sequential sparse and bit kernels don't allocate, the other
+ * sparse vectors need an iterator over their non-zeros. Keyed and named
+ * vectors are unwrapped, the squared euclidean distance dispatches to the
+ * kernels of the {@link QuantizedDoubleVector}s.
+ *
+ * The set based measures (Jaccard) treat a vector as the set of its non-zero
+ * indices.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class Distances {
+
+  private static final int SQUARED = 0;
+  private static final int MANHATTAN = 1;
+  private static final int CHEBYSHEV = 2;
+
+  private Distances() {
+    throw new IllegalAccessError();
+  }
+
+  /**
+   * @return the euclidean distance between a and b.
+   */
+  public static double euclidean(DoubleVector a, DoubleVector b) {
+    return Math.sqrt(squaredEuclidean(a, b));
+  }
+
+  /**
+   * @return the squared euclidean distance between a and b.
+   */
+  public static double squaredEuclidean(DoubleVector a, DoubleVector b) {
+    a = unwrap(a);
+    b = unwrap(b);
+    checkDimension(a, b);
+    if (a instanceof QuantizedDoubleVector) {
+      return ((QuantizedDoubleVector) a).squaredEuclideanDistance(b);
+    } else if (b instanceof QuantizedDoubleVector) {
+      return ((QuantizedDoubleVector) b).squaredEuclideanDistance(a);
+    }
+    return difference(a, b, SQUARED);
+  }
+
+  /**
+   * @return the manhattan (L1) distance between a and b.
+   */
+  public static double manhattan(DoubleVector a, DoubleVector b) {
+    a = unwrap(a);
+    b = unwrap(b);
+    checkDimension(a, b);
+    return difference(a, b, MANHATTAN);
+  }
+
+  /**
+   * @return the chebyshev (L-infinity) distance between a and b.
+   */
+  public static double chebyshev(DoubleVector a, DoubleVector b) {
+    a = unwrap(a);
+    b = unwrap(b);
+    checkDimension(a, b);
+    return difference(a, b, CHEBYSHEV);
+  }
+
+  /**
+   * @return the cosine similarity between a and b, zero if any of them has a
+   *         zero norm.
+   */
+  public static double cosineSimilarity(DoubleVector a, DoubleVector b) {
+    a = unwrap(a);
+    b = unwrap(b);
+    checkDimension(a, b);
+    if (a instanceof SparseBitVector && b instanceof SparseBitVector) {
+      SparseBitVector x = (SparseBitVector) a;
+      SparseBitVector y = (SparseBitVector) b;
+      return cosine(x.intersectionCardinality(y), x.getLength(),
+          y.getLength());
+    }
+    if (a.isSparse() && !b.isSparse()) {
+      DoubleVector tmp = a;
+      a = b;
+      b = tmp;
+    }
+    if (a instanceof DenseDoubleVector && b instanceof DenseDoubleVector) {
+      double[] x = a.toArray();
+      double[] y = b.toArray();
+      double dot = 0d, normA = 0d, normB = 0d;
+      for (int i = 0; i < x.length; i++) {
+        dot += x[i] * y[i];
+        normA += x[i] * x[i];
+        normB += y[i] * y[i];
+      }
+      return cosine(dot, normA, normB);
+    } else if (a instanceof SequentialSparseDoubleVector
+        && b instanceof SequentialSparseDoubleVector) {
+      OrderedIntDoubleMapping x = ((SequentialSparseDoubleVector) a)
+          .getMapping();
+      OrderedIntDoubleMapping y = ((SequentialSparseDoubleVector) b)
+          .getMapping();
+      int[] ix = x.getIndices();
+      int[] iy = y.getIndices();
+      double[] vx = x.getValues();
+      double[] vy = y.getValues();
+      int nx = x.getNumMappings();
+      int ny = y.getNumMappings();
+      double dot = 0d;
+      for (int i = 0, j = 0; i < nx && j < ny;) {
+        if (ix[i] == iy[j]) {
+          dot += vx[i++] * vy[j++];
+        } else if (ix[i] < iy[j]) {
+          i++;
+        } else {
+          j++;
+        }
+      }
+      return cosine(dot, squaredNorm(vx, nx), squaredNorm(vy, ny));
+    } else if (a instanceof DenseDoubleVector && b.isSparse()) {
+      double[] x = a.toArray();
+      double dot = 0d, normB = 0d;
+      Iterator<DoubleVectorElement> it = b.iterateNonZero();
+      while (it.hasNext()) {
+        DoubleVectorElement next = it.next();
+        double v = next.getValue();
+        dot += x[next.getIndex()] * v;
+        normB += v * v;
+      }
+      return cosine(dot, squaredNorm(x, x.length), normB);
+    } else if (a.isSparse() && b.isSparse()) {
+      return cosine(sparseDot(a, b), squaredNorm(a), squaredNorm(b));
+    }
+    double dot = 0d, normA = 0d, normB = 0d;
+    for (int i = 0; i < a.getDimension(); i++) {
+      double x = a.get(i);
+      double y = b.get(i);
+      dot += x * y;
+      normA += x * x;
+      normB += y * y;
+    }
+    return cosine(dot, normA, normB);
+  }
+
+  /**
+   * @return the cosine distance (1 - cosine similarity) between a and b.
+   */
+  public static double cosineDistance(DoubleVector a, DoubleVector b) {
+    return 1d - cosineSimilarity(a, b);
+  }
+
+  /**
+   * @return the Jaccard similarity between the non-zero indices of a and b,
+   *         zero if both have no non-zeros.
+   */
+  public static double jaccardSimilarity(DoubleVector a, DoubleVector b) {
+    a = unwrap(a);
+    b = unwrap(b);
+    checkDimension(a, b);
+    int intersection;
+    int lengthA;
+    int lengthB;
+    if (a instanceof SparseBitVector && b instanceof SparseBitVector) {
+      intersection = ((SparseBitVector) a)
+          .intersectionCardinality((SparseBitVector) b);
+      lengthA = a.getLength();
+      lengthB = b.getLength();
+    } else if (a instanceof DenseDoubleVector && b instanceof DenseDoubleVector) {
+      double[] x = a.toArray();
+      double[] y = b.toArray();
+      intersection = lengthA = lengthB = 0;
+      for (int i = 0; i < x.length; i++) {
+        boolean nx = x[i] != 0d;
+        boolean ny = y[i] != 0d;
+        lengthA += nx ? 1 : 0;
+        lengthB += ny ? 1 : 0;
+        intersection += nx && ny ? 1 : 0;
+      }
+    } else if (a instanceof SequentialSparseDoubleVector
+        && b instanceof SequentialSparseDoubleVector) {
+      OrderedIntDoubleMapping x = ((SequentialSparseDoubleVector) a)
+          .getMapping();
+      OrderedIntDoubleMapping y = ((SequentialSparseDoubleVector) b)
+          .getMapping();
+      int[] ix = x.getIndices();
+      int[] iy = y.getIndices();
+      double[] vx = x.getValues();
+      double[] vy = y.getValues();
+      int nx = x.getNumMappings();
+      int ny = y.getNumMappings();
+      lengthA = countNonZero(vx, nx);
+      lengthB = countNonZero(vy, ny);
+      intersection = 0;
+      for (int i = 0, j = 0; i < nx && j < ny;) {
+        if (ix[i] == iy[j]) {
+          intersection += vx[i] != 0d && vy[j] != 0d ? 1 : 0;
+          i++;
+          j++;
+        } else if (ix[i] < iy[j]) {
+          i++;
+        } else {
+          j++;
+        }
+      }
+    } else if ((a instanceof DenseDoubleVector && b.isSparse())
+        || (b instanceof DenseDoubleVector && a.isSparse())) {
+      boolean denseFirst = a instanceof DenseDoubleVector;
+      double[] x = (denseFirst ? a : b).toArray();
+      DoubleVector sparse = denseFirst ? b : a;
+      int lengthDense = countNonZero(x, x.length);
+      int lengthSparse = 0;
+      intersection = 0;
+      Iterator<DoubleVectorElement> it = sparse.iterateNonZero();
+      while (it.hasNext()) {
+        DoubleVectorElement next = it.next();
+        if (next.getValue() != 0d) {
+          lengthSparse++;
+          intersection += x[next.getIndex()] != 0d ? 1 : 0;
+        }
+      }
+      lengthA = denseFirst ? lengthDense : lengthSparse;
+      lengthB = denseFirst ? lengthSparse : lengthDense;
+    } else {
+      lengthA = countNonZero(a);
+      lengthB = countNonZero(b);
+      DoubleVector smaller = lengthA <= lengthB ? a : b;
+      DoubleVector larger = smaller == a ? b : a;
+      intersection = 0;
+      Iterator<DoubleVectorElement> it = smaller.iterateNonZero();
+      while (it.hasNext()) {
+        if (larger.get(it.next().getIndex()) != 0d) {
+          intersection++;
+        }
+      }
+    }
+    int union = lengthA + lengthB - intersection;
+    return union == 0 ? 0d : intersection / (double) union;
+  }
+
+  /**
+   * @return the Jaccard distance (1 - Jaccard similarity) between a and b.
+   */
+  public static double jaccardDistance(DoubleVector a, DoubleVector b) {
+    return 1d - jaccardSimilarity(a, b);
+  }
+
+  /**
+   * Accumulates f(a_i - b_i) over all dimensions, where f and the
+   * accumulation depend on the kind.
+   */
+  private static double difference(DoubleVector a, DoubleVector b, int kind) {
+    if (a instanceof SparseBitVector && b instanceof SparseBitVector) {
+      // all non-zeros are one, so every difference is either zero or one
+      int differentBits = a.getLength() + b.getLength() - 2
+          * ((SparseBitVector) a).intersectionCardinality((SparseBitVector) b);
+      return kind == CHEBYSHEV ? Math.min(1, differentBits) : differentBits;
+    }
+    // all measures are symmetric, so the dense side can always be first
+    if (a.isSparse() && !b.isSparse()) {
+      DoubleVector tmp = a;
+      a = b;
+      b = tmp;
+    }
+    double acc = 0d;
+    if (a instanceof DenseDoubleVector && b instanceof DenseDoubleVector) {
+      double[] x = a.toArray();
+      double[] y = b.toArray();
+      for (int i = 0; i < x.length; i++) {
+        acc = accumulate(kind, acc, x[i] - y[i]);
+      }
+    } else if (a instanceof DenseDoubleVector
+        && b instanceof SequentialSparseDoubleVector) {
+      OrderedIntDoubleMapping y = ((SequentialSparseDoubleVector) b)
+          .getMapping();
+      acc = difference(a.toArray(), y.getIndices(), y.getValues(),
+          y.getNumMappings(), kind);
+    } else if (a instanceof DenseDoubleVector && b.isSparse()) {
+      int[] iy = sortedNonZeroIndices(b);
+      double[] vy = new double[iy.length];
+      for (int j = 0; j < iy.length; j++) {
+        vy[j] = b.get(iy[j]);
+      }
+      acc = difference(a.toArray(), iy, vy, iy.length, kind);
+    } else if (a instanceof SequentialSparseDoubleVector
+        && b instanceof SequentialSparseDoubleVector) {
+      OrderedIntDoubleMapping x = ((SequentialSparseDoubleVector) a)
+          .getMapping();
+      OrderedIntDoubleMapping y = ((SequentialSparseDoubleVector) b)
+          .getMapping();
+      int[] ix = x.getIndices();
+      int[] iy = y.getIndices();
+      double[] vx = x.getValues();
+      double[] vy = y.getValues();
+      int nx = x.getNumMappings();
+      int ny = y.getNumMappings();
+      int i = 0;
+      int j = 0;
+      while (i < nx && j < ny) {
+        if (ix[i] == iy[j]) {
+          acc = accumulate(kind, acc, vx[i++] - vy[j++]);
+        } else if (ix[i] < iy[j]) {
+          acc = accumulate(kind, acc, vx[i++]);
+        } else {
+          acc = accumulate(kind, acc, vy[j++]);
+        }
+      }
+      for (; i < nx; i++) {
+        acc = accumulate(kind, acc, vx[i]);
+      }
+      for (; j < ny; j++) {
+        acc = accumulate(kind, acc, vy[j]);
+      }
+    } else if (a.isSparse() && b.isSparse()) {
+      Iterator<DoubleVectorElement> it = a.iterateNonZero();
+      while (it.hasNext()) {
+        DoubleVectorElement next = it.next();
+        acc = accumulate(kind, acc, next.getValue() - b.get(next.getIndex()));
+      }
+      it = b.iterateNonZero();
+      while (it.hasNext()) {
+        DoubleVectorElement next = it.next();
+        if (a.get(next.getIndex()) == 0d) {
+          acc = accumulate(kind, acc, next.getValue());
+        }
+      }
+    } else {
+      for (int i = 0; i < a.getDimension(); i++) {
+        acc = accumulate(kind, acc, a.get(i) - b.get(i));
+      }
+    }
+    return acc;
+  }
+
+  // a single pass over the dense array x merged with the sorted non-zeros of y
+  private static double difference(double[] x, int[] iy, double[] vy, int ny,
+      int kind) {
+    double acc = 0d;
+    int j = 0;
+    for (int i = 0; i < x.length; i++) {
+      if (j < ny && iy[j] == i) {
+        acc = accumulate(kind, acc, x[i] - vy[j++]);
+      } else {
+        acc = accumulate(kind, acc, x[i]);
+      }
+    }
+    return acc;
+  }
+
+  private static int[] sortedNonZeroIndices(DoubleVector v) {
+    int[] indices = new int[v.getLength()];
+    int n = 0;
+    Iterator<DoubleVectorElement> it = v.iterateNonZero();
+    while (it.hasNext()) {
+      if (n == indices.length) {
+        indices = Arrays.copyOf(indices, Math.max(1, 2 * n));
+      }
+      indices[n++] = it.next().getIndex();
+    }
+    indices = n == indices.length ? indices : Arrays.copyOf(indices, n);
+    Arrays.sort(indices);
+    return indices;
+  }
+
+  private static double accumulate(int kind, double acc, double diff) {
+    switch (kind) {
+      case SQUARED:
+        return acc + diff * diff;
+      case MANHATTAN:
+        return acc + Math.abs(diff);
+      default:
+        return Math.max(acc, Math.abs(diff));
+    }
+  }
+
+  private static double sparseDot(DoubleVector a, DoubleVector b) {
+    DoubleVector smaller = a.getLength() <= b.getLength() ? a : b;
+    DoubleVector larger = smaller == a ? b : a;
+    double dot = 0d;
+    Iterator<DoubleVectorElement> it = smaller.iterateNonZero();
+    while (it.hasNext()) {
+      DoubleVectorElement next = it.next();
+      dot += next.getValue() * larger.get(next.getIndex());
+    }
+    return dot;
+  }
+
+  private static double cosine(double dot, double squaredNormA,
+      double squaredNormB) {
+    if (squaredNormA == 0d || squaredNormB == 0d) {
+      return 0d;
+    }
+    return dot / Math.sqrt(squaredNormA * squaredNormB);
+  }
+
+  private static double squaredNorm(double[] values, int length) {
+    double sum = 0d;
+    for (int i = 0; i < length; i++) {
+      sum += values[i] * values[i];
+    }
+    return sum;
+  }
+
+  private static double squaredNorm(DoubleVector v) {
+    double sum = 0d;
+    Iterator<DoubleVectorElement> it = v.iterateNonZero();
+    while (it.hasNext()) {
+      double value = it.next().getValue();
+      sum += value * value;
+    }
+    return sum;
+  }
+
+  private static int countNonZero(double[] values, int length) {
+    int count = 0;
+    for (int i = 0; i < length; i++) {
+      if (values[i] != 0d) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static int countNonZero(DoubleVector v) {
+    int count = 0;
+    Iterator<DoubleVectorElement> it = v.iterateNonZero();
+    while (it.hasNext()) {
+      it.next();
+      count++;
+    }
+    return count;
+  }
+
+  static DoubleVector unwrap(DoubleVector v) {
+    while (true) {
+      if (v instanceof KeyedDoubleVector) {
+        v = ((KeyedDoubleVector) v).getVector();
+      } else if (v instanceof NamedDoubleVector) {
+        v = ((NamedDoubleVector) v).getVector();
+      } else {
+        return v;
+      }
+    }
+  }
+
+  private static void checkDimension(DoubleVector a, DoubleVector b) {
+    if (a.getDimension() != b.getDimension()) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + a.getDimension() + " != " + b.getDimension());
+    }
+  }
+
+}
@@ -0,0 +1,379 @@
+package de.jungblut.math.distance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.dense.RowMajorDenseDoubleMatrix;
+
+/**
+ * Computes all pairwise dot products (the Gram matrix X * X^T), squared
+ * euclidean or euclidean distances or cosine similarities between the rows of
+ * a matrix or a list of vectors.
+ *
+ * The rows are copied into a contiguous row major block. The Gram matrix is
+ * computed with a blocked GEMM: the N x N result is cut into square tiles and
+ * only the tiles on and above the diagonal are computed, as the result is
+ * symmetric. Within a tile the dimensions are processed in cache sized blocks
+ * by a 2x2 register blocked micro kernel. Distances are derived from the Gram
+ * matrix with the norm trick ||x - y||^2 = ||x||^2 - 2 x*y + ||y||^2.
+ *
+ * The tiles are computed in parallel on a {@link ForkJoinPool}. Either the
+ * full matrix is assembled, or the tiles are streamed to a
+ * {@link TileConsumer} so that the full matrix never has to fit into memory.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class PairwiseEngine {
+
+  /**
+   * What is computed for every pair of rows.
+   */
+  public static enum Measure {
+    /**
+     * The dot product, the result is the Gram matrix.
+     */
+    DOT,
+    /**
+     * The squared euclidean distance.
+     */
+    SQUARED_EUCLIDEAN,
+    /**
+     * The euclidean distance.
+     */
+    EUCLIDEAN,
+    /**
+     * The cosine similarity, zero if any of the rows has a zero norm.
+     */
+    COSINE
+  }
+
+  /**
+   * Receives the computed tiles, is called concurrently from the threads of
+   * the pool.
+   */
+  public static interface TileConsumer {
+
+    /**
+     * Consumes a tile of the upper triangle of the result (rowStart <=
+     * columnStart). Tiles on the diagonal are complete, including the entries
+     * below the diagonal.
+     *
+     * @param rowStart the first row of the tile.
+     * @param columnStart the first column of the tile.
+     * @param rows the number of rows in the tile.
+     * @param columns the number of columns in the tile.
+     * @param tile the values in row major order, tile[r * columns + c] is the
+     *          entry for the rows (rowStart + r, columnStart + c). The array is
+     *          reused after the call returns.
+     */
+    public void accept(int rowStart, int columnStart, int rows, int columns,
+        double[] tile);
+
+  }
+
+  /**
+   * The default number of rows and columns of a tile.
+   */
+  public static final int DEFAULT_TILE_SIZE = 128;
+  // number of dimensions per cache block in the micro kernel
+  private static final int DIMENSION_BLOCK = 256;
+
+  private final int numRows;
+  private final int dimension;
+  private final double[] data;
+  private final double[] squaredNorms;
+  private final ForkJoinPool pool;
+  private final int tileSize;
+  private final ThreadLocal<double[]> tileBuffers;
+
+  /**
+   * Creates a new engine over the rows of the given matrix on the common pool.
+   */
+  public PairwiseEngine(DenseDoubleMatrix matrix) {
+    this(toRowMajor(matrix), matrix.getRowCount(), matrix.getColumnCount(),
+        ForkJoinPool.commonPool(), DEFAULT_TILE_SIZE);
+  }
+
+  /**
+   * Creates a new engine over the given vectors on the common pool. Sparse
+   * vectors are densified.
+   */
+  public PairwiseEngine(List<? extends DoubleVector> vectors) {
+    this(vectors, ForkJoinPool.commonPool(), DEFAULT_TILE_SIZE);
+  }
+
+  /**
+   * Creates a new engine over the given vectors. Sparse vectors are
+   * densified.
+   *
+   * @param vectors the vectors, all must have the same dimension.
+   * @param pool the pool to compute the tiles in.
+   * @param tileSize the number of rows and columns of a tile.
+   */
+  public PairwiseEngine(List<? extends DoubleVector> vectors,
+      ForkJoinPool pool, int tileSize) {
+    this(toRowMajor(vectors), vectors.size(), vectors.isEmpty() ? 0 : vectors
+        .get(0).getDimension(), pool, tileSize);
+  }
+
+  private PairwiseEngine(double[] data, int numRows, int dimension,
+      ForkJoinPool pool, int tileSize) {
+    if (tileSize < 2) {
+      throw new IllegalArgumentException("Tile size must be >= 2, but was "
+          + tileSize);
+    }
+    this.data = data;
+    this.numRows = numRows;
+    this.dimension = dimension;
+    this.pool = pool;
+    this.tileSize = tileSize;
+    this.tileBuffers = ThreadLocal
+        .withInitial(() -> new double[tileSize * tileSize]);
+    this.squaredNorms = new double[numRows];
+    for (int row = 0; row < numRows; row++) {
+      squaredNorms[row] = dot(data, row * dimension, row * dimension,
+          dimension);
+    }
+  }
+
+  /**
+   * @return the Gram matrix X * X^T.
+   */
+  public DenseDoubleMatrix gram() {
+    return compute(Measure.DOT);
+  }
+
+  /**
+   * @return the matrix of squared euclidean distances.
+   */
+  public DenseDoubleMatrix squaredEuclidean() {
+    return compute(Measure.SQUARED_EUCLIDEAN);
+  }
+
+  /**
+   * @return the matrix of euclidean distances.
+   */
+  public DenseDoubleMatrix euclidean() {
+    return compute(Measure.EUCLIDEAN);
+  }
+
+  /**
+   * @return the matrix of cosine similarities.
+   */
+  public DenseDoubleMatrix cosine() {
+    return compute(Measure.COSINE);
+  }
+
+  /**
+   * Computes the full symmetric N x N matrix for the given measure.
+   */
+  public DenseDoubleMatrix compute(Measure measure) {
+    if ((long) numRows * numRows > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("The result for " + numRows
+          + " rows doesn't fit into an array, stream the tiles instead.");
+    }
+    final int n = numRows;
+    // symmetric, so column major and row major are the same
+    final double[] result = new double[n * n];
+    stream(measure, (rowStart, columnStart, rows, columns, tile) -> {
+      for (int r = 0; r < rows; r++) {
+        int i = rowStart + r;
+        for (int c = 0; c < columns; c++) {
+          int j = columnStart + c;
+          double value = tile[r * columns + c];
+          result[i * n + j] = value;
+          result[j * n + i] = value;
+        }
+      }
+    });
+    return new DenseDoubleMatrix(n, n, result);
+  }
+
+  /**
+   * Computes the tiles of the upper triangle in parallel and passes them to
+   * the consumer, returns after all tiles are consumed.
+   */
+  public void stream(Measure measure, TileConsumer consumer) {
+    int tiles = (numRows + tileSize - 1) / tileSize;
+    List<int[]> pairs = new ArrayList<>();
+    for (int ti = 0; ti < tiles; ti++) {
+      for (int tj = ti; tj < tiles; tj++) {
+        pairs.add(new int[] { ti * tileSize, tj * tileSize });
+      }
+    }
+    if (pairs.isEmpty()) {
+      return;
+    }
+    pool.invoke(new TileTask(pairs, 0, pairs.size(), measure, consumer));
+  }
+
+  /**
+   * @return the number of rows.
+   */
+  public int getNumRows() {
+    return numRows;
+  }
+
+  /**
+   * @return the dimension of the rows.
+   */
+  public int getDimension() {
+    return dimension;
+  }
+
+  private void computeTile(int rowStart, int columnStart, Measure measure,
+      TileConsumer consumer) {
+    int rows = Math.min(tileSize, numRows - rowStart);
+    int columns = Math.min(tileSize, numRows - columnStart);
+    double[] tile = tileBuffers.get();
+    Arrays.fill(tile, 0, rows * columns, 0d);
+    for (int k = 0; k < dimension; k += DIMENSION_BLOCK) {
+      int length = Math.min(DIMENSION_BLOCK, dimension - k);
+      multiplyBlock(tile, rowStart, rows, columnStart, columns, k, length);
+    }
+    for (int r = 0; r < rows; r++) {
+      int i = rowStart + r;
+      for (int c = 0; c < columns; c++) {
+        int j = columnStart + c;
+        tile[r * columns + c] = finish(measure, tile[r * columns + c], i, j);
+      }
+    }
+    consumer.accept(rowStart, columnStart, rows, columns, tile);
+  }
+
+  /**
+   * Adds the dot products over the dimensions [k, k + length) of the rows in
+   * the tile, two rows times two columns at a time.
+   */
+  private void multiplyBlock(double[] tile, int rowStart, int rows,
+      int columnStart, int columns, int k, int length) {
+    final int d = dimension;
+    int r = 0;
+    for (; r + 1 < rows; r += 2) {
+      int a0 = (rowStart + r) * d + k;
+      int a1 = a0 + d;
+      int c = 0;
+      for (; c + 1 < columns; c += 2) {
+        int b0 = (columnStart + c) * d + k;
+        int b1 = b0 + d;
+        double s00 = 0d, s01 = 0d, s10 = 0d, s11 = 0d;
+        for (int x = 0; x < length; x++) {
+          double va0 = data[a0 + x];
+          double va1 = data[a1 + x];
+          double vb0 = data[b0 + x];
+          double vb1 = data[b1 + x];
+          s00 += va0 * vb0;
+          s01 += va0 * vb1;
+          s10 += va1 * vb0;
+          s11 += va1 * vb1;
+        }
+        tile[r * columns + c] += s00;
+        tile[r * columns + c + 1] += s01;
+        tile[(r + 1) * columns + c] += s10;
+        tile[(r + 1) * columns + c + 1] += s11;
+      }
+      for (; c < columns; c++) {
+        int b = (columnStart + c) * d + k;
+        tile[r * columns + c] += dot(data, a0, b, length);
+        tile[(r + 1) * columns + c] += dot(data, a1, b, length);
+      }
+    }
+    for (; r < rows; r++) {
+      int a = (rowStart + r) * d + k;
+      for (int c = 0; c < columns; c++) {
+        tile[r * columns + c] += dot(data, a, (columnStart + c) * d + k,
+            length);
+      }
+    }
+  }
+
+  private double finish(Measure measure, double dot, int i, int j) {
+    switch (measure) {
+      case DOT:
+        return dot;
+      case COSINE:
+        double norms = squaredNorms[i] * squaredNorms[j];
+        return norms == 0d ? 0d : dot / Math.sqrt(norms);
+      default:
+        double squared = i == j ? 0d : Math.max(0d, squaredNorms[i]
+            + squaredNorms[j] - 2d * dot);
+        return measure == Measure.EUCLIDEAN ? Math.sqrt(squared) : squared;
+    }
+  }
+
+  private static double dot(double[] data, int a, int b, int length) {
+    double sum = 0d;
+    for (int x = 0; x < length; x++) {
+      sum += data[a + x] * data[b + x];
+    }
+    return sum;
+  }
+
+  private static double[] toRowMajor(DenseDoubleMatrix matrix) {
+    return new RowMajorDenseDoubleMatrix(matrix).getRowMajorMatrix();
+  }
+
+  private static double[] toRowMajor(List<? extends DoubleVector> vectors) {
+    int rows = vectors.size();
+    int dimension = rows == 0 ? 0 : vectors.get(0).getDimension();
+    if ((long) rows * dimension > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many dense elements: " + rows
+          + "x" + dimension);
+    }
+    double[] data = new double[rows * dimension];
+    for (int row = 0; row < rows; row++) {
+      DoubleVector v = vectors.get(row);
+      if (v.getDimension() != dimension) {
+        throw new IllegalArgumentException("Vector at row " + row
+            + " has dimension " + v.getDimension() + ", expected " + dimension);
+      }
+      Iterator<DoubleVectorElement> it = v.iterateNonZero();
+      while (it.hasNext()) {
+        DoubleVectorElement next = it.next();
+        data[row * dimension + next.getIndex()] = next.getValue();
+      }
+    }
+    return data;
+  }
+
+  private final class TileTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<int[]> pairs;
+    private final int from;
+    private final int to;
+    private final Measure measure;
+    private final TileConsumer consumer;
+
+    TileTask(List<int[]> pairs, int from, int to, Measure measure,
+        TileConsumer consumer) {
+      this.pairs = pairs;
+      this.from = from;
+      this.to = to;
+      this.measure = measure;
+      this.consumer = consumer;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from == 1) {
+        int[] pair = pairs.get(from);
+        computeTile(pair[0], pair[1], measure, consumer);
+      } else {
+        int mid = (from + to) >>> 1;
+        invokeAll(new TileTask(pairs, from, mid, measure, consumer),
+            new TileTask(pairs, mid, to, measure, consumer));
+      }
+    }
+  }
+
+}
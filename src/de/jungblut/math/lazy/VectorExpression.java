@@ -0,0 +1,538 @@
+package de.jungblut.math.lazy;
+
+import gnu.trove.set.hash.TIntHashSet;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+import java.util.function.DoubleUnaryOperator;
+
+import org.apache.commons.math3.util.FastMath;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.function.DoubleDoubleFunction;
+import de.jungblut.math.function.DoubleVectorFunction;
+import de.jungblut.math.sparse.SparseDoubleVector;
+
+/**
+ * Lazily evaluated chain of vector operations, obtained by
+ * {@link DoubleVector#lazy()}. Every operation only adds a node to an
+ * expression tree, nothing is computed until a terminal operation like
+ * {@link #sum()}, {@link #dot(DoubleVector)} or {@link #toVector()} is called.
+ * The terminal operation then evaluates the whole tree element by element in a
+ * single pass, so no intermediate vectors are allocated:
+ *
+ * <pre>
+ * double variance = v.lazy().subtract(mean).divide(std).pow(2).sum();
+ * </pre>
+ *
+ * Each node knows whether it maps zeros to zeros. If that holds up to a sparse
+ * leaf, only the non-zero indices of the sparse leaves are evaluated, the same
+ * way {@link SparseDoubleVector#multiply(double)} only touches its non-zeros.
+ * Element-wise multiplication evaluates the sparser side, addition and
+ * subtraction the union of both sides and division the non-zeros of the
+ * dividend (like {@link SparseDoubleVector#divide(DoubleVector)}). Operations
+ * that turn a zero into something else (e.g. {@link #add(double)} or
+ * {@link #exp()}) are evaluated densely.
+ *
+ * Expressions are immutable and reference their leaves, so they see changes
+ * made to the leaf vectors before the terminal operation.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public abstract class VectorExpression {
+
+  private final int dimension;
+
+  VectorExpression(int dimension) {
+    this.dimension = dimension;
+  }
+
+  /**
+   * @return a new expression that wraps the given vector.
+   */
+  public static VectorExpression of(DoubleVector vector) {
+    return new Leaf(vector);
+  }
+
+  /**
+   * @return the dimension of the resulting vector.
+   */
+  public int getDimension() {
+    return dimension;
+  }
+
+  /**
+   * @return true if the expression is evaluated on the non-zero indices of its
+   *         sparse leaves only.
+   */
+  public boolean isSparse() {
+    return support() != null;
+  }
+
+  /*
+   * Intermediate operations
+   */
+
+  /**
+   * x + scalar for every element x.
+   */
+  public VectorExpression add(double scalar) {
+    return new Unary(this, x -> x + scalar, scalar == 0d);
+  }
+
+  /**
+   * Element-wise addition of the given vector.
+   */
+  public VectorExpression add(DoubleVector vector) {
+    return add(of(vector));
+  }
+
+  /**
+   * Element-wise addition of the given expression.
+   */
+  public VectorExpression add(VectorExpression other) {
+    return new Binary(this, other, (l, r) -> l + r, Binary.UNION);
+  }
+
+  /**
+   * x - scalar for every element x.
+   */
+  public VectorExpression subtract(double scalar) {
+    return new Unary(this, x -> x - scalar, scalar == 0d);
+  }
+
+  /**
+   * Element-wise subtraction of the given vector.
+   */
+  public VectorExpression subtract(DoubleVector vector) {
+    return subtract(of(vector));
+  }
+
+  /**
+   * Element-wise subtraction of the given expression.
+   */
+  public VectorExpression subtract(VectorExpression other) {
+    return new Binary(this, other, (l, r) -> l - r, Binary.UNION);
+  }
+
+  /**
+   * scalar - x for every element x.
+   */
+  public VectorExpression subtractFrom(double scalar) {
+    return new Unary(this, x -> scalar - x, scalar == 0d);
+  }
+
+  /**
+   * x * scalar for every element x.
+   */
+  public VectorExpression multiply(double scalar) {
+    return new Unary(this, x -> x * scalar, Double.isFinite(scalar));
+  }
+
+  /**
+   * Element-wise multiplication with the given vector.
+   */
+  public VectorExpression multiply(DoubleVector vector) {
+    return multiply(of(vector));
+  }
+
+  /**
+   * Element-wise multiplication with the given expression.
+   */
+  public VectorExpression multiply(VectorExpression other) {
+    return new Binary(this, other, (l, r) -> l * r, Binary.INTERSECTION);
+  }
+
+  /**
+   * x / scalar for every element x.
+   */
+  public VectorExpression divide(double scalar) {
+    return new Unary(this, x -> x / scalar, scalar != 0d
+        && !Double.isNaN(scalar));
+  }
+
+  /**
+   * Element-wise division by the given vector, see
+   * {@link #divide(VectorExpression)}.
+   */
+  public VectorExpression divide(DoubleVector vector) {
+    return divide(of(vector));
+  }
+
+  /**
+   * Element-wise division, other than {@link DenseDoubleVector} it doesn't
+   * throw on a zero divisor but yields infinity or NaN.
+   */
+  public VectorExpression divide(VectorExpression other) {
+    return new Binary(this, other, (l, r) -> l / r, Binary.LEFT);
+  }
+
+  /**
+   * scalar / x for every element x.
+   */
+  public VectorExpression divideFrom(double scalar) {
+    return new Unary(this, x -> scalar / x, false);
+  }
+
+  /**
+   * v^x for every element v.
+   */
+  public VectorExpression pow(double x) {
+    if (x == 2d) {
+      return new Unary(this, v -> v * v, true);
+    }
+    return new Unary(this, v -> FastMath.pow(v, x), x > 0d);
+  }
+
+  /**
+   * The absolute value of every element.
+   */
+  public VectorExpression abs() {
+    return new Unary(this, Math::abs, true);
+  }
+
+  /**
+   * The square root of every element.
+   */
+  public VectorExpression sqrt() {
+    return new Unary(this, Math::sqrt, true);
+  }
+
+  /**
+   * The natural logarithm of every element.
+   */
+  public VectorExpression log() {
+    return new Unary(this, Math::log, false);
+  }
+
+  /**
+   * e^x for every element x.
+   */
+  public VectorExpression exp() {
+    return new Unary(this, Math::exp, false);
+  }
+
+  /**
+   * Applies the given function to every element, as it can't be known whether
+   * the function maps zero to zero, this is always evaluated densely.
+   */
+  public VectorExpression apply(DoubleVectorFunction func) {
+    return new Indexed(this, func);
+  }
+
+  /**
+   * Applies the given function to every element.
+   *
+   * @param func the function.
+   * @param preservesZero true if func(0) == 0, which allows sparse evaluation.
+   */
+  public VectorExpression map(DoubleUnaryOperator func, boolean preservesZero) {
+    return new Unary(this, func, preservesZero);
+  }
+
+  /*
+   * Terminal operations
+   */
+
+  /**
+   * @return the value of the expression at the given index.
+   */
+  public double get(int index) {
+    return valueAt(index);
+  }
+
+  /**
+   * @return the sum of all elements.
+   */
+  public double sum() {
+    PrimitiveIterator.OfInt support = supportIterator();
+    double sum = 0d;
+    if (support == null) {
+      for (int i = 0; i < dimension; i++) {
+        sum += valueAt(i);
+      }
+    } else {
+      while (support.hasNext()) {
+        sum += valueAt(support.nextInt());
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * @return the dot product between the result and the given vector.
+   */
+  public double dot(DoubleVector vector) {
+    checkDimension(vector.getDimension());
+    return multiply(vector).sum();
+  }
+
+  /**
+   * @return the largest element, including the implicit zeros of a sparse
+   *         expression.
+   */
+  public double max() {
+    return extreme(true);
+  }
+
+  /**
+   * @return the smallest element, including the implicit zeros of a sparse
+   *         expression.
+   */
+  public double min() {
+    return extreme(false);
+  }
+
+  /**
+   * Writes the result into the given array.
+   *
+   * @param result the output, must be at least of the expressions dimension.
+   *          Elements outside the sparse support are set to zero.
+   * @return the given array.
+   */
+  public double[] toArray(double[] result) {
+    PrimitiveIterator.OfInt support = supportIterator();
+    if (support == null) {
+      for (int i = 0; i < dimension; i++) {
+        result[i] = valueAt(i);
+      }
+    } else {
+      Arrays.fill(result, 0, dimension, 0d);
+      while (support.hasNext()) {
+        int index = support.nextInt();
+        result[index] = valueAt(index);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Materializes the expression in a single pass.
+   *
+   * @return a {@link SparseDoubleVector} if the expression is sparse,
+   *         otherwise a {@link DenseDoubleVector}.
+   */
+  public DoubleVector toVector() {
+    PrimitiveIterator.OfInt support = supportIterator();
+    if (support == null) {
+      return new DenseDoubleVector(toArray(new double[dimension]));
+    }
+    SparseDoubleVector result = new SparseDoubleVector(dimension);
+    while (support.hasNext()) {
+      int index = support.nextInt();
+      double value = valueAt(index);
+      if (value != 0d) {
+        result.set(index, value);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the value of the expression at the given index.
+   */
+  abstract double valueAt(int index);
+
+  /**
+   * @return the leaves whose union of non-zero indices contains all non-zero
+   *         results, or null if the expression has to be evaluated densely.
+   */
+  abstract DoubleVector[] support();
+
+  private double extreme(boolean max) {
+    PrimitiveIterator.OfInt support = supportIterator();
+    double result = max ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+    int evaluated = 0;
+    if (support == null) {
+      for (int i = 0; i < dimension; i++) {
+        double v = valueAt(i);
+        result = max ? Math.max(result, v) : Math.min(result, v);
+      }
+      evaluated = dimension;
+    } else {
+      while (support.hasNext()) {
+        double v = valueAt(support.nextInt());
+        result = max ? Math.max(result, v) : Math.min(result, v);
+        evaluated++;
+      }
+    }
+    if (evaluated < dimension) {
+      result = max ? Math.max(result, 0d) : Math.min(result, 0d);
+    }
+    return result;
+  }
+
+  /**
+   * @return the indices to evaluate, or null if all indices have to be
+   *         evaluated.
+   */
+  private PrimitiveIterator.OfInt supportIterator() {
+    DoubleVector[] leaves = support();
+    if (leaves == null) {
+      return null;
+    }
+    if (leaves.length == 1) {
+      Iterator<DoubleVectorElement> it = leaves[0].iterateNonZero();
+      return new PrimitiveIterator.OfInt() {
+        @Override
+        public boolean hasNext() {
+          return it.hasNext();
+        }
+
+        @Override
+        public int nextInt() {
+          return it.next().getIndex();
+        }
+      };
+    }
+    // the union of multiple leaves, each index must only be visited once
+    TIntHashSet set = new TIntHashSet();
+    for (DoubleVector leaf : leaves) {
+      Iterator<DoubleVectorElement> it = leaf.iterateNonZero();
+      while (it.hasNext()) {
+        set.add(it.next().getIndex());
+      }
+    }
+    int[] indices = set.toArray();
+    Arrays.sort(indices);
+    return Arrays.stream(indices).iterator();
+  }
+
+  void checkDimension(int other) {
+    if (other != dimension) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + dimension + " != " + other);
+    }
+  }
+
+  private static long length(DoubleVector[] leaves) {
+    long length = 0;
+    for (DoubleVector leaf : leaves) {
+      length += leaf.getLength();
+    }
+    return length;
+  }
+
+  private static final class Leaf extends VectorExpression {
+
+    private final DoubleVector vector;
+
+    Leaf(DoubleVector vector) {
+      super(vector.getDimension());
+      this.vector = vector;
+    }
+
+    @Override
+    double valueAt(int index) {
+      return vector.get(index);
+    }
+
+    @Override
+    DoubleVector[] support() {
+      return vector.isSparse() ? new DoubleVector[] { vector } : null;
+    }
+  }
+
+  private static final class Unary extends VectorExpression {
+
+    private final VectorExpression child;
+    private final DoubleUnaryOperator func;
+    private final boolean preservesZero;
+
+    Unary(VectorExpression child, DoubleUnaryOperator func,
+        boolean preservesZero) {
+      super(child.getDimension());
+      this.child = child;
+      this.func = func;
+      this.preservesZero = preservesZero;
+    }
+
+    @Override
+    double valueAt(int index) {
+      return func.applyAsDouble(child.valueAt(index));
+    }
+
+    @Override
+    DoubleVector[] support() {
+      return preservesZero ? child.support() : null;
+    }
+  }
+
+  private static final class Indexed extends VectorExpression {
+
+    private final VectorExpression child;
+    private final DoubleVectorFunction func;
+
+    Indexed(VectorExpression child, DoubleVectorFunction func) {
+      super(child.getDimension());
+      this.child = child;
+      this.func = func;
+    }
+
+    @Override
+    double valueAt(int index) {
+      return func.calculate(index, child.valueAt(index));
+    }
+
+    @Override
+    DoubleVector[] support() {
+      return null;
+    }
+  }
+
+  private static final class Binary extends VectorExpression {
+
+    // zero where both sides are zero
+    static final int UNION = 0;
+    // zero where any side is zero
+    static final int INTERSECTION = 1;
+    // zero where the left side is zero
+    static final int LEFT = 2;
+
+    private final VectorExpression left;
+    private final VectorExpression right;
+    private final DoubleDoubleFunction func;
+    private final int sparsity;
+
+    Binary(VectorExpression left, VectorExpression right,
+        DoubleDoubleFunction func, int sparsity) {
+      super(left.getDimension());
+      left.checkDimension(right.getDimension());
+      this.left = left;
+      this.right = right;
+      this.func = func;
+      this.sparsity = sparsity;
+    }
+
+    @Override
+    double valueAt(int index) {
+      return func.apply(left.valueAt(index), right.valueAt(index));
+    }
+
+    @Override
+    DoubleVector[] support() {
+      DoubleVector[] l = left.support();
+      if (sparsity == LEFT) {
+        return l;
+      }
+      DoubleVector[] r = right.support();
+      if (sparsity == INTERSECTION) {
+        if (l == null || r == null) {
+          return l == null ? r : l;
+        }
+        return length(l) <= length(r) ? l : r;
+      }
+      if (l == null || r == null) {
+        return null;
+      }
+      DoubleVector[] union = Arrays.copyOf(l, l.length + r.length);
+      System.arraycopy(r, 0, union, l.length, r.length);
+      return union;
+    }
+  }
+
+}
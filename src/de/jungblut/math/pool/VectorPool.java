@@ -0,0 +1,250 @@
+package de.jungblut.math.pool;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleVector;
+
+/**
+ * Pool of dense vectors and matrices, so that hot loops can borrow temporary
+ * buffers instead of allocating fresh ones. Borrowed objects are always
+ * zeroed, returned objects are kept per size up to a fixed limit. Together
+ * with the operations that write into a given result (e.g.
+ * {@link DenseDoubleVector#add(DoubleVector, DenseDoubleVector)}) the steady
+ * state of a loop does not allocate any vectors or matrices.
+ *
+ * An {@link Arena} scopes the borrowing: everything that is borrowed from it
+ * is returned when it is closed, which fits a try-with-resources block.
+ *
+ * <pre>
+ * try (VectorPool.Arena arena = VectorPool.local().openArena()) {
+ *   DenseDoubleVector tmp = arena.borrowVector(dimension);
+ *   a.add(b, tmp);
+ *   ...
+ * }
+ * </pre>
+ *
+ * A pool is not thread safe, {@link #local()} returns one pool per thread.
+ * Objects must not be used after they are returned.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class VectorPool {
+
+  /**
+   * The default number of objects that are kept per size.
+   */
+  public static final int DEFAULT_MAX_PER_SIZE = 16;
+
+  private static final ThreadLocal<VectorPool> LOCAL = ThreadLocal
+      .withInitial(VectorPool::new);
+
+  private final int maxPerSize;
+  // free objects by dimension and by rows and columns
+  private final TIntObjectHashMap<ArrayDeque<DenseDoubleVector>> vectors;
+  private final TLongObjectHashMap<ArrayDeque<DenseDoubleMatrix>> matrices;
+
+  /**
+   * Creates a new pool that keeps up to {@value #DEFAULT_MAX_PER_SIZE} objects
+   * per size.
+   */
+  public VectorPool() {
+    this(DEFAULT_MAX_PER_SIZE);
+  }
+
+  /**
+   * Creates a new pool that keeps up to the given number of objects per size.
+   */
+  public VectorPool(int maxPerSize) {
+    if (maxPerSize < 0) {
+      throw new IllegalArgumentException(
+          "Objects per size must be >= 0, but was " + maxPerSize);
+    }
+    this.maxPerSize = maxPerSize;
+    this.vectors = new TIntObjectHashMap<>();
+    this.matrices = new TLongObjectHashMap<>();
+  }
+
+  /**
+   * @return the pool of the calling thread.
+   */
+  public static VectorPool local() {
+    return LOCAL.get();
+  }
+
+  /**
+   * @return a zeroed vector of the given dimension.
+   */
+  public DenseDoubleVector borrowVector(int dimension) {
+    ArrayDeque<DenseDoubleVector> free = vectors.get(dimension);
+    if (free == null || free.isEmpty()) {
+      return new DenseDoubleVector(dimension);
+    }
+    DenseDoubleVector vector = free.pop();
+    Arrays.fill(vector.toArray(), 0d);
+    return vector;
+  }
+
+  /**
+   * Returns the vector to the pool, it is dropped if the pool for its
+   * dimension is full.
+   *
+   * @throws IllegalArgumentException if the vector is already in the pool.
+   */
+  public void release(DenseDoubleVector vector) {
+    int dimension = vector.getDimension();
+    ArrayDeque<DenseDoubleVector> free = vectors.get(dimension);
+    if (free == null) {
+      free = new ArrayDeque<>();
+      vectors.put(dimension, free);
+    }
+    checkNotPooled(free, vector);
+    if (free.size() < maxPerSize) {
+      free.push(vector);
+    }
+  }
+
+  /**
+   * @return a zeroed matrix of the given size.
+   */
+  public DenseDoubleMatrix borrowMatrix(int rows, int columns) {
+    ArrayDeque<DenseDoubleMatrix> free = matrices.get(key(rows, columns));
+    if (free == null || free.isEmpty()) {
+      return new DenseDoubleMatrix(rows, columns);
+    }
+    DenseDoubleMatrix matrix = free.pop();
+    Arrays.fill(matrix.getColumnMajorMatrix(), 0d);
+    return matrix;
+  }
+
+  /**
+   * Returns the matrix to the pool, it is dropped if the pool for its size is
+   * full.
+   *
+   * @throws IllegalArgumentException if the matrix is already in the pool.
+   */
+  public void release(DenseDoubleMatrix matrix) {
+    long key = key(matrix.getRowCount(), matrix.getColumnCount());
+    ArrayDeque<DenseDoubleMatrix> free = matrices.get(key);
+    if (free == null) {
+      free = new ArrayDeque<>();
+      matrices.put(key, free);
+    }
+    checkNotPooled(free, matrix);
+    if (free.size() < maxPerSize) {
+      free.push(matrix);
+    }
+  }
+
+  /**
+   * @return a new arena that returns everything borrowed from it to this pool
+   *         once it is closed. Arenas can be nested.
+   */
+  public Arena openArena() {
+    return new Arena(this);
+  }
+
+  /**
+   * @return the number of vectors that are currently pooled for the given
+   *         dimension.
+   */
+  public int getPooledVectors(int dimension) {
+    ArrayDeque<DenseDoubleVector> free = vectors.get(dimension);
+    return free == null ? 0 : free.size();
+  }
+
+  /**
+   * @return the number of matrices that are currently pooled for the given
+   *         size.
+   */
+  public int getPooledMatrices(int rows, int columns) {
+    ArrayDeque<DenseDoubleMatrix> free = matrices.get(key(rows, columns));
+    return free == null ? 0 : free.size();
+  }
+
+  // a second release would hand the same object to two borrowers, the deques
+  // are bounded by the max per size so the identity scan is cheap
+  private static <T> void checkNotPooled(ArrayDeque<T> free, T object) {
+    for (T pooled : free) {
+      if (pooled == object) {
+        throw new IllegalArgumentException("Object was already released.");
+      }
+    }
+  }
+
+  private static long key(int rows, int columns) {
+    return ((long) rows << 32) | (columns & 0xffffffffL);
+  }
+
+  /**
+   * Scope of borrowed vectors and matrices, returns all of them to the pool
+   * when closed. A closed arena can't be opened again.
+   */
+  public static final class Arena implements AutoCloseable {
+
+    private final VectorPool pool;
+    private final List<DenseDoubleVector> vectors = new ArrayList<>();
+    private final List<DenseDoubleMatrix> matrices = new ArrayList<>();
+    private boolean open = true;
+
+    private Arena(VectorPool pool) {
+      this.pool = pool;
+    }
+
+    /**
+     * @return a zeroed vector of the given dimension that lives until this
+     *         arena is closed.
+     */
+    public DenseDoubleVector borrowVector(int dimension) {
+      checkOpen();
+      DenseDoubleVector vector = pool.borrowVector(dimension);
+      vectors.add(vector);
+      return vector;
+    }
+
+    /**
+     * @return a zeroed matrix of the given size that lives until this arena
+     *         is closed.
+     */
+    public DenseDoubleMatrix borrowMatrix(int rows, int columns) {
+      checkOpen();
+      DenseDoubleMatrix matrix = pool.borrowMatrix(rows, columns);
+      matrices.add(matrix);
+      return matrix;
+    }
+
+    /**
+     * Returns everything that was borrowed from this arena to the pool.
+     */
+    @Override
+    public void close() {
+      if (!open) {
+        return;
+      }
+      for (int i = 0; i < vectors.size(); i++) {
+        pool.release(vectors.get(i));
+      }
+      for (int i = 0; i < matrices.size(); i++) {
+        pool.release(matrices.get(i));
+      }
+      vectors.clear();
+      matrices.clear();
+      open = false;
+    }
+
+    private void checkOpen() {
+      if (!open) {
+        throw new IllegalStateException("Arena is already closed.");
+      }
+    }
+  }
+
+}
@@ -0,0 +1,183 @@
+package de.jungblut.math.quantized;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+
+/**
+ * Vector that stores every element as an IEEE 754 half precision float (two
+ * bytes per dimension). The values are decoded through a lookup table, so the
+ * kernels don't need to do any bit fiddling in their inner loops.
+ *
+ * Unlike the {@link Int8DoubleVector}, this vector can be mutated as every
+ * element is encoded independently.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class HalfDoubleVector extends QuantizedDoubleVector {
+
+  private final short[] values;
+
+  /**
+   * Creates a new zero vector with the given dimension.
+   */
+  public HalfDoubleVector(int dimension) {
+    this.values = new short[dimension];
+  }
+
+  /**
+   * Creates a new half precision vector by rounding the given vector.
+   *
+   * @param v the vector to quantize.
+   */
+  public HalfDoubleVector(DoubleVector v) {
+    this(v.getDimension());
+    Iterator<DoubleVectorElement> iterateNonZero = v.iterateNonZero();
+    while (iterateNonZero.hasNext()) {
+      DoubleVectorElement next = iterateNonZero.next();
+      values[next.getIndex()] = Quantization.toHalf(next.getValue());
+    }
+  }
+
+  /**
+   * Creates a new half precision vector by rounding the given array.
+   *
+   * @param arr the values to quantize.
+   */
+  public HalfDoubleVector(double[] arr) {
+    this(arr.length);
+    for (int i = 0; i < arr.length; i++) {
+      values[i] = Quantization.toHalf(arr[i]);
+    }
+  }
+
+  /**
+   * Creates a new half precision vector from the given encoded values. This
+   * does not copy the given array.
+   *
+   * @param values the half precision bits.
+   */
+  public HalfDoubleVector(short[] values) {
+    this.values = values;
+  }
+
+  @Override
+  public double get(int index) {
+    return Quantization.fromHalf(values[index]);
+  }
+
+  @Override
+  public int getDimension() {
+    return values.length;
+  }
+
+  @Override
+  public void set(int index, double value) {
+    values[index] = Quantization.toHalf(value);
+  }
+
+  @Override
+  public int getBitsPerDimension() {
+    return 16;
+  }
+
+  @Override
+  public double dot(DoubleVector s) {
+    DoubleVector other = unwrap(s);
+    double dotProduct = 0d;
+    if (other instanceof HalfDoubleVector) {
+      final short[] b = ((HalfDoubleVector) other).values;
+      for (int i = 0; i < values.length; i++) {
+        dotProduct += Quantization.fromHalf(values[i])
+            * Quantization.fromHalf(b[i]);
+      }
+    } else if (other.isSparse()) {
+      Iterator<DoubleVectorElement> iterateNonZero = other.iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        DoubleVectorElement next = iterateNonZero.next();
+        dotProduct += get(next.getIndex()) * next.getValue();
+      }
+    } else {
+      double[] arr = other.toArray();
+      for (int i = 0; i < values.length; i++) {
+        dotProduct += Quantization.fromHalf(values[i]) * arr[i];
+      }
+    }
+    return dotProduct;
+  }
+
+  @Override
+  public double squaredEuclideanDistance(DoubleVector s) {
+    DoubleVector other = unwrap(s);
+    double sum = 0d;
+    if (other instanceof HalfDoubleVector) {
+      final short[] b = ((HalfDoubleVector) other).values;
+      for (int i = 0; i < values.length; i++) {
+        double diff = Quantization.fromHalf(values[i])
+            - Quantization.fromHalf(b[i]);
+        sum += diff * diff;
+      }
+    } else if (other.isSparse()) {
+      for (int i = 0; i < values.length; i++) {
+        double d = Quantization.fromHalf(values[i]);
+        sum += d * d;
+      }
+      Iterator<DoubleVectorElement> iterateNonZero = other.iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        DoubleVectorElement next = iterateNonZero.next();
+        double d = get(next.getIndex());
+        double diff = d - next.getValue();
+        sum += diff * diff - d * d;
+      }
+    } else {
+      double[] arr = other.toArray();
+      for (int i = 0; i < values.length; i++) {
+        double diff = Quantization.fromHalf(values[i]) - arr[i];
+        sum += diff * diff;
+      }
+    }
+    return sum;
+  }
+
+  @Override
+  public DenseDoubleVector dequantize() {
+    double[] arr = new double[values.length];
+    for (int i = 0; i < arr.length; i++) {
+      arr[i] = Quantization.fromHalf(values[i]);
+    }
+    return new DenseDoubleVector(arr);
+  }
+
+  @Override
+  public DoubleVector deepCopy() {
+    return new HalfDoubleVector(values.clone());
+  }
+
+  /**
+   * @return the half precision bits, no defensive copy is made.
+   */
+  public short[] getQuantizedValues() {
+    return values;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 + Arrays.hashCode(values);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (obj == null)
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+    HalfDoubleVector other = (HalfDoubleVector) obj;
+    return Arrays.equals(values, other.values);
+  }
+
+}
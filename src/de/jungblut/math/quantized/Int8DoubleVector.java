@@ -0,0 +1,275 @@
+package de.jungblut.math.quantized;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+
+/**
+ * Scalar quantized vector that stores every element in a single signed byte.
+ * The value at index i is reconstructed as offset + scale * q[i], where scale
+ * and offset are chosen per vector so the [min, max] range of the original
+ * vector maps onto [-128, 127].
+ *
+ * The dot product and the euclidean distance between two int8 vectors are
+ * computed on the bytes directly by expanding the affine transformation, so
+ * the inner loop is a plain integer multiply-add.
+ *
+ * This vector is immutable, setting values is disallowed as it would require a
+ * requantization of the whole vector.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class Int8DoubleVector extends QuantizedDoubleVector {
+
+  private static final int LEVELS = 255;
+  private static final int MIN_LEVEL = -128;
+  private static final int MAX_LEVEL = 127;
+
+  private final byte[] values;
+  private final double scale;
+  private final double offset;
+  // sum of all the quantized levels, used to expand the affine dot product
+  private final long levelSum;
+
+  /**
+   * Creates a new int8 vector by quantizing the given vector.
+   *
+   * @param v the vector to quantize.
+   */
+  public Int8DoubleVector(DoubleVector v) {
+    this(v.toArray());
+  }
+
+  /**
+   * Creates a new int8 vector by quantizing the given array.
+   *
+   * @param arr the values to quantize.
+   */
+  public Int8DoubleVector(double[] arr) {
+    double min = Double.MAX_VALUE;
+    double max = -Double.MAX_VALUE;
+    for (double d : arr) {
+      if (Double.isNaN(d) || Double.isInfinite(d)) {
+        throw new IllegalArgumentException("Can't quantize non-finite value: "
+            + d);
+      }
+      min = Math.min(min, d);
+      max = Math.max(max, d);
+    }
+    if (arr.length == 0) {
+      min = max = 0d;
+    }
+
+    this.values = new byte[arr.length];
+    this.scale = (max - min) / LEVELS;
+    this.offset = min - MIN_LEVEL * scale;
+    long sum = 0;
+    if (scale > 0d) {
+      for (int i = 0; i < arr.length; i++) {
+        long level = Math.round((arr[i] - offset) / scale);
+        level = Math.max(MIN_LEVEL, Math.min(MAX_LEVEL, level));
+        values[i] = (byte) level;
+        sum += level;
+      }
+    }
+    this.levelSum = sum;
+  }
+
+  /**
+   * Creates a new int8 vector from the already quantized levels. This does not
+   * copy the given array.
+   *
+   * @param values the quantized levels.
+   * @param scale the scale of a single level.
+   * @param offset the value of the level zero.
+   */
+  public Int8DoubleVector(byte[] values, double scale, double offset) {
+    this.values = values;
+    this.scale = scale;
+    this.offset = offset;
+    long sum = 0;
+    for (byte b : values) {
+      sum += b;
+    }
+    this.levelSum = sum;
+  }
+
+  @Override
+  public double get(int index) {
+    return offset + scale * values[index];
+  }
+
+  @Override
+  public int getDimension() {
+    return values.length;
+  }
+
+  @Override
+  public void set(int index, double value) {
+    throw new IllegalStateException("Can't mutate this quantized vector!");
+  }
+
+  @Override
+  public int getBitsPerDimension() {
+    return 8;
+  }
+
+  @Override
+  public double dot(DoubleVector s) {
+    DoubleVector other = unwrap(s);
+    if (other instanceof Int8DoubleVector) {
+      return dotInt8((Int8DoubleVector) other);
+    }
+
+    if (other.isSparse()) {
+      double dotProduct = 0d;
+      Iterator<DoubleVectorElement> iterateNonZero = other.iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        DoubleVectorElement next = iterateNonZero.next();
+        dotProduct += get(next.getIndex()) * next.getValue();
+      }
+      return dotProduct;
+    }
+
+    // sum(offset + scale * q[i]) * b[i] = offset * sum(b) + scale * sum(q*b)
+    double[] arr = other.toArray();
+    double sum = 0d;
+    double levelDot = 0d;
+    for (int i = 0; i < values.length; i++) {
+      sum += arr[i];
+      levelDot += values[i] * arr[i];
+    }
+    return offset * sum + scale * levelDot;
+  }
+
+  private double dotInt8(Int8DoubleVector other) {
+    final byte[] a = this.values;
+    final byte[] b = other.values;
+    long levelDot = 0;
+    for (int i = 0; i < a.length; i++) {
+      levelDot += a[i] * b[i];
+    }
+    // (oa + sa*qa) * (ob + sb*qb) summed over all dimensions
+    return a.length * offset * other.offset + offset * other.scale
+        * other.levelSum + other.offset * scale * levelSum + scale
+        * other.scale * levelDot;
+  }
+
+  @Override
+  public double squaredEuclideanDistance(DoubleVector s) {
+    DoubleVector other = unwrap(s);
+    double sum = 0d;
+    if (other instanceof Int8DoubleVector) {
+      Int8DoubleVector o = (Int8DoubleVector) other;
+      final byte[] b = o.values;
+      final double shift = offset - o.offset;
+      if (scale == o.scale) {
+        // shared scale (e.g. a global quantizer), the difference of the levels
+        // can be accumulated as an integer
+        long levelDiffSum = 0;
+        long levelDiffSquared = 0;
+        for (int i = 0; i < values.length; i++) {
+          int diff = values[i] - b[i];
+          levelDiffSum += diff;
+          levelDiffSquared += diff * diff;
+        }
+        return values.length * shift * shift + 2d * shift * scale
+            * levelDiffSum + scale * scale * levelDiffSquared;
+      }
+      for (int i = 0; i < values.length; i++) {
+        double diff = shift + scale * values[i] - o.scale * b[i];
+        sum += diff * diff;
+      }
+    } else if (other.isSparse()) {
+      // every dimension contributes with its own value, subtract the
+      // contribution of the non-zero dimensions and add the actual diff
+      for (int i = 0; i < values.length; i++) {
+        double d = get(i);
+        sum += d * d;
+      }
+      Iterator<DoubleVectorElement> iterateNonZero = other.iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        DoubleVectorElement next = iterateNonZero.next();
+        double d = get(next.getIndex());
+        double diff = d - next.getValue();
+        sum += diff * diff - d * d;
+      }
+    } else {
+      double[] arr = other.toArray();
+      for (int i = 0; i < values.length; i++) {
+        double diff = offset + scale * values[i] - arr[i];
+        sum += diff * diff;
+      }
+    }
+    return sum;
+  }
+
+  @Override
+  public DenseDoubleVector dequantize() {
+    double[] arr = new double[values.length];
+    for (int i = 0; i < arr.length; i++) {
+      arr[i] = offset + scale * values[i];
+    }
+    return new DenseDoubleVector(arr);
+  }
+
+  @Override
+  public DoubleVector deepCopy() {
+    return new Int8DoubleVector(values.clone(), scale, offset);
+  }
+
+  /**
+   * @return the quantized levels, no defensive copy is made.
+   */
+  public byte[] getQuantizedValues() {
+    return values;
+  }
+
+  /**
+   * @return the scale of a single quantization level.
+   */
+  public double getScale() {
+    return scale;
+  }
+
+  /**
+   * @return the value that is represented by the level zero.
+   */
+  public double getOffset() {
+    return offset;
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    long temp;
+    temp = Double.doubleToLongBits(offset);
+    result = prime * result + (int) (temp ^ (temp >>> 32));
+    temp = Double.doubleToLongBits(scale);
+    result = prime * result + (int) (temp ^ (temp >>> 32));
+    result = prime * result + Arrays.hashCode(values);
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (obj == null)
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+    Int8DoubleVector other = (Int8DoubleVector) obj;
+    if (Double.doubleToLongBits(offset) != Double
+        .doubleToLongBits(other.offset))
+      return false;
+    if (Double.doubleToLongBits(scale) != Double.doubleToLongBits(other.scale))
+      return false;
+    return Arrays.equals(values, other.values);
+  }
+
+}
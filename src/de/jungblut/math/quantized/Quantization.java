@@ -0,0 +1,141 @@
+package de.jungblut.math.quantized;
+
+import java.util.Iterator;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.dense.DenseDoubleVector;
+
+/**
+ * Utilities to quantize any {@link DoubleVector} into a compressed
+ * representation and back, as well as the half precision conversion routines.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class Quantization {
+
+  // all 2^16 half precision values decoded, so decoding is a single array load
+  private static final float[] HALF_TO_FLOAT = new float[1 << 16];
+
+  static {
+    for (int i = 0; i < HALF_TO_FLOAT.length; i++) {
+      HALF_TO_FLOAT[i] = decodeHalf((short) i);
+    }
+  }
+
+  private Quantization() {
+    throw new IllegalAccessError();
+  }
+
+  /**
+   * Quantizes the given vector to a scalar int8 representation with a per
+   * vector scale and offset.
+   */
+  public static Int8DoubleVector quantizeInt8(DoubleVector v) {
+    if (v instanceof Int8DoubleVector) {
+      return (Int8DoubleVector) v;
+    }
+    return new Int8DoubleVector(v);
+  }
+
+  /**
+   * Quantizes the given vector to half precision floats.
+   */
+  public static HalfDoubleVector quantizeHalf(DoubleVector v) {
+    if (v instanceof HalfDoubleVector) {
+      return (HalfDoubleVector) v;
+    }
+    return new HalfDoubleVector(v);
+  }
+
+  /**
+   * Converts the given vector to a dense vector with full double precision.
+   * Quantized vectors are decoded, all other vectors are copied.
+   */
+  public static DenseDoubleVector dequantize(DoubleVector v) {
+    if (v instanceof QuantizedDoubleVector) {
+      return ((QuantizedDoubleVector) v).dequantize();
+    }
+    if (v.isSparse()) {
+      DenseDoubleVector dense = new DenseDoubleVector(v.getDimension());
+      Iterator<DoubleVectorElement> iterateNonZero = v.iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        DoubleVectorElement next = iterateNonZero.next();
+        dense.set(next.getIndex(), next.getValue());
+      }
+      return dense;
+    }
+    return new DenseDoubleVector(v.toArray());
+  }
+
+  /**
+   * Decodes the given half precision bits.
+   */
+  public static double fromHalf(short half) {
+    return HALF_TO_FLOAT[half & 0xffff];
+  }
+
+  /**
+   * Encodes the given value to half precision, rounding to the nearest even
+   * representable value. Values that exceed the half precision range become
+   * infinite, values below the smallest subnormal become zero.
+   */
+  public static short toHalf(double value) {
+    int bits = Float.floatToRawIntBits((float) value);
+    int sign = (bits >>> 16) & 0x8000;
+    int abs = bits & 0x7fffffff;
+
+    if (abs >= 0x7f800000) {
+      // infinity stays infinity, NaN keeps a quiet NaN payload
+      return (short) (sign | 0x7c00 | (abs > 0x7f800000 ? 0x200 : 0));
+    }
+    if (abs >= 0x47800000) {
+      // 2^16 and above overflows the largest half exponent
+      return (short) (sign | 0x7c00);
+    }
+    if (abs < 0x38800000) {
+      // below 2^-14 we have to encode a subnormal half
+      if (abs < 0x33000000) {
+        return (short) sign;
+      }
+      int exp = abs >>> 23;
+      int mantissa = (abs & 0x7fffff) | 0x800000;
+      int shift = 126 - exp;
+      int half = mantissa >> shift;
+      int remainder = mantissa & ((1 << shift) - 1);
+      int midpoint = 1 << (shift - 1);
+      if (remainder > midpoint || (remainder == midpoint && (half & 1) != 0)) {
+        half++;
+      }
+      return (short) (sign | half);
+    }
+
+    int exp = (abs >>> 23) - 127 + 15;
+    int mantissa = abs & 0x7fffff;
+    int half = (exp << 10) | (mantissa >> 13);
+    int remainder = mantissa & 0x1fff;
+    // a carry out of the mantissa correctly bumps the exponent
+    if (remainder > 0x1000 || (remainder == 0x1000 && (half & 1) != 0)) {
+      half++;
+    }
+    return (short) (sign | half);
+  }
+
+  private static float decodeHalf(short half) {
+    int h = half & 0xffff;
+    int sign = (h & 0x8000) << 16;
+    int exp = (h >>> 10) & 0x1f;
+    int mantissa = h & 0x3ff;
+    if (exp == 0) {
+      // zero and subnormals: mantissa * 2^-24
+      float value = mantissa * 0x1p-24f;
+      return sign != 0 ? -value : value;
+    }
+    if (exp == 31) {
+      return Float.intBitsToFloat(sign | 0x7f800000 | (mantissa << 13));
+    }
+    return Float.intBitsToFloat(sign | ((exp + 112) << 23) | (mantissa << 13));
+  }
+
+}
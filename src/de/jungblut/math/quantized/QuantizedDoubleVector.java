@@ -0,0 +1,316 @@
+package de.jungblut.math.quantized;
+
+import java.util.Iterator;
+
+import com.google.common.collect.AbstractIterator;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.function.DoubleDoubleVectorFunction;
+import de.jungblut.math.function.DoubleVectorFunction;
+import de.jungblut.math.named.KeyedDoubleVector;
+import de.jungblut.math.named.NamedDoubleVector;
+
+/**
+ * Base class for vectors that store their elements in a lossy, compressed
+ * representation. The scoring kernels ({@link #dot(DoubleVector)} and
+ * {@link #squaredEuclideanDistance(DoubleVector)}) are implemented by the
+ * subclasses directly on the quantized data, all other math operations work on
+ * the dequantized values and return a fresh {@link DenseDoubleVector}.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public abstract class QuantizedDoubleVector implements DoubleVector {
+
+  /**
+   * @return a new dense vector that contains the dequantized values.
+   */
+  public abstract DenseDoubleVector dequantize();
+
+  /**
+   * Calculates the squared euclidean distance between this vector and the
+   * given vector, without materializing the dequantized values.
+   *
+   * @param other the other vector, must match the dimension of this vector.
+   * @return the squared euclidean distance.
+   */
+  public abstract double squaredEuclideanDistance(DoubleVector other);
+
+  /**
+   * @return the number of bits that are used to store a single dimension.
+   */
+  public abstract int getBitsPerDimension();
+
+  /**
+   * @return the euclidean distance between this and the given vector.
+   */
+  public double euclideanDistance(DoubleVector other) {
+    return Math.sqrt(squaredEuclideanDistance(other));
+  }
+
+  @Override
+  public int getLength() {
+    return getDimension();
+  }
+
+  @Override
+  public DoubleVector apply(DoubleVectorFunction func) {
+    return dequantize().apply(func);
+  }
+
+  @Override
+  public DoubleVector apply(DoubleVector other, DoubleDoubleVectorFunction func) {
+    return dequantize().apply(other, func);
+  }
+
+  @Override
+  public DoubleVector add(DoubleVector v) {
+    return dequantize().add(v);
+  }
+
+  @Override
+  public DoubleVector add(double scalar) {
+    return dequantize().add(scalar);
+  }
+
+  @Override
+  public DoubleVector subtract(DoubleVector v) {
+    return dequantize().subtract(v);
+  }
+
+  @Override
+  public DoubleVector subtract(double scalar) {
+    return dequantize().subtract(scalar);
+  }
+
+  @Override
+  public DoubleVector subtractFrom(double scalar) {
+    return dequantize().subtractFrom(scalar);
+  }
+
+  @Override
+  public DoubleVector multiply(double scalar) {
+    return dequantize().multiply(scalar);
+  }
+
+  @Override
+  public DoubleVector multiply(DoubleVector vector) {
+    return dequantize().multiply(vector);
+  }
+
+  @Override
+  public DoubleVector divide(double scalar) {
+    return dequantize().divide(scalar);
+  }
+
+  @Override
+  public DoubleVector divideFrom(double scalar) {
+    return dequantize().divideFrom(scalar);
+  }
+
+  @Override
+  public DoubleVector divideFrom(DoubleVector vector) {
+    return dequantize().divideFrom(vector);
+  }
+
+  @Override
+  public DoubleVector divide(DoubleVector vector) {
+    return dequantize().divide(vector);
+  }
+
+  @Override
+  public DoubleVector pow(double x) {
+    return dequantize().pow(x);
+  }
+
+  @Override
+  public DoubleVector abs() {
+    return dequantize().abs();
+  }
+
+  @Override
+  public DoubleVector sqrt() {
+    return dequantize().sqrt();
+  }
+
+  @Override
+  public DoubleVector log() {
+    return dequantize().log();
+  }
+
+  @Override
+  public DoubleVector exp() {
+    return dequantize().exp();
+  }
+
+  @Override
+  public double sum() {
+    double sum = 0d;
+    for (int i = 0; i < getDimension(); i++) {
+      sum += get(i);
+    }
+    return sum;
+  }
+
+  @Override
+  public DoubleVector slice(int end) {
+    return slice(0, end);
+  }
+
+  @Override
+  public DoubleVector slice(int start, int end) {
+    return dequantize().slice(start, end);
+  }
+
+  @Override
+  public DoubleVector sliceByLength(int start, int length) {
+    return dequantize().sliceByLength(start, length);
+  }
+
+  @Override
+  public double max() {
+    double max = -Double.MAX_VALUE;
+    for (int i = 0; i < getDimension(); i++) {
+      double d = get(i);
+      if (d > max) {
+        max = d;
+      }
+    }
+    return max;
+  }
+
+  @Override
+  public double min() {
+    double min = Double.MAX_VALUE;
+    for (int i = 0; i < getDimension(); i++) {
+      double d = get(i);
+      if (d < min) {
+        min = d;
+      }
+    }
+    return min;
+  }
+
+  @Override
+  public int maxIndex() {
+    double max = -Double.MAX_VALUE;
+    int maxIndex = 0;
+    for (int i = 0; i < getDimension(); i++) {
+      double d = get(i);
+      if (d > max) {
+        max = d;
+        maxIndex = i;
+      }
+    }
+    return maxIndex;
+  }
+
+  @Override
+  public int minIndex() {
+    double min = Double.MAX_VALUE;
+    int minIndex = 0;
+    for (int i = 0; i < getDimension(); i++) {
+      double d = get(i);
+      if (d < min) {
+        min = d;
+        minIndex = i;
+      }
+    }
+    return minIndex;
+  }
+
+  @Override
+  public double[] toArray() {
+    return dequantize().toArray();
+  }
+
+  @Override
+  public Iterator<DoubleVectorElement> iterateNonZero() {
+    return new AbstractIterator<DoubleVectorElement>() {
+      private final DoubleVectorElement element = new DoubleVectorElement();
+      private int index = 0;
+
+      @Override
+      protected DoubleVectorElement computeNext() {
+        while (index < getDimension()) {
+          double value = get(index);
+          if (value != 0d) {
+            element.setIndex(index);
+            element.setValue(value);
+            index++;
+            return element;
+          }
+          index++;
+        }
+        return endOfData();
+      }
+    };
+  }
+
+  @Override
+  public Iterator<DoubleVectorElement> iterate() {
+    return new AbstractIterator<DoubleVectorElement>() {
+      private final DoubleVectorElement element = new DoubleVectorElement();
+      private int index = 0;
+
+      @Override
+      protected DoubleVectorElement computeNext() {
+        if (index < getDimension()) {
+          element.setIndex(index);
+          element.setValue(get(index));
+          index++;
+          return element;
+        }
+        return endOfData();
+      }
+    };
+  }
+
+  @Override
+  public boolean isSparse() {
+    return false;
+  }
+
+  @Override
+  public boolean isNamed() {
+    return false;
+  }
+
+  @Override
+  public boolean isSingle() {
+    return false;
+  }
+
+  @Override
+  public String getName() {
+    return null;
+  }
+
+  /**
+   * Strips the keyed and named wrappers of the given vector, so the kernels can
+   * dispatch on the embedded representation.
+   */
+  static DoubleVector unwrap(DoubleVector v) {
+    while (v.isNamed()) {
+      if (v instanceof KeyedDoubleVector) {
+        v = ((KeyedDoubleVector) v).getVector();
+      } else if (v instanceof NamedDoubleVector) {
+        v = ((NamedDoubleVector) v).getVector();
+      } else {
+        break;
+      }
+    }
+    return v;
+  }
+
+  @Override
+  public String toString() {
+    if (getDimension() < 50) {
+      return dequantize().toString();
+    } else {
+      return getDimension() + "x1";
+    }
+  }
+
+}
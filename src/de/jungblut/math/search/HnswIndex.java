@@ -0,0 +1,876 @@
+package de.jungblut.math.search;
+
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.set.hash.TIntHashSet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantLock;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.named.KeyedDoubleVector;
+import de.jungblut.math.quantized.HalfDoubleVector;
+import de.jungblut.math.quantized.Int8DoubleVector;
+import de.jungblut.math.quantized.QuantizedDoubleVector;
+
+/**
+ * Approximate nearest neighbour index based on a hierarchical navigable small
+ * world graph (Malkov and Yashunin, 2016). Vectors are identified by the int
+ * key of a {@link KeyedDoubleVector} and can be dense or quantized; quantized
+ * vectors are scored with their own kernels.
+ *
+ * The adjacency lists are stored in primitive int arrays: the base layer in
+ * fixed size pages with a slot for every node, the upper layers per node. Every
+ * list starts with its size followed by the neighbour ids.
+ *
+ * Inserts can happen concurrently from many threads. Adjacency lists are
+ * guarded by striped locks, and only a single stripe is held at a time, the
+ * entry point is guarded by a separate lock that is only held for the whole
+ * insert if the new node becomes the new top level.
+ *
+ * The index can be saved to a file with fixed size records for the base layer
+ * and the vectors, which is memory mapped when it is loaded again.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class HnswIndex {
+
+  private static final int MAGIC = 0x484e5357;
+  private static final int VERSION = 1;
+
+  private static final byte DENSE_VECTORS = 0;
+  private static final byte INT8_VECTORS = 1;
+  private static final byte HALF_VECTORS = 2;
+
+  // nodes per page of the base layer, keeps the pages below the array limit
+  private static final int PAGE_SHIFT = 14;
+  private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+  private static final int LOCK_STRIPES = 1 << 12;
+
+  private final Metric metric;
+  private final int m;
+  private final int maxM0;
+  private final int efConstruction;
+  private final int maxElements;
+  private final double levelMultiplier;
+  private volatile int efSearch;
+
+  private final DoubleVector[] vectors;
+  private final int[] keys;
+  private final int[] levels;
+  // inverse norms for cosine, unused otherwise
+  private final double[] norms;
+  private final int[][] baseLayer;
+  private final int[][] upperLayers;
+
+  private final Object[] locks;
+  private final ReentrantLock entryLock = new ReentrantLock();
+  // guarded by itself, also guards the size and the dimension
+  private final TIntIntHashMap keyToNode;
+  private int size;
+  // the dimension of all vectors, -1 until the first insert
+  private int dimension = -1;
+  private volatile int entryPoint = -1;
+  private volatile int maxLevel = -1;
+
+  private final Random random;
+  private final ThreadLocal<TIntHashSet> visited = ThreadLocal
+      .withInitial(TIntHashSet::new);
+
+  /**
+   * Creates a new index with efConstruction=200 and efSearch=50.
+   *
+   * @param metric the metric to rank the neighbours by.
+   * @param m the number of neighbours per node on the upper layers, the base
+   *          layer keeps 2*m neighbours.
+   * @param maxElements the maximum number of vectors in this index.
+   */
+  public HnswIndex(Metric metric, int m, int maxElements) {
+    this(metric, m, 200, 50, maxElements, System.nanoTime());
+  }
+
+  /**
+   * Creates a new index.
+   *
+   * @param metric the metric to rank the neighbours by.
+   * @param m the number of neighbours per node on the upper layers, the base
+   *          layer keeps 2*m neighbours.
+   * @param efConstruction the size of the dynamic candidate list while
+   *          inserting, higher is more accurate but slower.
+   * @param efSearch the size of the dynamic candidate list while searching.
+   * @param maxElements the maximum number of vectors in this index.
+   * @param seed the seed for the random level generation.
+   */
+  public HnswIndex(Metric metric, int m, int efConstruction, int efSearch,
+      int maxElements, long seed) {
+    if (m < 2) {
+      throw new IllegalArgumentException("m must be >= 2, but was " + m);
+    }
+    this.metric = metric;
+    this.m = m;
+    this.maxM0 = 2 * m;
+    this.efConstruction = Math.max(efConstruction, m);
+    this.efSearch = efSearch;
+    this.maxElements = maxElements;
+    this.levelMultiplier = 1d / Math.log(m);
+    this.random = new Random(seed);
+
+    this.vectors = new DoubleVector[maxElements];
+    this.keys = new int[maxElements];
+    this.levels = new int[maxElements];
+    this.norms = metric == Metric.COSINE ? new double[maxElements] : null;
+    this.upperLayers = new int[maxElements][];
+    int pages = (maxElements + PAGE_MASK) >>> PAGE_SHIFT;
+    this.baseLayer = new int[pages][];
+    for (int i = 0; i < pages; i++) {
+      int nodes = Math.min(PAGE_MASK + 1, maxElements - (i << PAGE_SHIFT));
+      baseLayer[i] = new int[nodes * (maxM0 + 1)];
+    }
+    this.locks = new Object[LOCK_STRIPES];
+    for (int i = 0; i < locks.length; i++) {
+      locks[i] = new Object();
+    }
+    this.keyToNode = new TIntIntHashMap(Math.min(maxElements, 1 << 16));
+  }
+
+  /**
+   * Inserts the given keyed vector.
+   */
+  public void insert(KeyedDoubleVector vector) {
+    insert(vector.getKey(), vector.getVector());
+  }
+
+  /**
+   * Inserts the given vector under the given key. This method is thread-safe.
+   *
+   * @param key the key of the vector, must be unique in this index.
+   * @param vector the vector to insert.
+   * @throws IllegalArgumentException if the key already exists or the
+   *           dimension differs from the other vectors.
+   * @throws IllegalStateException if the index is full.
+   */
+  public void insert(int key, DoubleVector vector) {
+    // everything that can fail happens before the slot is claimed, so a failed
+    // insert never leaves a node behind that searches could reach
+    double norm = norms != null ? inverse(Math.sqrt(vector.dot(vector))) : 0d;
+    int level = randomLevel();
+    int[] upperLinks = level > 0 ? new int[level * (m + 1)] : null;
+    int node;
+    synchronized (keyToNode) {
+      if (keyToNode.containsKey(key)) {
+        throw new IllegalArgumentException("Key " + key + " already exists!");
+      }
+      if (dimension != -1 && vector.getDimension() != dimension) {
+        throw new IllegalArgumentException("Dimension "
+            + vector.getDimension() + " of key " + key
+            + " does not match the dimension " + dimension + " of the index!");
+      }
+      if (size == maxElements) {
+        throw new IllegalStateException("Index is full with " + maxElements
+            + " elements!");
+      }
+      node = size++;
+      dimension = vector.getDimension();
+      keyToNode.put(key, node);
+    }
+
+    vectors[node] = vector;
+    keys[node] = key;
+    levels[node] = level;
+    if (norms != null) {
+      norms[node] = norm;
+    }
+    upperLayers[node] = upperLinks;
+
+    entryLock.lock();
+    boolean holdsEntryLock = true;
+    try {
+      int currentMaxLevel = maxLevel;
+      int ep = entryPoint;
+      if (ep == -1) {
+        maxLevel = level;
+        entryPoint = node;
+        return;
+      }
+      if (level <= currentMaxLevel) {
+        entryLock.unlock();
+        holdsEntryLock = false;
+      }
+
+      double epDistance = distance(node, ep);
+      for (int lc = currentMaxLevel; lc > level; lc--) {
+        ep = greedySearch(vectors[node], norm(node), ep, epDistance, lc);
+        epDistance = distance(node, ep);
+      }
+
+      for (int lc = Math.min(level, currentMaxLevel); lc >= 0; lc--) {
+        NodeHeap candidates = searchLayer(vectors[node], norm(node), ep,
+            epDistance, efConstruction, lc);
+        int maxLinks = lc == 0 ? maxM0 : m;
+        int[] selected = new int[m];
+        int numSelected = selectNeighbours(candidates, m, selected);
+        writeLinks(node, lc, selected, numSelected);
+        for (int i = 0; i < numSelected; i++) {
+          connect(selected[i], node, lc, maxLinks);
+        }
+        // the closest candidate is the entry point for the next layer
+        ep = selected[0];
+        epDistance = distance(node, ep);
+      }
+
+      if (level > currentMaxLevel) {
+        entryPoint = node;
+        maxLevel = level;
+      }
+    } finally {
+      if (holdsEntryLock) {
+        entryLock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Finds the approximate k nearest neighbours of the given query.
+   *
+   * @param query the query vector.
+   * @param k the number of neighbours to return.
+   * @return the neighbours, most similar first. The scores are similarities
+   *         for dot and cosine and distances for euclidean.
+   * @throws IllegalArgumentException if the dimension of the query differs
+   *           from the vectors in the index.
+   */
+  public SearchResult search(DoubleVector query, int k) {
+    synchronized (keyToNode) {
+      if (dimension != -1 && query.getDimension() != dimension) {
+        throw new IllegalArgumentException("Dimension "
+            + query.getDimension() + " of the query does not match the "
+            + "dimension " + dimension + " of the index!");
+      }
+    }
+    int ep = entryPoint;
+    if (ep == -1 || k <= 0) {
+      return new SearchResult(new int[0], new double[0]);
+    }
+    double queryNorm = metric == Metric.COSINE ? inverse(Math.sqrt(query
+        .dot(query))) : 0d;
+    double epDistance = distance(query, queryNorm, ep);
+    for (int lc = levels[ep]; lc > 0; lc--) {
+      ep = greedySearch(query, queryNorm, ep, epDistance, lc);
+      epDistance = distance(query, queryNorm, ep);
+    }
+    NodeHeap results = searchLayer(query, queryNorm, ep, epDistance,
+        Math.max(efSearch, k), 0);
+    while (results.size() > k) {
+      results.pop();
+    }
+    int n = results.size();
+    int[] resultKeys = new int[n];
+    double[] scores = new double[n];
+    for (int i = n - 1; i >= 0; i--) {
+      double d = results.peekDistance();
+      int node = results.pop();
+      resultKeys[i] = keys[node];
+      scores[i] = toScore(d);
+    }
+    return new SearchResult(resultKeys, scores);
+  }
+
+  /**
+   * @return the number of vectors in this index.
+   */
+  public int size() {
+    synchronized (keyToNode) {
+      return size;
+    }
+  }
+
+  /**
+   * @return true if the given key is contained in this index.
+   */
+  public boolean contains(int key) {
+    synchronized (keyToNode) {
+      return keyToNode.containsKey(key);
+    }
+  }
+
+  /**
+   * @return the vector stored under the given key or null if it does not
+   *         exist.
+   */
+  public DoubleVector getVector(int key) {
+    synchronized (keyToNode) {
+      if (!keyToNode.containsKey(key)) {
+        return null;
+      }
+      return vectors[keyToNode.get(key)];
+    }
+  }
+
+  /**
+   * Sets the size of the dynamic candidate list for searches.
+   */
+  public void setEfSearch(int efSearch) {
+    this.efSearch = efSearch;
+  }
+
+  public int getEfSearch() {
+    return efSearch;
+  }
+
+  public int getEfConstruction() {
+    return efConstruction;
+  }
+
+  public int getM() {
+    return m;
+  }
+
+  public Metric getMetric() {
+    return metric;
+  }
+
+  /**
+   * Greedily walks to the closest node on the given layer.
+   *
+   * @return the closest node that was found.
+   */
+  private int greedySearch(DoubleVector query, double queryNorm, int ep,
+      double epDistance, int level) {
+    int[] buffer = new int[maxM0];
+    int current = ep;
+    double currentDistance = epDistance;
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      int n = readLinks(current, level, buffer);
+      for (int i = 0; i < n; i++) {
+        double d = distance(query, queryNorm, buffer[i]);
+        if (d < currentDistance) {
+          currentDistance = d;
+          current = buffer[i];
+          changed = true;
+        }
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Best-first search on a single layer.
+   *
+   * @return a max heap with the ef closest nodes found.
+   */
+  private NodeHeap searchLayer(DoubleVector query, double queryNorm, int ep,
+      double epDistance, int ef, int level) {
+    TIntHashSet seen = visited.get();
+    seen.clear();
+    int[] buffer = new int[maxM0];
+    NodeHeap candidates = new NodeHeap(false, ef);
+    NodeHeap results = new NodeHeap(true, ef + 1);
+    seen.add(ep);
+    candidates.push(ep, epDistance);
+    results.push(ep, epDistance);
+    while (candidates.size() > 0) {
+      double candidateDistance = candidates.peekDistance();
+      if (candidateDistance > results.peekDistance() && results.size() >= ef) {
+        break;
+      }
+      int candidate = candidates.pop();
+      int n = readLinks(candidate, level, buffer);
+      for (int i = 0; i < n; i++) {
+        int neighbour = buffer[i];
+        if (!seen.add(neighbour)) {
+          continue;
+        }
+        double d = distance(query, queryNorm, neighbour);
+        if (results.size() < ef || d < results.peekDistance()) {
+          candidates.push(neighbour, d);
+          results.push(neighbour, d);
+          if (results.size() > ef) {
+            results.pop();
+          }
+        }
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Selects up to max diverse neighbours from the candidates with the
+   * heuristic of the paper: a candidate is only kept if it is closer to the
+   * base than to all the neighbours selected so far.
+   *
+   * @param candidates a max heap of candidates, consumed by this method.
+   * @return the number of selected neighbours, sorted by increasing distance.
+   */
+  private int selectNeighbours(NodeHeap candidates, int max, int[] selected) {
+    int n = candidates.size();
+    int[] sorted = new int[n];
+    double[] distances = new double[n];
+    for (int i = n - 1; i >= 0; i--) {
+      distances[i] = candidates.peekDistance();
+      sorted[i] = candidates.pop();
+    }
+    int numSelected = 0;
+    for (int i = 0; i < n && numSelected < max; i++) {
+      int candidate = sorted[i];
+      boolean keep = true;
+      for (int j = 0; j < numSelected; j++) {
+        double d = distance(vectors[selected[j]], norm(selected[j]), candidate);
+        if (d < distances[i]) {
+          keep = false;
+          break;
+        }
+      }
+      if (keep) {
+        selected[numSelected++] = candidate;
+      }
+    }
+    return numSelected;
+  }
+
+  /**
+   * Adds the link from the given node to the new node, pruning the adjacency
+   * list of the node if it is full.
+   */
+  private void connect(int node, int newNode, int level, int maxLinks) {
+    synchronized (lock(node)) {
+      int[] links = links(node, level);
+      int offset = offset(node, level);
+      int n = links[offset];
+      if (n < maxLinks) {
+        links[offset + 1 + n] = newNode;
+        links[offset] = n + 1;
+        return;
+      }
+      NodeHeap candidates = new NodeHeap(true, n + 1);
+      DoubleVector base = vectors[node];
+      double baseNorm = norm(node);
+      for (int i = 0; i < n; i++) {
+        int neighbour = links[offset + 1 + i];
+        candidates.push(neighbour, distance(base, baseNorm, neighbour));
+      }
+      candidates.push(newNode, distance(base, baseNorm, newNode));
+      int[] selected = new int[maxLinks];
+      int numSelected = selectNeighbours(candidates, maxLinks, selected);
+      System.arraycopy(selected, 0, links, offset + 1, numSelected);
+      links[offset] = numSelected;
+    }
+  }
+
+  private int readLinks(int node, int level, int[] buffer) {
+    synchronized (lock(node)) {
+      int[] links = links(node, level);
+      int offset = offset(node, level);
+      int n = links[offset];
+      System.arraycopy(links, offset + 1, buffer, 0, n);
+      return n;
+    }
+  }
+
+  private void writeLinks(int node, int level, int[] src, int n) {
+    synchronized (lock(node)) {
+      int[] links = links(node, level);
+      int offset = offset(node, level);
+      System.arraycopy(src, 0, links, offset + 1, n);
+      links[offset] = n;
+    }
+  }
+
+  private int[] links(int node, int level) {
+    return level == 0 ? baseLayer[node >>> PAGE_SHIFT] : upperLayers[node];
+  }
+
+  private int offset(int node, int level) {
+    return level == 0 ? (node & PAGE_MASK) * (maxM0 + 1) : (level - 1)
+        * (m + 1);
+  }
+
+  private Object lock(int node) {
+    return locks[node & (LOCK_STRIPES - 1)];
+  }
+
+  private int randomLevel() {
+    double r = random.nextDouble();
+    return (int) Math.min(31, Math.floor(-Math.log(1d - r) * levelMultiplier));
+  }
+
+  private double norm(int node) {
+    return norms == null ? 0d : norms[node];
+  }
+
+  private double distance(int node, int other) {
+    return distance(vectors[node], norm(node), other);
+  }
+
+  /**
+   * @return the distance between the given query and the node, smaller is
+   *         more similar.
+   */
+  private double distance(DoubleVector query, double queryNorm, int node) {
+    DoubleVector v = vectors[node];
+    switch (metric) {
+      case EUCLIDEAN:
+        return squaredDistance(v, query);
+      case COSINE:
+        return 1d - v.dot(query) * norms[node] * queryNorm;
+      default:
+        return -v.dot(query);
+    }
+  }
+
+  private double toScore(double distance) {
+    switch (metric) {
+      case EUCLIDEAN:
+        return Math.sqrt(Math.max(0d, distance));
+      case COSINE:
+        return 1d - distance;
+      default:
+        return -distance;
+    }
+  }
+
+  private static double squaredDistance(DoubleVector a, DoubleVector b) {
+    if (a instanceof QuantizedDoubleVector) {
+      return ((QuantizedDoubleVector) a).squaredEuclideanDistance(b);
+    }
+    if (b instanceof QuantizedDoubleVector) {
+      return ((QuantizedDoubleVector) b).squaredEuclideanDistance(a);
+    }
+    if (!a.isSparse() && !b.isSparse()) {
+      double[] x = a.toArray();
+      double[] y = b.toArray();
+      double sum = 0d;
+      for (int i = 0; i < x.length; i++) {
+        double diff = x[i] - y[i];
+        sum += diff * diff;
+      }
+      return sum;
+    }
+    return a.dot(a) - 2d * a.dot(b) + b.dot(b);
+  }
+
+  private static double inverse(double norm) {
+    return norm == 0d ? 0d : 1d / norm;
+  }
+
+  /**
+   * Saves this index to the given file. The file starts with a header,
+   * followed by the keys and levels, the base layer with a fixed record of
+   * 2*m+1 ints per node, the vectors with a fixed record size and the upper
+   * layers. Int8 and half precision vectors are stored in their quantized
+   * form, all others as dense doubles. Must not be called while inserting.
+   */
+  public void save(File file) throws IOException {
+    int n;
+    int dimension;
+    synchronized (keyToNode) {
+      n = size;
+      dimension = Math.max(0, this.dimension);
+    }
+    byte vectorType = vectorType(n);
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        new FileOutputStream(file), 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(metric.ordinal());
+      out.writeInt(m);
+      out.writeInt(efConstruction);
+      out.writeInt(efSearch);
+      out.writeInt(n);
+      out.writeInt(dimension);
+      out.writeInt(entryPoint);
+      out.writeInt(maxLevel);
+      out.writeByte(vectorType);
+      for (int i = 0; i < n; i++) {
+        out.writeInt(keys[i]);
+      }
+      for (int i = 0; i < n; i++) {
+        out.writeInt(levels[i]);
+      }
+      for (int i = 0; i < n; i++) {
+        int[] links = links(i, 0);
+        int offset = offset(i, 0);
+        for (int j = 0; j <= maxM0; j++) {
+          out.writeInt(links[offset + j]);
+        }
+      }
+      for (int i = 0; i < n; i++) {
+        writeVector(out, vectors[i], vectorType, dimension);
+      }
+      for (int i = 0; i < n; i++) {
+        if (levels[i] > 0) {
+          for (int link : upperLayers[i]) {
+            out.writeInt(link);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Loads an index from the given file that can not grow anymore.
+   */
+  public static HnswIndex load(File file) throws IOException {
+    return load(file, -1);
+  }
+
+  /**
+   * Loads an index from the given file by memory mapping it.
+   *
+   * @param file the file written by {@link #save(File)}.
+   * @param maxElements the maximum number of elements of the loaded index, if
+   *          smaller than the number of saved elements, the index is sized to
+   *          exactly fit the saved elements.
+   */
+  public static HnswIndex load(File file, int maxElements) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+        FileChannel channel = raf.getChannel()) {
+      MappedInput in = new MappedInput(channel);
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not an HNSW index file: " + file);
+      }
+      int version = in.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported version " + version);
+      }
+      Metric metric = Metric.values()[in.readInt()];
+      int m = in.readInt();
+      int efConstruction = in.readInt();
+      int efSearch = in.readInt();
+      int n = in.readInt();
+      int dimension = in.readInt();
+      int entryPoint = in.readInt();
+      int maxLevel = in.readInt();
+      byte vectorType = in.readByte();
+
+      HnswIndex index = new HnswIndex(metric, m, efConstruction, efSearch,
+          Math.max(n, maxElements), System.nanoTime());
+      for (int i = 0; i < n; i++) {
+        index.keys[i] = in.readInt();
+        index.keyToNode.put(index.keys[i], i);
+      }
+      for (int i = 0; i < n; i++) {
+        index.levels[i] = in.readInt();
+      }
+      for (int i = 0; i < n; i++) {
+        int[] links = index.links(i, 0);
+        int offset = index.offset(i, 0);
+        for (int j = 0; j <= index.maxM0; j++) {
+          links[offset + j] = in.readInt();
+        }
+      }
+      for (int i = 0; i < n; i++) {
+        DoubleVector v = readVector(in, vectorType, dimension);
+        index.vectors[i] = v;
+        if (index.norms != null) {
+          index.norms[i] = inverse(Math.sqrt(v.dot(v)));
+        }
+      }
+      for (int i = 0; i < n; i++) {
+        if (index.levels[i] > 0) {
+          int[] links = new int[index.levels[i] * (m + 1)];
+          for (int j = 0; j < links.length; j++) {
+            links[j] = in.readInt();
+          }
+          index.upperLayers[i] = links;
+        }
+      }
+      index.size = n;
+      index.dimension = n == 0 ? -1 : dimension;
+      index.entryPoint = entryPoint;
+      index.maxLevel = maxLevel;
+      return index;
+    }
+  }
+
+  private byte vectorType(int n) {
+    boolean int8 = n > 0;
+    boolean half = n > 0;
+    for (int i = 0; i < n; i++) {
+      int8 &= vectors[i] instanceof Int8DoubleVector;
+      half &= vectors[i] instanceof HalfDoubleVector;
+    }
+    return int8 ? INT8_VECTORS : half ? HALF_VECTORS : DENSE_VECTORS;
+  }
+
+  private static void writeVector(DataOutputStream out, DoubleVector v,
+      byte vectorType, int dimension) throws IOException {
+    if (vectorType == INT8_VECTORS) {
+      Int8DoubleVector q = (Int8DoubleVector) v;
+      out.writeDouble(q.getScale());
+      out.writeDouble(q.getOffset());
+      out.write(q.getQuantizedValues());
+    } else if (vectorType == HALF_VECTORS) {
+      for (short s : ((HalfDoubleVector) v).getQuantizedValues()) {
+        out.writeShort(s);
+      }
+    } else {
+      for (int i = 0; i < dimension; i++) {
+        out.writeDouble(v.get(i));
+      }
+    }
+  }
+
+  private static DoubleVector readVector(MappedInput in, byte vectorType,
+      int dimension) throws IOException {
+    if (vectorType == INT8_VECTORS) {
+      double scale = in.readDouble();
+      double offset = in.readDouble();
+      byte[] values = new byte[dimension];
+      for (int i = 0; i < dimension; i++) {
+        values[i] = in.readByte();
+      }
+      return new Int8DoubleVector(values, scale, offset);
+    } else if (vectorType == HALF_VECTORS) {
+      short[] values = new short[dimension];
+      for (int i = 0; i < dimension; i++) {
+        values[i] = in.readShort();
+      }
+      return new HalfDoubleVector(values);
+    }
+    double[] values = new double[dimension];
+    for (int i = 0; i < dimension; i++) {
+      values[i] = in.readDouble();
+    }
+    return new DenseDoubleVector(values);
+  }
+
+  /**
+   * Sequential reader over a file channel that maps the file in windows, so
+   * files larger than 2GB can be read as well.
+   */
+  private static final class MappedInput {
+
+    private static final long WINDOW = 1L << 30;
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long position;
+
+    MappedInput(FileChannel channel) throws IOException {
+      this.channel = channel;
+      map(0);
+    }
+
+    private void map(long start) throws IOException {
+      long length = Math.min(WINDOW, channel.size() - start);
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+      position = start;
+    }
+
+    private void ensure(int bytes) throws IOException {
+      if (buffer.remaining() < bytes) {
+        long next = position + buffer.position();
+        if (channel.size() - next < bytes) {
+          throw new IOException("Unexpected end of file at " + next);
+        }
+        map(next);
+      }
+    }
+
+    byte readByte() throws IOException {
+      ensure(1);
+      return buffer.get();
+    }
+
+    short readShort() throws IOException {
+      ensure(2);
+      return buffer.getShort();
+    }
+
+    int readInt() throws IOException {
+      ensure(4);
+      return buffer.getInt();
+    }
+
+    double readDouble() throws IOException {
+      ensure(8);
+      return buffer.getDouble();
+    }
+  }
+
+  /**
+   * Growable binary heap of node ids ordered by their distance.
+   */
+  private static final class NodeHeap {
+
+    private final boolean max;
+    private int[] nodes;
+    private double[] distances;
+    private int size;
+
+    NodeHeap(boolean max, int capacity) {
+      this.max = max;
+      this.nodes = new int[Math.max(capacity, 1)];
+      this.distances = new double[nodes.length];
+    }
+
+    int size() {
+      return size;
+    }
+
+    double peekDistance() {
+      return distances[0];
+    }
+
+    void push(int node, double distance) {
+      if (size == nodes.length) {
+        nodes = Arrays.copyOf(nodes, size * 2);
+        distances = Arrays.copyOf(distances, size * 2);
+      }
+      int index = size++;
+      while (index > 0) {
+        int parent = (index - 1) >>> 1;
+        if (!before(distance, distances[parent])) {
+          break;
+        }
+        nodes[index] = nodes[parent];
+        distances[index] = distances[parent];
+        index = parent;
+      }
+      nodes[index] = node;
+      distances[index] = distance;
+    }
+
+    int pop() {
+      int top = nodes[0];
+      size--;
+      int node = nodes[size];
+      double distance = distances[size];
+      int index = 0;
+      int half = size >>> 1;
+      while (index < half) {
+        int child = 2 * index + 1;
+        int right = child + 1;
+        if (right < size && before(distances[right], distances[child])) {
+          child = right;
+        }
+        if (!before(distances[child], distance)) {
+          break;
+        }
+        nodes[index] = nodes[child];
+        distances[index] = distances[child];
+        index = child;
+      }
+      nodes[index] = node;
+      distances[index] = distance;
+      return top;
+    }
+
+    private boolean before(double a, double b) {
+      return max ? a > b : a < b;
+    }
+  }
+
+}
@@ -0,0 +1,486 @@
+package de.jungblut.math.search;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.named.KeyedDoubleVector;
+
+/**
+ * Inverted index for the top-k dot product retrieval of sparse vectors, e.g.
+ * BM25 like term weights. For every dimension the documents with a non-zero
+ * entry are kept in a posting list ordered by the document id. Each list is
+ * cut into blocks of {@value #BLOCK_SIZE} postings, the document ids of a
+ * block are delta encoded and bit packed with the smallest width that fits the
+ * largest gap. Per block the last document id and the largest and smallest
+ * weight are kept uncompressed, so blocks can be skipped without decoding.
+ *
+ * The top-k documents are evaluated with block-max WAND: the cursors of the
+ * query terms are kept sorted by their current document, a pivot document is
+ * only scored if the sum of the global upper bounds and then the sum of the
+ * block upper bounds of the terms up to it can beat the current k-th best
+ * score. Otherwise the cursors jump past the pivot, most of the time to the
+ * end of a block. The result is the same as an exhaustive scoring, except that
+ * documents that share no dimension with the query are never returned.
+ *
+ * The index is immutable and can be searched concurrently. If the indexed
+ * vectors are {@link KeyedDoubleVector}s, their keys are returned in the
+ * {@link SearchResult}, otherwise the position in the input list is used.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class InvertedIndex {
+
+  static final int BLOCK_SIZE = 128;
+  private static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+  private final int numDocs;
+  private final int dimension;
+  private final int[] keys;
+
+  // the range of blocks for term t is [termBlocks[t], termBlocks[t + 1])
+  private final int[] termBlocks;
+  // the range of postings for term t is [termPostings[t], termPostings[t+1])
+  private final int[] termPostings;
+  private final double[] termMax;
+  private final double[] termMin;
+
+  private final int[] blockLastDoc;
+  private final int[] blockDataOffset;
+  private final byte[] blockBits;
+  private final double[] blockMax;
+  private final double[] blockMin;
+
+  private final long[] packedDocs;
+  private final double[] weights;
+
+  /**
+   * Builds a new index.
+   *
+   * @param vectors the documents, all must have the same dimension.
+   */
+  public InvertedIndex(List<? extends DoubleVector> vectors) {
+    this.numDocs = vectors.size();
+    this.dimension = numDocs == 0 ? 0 : vectors.get(0).getDimension();
+    this.keys = new int[numDocs];
+
+    // first pass, count the postings of every term
+    int[] counts = new int[dimension + 1];
+    for (int doc = 0; doc < numDocs; doc++) {
+      DoubleVector v = vectors.get(doc);
+      if (v.getDimension() != dimension) {
+        throw new IllegalArgumentException("Vector at row " + doc
+            + " has dimension " + v.getDimension() + ", expected " + dimension);
+      }
+      keys[doc] = v instanceof KeyedDoubleVector ? ((KeyedDoubleVector) v)
+          .getKey() : doc;
+      Iterator<DoubleVectorElement> it = v.iterateNonZero();
+      while (it.hasNext()) {
+        counts[it.next().getIndex() + 1]++;
+      }
+    }
+    this.termPostings = new int[dimension + 1];
+    this.termBlocks = new int[dimension + 1];
+    long postings = 0;
+    for (int t = 0; t < dimension; t++) {
+      postings += counts[t + 1];
+      if (postings > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Too many postings: " + postings);
+      }
+      termPostings[t + 1] = (int) postings;
+      termBlocks[t + 1] = termBlocks[t] + (counts[t + 1] + BLOCK_SIZE - 1)
+          / BLOCK_SIZE;
+    }
+
+    // second pass, fill the postings in document order
+    int[] docs = new int[(int) postings];
+    this.weights = new double[(int) postings];
+    int[] fill = new int[dimension];
+    System.arraycopy(termPostings, 0, fill, 0, dimension);
+    for (int doc = 0; doc < numDocs; doc++) {
+      Iterator<DoubleVectorElement> it = vectors.get(doc).iterateNonZero();
+      while (it.hasNext()) {
+        DoubleVectorElement next = it.next();
+        int pos = fill[next.getIndex()]++;
+        docs[pos] = doc;
+        weights[pos] = next.getValue();
+      }
+    }
+
+    // compress the document ids block by block
+    int numBlocks = termBlocks[dimension];
+    this.blockLastDoc = new int[numBlocks];
+    this.blockDataOffset = new int[numBlocks + 1];
+    this.blockBits = new byte[numBlocks];
+    this.blockMax = new double[numBlocks];
+    this.blockMin = new double[numBlocks];
+    this.termMax = new double[dimension];
+    this.termMin = new double[dimension];
+    long words = 0;
+    for (int t = 0; t < dimension; t++) {
+      termMax[t] = Double.NEGATIVE_INFINITY;
+      termMin[t] = Double.POSITIVE_INFINITY;
+      int previous = -1;
+      for (int block = termBlocks[t]; block < termBlocks[t + 1]; block++) {
+        int start = termPostings[t] + (block - termBlocks[t]) * BLOCK_SIZE;
+        int end = Math.min(start + BLOCK_SIZE, termPostings[t + 1]);
+        int maxGap = 0;
+        double max = Double.NEGATIVE_INFINITY;
+        double min = Double.POSITIVE_INFINITY;
+        for (int i = start; i < end; i++) {
+          maxGap = Math.max(maxGap, docs[i] - previous - 1);
+          previous = docs[i];
+          max = Math.max(max, weights[i]);
+          min = Math.min(min, weights[i]);
+        }
+        int bits = 32 - Integer.numberOfLeadingZeros(maxGap);
+        blockBits[block] = (byte) bits;
+        blockLastDoc[block] = previous;
+        blockMax[block] = max;
+        blockMin[block] = min;
+        termMax[t] = Math.max(termMax[t], max);
+        termMin[t] = Math.min(termMin[t], min);
+        blockDataOffset[block] = (int) words;
+        words += ((long) bits * (end - start) + 63) >>> 6;
+        if (words > Integer.MAX_VALUE) {
+          throw new IllegalArgumentException("Too many postings: " + postings);
+        }
+      }
+    }
+    blockDataOffset[numBlocks] = (int) words;
+    this.packedDocs = new long[(int) words];
+    for (int t = 0; t < dimension; t++) {
+      int previous = -1;
+      for (int block = termBlocks[t]; block < termBlocks[t + 1]; block++) {
+        int start = termPostings[t] + (block - termBlocks[t]) * BLOCK_SIZE;
+        int end = Math.min(start + BLOCK_SIZE, termPostings[t + 1]);
+        int bits = blockBits[block];
+        long bitOffset = (long) blockDataOffset[block] << 6;
+        for (int i = start; i < end; i++) {
+          write(packedDocs, bitOffset, bits, docs[i] - previous - 1);
+          bitOffset += bits;
+          previous = docs[i];
+        }
+      }
+    }
+  }
+
+  /**
+   * Searches the k documents with the highest dot product to the query.
+   *
+   * @param query the query vector, usually sparse.
+   * @param k the number of documents to return.
+   * @return the documents with their dot product, highest first. Can be less
+   *         than k if less documents share a dimension with the query.
+   */
+  public SearchResult search(DoubleVector query, int k) {
+    return search(query, k, null);
+  }
+
+  /**
+   * Searches all queries in parallel on the common fork join pool.
+   *
+   * @param queries the query vectors.
+   * @param k the number of documents to return per query.
+   * @return the results in the order of the queries.
+   */
+  public SearchResult[] search(List<? extends DoubleVector> queries, int k) {
+    SearchResult[] results = new SearchResult[queries.size()];
+    IntStream.range(0, results.length).parallel()
+        .forEach(i -> results[i] = search(queries.get(i), k));
+    return results;
+  }
+
+  /**
+   * @return the number of indexed documents.
+   */
+  public int size() {
+    return numDocs;
+  }
+
+  /**
+   * @return the dimension of the indexed documents.
+   */
+  public int getDimension() {
+    return dimension;
+  }
+
+  /**
+   * @return the total number of postings over all terms.
+   */
+  public int getNumPostings() {
+    return weights.length;
+  }
+
+  /**
+   * @return the number of bytes the compressed document ids occupy.
+   */
+  public long getCompressedDocIdBytes() {
+    return packedDocs.length * 8L;
+  }
+
+  /**
+   * Block-max WAND, counts the fully scored documents into scored[0] if given.
+   */
+  SearchResult search(DoubleVector query, int k, long[] scored) {
+    if (query.getDimension() != dimension) {
+      throw new IllegalArgumentException("Query has dimension "
+          + query.getDimension() + ", expected " + dimension);
+    }
+    TopKHeap heap = new TopKHeap(k);
+    Cursor[] cursors = cursors(query);
+    int n = cursors.length;
+    long scoredDocs = 0;
+    while (true) {
+      sortByDoc(cursors, n);
+      double threshold = heap.isFull() ? heap.peekScore()
+          : Double.NEGATIVE_INFINITY;
+      // find the pivot, the first document whose upper bound can make it
+      double upperBound = 0d;
+      int pivot = -1;
+      for (int i = 0; i < n; i++) {
+        if (cursors[i].doc == NO_MORE_DOCS) {
+          break;
+        }
+        upperBound += cursors[i].upperBound;
+        if (upperBound > threshold) {
+          pivot = i;
+          break;
+        }
+      }
+      if (pivot < 0) {
+        break;
+      }
+      int pivotDoc = cursors[pivot].doc;
+      // all cursors on the pivot document must be part of the check
+      while (pivot + 1 < n && cursors[pivot + 1].doc == pivotDoc) {
+        pivot++;
+      }
+      double blockBound = 0d;
+      for (int i = 0; i <= pivot; i++) {
+        blockBound += cursors[i].blockUpperBound(pivotDoc);
+      }
+      if (blockBound > threshold) {
+        if (cursors[0].doc == pivotDoc) {
+          double score = 0d;
+          for (int i = 0; i <= pivot; i++) {
+            score += cursors[i].queryWeight * cursors[i].weight();
+            cursors[i].next();
+          }
+          heap.offer(pivotDoc, score);
+          scoredDocs++;
+        } else {
+          // the pivot can still make it, move the lagging cursors onto it
+          for (int i = 0; i < pivot && cursors[i].doc < pivotDoc; i++) {
+            cursors[i].advance(pivotDoc);
+          }
+        }
+      } else {
+        // no document up to the end of the shortest block can make it
+        long target = pivot + 1 < n ? cursors[pivot + 1].doc : NO_MORE_DOCS;
+        for (int i = 0; i <= pivot; i++) {
+          target = Math.min(target, cursors[i].shallowBlockLastDoc() + 1L);
+        }
+        for (int i = 0; i <= pivot; i++) {
+          cursors[i].advance((int) Math.min(target, NO_MORE_DOCS));
+        }
+      }
+    }
+    if (scored != null) {
+      scored[0] += scoredDocs;
+    }
+    int size = heap.size();
+    int[] docs = new int[size];
+    double[] scores = new double[size];
+    heap.drain(docs, scores);
+    for (int i = 0; i < size; i++) {
+      docs[i] = keys[docs[i]];
+    }
+    return new SearchResult(docs, scores);
+  }
+
+  private Cursor[] cursors(DoubleVector query) {
+    int terms = 0;
+    Iterator<DoubleVectorElement> it = query.iterateNonZero();
+    while (it.hasNext()) {
+      int t = it.next().getIndex();
+      if (termPostings[t + 1] > termPostings[t]) {
+        terms++;
+      }
+    }
+    Cursor[] cursors = new Cursor[terms];
+    terms = 0;
+    it = query.iterateNonZero();
+    while (it.hasNext()) {
+      DoubleVectorElement next = it.next();
+      int t = next.getIndex();
+      if (termPostings[t + 1] > termPostings[t]) {
+        cursors[terms++] = new Cursor(t, next.getValue());
+      }
+    }
+    return cursors;
+  }
+
+  private static void sortByDoc(Cursor[] cursors, int n) {
+    // insertion sort, the cursors are almost sorted after every step
+    for (int i = 1; i < n; i++) {
+      Cursor c = cursors[i];
+      int j = i - 1;
+      while (j >= 0 && cursors[j].doc > c.doc) {
+        cursors[j + 1] = cursors[j];
+        j--;
+      }
+      cursors[j + 1] = c;
+    }
+  }
+
+  private static double upperBound(double queryWeight, double max, double min) {
+    // a document without the term contributes zero
+    return Math.max(0d, Math.max(queryWeight * max, queryWeight * min));
+  }
+
+  static void write(long[] data, long bitOffset, int bits, int value) {
+    if (bits == 0) {
+      return;
+    }
+    int word = (int) (bitOffset >>> 6);
+    int shift = (int) (bitOffset & 63);
+    data[word] |= ((long) value) << shift;
+    if (shift + bits > 64) {
+      data[word + 1] |= ((long) value) >>> (64 - shift);
+    }
+  }
+
+  static int read(long[] data, long bitOffset, int bits) {
+    if (bits == 0) {
+      return 0;
+    }
+    int word = (int) (bitOffset >>> 6);
+    int shift = (int) (bitOffset & 63);
+    long value = data[word] >>> shift;
+    if (shift + bits > 64) {
+      value |= data[word + 1] << (64 - shift);
+    }
+    return (int) (value & ((1L << bits) - 1));
+  }
+
+  /**
+   * Iterates over the posting list of a single query term. Only decodes the
+   * block it is positioned in.
+   */
+  private final class Cursor {
+
+    private final double queryWeight;
+    private final double upperBound;
+    private final int firstBlock;
+    private final int endBlock;
+    private final int postingStart;
+    private final int postingEnd;
+    private final int[] decoded = new int[BLOCK_SIZE];
+
+    private int block;
+    private int blockLength;
+    private int position;
+    private int shallowBlock;
+    private int doc;
+
+    Cursor(int term, double queryWeight) {
+      this.queryWeight = queryWeight;
+      this.upperBound = InvertedIndex.upperBound(queryWeight, termMax[term],
+          termMin[term]);
+      this.firstBlock = termBlocks[term];
+      this.endBlock = termBlocks[term + 1];
+      this.postingStart = termPostings[term];
+      this.postingEnd = termPostings[term + 1];
+      this.shallowBlock = firstBlock;
+      decode(firstBlock);
+    }
+
+    double weight() {
+      return weights[postingStart + (block - firstBlock) * BLOCK_SIZE
+          + position];
+    }
+
+    void next() {
+      if (++position < blockLength) {
+        doc = decoded[position];
+      } else if (block + 1 < endBlock) {
+        decode(block + 1);
+      } else {
+        doc = NO_MORE_DOCS;
+      }
+    }
+
+    /**
+     * Moves to the first document >= target, skipping whole blocks.
+     */
+    void advance(int target) {
+      if (doc >= target) {
+        return;
+      }
+      int b = block;
+      while (b < endBlock && blockLastDoc[b] < target) {
+        b++;
+      }
+      if (b == endBlock) {
+        doc = NO_MORE_DOCS;
+        block = endBlock - 1;
+        return;
+      }
+      if (b != block) {
+        decode(b);
+      }
+      while (decoded[position] < target) {
+        position++;
+      }
+      doc = decoded[position];
+    }
+
+    /**
+     * @return the upper bound of the block that would contain the target,
+     *         without decoding it. Zero if the list ends before the target.
+     */
+    double blockUpperBound(int target) {
+      if (shallowBlock < block) {
+        shallowBlock = block;
+      }
+      while (shallowBlock < endBlock && blockLastDoc[shallowBlock] < target) {
+        shallowBlock++;
+      }
+      if (shallowBlock == endBlock) {
+        return 0d;
+      }
+      return InvertedIndex.upperBound(queryWeight, blockMax[shallowBlock],
+          blockMin[shallowBlock]);
+    }
+
+    /**
+     * @return the last document of the block the last
+     *         {@link #blockUpperBound(int)} call ended in.
+     */
+    int shallowBlockLastDoc() {
+      return shallowBlock == endBlock ? NO_MORE_DOCS - 1
+          : blockLastDoc[shallowBlock];
+    }
+
+    private void decode(int b) {
+      block = b;
+      int start = postingStart + (b - firstBlock) * BLOCK_SIZE;
+      blockLength = Math.min(BLOCK_SIZE, postingEnd - start);
+      int bits = blockBits[b];
+      long bitOffset = (long) blockDataOffset[b] << 6;
+      int previous = b == firstBlock ? -1 : blockLastDoc[b - 1];
+      for (int i = 0; i < blockLength; i++) {
+        previous += read(packedDocs, bitOffset, bits) + 1;
+        decoded[i] = previous;
+        bitOffset += bits;
+      }
+      position = 0;
+      doc = decoded[0];
+    }
+  }
+
+}
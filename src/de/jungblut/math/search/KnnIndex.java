@@ -0,0 +1,450 @@
+package de.jungblut.math.search;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.named.KeyedDoubleVector;
+
+/**
+ * Exact (brute force) k-nearest-neighbour index. The vectors are copied into a
+ * contiguous block, either a row major dense array or a CSR (compressed sparse
+ * row) structure if any of the input vectors is sparse. A search scores every
+ * stored vector against the queries with a blocked matrix-vector product and
+ * selects the top-k with a primitive {@link TopKHeap}.
+ *
+ * The rows are split into fixed size chunks that are scored in parallel on a
+ * {@link ForkJoinPool}. As ties are broken by the row, the result does not
+ * depend on the thread scheduling.
+ *
+ * If the indexed vectors are {@link KeyedDoubleVector}s, their keys are
+ * returned in the {@link SearchResult}, otherwise the position in the input
+ * list is used as the key.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class KnnIndex {
+
+  // number of rows that are scored in a single parallel task
+  private static final int CHUNK_ROWS = 2048;
+  // number of rows that are kept hot in cache while all queries are scored
+  private static final int ROW_BLOCK = 64;
+
+  private final Metric metric;
+  private final ForkJoinPool pool;
+  private final int numRows;
+  private final int dimension;
+  private final int[] keys;
+
+  // row major dense storage, null if the index is sparse
+  private final double[] dense;
+  // CSR storage, null if the index is dense
+  private final int[] rowPointers;
+  private final int[] columns;
+  private final double[] values;
+
+  // inverse norms for cosine, squared norms for euclidean, null for dot
+  private final double[] norms;
+
+  /**
+   * Creates a new index on the common fork join pool.
+   *
+   * @param vectors the vectors to index, all must have the same dimension.
+   * @param metric the metric to rank the neighbours by.
+   */
+  public KnnIndex(List<? extends DoubleVector> vectors, Metric metric) {
+    this(vectors, metric, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Creates a new index.
+   *
+   * @param vectors the vectors to index, all must have the same dimension.
+   * @param metric the metric to rank the neighbours by.
+   * @param pool the pool to score the chunks of rows in.
+   */
+  public KnnIndex(List<? extends DoubleVector> vectors, Metric metric,
+      ForkJoinPool pool) {
+    this.metric = metric;
+    this.pool = pool;
+    this.numRows = vectors.size();
+    this.dimension = numRows == 0 ? 0 : vectors.get(0).getDimension();
+    this.keys = new int[numRows];
+
+    boolean sparse = false;
+    long nonZeros = 0;
+    for (int row = 0; row < numRows; row++) {
+      DoubleVector v = vectors.get(row);
+      if (v.getDimension() != dimension) {
+        throw new IllegalArgumentException("Vector at row " + row
+            + " has dimension " + v.getDimension() + ", expected " + dimension);
+      }
+      keys[row] = v instanceof KeyedDoubleVector ? ((KeyedDoubleVector) v)
+          .getKey() : row;
+      sparse |= v.isSparse();
+      nonZeros += v.getLength();
+    }
+
+    if (sparse) {
+      if (nonZeros > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Too many non-zero elements: "
+            + nonZeros);
+      }
+      this.dense = null;
+      this.rowPointers = new int[numRows + 1];
+      this.columns = new int[(int) nonZeros];
+      this.values = new double[(int) nonZeros];
+      int offset = 0;
+      for (int row = 0; row < numRows; row++) {
+        rowPointers[row] = offset;
+        Iterator<DoubleVectorElement> iterateNonZero = vectors.get(row)
+            .iterateNonZero();
+        while (iterateNonZero.hasNext()) {
+          DoubleVectorElement next = iterateNonZero.next();
+          columns[offset] = next.getIndex();
+          values[offset] = next.getValue();
+          offset++;
+        }
+        sortByIndex(columns, values, rowPointers[row], offset);
+      }
+      rowPointers[numRows] = offset;
+    } else {
+      this.rowPointers = null;
+      this.columns = null;
+      this.values = null;
+      if ((long) numRows * dimension > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Too many dense elements: "
+            + numRows + "x" + dimension);
+      }
+      this.dense = new double[numRows * dimension];
+      for (int row = 0; row < numRows; row++) {
+        double[] arr = vectors.get(row).toArray();
+        System.arraycopy(arr, 0, dense, row * dimension, dimension);
+      }
+    }
+
+    if (metric == Metric.DOT) {
+      this.norms = null;
+    } else {
+      this.norms = new double[numRows];
+      for (int row = 0; row < numRows; row++) {
+        double squaredNorm = squaredNorm(row);
+        norms[row] = metric == Metric.EUCLIDEAN ? squaredNorm
+            : inverse(Math.sqrt(squaredNorm));
+      }
+    }
+  }
+
+  /**
+   * Finds the k nearest neighbours of the given query.
+   *
+   * @param query the query, must match the dimension of the index.
+   * @param k the number of neighbours to return.
+   * @return the neighbours, most similar first.
+   */
+  public SearchResult search(DoubleVector query, int k) {
+    return search(Collections.singletonList(query), k)[0];
+  }
+
+  /**
+   * Finds the k nearest neighbours of every given query. All queries are
+   * scored in a single pass over the stored rows.
+   *
+   * @param queries the queries, must match the dimension of the index.
+   * @param k the number of neighbours to return per query.
+   * @return the neighbours for each query (in the same order as the queries),
+   *         most similar first.
+   */
+  public SearchResult[] search(List<? extends DoubleVector> queries, int k) {
+    if (k <= 0) {
+      throw new IllegalArgumentException("k must be > 0, but was " + k);
+    }
+    Query[] prepared = new Query[queries.size()];
+    for (int i = 0; i < prepared.length; i++) {
+      prepared[i] = new Query(queries.get(i));
+    }
+
+    SearchResult[] results = new SearchResult[prepared.length];
+    int kx = Math.min(k, numRows);
+    if (kx == 0 || prepared.length == 0) {
+      for (int i = 0; i < results.length; i++) {
+        results[i] = new SearchResult(new int[0], new double[0]);
+      }
+      return results;
+    }
+
+    int numChunks = (numRows + CHUNK_ROWS - 1) / CHUNK_ROWS;
+    TopKHeap[] heaps = pool.invoke(new ScoreTask(prepared, kx, 0, numChunks));
+    for (int q = 0; q < prepared.length; q++) {
+      int[] rows = new int[heaps[q].size()];
+      double[] scores = new double[rows.length];
+      heaps[q].drain(rows, scores);
+      int[] resultKeys = new int[rows.length];
+      for (int i = 0; i < rows.length; i++) {
+        resultKeys[i] = keys[rows[i]];
+        if (metric == Metric.EUCLIDEAN) {
+          scores[i] = Math.sqrt(Math.max(0d, -scores[i]));
+        }
+      }
+      results[q] = new SearchResult(resultKeys, scores);
+    }
+    return results;
+  }
+
+  /**
+   * @return the number of indexed vectors.
+   */
+  public int size() {
+    return numRows;
+  }
+
+  /**
+   * @return the dimension of the indexed vectors.
+   */
+  public int getDimension() {
+    return dimension;
+  }
+
+  /**
+   * @return the metric this index ranks by.
+   */
+  public Metric getMetric() {
+    return metric;
+  }
+
+  /**
+   * @return true if the vectors are stored in a CSR structure.
+   */
+  public boolean isSparse() {
+    return dense == null;
+  }
+
+  /**
+   * Scores the rows of the given chunk against all queries.
+   */
+  private TopKHeap[] scoreChunk(Query[] queries, int k, int chunk) {
+    TopKHeap[] heaps = new TopKHeap[queries.length];
+    for (int q = 0; q < heaps.length; q++) {
+      heaps[q] = new TopKHeap(k);
+    }
+    int start = chunk * CHUNK_ROWS;
+    int end = Math.min(numRows, start + CHUNK_ROWS);
+    for (int blockStart = start; blockStart < end; blockStart += ROW_BLOCK) {
+      int blockEnd = Math.min(end, blockStart + ROW_BLOCK);
+      for (int q = 0; q < queries.length; q++) {
+        Query query = queries[q];
+        TopKHeap heap = heaps[q];
+        for (int row = blockStart; row < blockEnd; row++) {
+          heap.offer(row, score(row, query));
+        }
+      }
+    }
+    return heaps;
+  }
+
+  private double score(int row, Query query) {
+    double dot = dot(row, query);
+    switch (metric) {
+      case COSINE:
+        return dot * norms[row] * query.norm;
+      case EUCLIDEAN:
+        // negated, so the smallest distance has the highest score
+        return -(norms[row] - 2d * dot + query.norm);
+      default:
+        return dot;
+    }
+  }
+
+  private double dot(int row, Query query) {
+    double sum = 0d;
+    if (dense != null) {
+      final int offset = row * dimension;
+      if (query.dense != null) {
+        final double[] q = query.dense;
+        for (int i = 0; i < dimension; i++) {
+          sum += dense[offset + i] * q[i];
+        }
+      } else {
+        final int[] idx = query.indices;
+        final double[] val = query.values;
+        for (int i = 0; i < idx.length; i++) {
+          sum += dense[offset + idx[i]] * val[i];
+        }
+      }
+    } else {
+      final int start = rowPointers[row];
+      final int end = rowPointers[row + 1];
+      if (query.dense != null) {
+        final double[] q = query.dense;
+        for (int i = start; i < end; i++) {
+          sum += values[i] * q[columns[i]];
+        }
+      } else {
+        // merge join of both sorted index lists
+        final int[] idx = query.indices;
+        final double[] val = query.values;
+        int i = start;
+        int j = 0;
+        while (i < end && j < idx.length) {
+          int left = columns[i];
+          int right = idx[j];
+          if (left == right) {
+            sum += values[i++] * val[j++];
+          } else if (left < right) {
+            i++;
+          } else {
+            j++;
+          }
+        }
+      }
+    }
+    return sum;
+  }
+
+  private double squaredNorm(int row) {
+    double sum = 0d;
+    if (dense != null) {
+      final int offset = row * dimension;
+      for (int i = 0; i < dimension; i++) {
+        sum += dense[offset + i] * dense[offset + i];
+      }
+    } else {
+      for (int i = rowPointers[row]; i < rowPointers[row + 1]; i++) {
+        sum += values[i] * values[i];
+      }
+    }
+    return sum;
+  }
+
+  private static double inverse(double norm) {
+    return norm == 0d ? 0d : 1d / norm;
+  }
+
+  /**
+   * Sorts the given parallel arrays in the range [from, to) by the indices
+   * with a heap sort, so it neither allocates nor boxes.
+   */
+  static void sortByIndex(int[] indices, double[] values, int from, int to) {
+    int n = to - from;
+    for (int i = n / 2 - 1; i >= 0; i--) {
+      siftDown(indices, values, from, i, n);
+    }
+    for (int end = n - 1; end > 0; end--) {
+      swap(indices, values, from, from + end);
+      siftDown(indices, values, from, 0, end);
+    }
+  }
+
+  private static void siftDown(int[] indices, double[] values, int from,
+      int index, int n) {
+    while (2 * index + 1 < n) {
+      int child = 2 * index + 1;
+      if (child + 1 < n && indices[from + child + 1] > indices[from + child]) {
+        child++;
+      }
+      if (indices[from + index] >= indices[from + child]) {
+        return;
+      }
+      swap(indices, values, from + index, from + child);
+      index = child;
+    }
+  }
+
+  private static void swap(int[] indices, double[] values, int i, int j) {
+    int tmpIndex = indices[i];
+    indices[i] = indices[j];
+    indices[j] = tmpIndex;
+    double tmpValue = values[i];
+    values[i] = values[j];
+    values[j] = tmpValue;
+  }
+
+  /**
+   * A query in the representation that fits the storage: dense queries are
+   * scored from their array, sparse queries from their sorted non-zeros.
+   */
+  private final class Query {
+
+    private final double[] dense;
+    private final int[] indices;
+    private final double[] values;
+    // inverse norm for cosine, squared norm for euclidean
+    private final double norm;
+
+    Query(DoubleVector v) {
+      if (v.getDimension() != dimension) {
+        throw new IllegalArgumentException("Query has dimension "
+            + v.getDimension() + ", expected " + dimension);
+      }
+      double squaredNorm = 0d;
+      if (v.isSparse()) {
+        this.dense = null;
+        int length = v.getLength();
+        this.indices = new int[length];
+        this.values = new double[length];
+        int offset = 0;
+        Iterator<DoubleVectorElement> iterateNonZero = v.iterateNonZero();
+        while (iterateNonZero.hasNext()) {
+          DoubleVectorElement next = iterateNonZero.next();
+          indices[offset] = next.getIndex();
+          values[offset++] = next.getValue();
+          squaredNorm += next.getValue() * next.getValue();
+        }
+        sortByIndex(indices, values, 0, offset);
+      } else {
+        this.dense = v.toArray();
+        this.indices = null;
+        this.values = null;
+        for (double d : dense) {
+          squaredNorm += d * d;
+        }
+      }
+      this.norm = metric == Metric.EUCLIDEAN ? squaredNorm : inverse(Math
+          .sqrt(squaredNorm));
+    }
+  }
+
+  /**
+   * Scores a range of chunks, splitting it in halves until a single chunk is
+   * left.
+   */
+  private final class ScoreTask extends RecursiveTask<TopKHeap[]> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Query[] queries;
+    private final int k;
+    private final int startChunk;
+    private final int endChunk;
+
+    ScoreTask(Query[] queries, int k, int startChunk, int endChunk) {
+      this.queries = queries;
+      this.k = k;
+      this.startChunk = startChunk;
+      this.endChunk = endChunk;
+    }
+
+    @Override
+    protected TopKHeap[] compute() {
+      if (endChunk - startChunk == 1) {
+        return scoreChunk(queries, k, startChunk);
+      }
+      int mid = (startChunk + endChunk) >>> 1;
+      ScoreTask left = new ScoreTask(queries, k, startChunk, mid);
+      ScoreTask right = new ScoreTask(queries, k, mid, endChunk);
+      left.fork();
+      TopKHeap[] rightResult = right.compute();
+      TopKHeap[] leftResult = left.join();
+      for (int q = 0; q < leftResult.length; q++) {
+        leftResult[q].merge(rightResult[q]);
+      }
+      return leftResult;
+    }
+  }
+
+}
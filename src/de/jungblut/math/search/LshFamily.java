@@ -0,0 +1,37 @@
+package de.jungblut.math.search;
+
+import de.jungblut.math.DoubleVector;
+
+/**
+ * A family of locality-sensitive hash functions. Each function maps a vector
+ * to a single int; two vectors agree on a function with a probability that
+ * grows with their similarity. The {@link LshIndex} groups the functions into
+ * bands to find candidate neighbours.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public interface LshFamily {
+
+  /**
+   * @return the number of hash functions in this family, which is the length
+   *         of a signature.
+   */
+  public int getSignatureLength();
+
+  /**
+   * Computes the signature of the given vector.
+   *
+   * @param vector the vector to hash.
+   * @param signature the output, must be of length
+   *          {@link #getSignatureLength()}.
+   */
+  public void signature(DoubleVector vector, int[] signature);
+
+  /**
+   * @return the exact similarity the family approximates, higher is more
+   *         similar. Used to rank the candidates.
+   */
+  public double similarity(DoubleVector a, DoubleVector b);
+
+}
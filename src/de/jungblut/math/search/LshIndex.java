@@ -0,0 +1,263 @@
+package de.jungblut.math.search;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TIntHashSet;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.named.KeyedDoubleVector;
+
+/**
+ * Approximate nearest neighbour index based on locality-sensitive hashing. The
+ * signature of a vector ({@link MinHash} for Jaccard, {@link SimHash} for
+ * cosine) is split into bands of equal length, every band is hashed into a
+ * bucket of its own table. Two vectors become candidates of each other if they
+ * share the bucket in at least one band, which for a similarity s happens with
+ * the probability 1 - (1 - s^rows)^bands. Candidate generation only looks at
+ * the buckets of the query, the candidates are then ranked by the exact
+ * similarity of the family.
+ *
+ * The bucket tables are primitive trove maps from the 64 bit band hash to the
+ * list of keys. Bulk indexing computes the signatures in parallel and then
+ * fills each band table in its own task. The index is safe to use
+ * concurrently, every table is guarded by its own monitor.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class LshIndex {
+
+  private final LshFamily family;
+  private final ForkJoinPool pool;
+  private final int bands;
+  private final int rows;
+  private final TLongObjectHashMap<TIntArrayList>[] tables;
+  private final TIntObjectHashMap<DoubleVector> vectors;
+
+  /**
+   * Creates a new index that bulk indexes on the common fork join pool.
+   *
+   * @param family the hash family to compute the signatures with.
+   * @param bands the number of bands, must divide the signature length.
+   */
+  public LshIndex(LshFamily family, int bands) {
+    this(family, bands, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Creates a new index.
+   *
+   * @param family the hash family to compute the signatures with.
+   * @param bands the number of bands, must divide the signature length.
+   * @param pool the pool to bulk index in.
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public LshIndex(LshFamily family, int bands, ForkJoinPool pool) {
+    int length = family.getSignatureLength();
+    if (bands <= 0 || length % bands != 0) {
+      throw new IllegalArgumentException("Signature length " + length
+          + " can't be split into " + bands + " bands!");
+    }
+    this.family = family;
+    this.pool = pool;
+    this.bands = bands;
+    this.rows = length / bands;
+    this.vectors = new TIntObjectHashMap<>();
+    this.tables = new TLongObjectHashMap[bands];
+    for (int i = 0; i < bands; i++) {
+      tables[i] = new TLongObjectHashMap<>();
+    }
+  }
+
+  /**
+   * Adds the given keyed vector to the index.
+   */
+  public void add(KeyedDoubleVector vector) {
+    add(vector.getKey(), vector.getVector());
+  }
+
+  /**
+   * Adds the given vector to the index.
+   *
+   * @param key the key that is returned when the vector is found.
+   * @param vector the vector.
+   * @throws IllegalArgumentException if the key is already in the index.
+   */
+  public void add(int key, DoubleVector vector) {
+    DoubleVector unwrapped = unwrap(vector);
+    long[] bandKeys = new long[bands];
+    hashBands(unwrapped, new int[family.getSignatureLength()], bandKeys, 0);
+    register(new int[] { key }, new DoubleVector[] { unwrapped });
+    for (int band = 0; band < bands; band++) {
+      TLongObjectHashMap<TIntArrayList> table = tables[band];
+      synchronized (table) {
+        insert(table, bandKeys[band], key);
+      }
+    }
+  }
+
+  /**
+   * Adds all vectors in parallel. If the vectors are
+   * {@link KeyedDoubleVector}s their keys are used, otherwise the position in
+   * the list.
+   *
+   * @throws IllegalArgumentException if a key is already in the index.
+   */
+  public void addAll(List<? extends DoubleVector> list) {
+    final int n = list.size();
+    final int[] keys = new int[n];
+    final DoubleVector[] unwrapped = new DoubleVector[n];
+    for (int i = 0; i < n; i++) {
+      DoubleVector v = list.get(i);
+      keys[i] = v instanceof KeyedDoubleVector ? ((KeyedDoubleVector) v)
+          .getKey() : i;
+      unwrapped[i] = unwrap(v);
+    }
+    register(keys, unwrapped);
+    final long[] bandKeys = new long[n * bands];
+    final int length = family.getSignatureLength();
+    pool.submit(
+        () -> IntStream.range(0, n).parallel()
+            .forEach(i -> hashBands(unwrapped[i], new int[length], bandKeys,
+                i * bands))).join();
+    pool.submit(() -> IntStream.range(0, bands).parallel().forEach(band -> {
+      TLongObjectHashMap<TIntArrayList> table = tables[band];
+      synchronized (table) {
+        for (int i = 0; i < n; i++) {
+          insert(table, bandKeys[i * bands + band], keys[i]);
+        }
+      }
+    })).join();
+  }
+
+  /**
+   * @return the keys of all vectors that share at least one band bucket with
+   *         the query, in no particular order.
+   */
+  public int[] candidates(DoubleVector query) {
+    return collectCandidates(query).toArray();
+  }
+
+  /**
+   * Searches the approximate k nearest neighbours of the given query by
+   * ranking the candidates with the exact similarity of the family.
+   *
+   * @param query the query vector.
+   * @param k the number of neighbours to return.
+   * @return the neighbours, most similar first. Can be less than k if there
+   *         are not enough candidates.
+   */
+  public SearchResult search(DoubleVector query, int k) {
+    TIntHashSet candidates = collectCandidates(query);
+    TopKHeap heap = new TopKHeap(k);
+    DoubleVector q = unwrap(query);
+    candidates.forEach(key -> {
+      DoubleVector v;
+      synchronized (vectors) {
+        v = vectors.get(key);
+      }
+      heap.offer(key, family.similarity(q, v));
+      return true;
+    });
+    int[] keys = new int[heap.size()];
+    double[] scores = new double[heap.size()];
+    heap.drain(keys, scores);
+    return new SearchResult(keys, scores);
+  }
+
+  /**
+   * @return the probability that a vector with the given similarity to the
+   *         query becomes a candidate.
+   */
+  public double candidateProbability(double similarity) {
+    return 1d - Math.pow(1d - Math.pow(similarity, rows), bands);
+  }
+
+  /**
+   * @return the number of indexed vectors.
+   */
+  public int size() {
+    synchronized (vectors) {
+      return vectors.size();
+    }
+  }
+
+  /**
+   * @return the number of bands.
+   */
+  public int getBands() {
+    return bands;
+  }
+
+  /**
+   * @return the number of signature entries per band.
+   */
+  public int getRows() {
+    return rows;
+  }
+
+  private TIntHashSet collectCandidates(DoubleVector query) {
+    long[] bandKeys = new long[bands];
+    hashBands(query, new int[family.getSignatureLength()], bandKeys, 0);
+    TIntHashSet candidates = new TIntHashSet();
+    for (int band = 0; band < bands; band++) {
+      TLongObjectHashMap<TIntArrayList> table = tables[band];
+      synchronized (table) {
+        TIntArrayList bucket = table.get(bandKeys[band]);
+        if (bucket != null) {
+          candidates.addAll(bucket);
+        }
+      }
+    }
+    return candidates;
+  }
+
+  private void register(int[] keys, DoubleVector[] list) {
+    synchronized (vectors) {
+      TIntHashSet seen = new TIntHashSet(keys.length);
+      for (int key : keys) {
+        if (vectors.containsKey(key) || !seen.add(key)) {
+          throw new IllegalArgumentException("Key " + key
+              + " is already in the index!");
+        }
+      }
+      for (int i = 0; i < keys.length; i++) {
+        vectors.put(keys[i], list[i]);
+      }
+    }
+  }
+
+  private void hashBands(DoubleVector vector, int[] signature, long[] out,
+      int offset) {
+    family.signature(unwrap(vector), signature);
+    for (int band = 0; band < bands; band++) {
+      long h = (band + 1L) * 0xc2b2ae3d27d4eb4fL;
+      int start = band * rows;
+      for (int r = 0; r < rows; r++) {
+        h = (h ^ signature[start + r]) * 0x9E3779B97F4A7C15L;
+      }
+      out[offset + band] = MinHash.mix(h);
+    }
+  }
+
+  private static DoubleVector unwrap(DoubleVector vector) {
+    return vector instanceof KeyedDoubleVector ? ((KeyedDoubleVector) vector)
+        .getVector() : vector;
+  }
+
+  private static void insert(TLongObjectHashMap<TIntArrayList> table,
+      long bandKey, int key) {
+    TIntArrayList bucket = table.get(bandKey);
+    if (bucket == null) {
+      bucket = new TIntArrayList(2);
+      table.put(bandKey, bucket);
+    }
+    bucket.add(key);
+  }
+
+}
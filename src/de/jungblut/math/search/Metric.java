@@ -0,0 +1,32 @@
+package de.jungblut.math.search;
+
+/**
+ * The metrics a nearest neighbour search can rank by.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public enum Metric {
+
+  /**
+   * Plain dot product, higher is more similar.
+   */
+  DOT,
+  /**
+   * Cosine similarity, higher is more similar. Vectors with a zero norm have a
+   * similarity of zero to everything.
+   */
+  COSINE,
+  /**
+   * Euclidean distance, lower is more similar.
+   */
+  EUCLIDEAN;
+
+  /**
+   * @return true if a higher score means more similar.
+   */
+  public boolean isSimilarity() {
+    return this != EUCLIDEAN;
+  }
+
+}
@@ -0,0 +1,87 @@
+package de.jungblut.math.search;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.distance.Distances;
+
+/**
+ * MinHash family for the Jaccard similarity. A vector is treated as the set of
+ * its non-zero indices (e.g. a {@link de.jungblut.math.sparse.SparseBitVector}
+ * ), the probability that two sets share the minimum of a random permutation
+ * equals their Jaccard similarity. The permutations are simulated by seeded
+ * 64 bit mixing functions, so nothing depends on the dimension.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class MinHash implements LshFamily {
+
+  private final long[] seeds;
+
+  /**
+   * Creates a new MinHash family.
+   *
+   * @param numHashes the number of hash functions.
+   * @param seed the seed for the hash functions, indices that should be
+   *          compared must use the same seed.
+   */
+  public MinHash(int numHashes, long seed) {
+    if (numHashes <= 0) {
+      throw new IllegalArgumentException("numHashes must be > 0, but was "
+          + numHashes);
+    }
+    Random rnd = new Random(seed);
+    this.seeds = new long[numHashes];
+    for (int i = 0; i < numHashes; i++) {
+      seeds[i] = rnd.nextLong();
+    }
+  }
+
+  @Override
+  public int getSignatureLength() {
+    return seeds.length;
+  }
+
+  @Override
+  public void signature(DoubleVector vector, int[] signature) {
+    final int n = seeds.length;
+    for (int i = 0; i < n; i++) {
+      signature[i] = Integer.MAX_VALUE;
+    }
+    Iterator<DoubleVectorElement> it = vector.iterateNonZero();
+    while (it.hasNext()) {
+      long x = (it.next().getIndex() + 1L) * 0x9E3779B97F4A7C15L;
+      for (int i = 0; i < n; i++) {
+        int h = (int) (mix(x ^ seeds[i]) >>> 33);
+        if (h < signature[i]) {
+          signature[i] = h;
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the Jaccard similarity of the non-zero indices of both vectors.
+   *         Two empty vectors have a similarity of zero.
+   */
+  @Override
+  public double similarity(DoubleVector a, DoubleVector b) {
+    return Distances.jaccardSimilarity(a, b);
+  }
+
+  /**
+   * Finalizer of the 64 bit murmur3 hash.
+   */
+  static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+}
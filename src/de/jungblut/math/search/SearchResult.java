@@ -0,0 +1,90 @@
+package de.jungblut.math.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.jungblut.math.tuple.Tuple;
+
+/**
+ * The neighbours of a single query, ordered from the most to the least similar
+ * one. Backed by two parallel primitive arrays.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class SearchResult {
+
+  private final int[] keys;
+  private final double[] scores;
+
+  /**
+   * Creates a new result, does not copy the given arrays.
+   *
+   * @param keys the keys of the neighbours, most similar first.
+   * @param scores the scores of the neighbours (similarities or distances
+   *          depending on the metric).
+   */
+  public SearchResult(int[] keys, double[] scores) {
+    this.keys = keys;
+    this.scores = scores;
+  }
+
+  /**
+   * @return the number of neighbours found.
+   */
+  public int size() {
+    return keys.length;
+  }
+
+  /**
+   * @return the key of the neighbour at the given rank.
+   */
+  public int getKey(int rank) {
+    return keys[rank];
+  }
+
+  /**
+   * @return the score of the neighbour at the given rank.
+   */
+  public double getScore(int rank) {
+    return scores[rank];
+  }
+
+  /**
+   * @return the keys, no defensive copy is made.
+   */
+  public int[] getKeys() {
+    return keys;
+  }
+
+  /**
+   * @return the scores, no defensive copy is made.
+   */
+  public double[] getScores() {
+    return scores;
+  }
+
+  /**
+   * @return the result as a list of (key, score) tuples.
+   */
+  public List<Tuple<Integer, Double>> toList() {
+    List<Tuple<Integer, Double>> list = new ArrayList<>(keys.length);
+    for (int i = 0; i < keys.length; i++) {
+      list.add(new Tuple<>(keys[i], scores[i]));
+    }
+    return list;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("[");
+    for (int i = 0; i < keys.length; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(keys[i]).append('=').append(scores[i]);
+    }
+    return sb.append(']').toString();
+  }
+
+}
@@ -0,0 +1,90 @@
+package de.jungblut.math.search;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.distance.Distances;
+
+/**
+ * Random hyperplane (SimHash) family for the cosine similarity. Every hash
+ * function is the sign of the projection onto a random +1/-1 hyperplane; two
+ * vectors with an angle theta disagree on a bit with the probability
+ * theta/pi. The hyperplanes are never materialized, their entries are derived
+ * from a seeded mix of the index, so a single 64 bit hash per non-zero element
+ * yields the signs of 64 hyperplanes. Hashing a vector is therefore linear in
+ * its number of non-zeros and independent of its dimension.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class SimHash implements LshFamily {
+
+  private final int numBits;
+  private final long[] seeds;
+
+  /**
+   * Creates a new SimHash family.
+   *
+   * @param numBits the number of hyperplanes.
+   * @param seed the seed for the hyperplanes, indices that should be compared
+   *          must use the same seed.
+   */
+  public SimHash(int numBits, long seed) {
+    if (numBits <= 0) {
+      throw new IllegalArgumentException("numBits must be > 0, but was "
+          + numBits);
+    }
+    this.numBits = numBits;
+    Random rnd = new Random(seed);
+    this.seeds = new long[(numBits + 63) >>> 6];
+    for (int i = 0; i < seeds.length; i++) {
+      seeds[i] = rnd.nextLong();
+    }
+  }
+
+  @Override
+  public int getSignatureLength() {
+    return numBits;
+  }
+
+  /**
+   * Computes the signature, each entry is either 0 or 1.
+   */
+  @Override
+  public void signature(DoubleVector vector, int[] signature) {
+    double[] projections = new double[numBits];
+    Iterator<DoubleVectorElement> it = vector.iterateNonZero();
+    while (it.hasNext()) {
+      DoubleVectorElement next = it.next();
+      double value = next.getValue();
+      long x = (next.getIndex() + 1L) * 0x9E3779B97F4A7C15L;
+      for (int word = 0; word < seeds.length; word++) {
+        long signs = MinHash.mix(x ^ seeds[word]);
+        int offset = word << 6;
+        int bits = Math.min(64, numBits - offset);
+        for (int b = 0; b < bits; b++) {
+          if ((signs & (1L << b)) != 0) {
+            projections[offset + b] += value;
+          } else {
+            projections[offset + b] -= value;
+          }
+        }
+      }
+    }
+    for (int i = 0; i < numBits; i++) {
+      signature[i] = projections[i] > 0d ? 1 : 0;
+    }
+  }
+
+  /**
+   * @return the cosine similarity of both vectors, zero if any of them has a
+   *         zero norm.
+   */
+  @Override
+  public double similarity(DoubleVector a, DoubleVector b) {
+    return Distances.cosineSimilarity(a, b);
+  }
+
+}
@@ -0,0 +1,173 @@
+package de.jungblut.math.search;
+
+/**
+ * Bounded heap on primitive arrays that keeps the k best (highest scoring)
+ * ids. The worst of the kept elements sits at the root, so an offer for a
+ * candidate that doesn't make it into the top-k is a single comparison. Ties in
+ * the score are broken by the smaller id, which makes the selection
+ * independent of the order in which the candidates are offered.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class TopKHeap {
+
+  private final int[] ids;
+  private final double[] scores;
+  private int size;
+
+  /**
+   * Creates a new heap that keeps at most k elements.
+   *
+   * @param k the number of elements to keep, must be > 0.
+   */
+  public TopKHeap(int k) {
+    if (k <= 0) {
+      throw new IllegalArgumentException("k must be > 0, but was " + k);
+    }
+    this.ids = new int[k];
+    this.scores = new double[k];
+  }
+
+  /**
+   * Offers a new candidate to this heap.
+   *
+   * @param id the id of the candidate.
+   * @param score the score of the candidate, higher is better.
+   * @return true if the candidate was kept.
+   */
+  public boolean offer(int id, double score) {
+    if (size < ids.length) {
+      ids[size] = id;
+      scores[size] = score;
+      siftUp(size++);
+      return true;
+    }
+    if (worse(id, score, ids[0], scores[0])) {
+      return false;
+    }
+    ids[0] = id;
+    scores[0] = score;
+    siftDown(0);
+    return true;
+  }
+
+  /**
+   * Offers all elements of the given heap to this heap.
+   */
+  public void merge(TopKHeap other) {
+    for (int i = 0; i < other.size; i++) {
+      offer(other.ids[i], other.scores[i]);
+    }
+  }
+
+  /**
+   * @return the number of elements in this heap.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the maximum number of elements in this heap.
+   */
+  public int capacity() {
+    return ids.length;
+  }
+
+  /**
+   * @return true if the heap has reached its capacity.
+   */
+  public boolean isFull() {
+    return size == ids.length;
+  }
+
+  /**
+   * @return the score of the worst element that is kept, only valid if the
+   *         heap is not empty.
+   */
+  public double peekScore() {
+    return scores[0];
+  }
+
+  /**
+   * @return the id of the worst element that is kept, only valid if the heap
+   *         is not empty.
+   */
+  public int peekId() {
+    return ids[0];
+  }
+
+  /**
+   * Removes all elements.
+   */
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * Empties the heap into the given arrays, sorted best first.
+   *
+   * @param idsOut the ids, must be at least as large as {@link #size()}.
+   * @param scoresOut the scores, must be at least as large as {@link #size()}.
+   * @return the number of elements that were written.
+   */
+  public int drain(int[] idsOut, double[] scoresOut) {
+    int n = size;
+    for (int i = n - 1; i >= 0; i--) {
+      idsOut[i] = ids[0];
+      scoresOut[i] = scores[0];
+      size--;
+      if (size > 0) {
+        ids[0] = ids[size];
+        scores[0] = scores[size];
+        siftDown(0);
+      }
+    }
+    return n;
+  }
+
+  private void siftUp(int index) {
+    int id = ids[index];
+    double score = scores[index];
+    while (index > 0) {
+      int parent = (index - 1) >>> 1;
+      if (!worse(id, score, ids[parent], scores[parent])) {
+        break;
+      }
+      ids[index] = ids[parent];
+      scores[index] = scores[parent];
+      index = parent;
+    }
+    ids[index] = id;
+    scores[index] = score;
+  }
+
+  private void siftDown(int index) {
+    int id = ids[index];
+    double score = scores[index];
+    int half = size >>> 1;
+    while (index < half) {
+      int child = 2 * index + 1;
+      int right = child + 1;
+      if (right < size
+          && worse(ids[right], scores[right], ids[child], scores[child])) {
+        child = right;
+      }
+      if (!worse(ids[child], scores[child], id, score)) {
+        break;
+      }
+      ids[index] = ids[child];
+      scores[index] = scores[child];
+      index = child;
+    }
+    ids[index] = id;
+    scores[index] = score;
+  }
+
+  private static boolean worse(int id, double score, int otherId,
+      double otherScore) {
+    return score < otherScore || (score == otherScore && id > otherId);
+  }
+
+}
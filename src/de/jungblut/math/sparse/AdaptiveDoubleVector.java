@@ -0,0 +1,587 @@
+package de.jungblut.math.sparse;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.apache.commons.math3.util.FastMath;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.function.DoubleDoubleVectorFunction;
+import de.jungblut.math.function.DoubleVectorFunction;
+
+/**
+ * Vector that switches its storage with its fill ratio (the number of
+ * non-zeros divided by the dimension). A new vector starts as a sorted array of
+ * indices and values, which is compact and cheap to append to in increasing
+ * index order. It becomes a hash map once elements are inserted in random
+ * order and becomes dense when the fill ratio reaches the dense ratio. A dense
+ * vector only becomes sparse again below the (lower) sparse ratio, so a vector
+ * that hovers around a threshold doesn't convert on every write.
+ *
+ * Operations that turn zeros into non-zeros (like adding a scalar) are computed
+ * on dense storage instead of filling a hash map, operations that keep zeros
+ * only visit the non-zeros. Every result is an adaptive vector again that
+ * picks its storage by its own fill ratio.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class AdaptiveDoubleVector implements DoubleVector {
+
+  /**
+   * The storage of an adaptive vector.
+   */
+  public static enum Representation {
+    /** non-zeros in a hash map, for random writes. */
+    HASH,
+    /** non-zeros in arrays sorted by index, for appends and iteration. */
+    SORTED,
+    /** all elements in an array. */
+    DENSE
+  }
+
+  /**
+   * The default fill ratio at which a sparse vector becomes dense.
+   */
+  public static final double DEFAULT_DENSE_RATIO = 0.3;
+  /**
+   * The default fill ratio below which a dense vector becomes sparse.
+   */
+  public static final double DEFAULT_SPARSE_RATIO = 0.1;
+
+  // sorted vectors with more non-zeros switch to a hash map on random inserts
+  private static final int SORTED_INSERT_LIMIT = 64;
+
+  private final int dimension;
+  private final double denseRatio;
+  private final double sparseRatio;
+
+  private DoubleVector vector;
+  private Representation representation;
+  // only tracked for the dense representation
+  private int nonZeros;
+
+  /**
+   * Creates a new empty vector with the default ratios.
+   *
+   * @param dimension the dimension of the vector.
+   */
+  public AdaptiveDoubleVector(int dimension) {
+    this(dimension, DEFAULT_DENSE_RATIO, DEFAULT_SPARSE_RATIO);
+  }
+
+  /**
+   * Creates a new empty vector.
+   *
+   * @param dimension the dimension of the vector.
+   * @param denseRatio the fill ratio at which a sparse vector becomes dense.
+   * @param sparseRatio the fill ratio below which a dense vector becomes
+   *          sparse, must be less than the dense ratio.
+   */
+  public AdaptiveDoubleVector(int dimension, double denseRatio,
+      double sparseRatio) {
+    this(dimension, denseRatio, sparseRatio, new SequentialSparseDoubleVector(
+        dimension));
+  }
+
+  /**
+   * Creates a new vector with the values of the given vector and the default
+   * ratios.
+   */
+  public AdaptiveDoubleVector(DoubleVector v) {
+    this(v, DEFAULT_DENSE_RATIO, DEFAULT_SPARSE_RATIO);
+  }
+
+  /**
+   * Creates a new vector with the values of the given vector.
+   *
+   * @param v the vector to copy.
+   * @param denseRatio the fill ratio at which a sparse vector becomes dense.
+   * @param sparseRatio the fill ratio below which a dense vector becomes
+   *          sparse, must be less than the dense ratio.
+   */
+  public AdaptiveDoubleVector(DoubleVector v, double denseRatio,
+      double sparseRatio) {
+    this(v.getDimension(), denseRatio, sparseRatio, copy(v));
+  }
+
+  // takes ownership of the given vector
+  private AdaptiveDoubleVector(int dimension, double denseRatio,
+      double sparseRatio, DoubleVector vector) {
+    if (!(sparseRatio >= 0d && sparseRatio < denseRatio && denseRatio <= 1d)) {
+      throw new IllegalArgumentException(
+          "Ratios must satisfy 0 <= sparse ratio < dense ratio <= 1, but were "
+              + sparseRatio + " and " + denseRatio);
+    }
+    this.dimension = dimension;
+    this.denseRatio = denseRatio;
+    this.sparseRatio = sparseRatio;
+    adopt(vector);
+  }
+
+  /**
+   * @return the current storage of this vector.
+   */
+  public Representation getRepresentation() {
+    return representation;
+  }
+
+  /**
+   * @return the number of non-zeros divided by the dimension.
+   */
+  public double getFillRatio() {
+    return dimension == 0 ? 0d : (double) getNonZeros() / dimension;
+  }
+
+  /**
+   * Converts a hash map into sorted arrays, for example after random writes
+   * are done and the vector is mostly read or iterated.
+   */
+  public void compact() {
+    if (representation == Representation.HASH) {
+      vector = sorted(vector);
+      representation = Representation.SORTED;
+    }
+  }
+
+  @Override
+  public double get(int index) {
+    return vector.get(index);
+  }
+
+  @Override
+  public void set(int index, double value) {
+    if (representation == Representation.DENSE) {
+      double[] array = vector.toArray();
+      double old = array[index];
+      array[index] = value;
+      if (old == 0d && value != 0d) {
+        nonZeros++;
+      } else if (old != 0d && value == 0d) {
+        nonZeros--;
+        if (nonZeros < sparseRatio * dimension) {
+          vector = sorted(vector);
+          representation = Representation.SORTED;
+        }
+      }
+      return;
+    }
+    if (representation == Representation.SORTED && value != 0d
+        && vector.getLength() >= SORTED_INSERT_LIMIT && !isAppend(index)) {
+      vector = hashed(vector);
+      representation = Representation.HASH;
+    }
+    vector.set(index, value);
+    if (value != 0d && vector.getLength() >= denseRatio * dimension) {
+      densify();
+    }
+  }
+
+  @Override
+  public int getLength() {
+    return vector.getLength();
+  }
+
+  @Override
+  public int getDimension() {
+    return dimension;
+  }
+
+  @Override
+  public DoubleVector apply(DoubleVectorFunction func) {
+    return adapt(dense().apply(func));
+  }
+
+  @Override
+  public DoubleVector apply(DoubleVector other, DoubleDoubleVectorFunction func) {
+    return adapt(dense().apply(other, func));
+  }
+
+  @Override
+  public DoubleVector add(DoubleVector v) {
+    return combine(v, 1d);
+  }
+
+  @Override
+  public DoubleVector add(double scalar) {
+    return adapt(dense().add(scalar));
+  }
+
+  @Override
+  public DoubleVector subtract(DoubleVector v) {
+    return combine(v, -1d);
+  }
+
+  @Override
+  public DoubleVector subtract(double scalar) {
+    return adapt(dense().subtract(scalar));
+  }
+
+  @Override
+  public DoubleVector subtractFrom(double scalar) {
+    return adapt(dense().subtractFrom(scalar));
+  }
+
+  @Override
+  public DoubleVector multiply(double scalar) {
+    return mapNonZero((index, value) -> value * scalar);
+  }
+
+  @Override
+  public DoubleVector multiply(DoubleVector v) {
+    if (representation == Representation.DENSE) {
+      return adapt(vector.multiply(v));
+    }
+    return mapNonZero((index, value) -> value * v.get(index));
+  }
+
+  @Override
+  public DoubleVector divide(double scalar) {
+    return mapNonZero((index, value) -> value / scalar);
+  }
+
+  @Override
+  public DoubleVector divideFrom(double scalar) {
+    return adapt(dense().divideFrom(scalar));
+  }
+
+  @Override
+  public DoubleVector divideFrom(DoubleVector v) {
+    return adapt(dense().divideFrom(v));
+  }
+
+  @Override
+  public DoubleVector divide(DoubleVector v) {
+    return adapt(dense().divide(v));
+  }
+
+  @Override
+  public DoubleVector pow(double x) {
+    if (x <= 0d) {
+      return adapt(dense().pow(x));
+    }
+    return mapNonZero((index, value) -> x == 2d ? value * value : FastMath
+        .pow(value, x));
+  }
+
+  @Override
+  public DoubleVector abs() {
+    return mapNonZero((index, value) -> Math.abs(value));
+  }
+
+  @Override
+  public DoubleVector sqrt() {
+    return mapNonZero((index, value) -> Math.sqrt(value));
+  }
+
+  @Override
+  public DoubleVector log() {
+    return adapt(dense().log());
+  }
+
+  @Override
+  public DoubleVector exp() {
+    return adapt(dense().exp());
+  }
+
+  @Override
+  public double sum() {
+    return vector.sum();
+  }
+
+  @Override
+  public double dot(DoubleVector s) {
+    if (representation != Representation.DENSE && !s.isSparse()) {
+      double dot = 0d;
+      Iterator<DoubleVectorElement> iterateNonZero = vector.iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        DoubleVectorElement next = iterateNonZero.next();
+        dot += next.getValue() * s.get(next.getIndex());
+      }
+      return dot;
+    }
+    return vector.dot(s);
+  }
+
+  @Override
+  public DoubleVector slice(int end) {
+    return slice(0, end);
+  }
+
+  @Override
+  public DoubleVector slice(int start, int end) {
+    return adapt(vector.slice(start, end));
+  }
+
+  @Override
+  public DoubleVector sliceByLength(int start, int length) {
+    return adapt(vector.sliceByLength(start, length));
+  }
+
+  @Override
+  public double max() {
+    if (representation == Representation.DENSE || dimension == 0) {
+      return vector.max();
+    }
+    return get(extremeIndex(1d));
+  }
+
+  @Override
+  public double min() {
+    if (representation == Representation.DENSE || dimension == 0) {
+      return vector.min();
+    }
+    return get(extremeIndex(-1d));
+  }
+
+  @Override
+  public int maxIndex() {
+    if (representation == Representation.DENSE) {
+      return vector.maxIndex();
+    }
+    return extremeIndex(1d);
+  }
+
+  @Override
+  public int minIndex() {
+    if (representation == Representation.DENSE) {
+      return vector.minIndex();
+    }
+    return extremeIndex(-1d);
+  }
+
+  @Override
+  public double[] toArray() {
+    return vector.toArray();
+  }
+
+  @Override
+  public DoubleVector deepCopy() {
+    return new AdaptiveDoubleVector(this, denseRatio, sparseRatio);
+  }
+
+  @Override
+  public Iterator<DoubleVectorElement> iterateNonZero() {
+    return vector.iterateNonZero();
+  }
+
+  @Override
+  public Iterator<DoubleVectorElement> iterate() {
+    return vector.iterate();
+  }
+
+  @Override
+  public boolean isSparse() {
+    return representation != Representation.DENSE;
+  }
+
+  @Override
+  public boolean isNamed() {
+    return false;
+  }
+
+  @Override
+  public boolean isSingle() {
+    return false;
+  }
+
+  @Override
+  public String getName() {
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return representation + ": " + vector;
+  }
+
+  private int getNonZeros() {
+    return representation == Representation.DENSE ? nonZeros : vector
+        .getLength();
+  }
+
+  // the index of the largest element times the sign, including the implicit
+  // zeros and preferring the lowest index like the dense vector does
+  private int extremeIndex(double sign) {
+    int index = -1;
+    double extreme = 0d;
+    Iterator<DoubleVectorElement> iterateNonZero = vector.iterateNonZero();
+    while (iterateNonZero.hasNext()) {
+      DoubleVectorElement next = iterateNonZero.next();
+      double value = sign * next.getValue();
+      if (index < 0 || value > extreme
+          || (value == extreme && next.getIndex() < index)) {
+        extreme = value;
+        index = next.getIndex();
+      }
+    }
+    if (getLength() < dimension) {
+      // the first unset slot is the lowest index of the zeros
+      int zero = 0;
+      while (vector.get(zero) != 0d) {
+        zero++;
+      }
+      if (index < 0 || 0d > extreme || (0d == extreme && zero < index)) {
+        index = zero;
+      }
+    }
+    return Math.max(0, index);
+  }
+
+  // this + sign * v, the non-zeros of sparse vectors are added one by one so
+  // the storage adapts while the result fills up
+  private DoubleVector combine(DoubleVector v, double sign) {
+    if (representation == Representation.DENSE || !v.isSparse()) {
+      DoubleVector dense = dense();
+      return adapt(sign > 0 ? dense.add(v) : dense.subtract(v));
+    }
+    AdaptiveDoubleVector result = new AdaptiveDoubleVector(this, denseRatio,
+        sparseRatio);
+    Iterator<DoubleVectorElement> iterateNonZero = v.iterateNonZero();
+    while (iterateNonZero.hasNext()) {
+      DoubleVectorElement next = iterateNonZero.next();
+      int index = next.getIndex();
+      result.set(index, result.get(index) + sign * next.getValue());
+    }
+    return result;
+  }
+
+  // applies a function that maps zero to zero to the non-zeros only
+  private DoubleVector mapNonZero(DoubleVectorFunction func) {
+    DoubleVector result;
+    switch (representation) {
+      case DENSE:
+        result = new DenseDoubleVector(dimension);
+        break;
+      case SORTED:
+        result = new SequentialSparseDoubleVector(dimension, Math.max(1,
+            vector.getLength()));
+        break;
+      default:
+        result = new SparseDoubleVector(dimension, vector.getLength());
+    }
+    Iterator<DoubleVectorElement> iterateNonZero = vector.iterateNonZero();
+    while (iterateNonZero.hasNext()) {
+      DoubleVectorElement next = iterateNonZero.next();
+      result.set(next.getIndex(),
+          func.calculate(next.getIndex(), next.getValue()));
+    }
+    return adapt(result);
+  }
+
+  // a dense version of this vector, which is the vector itself if it is dense
+  private DoubleVector dense() {
+    return representation == Representation.DENSE ? vector : densified(vector);
+  }
+
+  private AdaptiveDoubleVector adapt(DoubleVector result) {
+    return new AdaptiveDoubleVector(result.getDimension(), denseRatio,
+        sparseRatio, result instanceof AdaptiveDoubleVector ? copy(result)
+            : result);
+  }
+
+  private void adopt(DoubleVector v) {
+    if (v instanceof DenseDoubleVector) {
+      vector = v;
+      representation = Representation.DENSE;
+      nonZeros = 0;
+      for (double value : v.toArray()) {
+        if (value != 0d) {
+          nonZeros++;
+        }
+      }
+      if (nonZeros < sparseRatio * dimension) {
+        vector = sorted(v);
+        representation = Representation.SORTED;
+      }
+    } else {
+      vector = v;
+      representation = v instanceof SparseDoubleVector ? Representation.HASH
+          : Representation.SORTED;
+      if (vector.getLength() > 0
+          && vector.getLength() >= denseRatio * dimension) {
+        densify();
+      }
+    }
+  }
+
+  private void densify() {
+    nonZeros = vector.getLength();
+    vector = densified(vector);
+    representation = Representation.DENSE;
+  }
+
+  private boolean isAppend(int index) {
+    OrderedIntDoubleMapping mapping = ((SequentialSparseDoubleVector) vector)
+        .getMapping();
+    int size = mapping.getNumMappings();
+    return size == 0 || index > mapping.getIndices()[size - 1]
+        || mapping.get(index) != 0d;
+  }
+
+  // copies into one of the storages, other sparse vectors become sorted
+  private static DoubleVector copy(DoubleVector v) {
+    if (v instanceof AdaptiveDoubleVector) {
+      return copy(((AdaptiveDoubleVector) v).vector);
+    }
+    if (v instanceof DenseDoubleVector || v instanceof SparseDoubleVector
+        || v instanceof SequentialSparseDoubleVector) {
+      return v.deepCopy();
+    }
+    return v.isSparse() ? sorted(v) : new DenseDoubleVector(v.toArray());
+  }
+
+  private static DenseDoubleVector densified(DoubleVector v) {
+    DenseDoubleVector dense = new DenseDoubleVector(v.getDimension());
+    double[] array = dense.toArray();
+    Iterator<DoubleVectorElement> iterateNonZero = v.iterateNonZero();
+    while (iterateNonZero.hasNext()) {
+      DoubleVectorElement next = iterateNonZero.next();
+      array[next.getIndex()] = next.getValue();
+    }
+    return dense;
+  }
+
+  private static SparseDoubleVector hashed(DoubleVector v) {
+    SparseDoubleVector hashed = new SparseDoubleVector(v.getDimension(),
+        v.getLength());
+    Iterator<DoubleVectorElement> iterateNonZero = v.iterateNonZero();
+    while (iterateNonZero.hasNext()) {
+      DoubleVectorElement next = iterateNonZero.next();
+      hashed.set(next.getIndex(), next.getValue());
+    }
+    return hashed;
+  }
+
+  private static SequentialSparseDoubleVector sorted(DoubleVector v) {
+    int length = v.isSparse() ? v.getLength() : v.getDimension();
+    // index in the upper bits, position in the lower bits
+    long[] entries = new long[length];
+    double[] values = new double[length];
+    int size = 0;
+    boolean ordered = true;
+    Iterator<DoubleVectorElement> iterateNonZero = v.iterateNonZero();
+    while (iterateNonZero.hasNext()) {
+      DoubleVectorElement next = iterateNonZero.next();
+      if (size == entries.length) {
+        entries = Arrays.copyOf(entries, size * 2 + 1);
+        values = Arrays.copyOf(values, entries.length);
+      }
+      entries[size] = ((long) next.getIndex() << 32) | size;
+      ordered &= size == 0 || entries[size] > entries[size - 1];
+      values[size++] = next.getValue();
+    }
+    if (!ordered) {
+      Arrays.sort(entries, 0, size);
+    }
+    SequentialSparseDoubleVector result = new SequentialSparseDoubleVector(
+        v.getDimension(), Math.max(1, size));
+    for (int i = 0; i < size; i++) {
+      // appends, as the indices are increasing
+      result.set((int) (entries[i] >>> 32), values[(int) entries[i]]);
+    }
+    return result;
+  }
+
+}
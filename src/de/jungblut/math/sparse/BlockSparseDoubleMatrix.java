@@ -0,0 +1,799 @@
+package de.jungblut.math.sparse;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.dense.RowMajorDenseDoubleMatrix;
+
+/**
+ * Sparse matrix in block compressed sparse row (BSR) format. The matrix is
+ * tiled into square blocks of a fixed size, only blocks that contain non-zeros
+ * are stored as small dense row-major arrays. The blocks of block row i are at
+ * [rowPointers[i], rowPointers[i + 1]), ordered by their block column.
+ *
+ * This fits matrices whose non-zeros are clustered in small dense blocks, e.g.
+ * block-pruned weight matrices. Products run a dense kernel per block instead
+ * of one indirect access per non-zero. Blocks at the right and bottom border
+ * may be cut off by the matrix dimensions, their outer part stays zero.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class BlockSparseDoubleMatrix implements DoubleMatrix {
+
+  private static final int INITIAL_BLOCK_CAPACITY = 16;
+
+  private final int numRows;
+  private final int numColumns;
+  private final int blockSize;
+  private final int blockArea;
+  private final int blockRows;
+  private final int blockColumns;
+
+  private final int[] rowPointers;
+  private int[] blockColumnIndices;
+  // the blocks one after another, each one in row-major order
+  private double[] values;
+  private int numBlocks;
+
+  /**
+   * Constructs an empty block sparse matrix.
+   *
+   * @param rows the number of rows.
+   * @param columns the number of columns.
+   * @param blockSize the number of rows and columns of a block.
+   */
+  public BlockSparseDoubleMatrix(int rows, int columns, int blockSize) {
+    if (rows < 0 || columns < 0) {
+      throw new IllegalArgumentException("Dimensions must be >= 0, but were "
+          + rows + "x" + columns);
+    }
+    if (blockSize <= 0) {
+      throw new IllegalArgumentException("Block size must be > 0, but was "
+          + blockSize);
+    }
+    this.numRows = rows;
+    this.numColumns = columns;
+    this.blockSize = blockSize;
+    this.blockArea = blockSize * blockSize;
+    this.blockRows = (rows + blockSize - 1) / blockSize;
+    this.blockColumns = (columns + blockSize - 1) / blockSize;
+    this.rowPointers = new int[blockRows + 1];
+    this.blockColumnIndices = new int[INITIAL_BLOCK_CAPACITY];
+    this.values = new double[INITIAL_BLOCK_CAPACITY * blockArea];
+  }
+
+  /**
+   * Copies the given matrix, every block that contains a non-zero is stored.
+   *
+   * @param mat the matrix to copy.
+   * @param blockSize the number of rows and columns of a block.
+   */
+  public BlockSparseDoubleMatrix(DoubleMatrix mat, int blockSize) {
+    this(mat, blockSize, 0d);
+  }
+
+  /**
+   * Copies the given matrix and drops the blocks whose largest absolute value
+   * isn't above the threshold.
+   *
+   * @param mat the matrix to copy.
+   * @param blockSize the number of rows and columns of a block.
+   * @param threshold the magnitude a block must exceed to be stored, >= 0.
+   */
+  public BlockSparseDoubleMatrix(DoubleMatrix mat, int blockSize,
+      double threshold) {
+    this(mat.getRowCount(), mat.getColumnCount(), blockSize);
+    if (!(threshold >= 0d)) {
+      throw new IllegalArgumentException("Threshold must be >= 0, but was "
+          + threshold);
+    }
+    compress(mat, 0, 0, threshold);
+  }
+
+  private BlockSparseDoubleMatrix(BlockSparseDoubleMatrix other) {
+    this.numRows = other.numRows;
+    this.numColumns = other.numColumns;
+    this.blockSize = other.blockSize;
+    this.blockArea = other.blockArea;
+    this.blockRows = other.blockRows;
+    this.blockColumns = other.blockColumns;
+    this.rowPointers = other.rowPointers.clone();
+    this.blockColumnIndices = Arrays.copyOf(other.blockColumnIndices,
+        Math.max(1, other.numBlocks));
+    this.values = Arrays.copyOf(other.values, blockColumnIndices.length
+        * blockArea);
+    this.numBlocks = other.numBlocks;
+  }
+
+  /**
+   * @return the number of rows and columns of a block.
+   */
+  public int getBlockSize() {
+    return blockSize;
+  }
+
+  /**
+   * @return the number of stored blocks.
+   */
+  public int getBlockCount() {
+    return numBlocks;
+  }
+
+  @Override
+  public double get(int row, int col) {
+    int k = findBlock(row / blockSize, col / blockSize);
+    if (k < 0) {
+      return NOT_FLAGGED;
+    }
+    return values[k * blockArea + (row % blockSize) * blockSize + col
+        % blockSize];
+  }
+
+  @Override
+  public void set(int row, int col, double value) {
+    int blockRow = row / blockSize;
+    int k = findBlock(blockRow, col / blockSize);
+    if (k < 0) {
+      if (value == 0d) {
+        return;
+      }
+      k = insertBlock(blockRow, col / blockSize, -k - 1);
+    }
+    values[k * blockArea + (row % blockSize) * blockSize + col % blockSize] =
+        value;
+  }
+
+  @Override
+  public int getColumnCount() {
+    return numColumns;
+  }
+
+  @Override
+  public int getRowCount() {
+    return numRows;
+  }
+
+  @Override
+  public DoubleVector getColumnVector(int col) {
+    DoubleVector v = new SparseDoubleVector(numRows);
+    int c = col % blockSize;
+    for (int blockRow = 0; blockRow < blockRows; blockRow++) {
+      int k = findBlock(blockRow, col / blockSize);
+      if (k >= 0) {
+        int rowStart = blockRow * blockSize;
+        int rows = Math.min(blockSize, numRows - rowStart);
+        for (int r = 0; r < rows; r++) {
+          v.set(rowStart + r, values[k * blockArea + r * blockSize + c]);
+        }
+      }
+    }
+    return v;
+  }
+
+  @Override
+  public DoubleVector getRowVector(int row) {
+    DoubleVector v = new SparseDoubleVector(numColumns);
+    int blockRow = row / blockSize;
+    int rowOffset = (row % blockSize) * blockSize;
+    for (int k = rowPointers[blockRow]; k < rowPointers[blockRow + 1]; k++) {
+      int colStart = blockColumnIndices[k] * blockSize;
+      int cols = Math.min(blockSize, numColumns - colStart);
+      for (int c = 0; c < cols; c++) {
+        v.set(colStart + c, values[k * blockArea + rowOffset + c]);
+      }
+    }
+    return v;
+  }
+
+  @Override
+  public void setColumnVector(int col, DoubleVector column) {
+    for (int row = 0; row < numRows; row++) {
+      set(row, col, column.get(row));
+    }
+  }
+
+  @Override
+  public void setRowVector(int rowIndex, DoubleVector row) {
+    int blockRow = rowIndex / blockSize;
+    int rowOffset = (rowIndex % blockSize) * blockSize;
+    for (int k = rowPointers[blockRow]; k < rowPointers[blockRow + 1]; k++) {
+      int offset = k * blockArea + rowOffset;
+      Arrays.fill(values, offset, offset + blockSize, 0d);
+    }
+    Iterator<DoubleVectorElement> iterateNonZero = row.iterateNonZero();
+    while (iterateNonZero.hasNext()) {
+      DoubleVectorElement e = iterateNonZero.next();
+      set(rowIndex, e.getIndex(), e.getValue());
+    }
+  }
+
+  @Override
+  public BlockSparseDoubleMatrix multiply(double scalar) {
+    BlockSparseDoubleMatrix result = new BlockSparseDoubleMatrix(this);
+    result.forEachNonZero((row, col, index) -> result.values[index] *= scalar);
+    return result;
+  }
+
+  /**
+   * Multiplies this matrix with the given matrix (A * B). Every stored block
+   * of A is multiplied with the matching rows of B, which are contiguous in
+   * the row-major layout.
+   *
+   * @return the dense result matrix.
+   */
+  @Override
+  public RowMajorDenseDoubleMatrix multiply(DoubleMatrix other) {
+    return multiply(other, new RowMajorDenseDoubleMatrix(numRows,
+        other.getColumnCount()));
+  }
+
+  /**
+   * Multiplies this matrix with the given matrix (A * B) and writes the result
+   * into the given matrix, which must not be B.
+   *
+   * @return the result matrix.
+   */
+  public RowMajorDenseDoubleMatrix multiply(DoubleMatrix other,
+      RowMajorDenseDoubleMatrix result) {
+    if (other.getRowCount() != numColumns) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + numColumns + " != " + other.getRowCount());
+    }
+    int n = other.getColumnCount();
+    if (result.getRowCount() != numRows || result.getColumnCount() != n) {
+      throw new IllegalArgumentException("Result must be a " + numRows + "x"
+          + n + " matrix, but was " + result.sizeToString());
+    }
+    if (result == other) {
+      throw new IllegalArgumentException(
+          "The result must not be the other matrix.");
+    }
+    double[] b = rowMajorValues(other);
+    double[] out = result.getRowMajorMatrix();
+    Arrays.fill(out, 0d);
+    for (int blockRow = 0; blockRow < blockRows; blockRow++) {
+      int rowStart = blockRow * blockSize;
+      int rows = Math.min(blockSize, numRows - rowStart);
+      for (int k = rowPointers[blockRow]; k < rowPointers[blockRow + 1]; k++) {
+        int colStart = blockColumnIndices[k] * blockSize;
+        int cols = Math.min(blockSize, numColumns - colStart);
+        multiplyBlock(values, k * blockArea, blockSize, rows, cols, b,
+            colStart * n, out, rowStart * n, n);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public BlockSparseDoubleMatrix multiplyElementWise(DoubleMatrix other) {
+    checkOperand(other);
+    BlockSparseDoubleMatrix result = new BlockSparseDoubleMatrix(this);
+    result.forEachNonZero((row, col, index) -> result.values[index] *= other
+        .get(row, col));
+    return result;
+  }
+
+  /**
+   * Multiplies this matrix with the given column vector (A * v), every block
+   * is a small dense matrix-vector product.
+   *
+   * @return a dense vector with a value per row.
+   */
+  @Override
+  public DenseDoubleVector multiplyVectorRow(DoubleVector v) {
+    if (v.getDimension() != numColumns) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + numColumns + " != " + v.getDimension());
+    }
+    double[] x = v.toArray();
+    double[] y = new double[numRows];
+    for (int blockRow = 0; blockRow < blockRows; blockRow++) {
+      int rowStart = blockRow * blockSize;
+      int rows = Math.min(blockSize, numRows - rowStart);
+      for (int k = rowPointers[blockRow]; k < rowPointers[blockRow + 1]; k++) {
+        int colStart = blockColumnIndices[k] * blockSize;
+        int cols = Math.min(blockSize, numColumns - colStart);
+        multiplyBlockVector(values, k * blockArea, blockSize, rows, cols, x,
+            colStart, y, rowStart);
+      }
+    }
+    return new DenseDoubleVector(y);
+  }
+
+  /**
+   * Multiplies the given row vector with this matrix (v * A), every block is a
+   * small dense vector-matrix product.
+   *
+   * @return a dense vector with a value per column.
+   */
+  @Override
+  public DenseDoubleVector multiplyVectorColumn(DoubleVector v) {
+    if (v.getDimension() != numRows) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + numRows + " != " + v.getDimension());
+    }
+    double[] x = v.toArray();
+    double[] y = new double[numColumns];
+    for (int blockRow = 0; blockRow < blockRows; blockRow++) {
+      int rowStart = blockRow * blockSize;
+      int rows = Math.min(blockSize, numRows - rowStart);
+      for (int k = rowPointers[blockRow]; k < rowPointers[blockRow + 1]; k++) {
+        int colStart = blockColumnIndices[k] * blockSize;
+        int cols = Math.min(blockSize, numColumns - colStart);
+        multiplyVectorBlock(values, k * blockArea, blockSize, rows, cols, x,
+            rowStart, y, colStart);
+      }
+    }
+    return new DenseDoubleVector(y);
+  }
+
+  @Override
+  public boolean isSparse() {
+    return true;
+  }
+
+  @Override
+  public BlockSparseDoubleMatrix transpose() {
+    BlockSparseDoubleMatrix t = new BlockSparseDoubleMatrix(numColumns,
+        numRows, blockSize);
+    t.ensureCapacity(numBlocks);
+    // count the blocks per block column, which are the block rows of t
+    for (int k = 0; k < numBlocks; k++) {
+      t.rowPointers[blockColumnIndices[k] + 1]++;
+    }
+    for (int i = 0; i < blockColumns; i++) {
+      t.rowPointers[i + 1] += t.rowPointers[i];
+    }
+    int[] next = Arrays.copyOf(t.rowPointers, blockColumns);
+    for (int blockRow = 0; blockRow < blockRows; blockRow++) {
+      for (int k = rowPointers[blockRow]; k < rowPointers[blockRow + 1]; k++) {
+        int dst = next[blockColumnIndices[k]]++;
+        t.blockColumnIndices[dst] = blockRow;
+        int from = k * blockArea;
+        int to = dst * blockArea;
+        for (int r = 0; r < blockSize; r++) {
+          for (int c = 0; c < blockSize; c++) {
+            t.values[to + c * blockSize + r] = values[from + r * blockSize + c];
+          }
+        }
+      }
+    }
+    t.numBlocks = numBlocks;
+    return t;
+  }
+
+  @Override
+  public DenseDoubleMatrix subtractBy(double amount) {
+    DenseDoubleMatrix dense = toDense();
+    return dense.subtractBy(amount, dense);
+  }
+
+  @Override
+  public DenseDoubleMatrix subtract(double amount) {
+    DenseDoubleMatrix dense = toDense();
+    return dense.subtract(amount, dense);
+  }
+
+  /**
+   * Subtracts the given matrix, the result stays block sparse if the other
+   * matrix is a block sparse matrix with the same block size.
+   */
+  @Override
+  public DoubleMatrix subtract(DoubleMatrix other) {
+    checkOperand(other);
+    if (isCompatible(other)) {
+      return merge((BlockSparseDoubleMatrix) other, -1d);
+    }
+    DenseDoubleMatrix dense = toDense();
+    return dense.subtract(other, dense);
+  }
+
+  @Override
+  public DoubleMatrix subtract(DoubleVector vec) {
+    return toDense().subtract(vec);
+  }
+
+  @Override
+  public BlockSparseDoubleMatrix divide(DoubleVector vec) {
+    BlockSparseDoubleMatrix result = new BlockSparseDoubleMatrix(this);
+    result.forEachNonZero((row, col, index) -> result.values[index] /= vec
+        .get(row));
+    return result;
+  }
+
+  @Override
+  public BlockSparseDoubleMatrix divide(DoubleMatrix other) {
+    checkOperand(other);
+    BlockSparseDoubleMatrix result = new BlockSparseDoubleMatrix(this);
+    result.forEachNonZero((row, col, index) -> result.values[index] /= other
+        .get(row, col));
+    return result;
+  }
+
+  @Override
+  public BlockSparseDoubleMatrix divide(double scalar) {
+    BlockSparseDoubleMatrix result = new BlockSparseDoubleMatrix(this);
+    result.forEachNonZero((row, col, index) -> result.values[index] /= scalar);
+    return result;
+  }
+
+  /**
+   * Adds the given matrix, the result stays block sparse if the other matrix
+   * is a block sparse matrix with the same block size.
+   */
+  @Override
+  public DoubleMatrix add(DoubleMatrix other) {
+    checkOperand(other);
+    if (isCompatible(other)) {
+      return merge((BlockSparseDoubleMatrix) other, 1d);
+    }
+    DenseDoubleMatrix dense = toDense();
+    return dense.add(other, dense);
+  }
+
+  @Override
+  public BlockSparseDoubleMatrix pow(double x) {
+    BlockSparseDoubleMatrix result = new BlockSparseDoubleMatrix(this);
+    double[] v = result.values;
+    if (x == 2d) {
+      result.forEachNonZero((row, col, index) -> v[index] *= v[index]);
+    } else {
+      result.forEachNonZero((row, col, index) -> v[index] = Math.pow(v[index],
+          x));
+    }
+    return result;
+  }
+
+  @Override
+  public double max(int column) {
+    return getColumnVector(column).max();
+  }
+
+  @Override
+  public double min(int column) {
+    return getColumnVector(column).min();
+  }
+
+  @Override
+  public double sum() {
+    double sum = 0d;
+    // the cut off parts of the border blocks are zero
+    for (int i = 0; i < numBlocks * blockArea; i++) {
+      sum += values[i];
+    }
+    return sum;
+  }
+
+  @Override
+  public int[] columnIndices() {
+    return SparseDoubleRowMatrix.fromUpTo(0, numColumns, 1);
+  }
+
+  /**
+   * @return the rows of the block rows that have at least one block.
+   */
+  @Override
+  public int[] rowIndices() {
+    int count = 0;
+    for (int blockRow = 0; blockRow < blockRows; blockRow++) {
+      if (rowPointers[blockRow] < rowPointers[blockRow + 1]) {
+        count += Math.min(blockSize, numRows - blockRow * blockSize);
+      }
+    }
+    int[] rows = new int[count];
+    int i = 0;
+    for (int blockRow = 0; blockRow < blockRows; blockRow++) {
+      if (rowPointers[blockRow] < rowPointers[blockRow + 1]) {
+        int rowStart = blockRow * blockSize;
+        int rowEnd = Math.min(numRows, rowStart + blockSize);
+        for (int row = rowStart; row < rowEnd; row++) {
+          rows[i++] = row;
+        }
+      }
+    }
+    return rows;
+  }
+
+  @Override
+  public double[][] toArray() {
+    double[][] array = new double[numRows][numColumns];
+    forEachNonZero((row, col, index) -> array[row][col] = values[index]);
+    return array;
+  }
+
+  /**
+   * @return a dense copy of this matrix.
+   */
+  public DenseDoubleMatrix toDense() {
+    double[] columnMajor = new double[numRows * numColumns];
+    forEachNonZero((row, col, index) -> columnMajor[row + col * numRows] =
+        values[index]);
+    return new DenseDoubleMatrix(numRows, numColumns, columnMajor);
+  }
+
+  @Override
+  public BlockSparseDoubleMatrix slice(int rows, int cols) {
+    return slice(0, rows, 0, cols);
+  }
+
+  @Override
+  public BlockSparseDoubleMatrix slice(int rowOffset, int rowMax,
+      int colOffset, int colMax) {
+    BlockSparseDoubleMatrix m = new BlockSparseDoubleMatrix(
+        rowMax - rowOffset, colMax - colOffset, blockSize);
+    m.compress(this, rowOffset, colOffset, 0d);
+    return m;
+  }
+
+  @Override
+  public BlockSparseDoubleMatrix deepCopy() {
+    return new BlockSparseDoubleMatrix(this);
+  }
+
+  @Override
+  public String toString() {
+    if (numRows * numColumns < 100) {
+      return toDense().toString();
+    } else {
+      return sizeToString() + " in " + numBlocks + " blocks of " + blockSize
+          + "x" + blockSize;
+    }
+  }
+
+  /**
+   * Returns the size of the matrix as string (ROWSxCOLUMNS).
+   */
+  public String sizeToString() {
+    return numRows + "x" + numColumns;
+  }
+
+  // appends the blocks of the window of mat at the offsets, that has the size
+  // of this empty matrix
+  private void compress(DoubleMatrix mat, int rowOffset, int colOffset,
+      double threshold) {
+    boolean[] stored = null;
+    if (mat.isSparse()) {
+      // getRowVector may create empty rows of sparse matrices
+      stored = new boolean[mat.getRowCount()];
+      for (int row : mat.rowIndices()) {
+        stored[row] = true;
+      }
+    }
+    // the scratch slot of every block column of the current block row
+    int[] slots = new int[blockColumns];
+    Arrays.fill(slots, -1);
+    int[] touched = new int[blockColumns];
+    double[] scratch = new double[blockArea];
+    for (int blockRow = 0; blockRow < blockRows; blockRow++) {
+      int count = 0;
+      int rowStart = blockRow * blockSize;
+      int rows = Math.min(blockSize, numRows - rowStart);
+      for (int r = 0; r < rows; r++) {
+        int row = rowOffset + rowStart + r;
+        if (stored != null && !stored[row]) {
+          continue;
+        }
+        Iterator<DoubleVectorElement> iterateNonZero = mat.getRowVector(row)
+            .iterateNonZero();
+        while (iterateNonZero.hasNext()) {
+          DoubleVectorElement e = iterateNonZero.next();
+          int col = e.getIndex() - colOffset;
+          if (col < 0 || col >= numColumns) {
+            continue;
+          }
+          int blockColumn = col / blockSize;
+          int slot = slots[blockColumn];
+          if (slot < 0) {
+            slot = count;
+            slots[blockColumn] = slot;
+            touched[count++] = blockColumn;
+            if (scratch.length < count * blockArea) {
+              scratch = Arrays.copyOf(scratch, scratch.length * 2);
+            }
+            Arrays.fill(scratch, slot * blockArea, count * blockArea, 0d);
+          }
+          scratch[slot * blockArea + r * blockSize + col % blockSize] = e
+              .getValue();
+        }
+      }
+      Arrays.sort(touched, 0, count);
+      for (int i = 0; i < count; i++) {
+        int offset = slots[touched[i]] * blockArea;
+        slots[touched[i]] = -1;
+        double magnitude = 0d;
+        for (int j = offset; j < offset + blockArea; j++) {
+          magnitude = Math.max(magnitude, Math.abs(scratch[j]));
+        }
+        if (magnitude > threshold) {
+          ensureCapacity(numBlocks + 1);
+          blockColumnIndices[numBlocks] = touched[i];
+          System.arraycopy(scratch, offset, values, numBlocks * blockArea,
+              blockArea);
+          numBlocks++;
+        }
+      }
+      rowPointers[blockRow + 1] = numBlocks;
+    }
+  }
+
+  // this + scale * other, both have the same size and block size
+  private BlockSparseDoubleMatrix merge(BlockSparseDoubleMatrix other,
+      double scale) {
+    BlockSparseDoubleMatrix result = new BlockSparseDoubleMatrix(numRows,
+        numColumns, blockSize);
+    result.ensureCapacity(numBlocks + other.numBlocks);
+    int n = 0;
+    for (int blockRow = 0; blockRow < blockRows; blockRow++) {
+      int i = rowPointers[blockRow];
+      int j = other.rowPointers[blockRow];
+      int end = rowPointers[blockRow + 1];
+      int otherEnd = other.rowPointers[blockRow + 1];
+      while (i < end || j < otherEnd) {
+        int column = i < end ? blockColumnIndices[i] : Integer.MAX_VALUE;
+        int otherColumn = j < otherEnd ? other.blockColumnIndices[j]
+            : Integer.MAX_VALUE;
+        int to = n * blockArea;
+        if (column <= otherColumn) {
+          System.arraycopy(values, i++ * blockArea, result.values, to,
+              blockArea);
+        }
+        if (otherColumn <= column) {
+          int from = j++ * blockArea;
+          for (int x = 0; x < blockArea; x++) {
+            result.values[to + x] += scale * other.values[from + x];
+          }
+        }
+        result.blockColumnIndices[n++] = Math.min(column, otherColumn);
+      }
+      result.rowPointers[blockRow + 1] = n;
+    }
+    result.numBlocks = n;
+    return result;
+  }
+
+  private boolean isCompatible(DoubleMatrix other) {
+    return other instanceof BlockSparseDoubleMatrix
+        && ((BlockSparseDoubleMatrix) other).blockSize == blockSize;
+  }
+
+  private int findBlock(int blockRow, int blockColumn) {
+    return Arrays.binarySearch(blockColumnIndices, rowPointers[blockRow],
+        rowPointers[blockRow + 1], blockColumn);
+  }
+
+  // inserts a zero block at the given position of the block row
+  private int insertBlock(int blockRow, int blockColumn, int position) {
+    ensureCapacity(numBlocks + 1);
+    System.arraycopy(blockColumnIndices, position, blockColumnIndices,
+        position + 1, numBlocks - position);
+    System.arraycopy(values, position * blockArea, values, (position + 1)
+        * blockArea, (numBlocks - position) * blockArea);
+    Arrays.fill(values, position * blockArea, (position + 1) * blockArea, 0d);
+    blockColumnIndices[position] = blockColumn;
+    for (int i = blockRow + 1; i <= blockRows; i++) {
+      rowPointers[i]++;
+    }
+    numBlocks++;
+    return position;
+  }
+
+  private void ensureCapacity(int blocks) {
+    if (blockColumnIndices.length < blocks) {
+      int capacity = Math.max(blocks, blockColumnIndices.length * 2);
+      blockColumnIndices = Arrays.copyOf(blockColumnIndices, capacity);
+      values = Arrays.copyOf(values, capacity * blockArea);
+    }
+  }
+
+  // calls the visitor for every non-zero of the stored blocks
+  private void forEachNonZero(EntryVisitor visitor) {
+    for (int blockRow = 0; blockRow < blockRows; blockRow++) {
+      int rowStart = blockRow * blockSize;
+      int rows = Math.min(blockSize, numRows - rowStart);
+      for (int k = rowPointers[blockRow]; k < rowPointers[blockRow + 1]; k++) {
+        int colStart = blockColumnIndices[k] * blockSize;
+        int cols = Math.min(blockSize, numColumns - colStart);
+        for (int r = 0; r < rows; r++) {
+          int offset = k * blockArea + r * blockSize;
+          for (int c = 0; c < cols; c++) {
+            if (values[offset + c] != 0d) {
+              visitor.visit(rowStart + r, colStart + c, offset + c);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private void checkOperand(DoubleMatrix other) {
+    if (other.getRowCount() != numRows
+        || other.getColumnCount() != numColumns) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + sizeToString() + " != " + other.getRowCount() + "x"
+          + other.getColumnCount());
+    }
+  }
+
+  private static double[] rowMajorValues(DoubleMatrix other) {
+    if (other instanceof RowMajorDenseDoubleMatrix) {
+      return ((RowMajorDenseDoubleMatrix) other).getRowMajorMatrix();
+    }
+    if (other instanceof DenseDoubleMatrix) {
+      return new RowMajorDenseDoubleMatrix((DenseDoubleMatrix) other)
+          .getRowMajorMatrix();
+    }
+    int n = other.getColumnCount();
+    double[] values = new double[other.getRowCount() * n];
+    for (int row : other.rowIndices()) {
+      Iterator<DoubleVectorElement> iterateNonZero = other.getRowVector(row)
+          .iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        DoubleVectorElement e = iterateNonZero.next();
+        values[row * n + e.getIndex()] = e.getValue();
+      }
+    }
+    return values;
+  }
+
+  // y[yOffset, yOffset + rows) += block * x[xOffset, xOffset + cols)
+  private static void multiplyBlockVector(double[] block, int offset,
+      int blockSize, int rows, int cols, double[] x, int xOffset, double[] y,
+      int yOffset) {
+    for (int r = 0; r < rows; r++) {
+      int rowOffset = offset + r * blockSize;
+      double sum = 0d;
+      for (int c = 0; c < cols; c++) {
+        sum += block[rowOffset + c] * x[xOffset + c];
+      }
+      y[yOffset + r] += sum;
+    }
+  }
+
+  // y[yOffset, yOffset + cols) += x[xOffset, xOffset + rows) * block
+  private static void multiplyVectorBlock(double[] block, int offset,
+      int blockSize, int rows, int cols, double[] x, int xOffset, double[] y,
+      int yOffset) {
+    for (int r = 0; r < rows; r++) {
+      double xr = x[xOffset + r];
+      if (xr != 0d) {
+        int rowOffset = offset + r * blockSize;
+        for (int c = 0; c < cols; c++) {
+          y[yOffset + c] += xr * block[rowOffset + c];
+        }
+      }
+    }
+  }
+
+  // out[rows of the block, :] += block * b[columns of the block, :], both
+  // row-major with n columns
+  private static void multiplyBlock(double[] block, int offset, int blockSize,
+      int rows, int cols, double[] b, int bOffset, double[] out,
+      int outOffset, int n) {
+    for (int r = 0; r < rows; r++) {
+      int rowOffset = offset + r * blockSize;
+      int outRow = outOffset + r * n;
+      for (int c = 0; c < cols; c++) {
+        double a = block[rowOffset + c];
+        if (a != 0d) {
+          int bRow = bOffset + c * n;
+          for (int j = 0; j < n; j++) {
+            out[outRow + j] += a * b[bRow + j];
+          }
+        }
+      }
+    }
+  }
+
+  private static interface EntryVisitor {
+
+    void visit(int row, int col, int index);
+
+  }
+
+}
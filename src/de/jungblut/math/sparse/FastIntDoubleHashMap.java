@@ -1,50 +1,554 @@
 package de.jungblut.math.sparse;
 
-import gnu.trove.map.TIntDoubleMap;
-import gnu.trove.map.hash.TIntDoubleHashMap;
+import java.util.Arrays;
 
-public class FastIntDoubleHashMap extends TIntDoubleHashMap {
+/**
+ * Primitive int to double hash map for sparse vectors. Keys and values are
+ * stored in two parallel arrays of a power of two length, collisions are
+ * resolved by linear probing. A free slot is marked by the key zero, the
+ * mapping of the key zero itself is kept in two fields, so every key can be
+ * stored without a separate array of slot states. Removals shift the following
+ * entries back instead of leaving tombstones, and the table shrinks when most
+ * of the entries were removed.
+ *
+ * Absent keys map to zero.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class FastIntDoubleHashMap {
 
+  /**
+   * The default fraction of the table that is filled before it grows.
+   */
+  public static final float DEFAULT_LOAD_FACTOR = 0.5f;
+
+  private static final int DEFAULT_EXPECTED_SIZE = 8;
+  private static final int MIN_CAPACITY = 4;
+
+  private float loadFactor;
+  private int[] keys;
+  private double[] values;
+  private int mask;
+  private int maxFill;
+  // the number of entries in the table, without the zero key
+  private int assigned;
+  private boolean hasZeroKey;
+  private double zeroValue;
+
+  /**
+   * Creates a new map with the default expected size and load factor.
+   */
   public FastIntDoubleHashMap() {
-    super();
+    this(DEFAULT_EXPECTED_SIZE);
   }
 
-  public FastIntDoubleHashMap(int initialCapacity, float loadFactor,
-      int noEntryKey, double noEntryValue) {
-    super(initialCapacity, loadFactor, noEntryKey, noEntryValue);
+  /**
+   * Creates a new map that can hold the expected number of entries without
+   * growing.
+   */
+  public FastIntDoubleHashMap(int expectedSize) {
+    this(expectedSize, DEFAULT_LOAD_FACTOR);
   }
 
-  public FastIntDoubleHashMap(int initialCapacity, float loadFactor) {
-    super(initialCapacity, loadFactor);
+  /**
+   * Creates a new map that can hold the expected number of entries without
+   * growing.
+   *
+   * @param expectedSize the expected number of entries.
+   * @param loadFactor the fraction of the table that is filled before it
+   *          grows, between zero and one (exclusive).
+   */
+  public FastIntDoubleHashMap(int expectedSize, float loadFactor) {
+    if (!(loadFactor > 0f && loadFactor < 1f)) {
+      throw new IllegalArgumentException(
+          "Load factor must be in (0, 1), but was " + loadFactor);
+    }
+    this.loadFactor = loadFactor;
+    allocate(capacityFor(Math.max(0, expectedSize)));
   }
 
-  public FastIntDoubleHashMap(int initialCapacity) {
-    super(initialCapacity);
+  /**
+   * Creates a new map with the given keys mapped to the values at the same
+   * positions.
+   */
+  public FastIntDoubleHashMap(int[] keys, double[] values) {
+    this(keys.length);
+    for (int i = 0; i < keys.length; i++) {
+      put(keys[i], values[i]);
+    }
   }
 
-  public FastIntDoubleHashMap(int[] keys, double[] values) {
-    super(keys, values);
+  /**
+   * @return the number of entries.
+   */
+  public int size() {
+    return hasZeroKey ? assigned + 1 : assigned;
   }
 
-  public FastIntDoubleHashMap(TIntDoubleMap map) {
-    super(map);
+  /**
+   * @return true if there are no entries.
+   */
+  public boolean isEmpty() {
+    return size() == 0;
   }
 
-  public FastIntDoubleHashMap fastDeepCopy() {
-    // copies all of the internal array states using System.arrayCopy
-    // TODO this still allocates some garbage on the heap...
-    FastIntDoubleHashMap copy = new FastIntDoubleHashMap();
-    copy.setUp(this._set.length);
+  /**
+   * @return the value of the key, or zero if it is absent.
+   */
+  public double get(int key) {
+    if (key == 0) {
+      return hasZeroKey ? zeroValue : 0d;
+    }
+    int slot = hash(key) & mask;
+    int existing;
+    while ((existing = keys[slot]) != 0) {
+      if (existing == key) {
+        return values[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    return 0d;
+  }
 
-    System.arraycopy(this._set, 0, copy._set, 0, this._set.length);
-    System.arraycopy(this._values, 0, copy._values, 0, this._values.length);
-    System.arraycopy(this._states, 0, copy._states, 0, this._states.length);
+  /**
+   * @return true if the key is mapped.
+   */
+  public boolean containsKey(int key) {
+    if (key == 0) {
+      return hasZeroKey;
+    }
+    return slotOf(key) >= 0;
+  }
 
-    copy._size = this._size;
-    copy._maxSize = this._maxSize;
-    copy._free = this._free;
-    copy._autoCompactRemovesRemaining = this._autoCompactRemovesRemaining;
+  /**
+   * Maps the key to the value.
+   *
+   * @return the previous value, or zero if the key was absent.
+   */
+  public double put(int key, double value) {
+    if (key == 0) {
+      double previous = hasZeroKey ? zeroValue : 0d;
+      hasZeroKey = true;
+      zeroValue = value;
+      return previous;
+    }
+    int slot = hash(key) & mask;
+    int existing;
+    while ((existing = keys[slot]) != 0) {
+      if (existing == key) {
+        double previous = values[slot];
+        values[slot] = value;
+        return previous;
+      }
+      slot = (slot + 1) & mask;
+    }
+    insertAt(slot, key, value);
+    return 0d;
+  }
+
+  /**
+   * Adds the delta to the value of the key, the key is removed if its value
+   * becomes zero. This probes the table only once.
+   *
+   * @return the new value.
+   */
+  public double add(int key, double delta) {
+    if (key == 0) {
+      double value = (hasZeroKey ? zeroValue : 0d) + delta;
+      hasZeroKey = value != 0d;
+      zeroValue = value;
+      return value;
+    }
+    int slot = hash(key) & mask;
+    int existing;
+    while ((existing = keys[slot]) != 0) {
+      if (existing == key) {
+        double value = values[slot] + delta;
+        if (value == 0d) {
+          removeAt(slot);
+          shrinkIfSparse();
+        } else {
+          values[slot] = value;
+        }
+        return value;
+      }
+      slot = (slot + 1) & mask;
+    }
+    if (delta != 0d) {
+      insertAt(slot, key, delta);
+    }
+    return delta;
+  }
+
+  /**
+   * Adds scale times every value of the other map to this map (this += scale *
+   * other), keys whose values become zero are removed.
+   */
+  public void merge(FastIntDoubleHashMap other, double scale) {
+    if (other == this) {
+      for (int slot = 0; slot < keys.length; slot++) {
+        values[slot] += scale * values[slot];
+      }
+      zeroValue += scale * zeroValue;
+      removeZeros();
+      return;
+    }
+    if (other.hasZeroKey) {
+      add(0, scale * other.zeroValue);
+    }
+    int[] otherKeys = other.keys;
+    double[] otherValues = other.values;
+    for (int slot = 0; slot < otherKeys.length; slot++) {
+      if (otherKeys[slot] != 0) {
+        add(otherKeys[slot], scale * otherValues[slot]);
+      }
+    }
+  }
+
+  /**
+   * Removes the key.
+   *
+   * @return the previous value, or zero if the key was absent.
+   */
+  public double remove(int key) {
+    if (key == 0) {
+      double previous = hasZeroKey ? zeroValue : 0d;
+      hasZeroKey = false;
+      zeroValue = 0d;
+      return previous;
+    }
+    int slot = slotOf(key);
+    if (slot < 0) {
+      return 0d;
+    }
+    double previous = values[slot];
+    removeAt(slot);
+    shrinkIfSparse();
+    return previous;
+  }
+
+  /**
+   * Removes all entries, the table keeps its capacity.
+   */
+  public void clear() {
+    Arrays.fill(keys, 0);
+    assigned = 0;
+    hasZeroKey = false;
+    zeroValue = 0d;
+  }
 
+  /**
+   * Shrinks the table to the smallest capacity that holds the current
+   * entries.
+   */
+  public void trimToSize() {
+    int capacity = capacityFor(assigned);
+    if (capacity < keys.length) {
+      rehash(capacity);
+    }
+  }
+
+  /**
+   * Calls the consumer with every entry. The arrays are traversed in their
+   * memory order, which is the fastest way to iterate the map.
+   */
+  public void forEach(EntryConsumer consumer) {
+    if (hasZeroKey) {
+      consumer.accept(0, zeroValue);
+    }
+    int[] keys = this.keys;
+    double[] values = this.values;
+    for (int slot = 0; slot < keys.length; slot++) {
+      if (keys[slot] != 0) {
+        consumer.accept(keys[slot], values[slot]);
+      }
+    }
+  }
+
+  /**
+   * @return a cursor over the entries, that doesn't allocate per entry. The
+   *         map must not be modified while the cursor is used.
+   */
+  public Cursor cursor() {
+    return new Cursor();
+  }
+
+  /**
+   * @return a copy of this map, the arrays are cloned as they are.
+   */
+  public FastIntDoubleHashMap fastDeepCopy() {
+    FastIntDoubleHashMap copy = new FastIntDoubleHashMap(0, loadFactor);
+    copyInto(copy);
     return copy;
   }
+
+  /**
+   * Copies the content of this map into the given map. If both have the same
+   * capacity the arrays of the target are reused and nothing is allocated.
+   */
+  public void copyInto(FastIntDoubleHashMap target) {
+    if (target == this) {
+      return;
+    }
+    if (target.keys.length == keys.length) {
+      System.arraycopy(keys, 0, target.keys, 0, keys.length);
+      System.arraycopy(values, 0, target.values, 0, values.length);
+    } else {
+      target.keys = keys.clone();
+      target.values = values.clone();
+    }
+    target.loadFactor = loadFactor;
+    target.mask = mask;
+    target.maxFill = maxFill;
+    target.assigned = assigned;
+    target.hasZeroKey = hasZeroKey;
+    target.zeroValue = zeroValue;
+  }
+
+  /**
+   * @return the length of the table.
+   */
+  int capacity() {
+    return keys.length;
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = hasZeroKey ? Double.hashCode(zeroValue) : 0;
+    for (int slot = 0; slot < keys.length; slot++) {
+      if (keys[slot] != 0) {
+        hash += keys[slot] ^ Double.hashCode(values[slot]);
+      }
+    }
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof FastIntDoubleHashMap)) {
+      return false;
+    }
+    FastIntDoubleHashMap other = (FastIntDoubleHashMap) obj;
+    if (other.size() != size() || other.hasZeroKey != hasZeroKey
+        || Double.compare(other.zeroValue, zeroValue) != 0) {
+      return false;
+    }
+    for (int slot = 0; slot < keys.length; slot++) {
+      if (keys[slot] != 0) {
+        int otherSlot = other.slotOf(keys[slot]);
+        if (otherSlot < 0
+            || Double.compare(other.values[otherSlot], values[slot]) != 0) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the entries ordered by key, e.g. {0=1.0, 5=2.0}.
+   */
+  @Override
+  public String toString() {
+    int[] sorted = new int[size()];
+    int size = 0;
+    if (hasZeroKey) {
+      sorted[size++] = 0;
+    }
+    for (int slot = 0; slot < keys.length; slot++) {
+      if (keys[slot] != 0) {
+        sorted[size++] = keys[slot];
+      }
+    }
+    Arrays.sort(sorted);
+    StringBuilder sb = new StringBuilder("{");
+    for (int i = 0; i < sorted.length; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(sorted[i]).append('=').append(get(sorted[i]));
+    }
+    return sb.append('}').toString();
+  }
+
+  private int slotOf(int key) {
+    int slot = hash(key) & mask;
+    int existing;
+    while ((existing = keys[slot]) != 0) {
+      if (existing == key) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  private void insertAt(int slot, int key, double value) {
+    keys[slot] = key;
+    values[slot] = value;
+    if (++assigned > maxFill) {
+      rehash(keys.length << 1);
+    }
+  }
+
+  // shifts the following entries of the probe sequence back into the slot, so
+  // no tombstones are needed
+  private void removeAt(int slot) {
+    assigned--;
+    int last = slot;
+    while (true) {
+      slot = (slot + 1) & mask;
+      int key = keys[slot];
+      if (key == 0) {
+        keys[last] = 0;
+        return;
+      }
+      int ideal = hash(key) & mask;
+      // moves the entry if its ideal slot isn't cyclically in (last, slot]
+      boolean movable = last <= slot ? (last >= ideal || ideal > slot)
+          : (last >= ideal && ideal > slot);
+      if (movable) {
+        keys[last] = key;
+        values[last] = values[slot];
+        last = slot;
+      }
+    }
+  }
+
+  private void removeZeros() {
+    if (hasZeroKey && zeroValue == 0d) {
+      hasZeroKey = false;
+    }
+    for (int slot = 0; slot < keys.length; slot++) {
+      // entries shifted back into this slot are checked again
+      while (keys[slot] != 0 && values[slot] == 0d) {
+        removeAt(slot);
+      }
+    }
+    shrinkIfSparse();
+  }
+
+  private void shrinkIfSparse() {
+    if (keys.length > MIN_CAPACITY && assigned < maxFill >> 2) {
+      rehash(Math.max(MIN_CAPACITY, capacityFor(assigned)));
+    }
+  }
+
+  private void rehash(int capacity) {
+    int[] oldKeys = keys;
+    double[] oldValues = values;
+    allocate(capacity);
+    for (int slot = 0; slot < oldKeys.length; slot++) {
+      int key = oldKeys[slot];
+      if (key != 0) {
+        int newSlot = hash(key) & mask;
+        while (keys[newSlot] != 0) {
+          newSlot = (newSlot + 1) & mask;
+        }
+        keys[newSlot] = key;
+        values[newSlot] = oldValues[slot];
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    keys = new int[capacity];
+    values = new double[capacity];
+    mask = capacity - 1;
+    maxFill = maxFill(capacity);
+  }
+
+  private int maxFill(int capacity) {
+    // at least one slot stays free, so probing always terminates
+    return Math.min(capacity - 1, (int) Math.ceil(capacity * loadFactor));
+  }
+
+  private int capacityFor(int expectedSize) {
+    double needed = Math.ceil(expectedSize / (double) loadFactor);
+    if (needed > 1 << 29) {
+      throw new IllegalArgumentException("Too many entries: " + expectedSize);
+    }
+    int capacity = MIN_CAPACITY;
+    while (capacity < needed || maxFill(capacity) < expectedSize) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  // fibonacci hashing, the upper bits are folded in as the mask takes the
+  // lower ones
+  private static int hash(int key) {
+    int h = key * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Consumer of the entries of a map.
+   */
+  public static interface EntryConsumer {
+
+    /**
+     * Called with the key and value of an entry.
+     */
+    public void accept(int key, double value);
+
+  }
+
+  /**
+   * Cursor over the entries of a map, {@link #advance()} moves to the next
+   * entry which is then available by {@link #key()} and {@link #value()}.
+   */
+  public final class Cursor {
+
+    // -2 is before the zero key, -1 the zero key
+    private int slot = -2;
+    private int key;
+    private double value;
+
+    private Cursor() {
+    }
+
+    /**
+     * @return true if the cursor moved to another entry, false if there are no
+     *         more entries.
+     */
+    public boolean advance() {
+      if (slot == -2) {
+        slot = -1;
+        if (hasZeroKey) {
+          key = 0;
+          value = zeroValue;
+          return true;
+        }
+      }
+      while (++slot < keys.length) {
+        if (keys[slot] != 0) {
+          key = keys[slot];
+          value = values[slot];
+          return true;
+        }
+      }
+      slot = keys.length;
+      return false;
+    }
+
+    /**
+     * @return the key of the current entry.
+     */
+    public int key() {
+      return key;
+    }
+
+    /**
+     * @return the value of the current entry.
+     */
+    public double value() {
+      return value;
+    }
+  }
+
 }
@@ -8,6 +8,7 @@ import org.apache.commons.math3.util.FastMath;
 import com.google.common.collect.AbstractIterator;
 
 import de.jungblut.math.DoubleVector;
+import de.jungblut.math.SummationStrategy;
 import de.jungblut.math.function.DoubleDoubleVectorFunction;
 import de.jungblut.math.function.DoubleVectorFunction;
 
@@ -51,7 +52,7 @@ public final class SequentialSparseDoubleVector implements DoubleVector {
    */
   public SequentialSparseDoubleVector(DoubleVector v) {
     this(v.getDimension(), v.getLength());
-    if (v.isSparse()) {
+    if (v instanceof SequentialSparseDoubleVector) {
       SequentialSparseDoubleVector vx = (SequentialSparseDoubleVector) v;
       mapping.copyInternalState(vx.mapping);
     } else {
@@ -347,6 +348,11 @@ public final class SequentialSparseDoubleVector implements DoubleVector {
     return sum;
   }
 
+  @Override
+  public double sum(SummationStrategy strategy) {
+    return strategy.sum(mapping.getValues(), 0, mapping.getNumMappings());
+  }
+
   @Override
   public DoubleVector abs() {
     SequentialSparseDoubleVector v = new SequentialSparseDoubleVector(this);
@@ -584,6 +590,15 @@ public final class SequentialSparseDoubleVector implements DoubleVector {
     return true;
   }
 
+  /**
+   * @return the sorted mapping that backs this vector, only the first
+   *         {@link OrderedIntDoubleMapping#getNumMappings()} entries of its
+   *         arrays are valid. No defensive copy is made.
+   */
+  public OrderedIntDoubleMapping getMapping() {
+    return mapping;
+  }
+
   @Override
   public boolean isSingle() {
     return false;
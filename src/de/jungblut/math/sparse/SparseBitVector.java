@@ -547,11 +547,9 @@ public final class SparseBitVector implements DoubleVector {
 
     @Override
     protected final DoubleVectorElement computeNext() {
-      // look for the element that has a bit set
-      while (index < getDimension() && !vector.get(index)) {
-        index++;
-      }
-      if (index < getDimension()) {
+      // look for the element that has a bit set, skipping whole words
+      index = index < getDimension() ? vector.nextSetBit(index) : -1;
+      if (index >= 0 && index < getDimension()) {
         element.setIndex(index);
         element.setValue(get(index));
         index++;
@@ -593,6 +591,23 @@ public final class SparseBitVector implements DoubleVector {
     return true;
   }
 
+  /**
+   * @return the number of indices that are set in this and the given vector,
+   *         computed without allocating an intermediate bit set.
+   */
+  public int intersectionCardinality(SparseBitVector other) {
+    BitSet smaller = vector.cardinality() <= other.vector.cardinality() ? vector
+        : other.vector;
+    BitSet larger = smaller == vector ? other.vector : vector;
+    int count = 0;
+    for (int i = smaller.nextSetBit(0); i >= 0; i = smaller.nextSetBit(i + 1)) {
+      if (larger.get(i)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
   @Override
   public boolean isSingle() {
     return false;
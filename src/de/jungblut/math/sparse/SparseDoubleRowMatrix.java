@@ -1,42 +1,121 @@
 package de.jungblut.math.sparse;
 
-import gnu.trove.map.hash.TIntObjectHashMap;
-
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import de.jungblut.math.DoubleMatrix;
 import de.jungblut.math.DoubleVector;
 import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.dense.DenseDoubleMatrix;
 import de.jungblut.math.dense.DenseDoubleVector;
 
 /**
- * Sparse matrix implementation that maps row indices to a sparse vector which
- * represents the row. So every access has at maximum two hashmap lookups (first
- * by the row index, then by the column index).
+ * Sparse matrix implementation that stores a sparse vector per row in an array
+ * indexed by the row. Rows without any element aren't allocated, so every
+ * access is an array lookup followed by a lookup in the row vector. The type of
+ * the row vectors is chosen by a {@link RowType}.
  * 
  * @author thomas.jungblut
  * 
  */
 public final class SparseDoubleRowMatrix implements DoubleMatrix {
 
-  // int -> vector, where int is the row index and vector the corresponding
-  // row vector
-  private final TIntObjectHashMap<SparseDoubleVector> matrix;
+  /**
+   * The vector type that backs the rows of a matrix.
+   */
+  public static enum RowType {
+    /**
+     * {@link SparseDoubleVector}, for random access and updates.
+     */
+    HASH {
+      @Override
+      DoubleVector newRow(int dimension) {
+        return new SparseDoubleVector(dimension);
+      }
+
+      @Override
+      DoubleVector copyRow(DoubleVector row) {
+        return new SparseDoubleVector(row);
+      }
+    },
+    /**
+     * {@link SequentialSparseDoubleVector}, for rows that are filled in column
+     * order and mostly iterated.
+     */
+    SEQUENTIAL {
+      @Override
+      DoubleVector newRow(int dimension) {
+        return new SequentialSparseDoubleVector(dimension);
+      }
+
+      @Override
+      DoubleVector copyRow(DoubleVector row) {
+        return new SequentialSparseDoubleVector(row);
+      }
+    },
+    /**
+     * {@link SparseBitVector}, for binary matrices. Every non-zero is stored as
+     * one.
+     */
+    BIT {
+      @Override
+      DoubleVector newRow(int dimension) {
+        return new SparseBitVector(dimension);
+      }
+
+      @Override
+      DoubleVector copyRow(DoubleVector row) {
+        return new SparseBitVector(row);
+      }
+    };
+
+    abstract DoubleVector newRow(int dimension);
+
+    abstract DoubleVector copyRow(DoubleVector row);
+  }
+
+  // the row vectors by row index, null for rows without elements
+  private final DoubleVector[] matrix;
+  private final RowType rowType;
   private final int numRows;
   private final int numColumns;
+  private int storedRows;
+
+  // products with less multiply-adds are computed sequentially
+  private static final int PARALLEL_THRESHOLD = 1 << 16;
+  // the number of stored rows below which a product task isn't split
+  private static final int ROW_BLOCK = 256;
 
   /**
-   * Constructs a sparse matrix with the given dimensions.
+   * Constructs a sparse matrix with the given dimensions, whose rows are
+   * {@link RowType#HASH} vectors.
    * 
-   * @param rows the number of rows (act as a hint to the backed hashmap).
+   * @param rows the number of rows.
    * @param columns the number of columns.
    */
   public SparseDoubleRowMatrix(int rows, int columns) {
+    this(rows, columns, RowType.HASH);
+  }
+
+  /**
+   * Constructs a sparse matrix with the given dimensions.
+   * 
+   * @param rows the number of rows.
+   * @param columns the number of columns.
+   * @param rowType the vector type of the rows.
+   */
+  public SparseDoubleRowMatrix(int rows, int columns, RowType rowType) {
+    if (rows < 0 || columns < 0) {
+      throw new IllegalArgumentException("Dimensions must be >= 0, but were "
+          + rows + "x" + columns);
+    }
     this.numRows = rows;
     this.numColumns = columns;
-    this.matrix = new TIntObjectHashMap<>(numRows);
+    this.rowType = rowType;
+    this.matrix = new DoubleVector[rows];
   }
 
   /**
@@ -64,7 +143,7 @@ public final class SparseDoubleRowMatrix implements DoubleMatrix {
 
     int key = 0;
     for (DoubleVector value : vec) {
-      matrix.put(key++, new SparseDoubleVector(value));
+      setRowVector(key++, value);
     }
   }
 
@@ -100,15 +179,33 @@ public final class SparseDoubleRowMatrix implements DoubleMatrix {
    * @param mat the matrix to copy.
    */
   public SparseDoubleRowMatrix(DoubleMatrix mat) {
-    this(mat.getRowCount(), mat.getColumnCount());
-    for (int i = 0; i < numColumns; i++) {
-      setRowVector(i, mat.getRowVector(i));
+    this(mat, RowType.HASH);
+  }
+
+  /**
+   * Row-copies the given matrix to this sparse implementation.
+   * 
+   * @param mat the matrix to copy.
+   * @param rowType the vector type of the rows.
+   */
+  public SparseDoubleRowMatrix(DoubleMatrix mat, RowType rowType) {
+    this(mat.getRowCount(), mat.getColumnCount(), rowType);
+    if (mat instanceof SparseDoubleRowMatrix) {
+      SparseDoubleRowMatrix other = (SparseDoubleRowMatrix) mat;
+      for (int row = other.nextStoredRow(0); row >= 0; row = other
+          .nextStoredRow(row + 1)) {
+        setRowVector(row, other.matrix[row]);
+      }
+    } else {
+      for (int row : mat.rowIndices()) {
+        setRowVector(row, mat.getRowVector(row));
+      }
     }
   }
 
   @Override
   public double get(int row, int col) {
-    SparseDoubleVector vector = matrix.get(row);
+    DoubleVector vector = matrix[row];
     if (vector == null) {
       return NOT_FLAGGED;
     } else {
@@ -123,10 +220,9 @@ public final class SparseDoubleRowMatrix implements DoubleMatrix {
 
   @Override
   public DoubleVector getColumnVector(int col) {
-    int[] rows = matrix.keys();
     DoubleVector v = new SparseDoubleVector(getRowCount());
-    for (int row : rows) {
-      v.set(row, get(row, col));
+    for (int row = nextStoredRow(0); row >= 0; row = nextStoredRow(row + 1)) {
+      v.set(row, matrix[row].get(col));
     }
     return v;
   }
@@ -138,10 +234,10 @@ public final class SparseDoubleRowMatrix implements DoubleMatrix {
 
   @Override
   public DoubleVector getRowVector(int row) {
-    SparseDoubleVector v = matrix.get(row);
+    DoubleVector v = matrix[row];
     if (v == null) {
-      v = new SparseDoubleVector(getColumnCount());
-      matrix.put(row, v);
+      v = rowType.newRow(getColumnCount());
+      store(row, v);
     }
     return v;
   }
@@ -149,12 +245,9 @@ public final class SparseDoubleRowMatrix implements DoubleMatrix {
   @Override
   public void set(int row, int col, double value) {
     if (value != 0.0d) {
-      SparseDoubleVector sparseDoubleVector = matrix.get(row);
-      if (sparseDoubleVector == null) {
-        sparseDoubleVector = new SparseDoubleVector(getColumnCount());
-        matrix.put(row, sparseDoubleVector);
-      }
-      sparseDoubleVector.set(col, value);
+      getRowVector(row).set(col, value);
+    } else if (matrix[row] != null) {
+      matrix[row].set(col, value);
     }
   }
 
@@ -169,18 +262,19 @@ public final class SparseDoubleRowMatrix implements DoubleMatrix {
 
   @Override
   public void setRowVector(int rowIndex, DoubleVector row) {
-    matrix.put(rowIndex, new SparseDoubleVector(row));
+    store(rowIndex, rowType.copyRow(row));
   }
 
   @Override
   public DoubleMatrix multiply(double scalar) {
-    DoubleMatrix result = new SparseDoubleRowMatrix(this);
-    for (int row : this.matrix.keys()) {
-      Iterator<DoubleVectorElement> iterateNonZero = matrix.get(row)
+    DoubleMatrix result = new SparseDoubleRowMatrix(this.getRowCount(),
+        this.getColumnCount());
+    for (int row = nextStoredRow(0); row >= 0; row = nextStoredRow(row + 1)) {
+      Iterator<DoubleVectorElement> iterateNonZero = matrix[row]
           .iterateNonZero();
       while (iterateNonZero.hasNext()) {
         DoubleVectorElement e = iterateNonZero.next();
-        result.set(row, e.getIndex(), get(row, e.getIndex()) * scalar);
+        result.set(row, e.getIndex(), e.getValue() * scalar);
       }
     }
     return result;
@@ -188,6 +282,10 @@ public final class SparseDoubleRowMatrix implements DoubleMatrix {
 
   @Override
   public DoubleMatrix multiply(DoubleMatrix other) {
+    if (other instanceof DenseDoubleMatrix) {
+      return multiply((DenseDoubleMatrix) other, new DenseDoubleMatrix(
+          numRows, other.getColumnCount()));
+    }
     DoubleMatrix result = new SparseDoubleRowMatrix(this.getRowCount(),
         other.getColumnCount());
     for (int row = 0; row < getRowCount(); row++) {
@@ -208,6 +306,99 @@ public final class SparseDoubleRowMatrix implements DoubleMatrix {
     return result;
   }
 
+  /**
+   * Multiplies this matrix with the given dense matrix (A * B) and writes the
+   * result into the given matrix, which must not be B. The non-zeros of A are
+   * gathered once into compressed rows, then every contiguous column of B is
+   * multiplied with all rows while it is in the cache.
+   *
+   * @return the result matrix.
+   */
+  public DenseDoubleMatrix multiply(DenseDoubleMatrix other,
+      DenseDoubleMatrix result) {
+    CompressedRows rows = compressRows(other, result);
+    multiplyRows(rows, other, result, 0, rows.rows.length);
+    return result;
+  }
+
+  /**
+   * Multiplies this matrix with the given dense matrix (A * B) in parallel and
+   * writes the result into the given matrix, which must not be B. The stored
+   * rows of A are split into blocks that are computed on the pool, so the
+   * tasks never write to the same elements.
+   *
+   * @return the result matrix.
+   */
+  public DenseDoubleMatrix multiply(DenseDoubleMatrix other,
+      DenseDoubleMatrix result, ForkJoinPool pool) {
+    CompressedRows rows = compressRows(other, result);
+    if ((long) rows.values.length * other.getColumnCount() < PARALLEL_THRESHOLD
+        || rows.rows.length < 2 * ROW_BLOCK) {
+      multiplyRows(rows, other, result, 0, rows.rows.length);
+    } else {
+      pool.invoke(new MultiplyTask(rows, other, result, 0, rows.rows.length));
+    }
+    return result;
+  }
+
+  private CompressedRows compressRows(DenseDoubleMatrix other,
+      DenseDoubleMatrix result) {
+    if (other.getRowCount() != numColumns) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + numColumns + " != " + other.getRowCount());
+    }
+    if (result.getRowCount() != numRows
+        || result.getColumnCount() != other.getColumnCount()) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + numRows + "x" + other.getColumnCount() + " != "
+          + result.sizeToString());
+    }
+    if (result == other) {
+      throw new IllegalArgumentException(
+          "The result must not be the other matrix.");
+    }
+    // rows that aren't stored stay zero
+    Arrays.fill(result.getColumnMajorMatrix(), 0d);
+    int[] rows = rowIndices();
+    int[] offsets = new int[rows.length + 1];
+    for (int i = 0; i < rows.length; i++) {
+      offsets[i + 1] = offsets[i] + matrix[rows[i]].getLength();
+    }
+    int[] columns = new int[offsets[rows.length]];
+    double[] values = new double[columns.length];
+    for (int i = 0; i < rows.length; i++) {
+      int k = offsets[i];
+      Iterator<DoubleVectorElement> iterateNonZero = matrix[rows[i]]
+          .iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        DoubleVectorElement next = iterateNonZero.next();
+        columns[k] = next.getIndex();
+        values[k++] = next.getValue();
+      }
+    }
+    return new CompressedRows(rows, offsets, columns, values);
+  }
+
+  // result[rows[from, to), :] = A[rows[from, to), :] * B, column by column
+  private static void multiplyRows(CompressedRows a, DenseDoubleMatrix other,
+      DenseDoubleMatrix result, int from, int to) {
+    double[] b = other.getColumnMajorMatrix();
+    double[] out = result.getColumnMajorMatrix();
+    int n = other.getRowCount();
+    int m = result.getRowCount();
+    for (int col = 0; col < other.getColumnCount(); col++) {
+      int bOffset = col * n;
+      int outOffset = col * m;
+      for (int i = from; i < to; i++) {
+        double sum = 0d;
+        for (int k = a.offsets[i]; k < a.offsets[i + 1]; k++) {
+          sum += a.values[k] * b[bOffset + a.columns[k]];
+        }
+        out[outOffset + a.rows[i]] = sum;
+      }
+    }
+  }
+
   @Override
   public DoubleMatrix slice(int rows, int cols) {
     return slice(0, rows, 0, cols);
@@ -215,14 +406,19 @@ public final class SparseDoubleRowMatrix implements DoubleMatrix {
 
   @Override
   public DoubleMatrix slice(int rowOffset, int rowMax, int colOffset, int colMax) {
-    DoubleMatrix m = new SparseDoubleRowMatrix(rowMax - rowOffset, colMax
-        - colOffset);
-    for (int col : columnIndices()) {
-      DoubleVector columnVector = getColumnVector(col);
-      columnVector = columnVector.slice(rowOffset, rowMax);
-      m.setColumnVector(col - colOffset, columnVector);
+    SparseDoubleRowMatrix m = new SparseDoubleRowMatrix(rowMax - rowOffset,
+        colMax - colOffset, rowType);
+    for (int row = nextStoredRow(rowOffset); row >= 0 && row < rowMax;
+        row = nextStoredRow(row + 1)) {
+      Iterator<DoubleVectorElement> iterateNonZero = matrix[row]
+          .iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        DoubleVectorElement e = iterateNonZero.next();
+        if (e.getIndex() >= colOffset && e.getIndex() < colMax) {
+          m.set(row - rowOffset, e.getIndex() - colOffset, e.getValue());
+        }
+      }
     }
-
     return m;
   }
 
@@ -230,8 +426,8 @@ public final class SparseDoubleRowMatrix implements DoubleMatrix {
   public DoubleMatrix multiplyElementWise(DoubleMatrix other) {
     DoubleMatrix result = new SparseDoubleRowMatrix(this.getRowCount(),
         this.getColumnCount());
-    for (int row : this.matrix.keys()) {
-      Iterator<DoubleVectorElement> iterateNonZero = matrix.get(row)
+    for (int row = nextStoredRow(0); row >= 0; row = nextStoredRow(row + 1)) {
+      Iterator<DoubleVectorElement> iterateNonZero = matrix[row]
           .iterateNonZero();
       while (iterateNonZero.hasNext()) {
         DoubleVectorElement e = iterateNonZero.next();
@@ -245,8 +441,8 @@ public final class SparseDoubleRowMatrix implements DoubleMatrix {
   @Override
   public DoubleVector multiplyVectorRow(DoubleVector v) {
     DoubleVector result = new SparseDoubleVector(this.getRowCount());
-    for (int row : matrix.keys()) {
-      Iterator<DoubleVectorElement> iterateNonZero = matrix.get(row)
+    for (int row = nextStoredRow(0); row >= 0; row = nextStoredRow(row + 1)) {
+      Iterator<DoubleVectorElement> iterateNonZero = matrix[row]
           .iterateNonZero();
       double sum = 0.0d;
       while (iterateNonZero.hasNext()) {
@@ -276,8 +472,8 @@ public final class SparseDoubleRowMatrix implements DoubleMatrix {
         }
       }
     } else {
-      for (int row : rowIndices()) {
-        Iterator<DoubleVectorElement> iterateNonZero = matrix.get(row)
+      for (int row = nextStoredRow(0); row >= 0; row = nextStoredRow(row + 1)) {
+        Iterator<DoubleVectorElement> iterateNonZero = matrix[row]
             .iterateNonZero();
         while (iterateNonZero.hasNext()) {
           DoubleVectorElement e = iterateNonZero.next();
@@ -298,8 +494,8 @@ public final class SparseDoubleRowMatrix implements DoubleMatrix {
   public DoubleMatrix transpose() {
     SparseDoubleRowMatrix m = new SparseDoubleRowMatrix(this.numColumns,
         this.numRows);
-    for (int row : this.matrix.keys()) {
-      Iterator<DoubleVectorElement> iterateNonZero = matrix.get(row)
+    for (int row = nextStoredRow(0); row >= 0; row = nextStoredRow(row + 1)) {
+      Iterator<DoubleVectorElement> iterateNonZero = matrix[row]
           .iterateNonZero();
       while (iterateNonZero.hasNext()) {
         DoubleVectorElement e = iterateNonZero.next();
@@ -313,8 +509,8 @@ public final class SparseDoubleRowMatrix implements DoubleMatrix {
   public DoubleMatrix subtractBy(double amount) {
     DoubleMatrix result = new SparseDoubleRowMatrix(this.getRowCount(),
         this.getColumnCount());
-    for (int row : this.matrix.keys()) {
-      Iterator<DoubleVectorElement> iterate = matrix.get(row).iterate();
+    for (int row = nextStoredRow(0); row >= 0; row = nextStoredRow(row + 1)) {
+      Iterator<DoubleVectorElement> iterate = matrix[row].iterate();
       while (iterate.hasNext()) {
         DoubleVectorElement e = iterate.next();
         result.set(row, e.getIndex(), amount - e.getValue());
@@ -327,8 +523,8 @@ public final class SparseDoubleRowMatrix implements DoubleMatrix {
   public DoubleMatrix subtract(double amount) {
     DoubleMatrix result = new SparseDoubleRowMatrix(this.getRowCount(),
         this.getColumnCount());
-    for (int row : this.matrix.keys()) {
-      Iterator<DoubleVectorElement> iterate = matrix.get(row).iterate();
+    for (int row = nextStoredRow(0); row >= 0; row = nextStoredRow(row + 1)) {
+      Iterator<DoubleVectorElement> iterate = matrix[row].iterate();
       while (iterate.hasNext()) {
         DoubleVectorElement e = iterate.next();
         result.set(row, e.getIndex(), e.getValue() - amount);
@@ -342,8 +538,8 @@ public final class SparseDoubleRowMatrix implements DoubleMatrix {
     SparseDoubleRowMatrix result = new SparseDoubleRowMatrix(
         other.getRowCount(), other.getColumnCount());
 
-    for (int row : this.matrix.keys()) {
-      Iterator<DoubleVectorElement> iterate = matrix.get(row).iterate();
+    for (int row = nextStoredRow(0); row >= 0; row = nextStoredRow(row + 1)) {
+      Iterator<DoubleVectorElement> iterate = matrix[row].iterate();
       while (iterate.hasNext()) {
         DoubleVectorElement e = iterate.next();
         result.set(row, e.getIndex(),
@@ -358,8 +554,8 @@ public final class SparseDoubleRowMatrix implements DoubleMatrix {
   public DoubleMatrix subtract(DoubleVector vec) {
     DoubleMatrix result = new SparseDoubleRowMatrix(this.getRowCount(),
         this.getColumnCount());
-    for (int row : this.matrix.keys()) {
-      SparseDoubleVector rowVec = matrix.get(row);
+    for (int row = nextStoredRow(0); row >= 0; row = nextStoredRow(row + 1)) {
+      DoubleVector rowVec = matrix[row];
       result.setRowVector(row, rowVec.subtract(vec.get(row)));
     }
     return result;
@@ -369,8 +565,8 @@ public final class SparseDoubleRowMatrix implements DoubleMatrix {
   public DoubleMatrix divide(DoubleVector vec) {
     DoubleMatrix result = new SparseDoubleRowMatrix(this.getRowCount(),
         this.getColumnCount());
-    for (int row : this.matrix.keys()) {
-      SparseDoubleVector rowVector = matrix.get(row);
+    for (int row = nextStoredRow(0); row >= 0; row = nextStoredRow(row + 1)) {
+      DoubleVector rowVector = matrix[row];
       Iterator<DoubleVectorElement> iterateNonZero = rowVector.iterateNonZero();
       while (iterateNonZero.hasNext()) {
         DoubleVectorElement next = iterateNonZero.next();
@@ -384,8 +580,8 @@ public final class SparseDoubleRowMatrix implements DoubleMatrix {
   public DoubleMatrix divide(DoubleMatrix other) {
     SparseDoubleRowMatrix m = new SparseDoubleRowMatrix(other);
 
-    for (int row : this.matrix.keys()) {
-      Iterator<DoubleVectorElement> iterateNonZero = matrix.get(row)
+    for (int row = nextStoredRow(0); row >= 0; row = nextStoredRow(row + 1)) {
+      Iterator<DoubleVectorElement> iterateNonZero = matrix[row]
           .iterateNonZero();
       while (iterateNonZero.hasNext()) {
         DoubleVectorElement e = iterateNonZero.next();
@@ -411,8 +607,8 @@ public final class SparseDoubleRowMatrix implements DoubleMatrix {
   public DoubleMatrix divide(double scalar) {
     DoubleMatrix result = new SparseDoubleRowMatrix(this.getRowCount(),
         this.getColumnCount());
-    for (int row : this.matrix.keys()) {
-      Iterator<DoubleVectorElement> iterateNonZero = matrix.get(row)
+    for (int row = nextStoredRow(0); row >= 0; row = nextStoredRow(row + 1)) {
+      Iterator<DoubleVectorElement> iterateNonZero = matrix[row]
           .iterateNonZero();
       while (iterateNonZero.hasNext()) {
         DoubleVectorElement e = iterateNonZero.next();
@@ -427,8 +623,8 @@ public final class SparseDoubleRowMatrix implements DoubleMatrix {
     SparseDoubleRowMatrix result = new SparseDoubleRowMatrix(
         other.getRowCount(), other.getColumnCount());
 
-    for (int row : this.matrix.keys()) {
-      Iterator<DoubleVectorElement> iterate = matrix.get(row).iterate();
+    for (int row = nextStoredRow(0); row >= 0; row = nextStoredRow(row + 1)) {
+      Iterator<DoubleVectorElement> iterate = matrix[row].iterate();
       while (iterate.hasNext()) {
         DoubleVectorElement e = iterate.next();
         result.set(row, e.getIndex(),
@@ -443,8 +639,8 @@ public final class SparseDoubleRowMatrix implements DoubleMatrix {
   public DoubleMatrix pow(double x) {
     DoubleMatrix result = new SparseDoubleRowMatrix(this.getRowCount(),
         this.getColumnCount());
-    for (int row : this.matrix.keys()) {
-      Iterator<DoubleVectorElement> iterateNonZero = matrix.get(row)
+    for (int row = nextStoredRow(0); row >= 0; row = nextStoredRow(row + 1)) {
+      Iterator<DoubleVectorElement> iterateNonZero = matrix[row]
           .iterateNonZero();
       while (iterateNonZero.hasNext()) {
         DoubleVectorElement e = iterateNonZero.next();
@@ -472,8 +668,8 @@ public final class SparseDoubleRowMatrix implements DoubleMatrix {
   @Override
   public double sum() {
     double res = 0.0d;
-    for (int row : this.matrix.keys()) {
-      Iterator<DoubleVectorElement> iterateNonZero = matrix.get(row)
+    for (int row = nextStoredRow(0); row >= 0; row = nextStoredRow(row + 1)) {
+      Iterator<DoubleVectorElement> iterateNonZero = matrix[row]
           .iterateNonZero();
       while (iterateNonZero.hasNext()) {
         DoubleVectorElement e = iterateNonZero.next();
@@ -490,16 +686,55 @@ public final class SparseDoubleRowMatrix implements DoubleMatrix {
 
   @Override
   public int[] rowIndices() {
-    return matrix.keys();
+    int[] rows = new int[storedRows];
+    int i = 0;
+    for (int row = nextStoredRow(0); row >= 0; row = nextStoredRow(row + 1)) {
+      rows[i++] = row;
+    }
+    return rows;
+  }
+
+  /**
+   * Finds the next row that has a row vector, which allows to iterate the rows
+   * without allocating:
+   * 
+   * <pre>
+   * for (int row = m.nextStoredRow(0); row &gt;= 0;
+   *     row = m.nextStoredRow(row + 1))
+   * </pre>
+   * 
+   * @return the first row index >= from that is stored, or -1 if there is
+   *         none.
+   */
+  public int nextStoredRow(int from) {
+    for (int row = from; row < numRows; row++) {
+      if (matrix[row] != null) {
+        return row;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return the number of rows that have a row vector.
+   */
+  public int getStoredRowCount() {
+    return storedRows;
+  }
+
+  /**
+   * @return the vector type of the rows.
+   */
+  public RowType getRowType() {
+    return rowType;
   }
 
   @Override
   public double[][] toArray() {
-    int[] rowIndices = rowIndices();
     double[][] dim = new double[getRowCount()][getColumnCount()];
 
-    for (int row : rowIndices) {
-      DoubleVector rowVector = getRowVector(row);
+    for (int row = nextStoredRow(0); row >= 0; row = nextStoredRow(row + 1)) {
+      DoubleVector rowVector = matrix[row];
       Iterator<DoubleVectorElement> iterateNonZero = rowVector.iterateNonZero();
       while (iterateNonZero.hasNext()) {
         DoubleVectorElement next = iterateNonZero.next();
@@ -512,20 +747,27 @@ public final class SparseDoubleRowMatrix implements DoubleMatrix {
 
   @Override
   public DoubleMatrix deepCopy() {
-    return new SparseDoubleRowMatrix(this);
+    return new SparseDoubleRowMatrix(this, rowType);
   }
 
   @Override
   public String toString() {
     if (numRows * numColumns < 50) {
-      return matrix.toString();
+      StringBuilder sb = new StringBuilder("{");
+      for (int row = nextStoredRow(0); row >= 0; row = nextStoredRow(row + 1)) {
+        if (sb.length() > 1) {
+          sb.append(',');
+        }
+        sb.append(row).append('=').append(matrix[row]);
+      }
+      return sb.append('}').toString();
     } else {
       return sizeToString();
     }
   }
 
   public void removeRow(int row) {
-    matrix.remove(row);
+    store(row, null);
   }
 
   /**
@@ -535,6 +777,17 @@ public final class SparseDoubleRowMatrix implements DoubleMatrix {
     return numRows + "x" + numColumns;
   }
 
+  private void store(int row, DoubleVector vector) {
+    if (matrix[row] == null) {
+      if (vector != null) {
+        storedRows++;
+      }
+    } else if (vector == null) {
+      storedRows--;
+    }
+    matrix[row] = vector;
+  }
+
   static int[] fromUpTo(int from, int to, int stepsize) {
     int[] v = new int[(to - from) / stepsize];
 
@@ -544,4 +797,54 @@ public final class SparseDoubleRowMatrix implements DoubleMatrix {
     return v;
   }
 
+  /**
+   * The non-zeros of the stored rows in compressed sparse row format, row i
+   * has its column indices and values in [offsets[i], offsets[i + 1]).
+   */
+  private static final class CompressedRows {
+
+    private final int[] rows;
+    private final int[] offsets;
+    private final int[] columns;
+    private final double[] values;
+
+    CompressedRows(int[] rows, int[] offsets, int[] columns, double[] values) {
+      this.rows = rows;
+      this.offsets = offsets;
+      this.columns = columns;
+      this.values = values;
+    }
+  }
+
+  private static final class MultiplyTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final CompressedRows a;
+    private final DenseDoubleMatrix other;
+    private final DenseDoubleMatrix result;
+    private final int from;
+    private final int to;
+
+    MultiplyTask(CompressedRows a, DenseDoubleMatrix other,
+        DenseDoubleMatrix result, int from, int to) {
+      this.a = a;
+      this.other = other;
+      this.result = result;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= ROW_BLOCK) {
+        multiplyRows(a, other, result, from, to);
+      } else {
+        int mid = (from + to) >>> 1;
+        invokeAll(new MultiplyTask(a, other, result, from, mid),
+            new MultiplyTask(a, other, result, mid, to));
+      }
+    }
+  }
+
 }
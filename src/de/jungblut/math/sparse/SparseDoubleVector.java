@@ -1,6 +1,5 @@
 package de.jungblut.math.sparse;
 
-import gnu.trove.iterator.TIntDoubleIterator;
 
 import java.util.Iterator;
 
@@ -166,8 +165,12 @@ public final class SparseDoubleVector implements DoubleVector {
 
   @Override
   public DoubleVector add(DoubleVector other) {
-    DoubleVector result = new SparseDoubleVector(this.vector.fastDeepCopy(),
-        this.getDimension());
+    SparseDoubleVector result = new SparseDoubleVector(
+        this.vector.fastDeepCopy(), this.getDimension());
+    if (other instanceof SparseDoubleVector) {
+      result.vector.merge(((SparseDoubleVector) other).vector, 1d);
+      return result;
+    }
     Iterator<DoubleVectorElement> iter = other.iterateNonZero();
     while (iter.hasNext()) {
       DoubleVectorElement e = iter.next();
@@ -178,6 +181,34 @@ public final class SparseDoubleVector implements DoubleVector {
     return result;
   }
 
+  /**
+   * Adds the other vector and writes the sum into the given vector, which may
+   * be this or the other vector. Once the result has grown to the capacity of
+   * this vector, its hash table is reused and nothing is allocated.
+   * 
+   * @return the result vector.
+   */
+  public SparseDoubleVector add(DoubleVector other, SparseDoubleVector result) {
+    checkResult(result);
+    if (other instanceof SparseDoubleVector) {
+      // the other vector may be the result, which the copy overwrites
+      FastIntDoubleHashMap otherMap = ((SparseDoubleVector) other).vector;
+      if (otherMap == result.vector) {
+        otherMap = otherMap.fastDeepCopy();
+      }
+      this.vector.copyInto(result.vector);
+      result.vector.merge(otherMap, 1d);
+      return result;
+    }
+    this.vector.copyInto(result.vector);
+    Iterator<DoubleVectorElement> iter = other.iterateNonZero();
+    while (iter.hasNext()) {
+      DoubleVectorElement e = iter.next();
+      result.set(e.getIndex(), result.get(e.getIndex()) + e.getValue());
+    }
+    return result;
+  }
+
   @Override
   public DoubleVector add(double scalar) {
     DoubleVector v = new SparseDoubleVector(this.dimension, this.vector.size());
@@ -192,8 +223,12 @@ public final class SparseDoubleVector implements DoubleVector {
   @Override
   public DoubleVector subtract(DoubleVector other) {
 
-    DoubleVector result = new SparseDoubleVector(this.vector.fastDeepCopy(),
-        this.getDimension());
+    SparseDoubleVector result = new SparseDoubleVector(
+        this.vector.fastDeepCopy(), this.getDimension());
+    if (other instanceof SparseDoubleVector) {
+      result.vector.merge(((SparseDoubleVector) other).vector, -1d);
+      return result;
+    }
 
     Iterator<DoubleVectorElement> iter = other.iterateNonZero();
     while (iter.hasNext()) {
@@ -205,6 +240,36 @@ public final class SparseDoubleVector implements DoubleVector {
     return result;
   }
 
+  /**
+   * Subtracts the other vector and writes the difference into the given
+   * vector, which may be this or the other vector. Once the result has grown
+   * to the capacity of this vector, its hash table is reused and nothing is
+   * allocated.
+   * 
+   * @return the result vector.
+   */
+  public SparseDoubleVector subtract(DoubleVector other,
+      SparseDoubleVector result) {
+    checkResult(result);
+    if (other instanceof SparseDoubleVector) {
+      // the other vector may be the result, which the copy overwrites
+      FastIntDoubleHashMap otherMap = ((SparseDoubleVector) other).vector;
+      if (otherMap == result.vector) {
+        otherMap = otherMap.fastDeepCopy();
+      }
+      this.vector.copyInto(result.vector);
+      result.vector.merge(otherMap, -1d);
+      return result;
+    }
+    this.vector.copyInto(result.vector);
+    Iterator<DoubleVectorElement> iter = other.iterateNonZero();
+    while (iter.hasNext()) {
+      DoubleVectorElement e = iter.next();
+      result.set(e.getIndex(), result.get(e.getIndex()) - e.getValue());
+    }
+    return result;
+  }
+
   @Override
   public DoubleVector subtract(double scalar) {
     DoubleVector v = new SparseDoubleVector(this.dimension, this.vector.size());
@@ -498,6 +563,13 @@ public final class SparseDoubleVector implements DoubleVector {
     return d;
   }
 
+  private void checkResult(SparseDoubleVector result) {
+    if (result.dimension != dimension) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + dimension + " != " + result.dimension);
+    }
+  }
+
   @Override
   public String toString() {
     if (getLength() < 50) {
@@ -548,20 +620,13 @@ public final class SparseDoubleVector implements DoubleVector {
       AbstractIterator<DoubleVectorElement> {
 
     private final DoubleVectorElement element = new DoubleVectorElement();
-    private final TIntDoubleIterator iterator;
-    private int currentIndex = 0;
-
-    public NonZeroIterator() {
-      iterator = vector.iterator();
-    }
+    private final FastIntDoubleHashMap.Cursor cursor = vector.cursor();
 
     @Override
     protected final DoubleVectorElement computeNext() {
-      if (currentIndex < vector.size()) {
-        currentIndex++;
-        iterator.advance();
-        element.setIndex(iterator.key());
-        element.setValue(iterator.value());
+      if (cursor.advance()) {
+        element.setIndex(cursor.key());
+        element.setValue(cursor.value());
         return element;
       } else {
         return endOfData();
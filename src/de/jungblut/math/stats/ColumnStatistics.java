@@ -0,0 +1,306 @@
+package de.jungblut.math.stats;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.stream.Collector;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleVector;
+
+/**
+ * Single pass, mergeable accumulator of the per column count, mean, variance,
+ * minimum and maximum of a stream of vectors (the rows).
+ *
+ * The mean and variance are updated with Welford's algorithm. Sparse vectors
+ * only update their non-zero columns: every column tracks the statistics of
+ * the values that were actually seen, the remaining rows are implicit zeros
+ * that are folded in when the statistics are read. Two accumulators are merged
+ * with the parallel formula of Chan et al., so partial accumulators can be
+ * computed in different threads, for example with {@link #collector(int)} on
+ * a parallel stream.
+ *
+ * This class is not thread safe.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class ColumnStatistics {
+
+  private final int dimension;
+  // statistics of the seen values per column
+  private final long[] counts;
+  private final double[] means;
+  private final double[] m2;
+  private final double[] mins;
+  private final double[] maxs;
+  // the number of rows
+  private long count;
+
+  /**
+   * Creates a new empty accumulator for vectors of the given dimension.
+   */
+  public ColumnStatistics(int dimension) {
+    if (dimension < 0) {
+      throw new IllegalArgumentException("Dimension must be >= 0, but was "
+          + dimension);
+    }
+    this.dimension = dimension;
+    this.counts = new long[dimension];
+    this.means = new double[dimension];
+    this.m2 = new double[dimension];
+    this.mins = new double[dimension];
+    this.maxs = new double[dimension];
+    Arrays.fill(mins, Double.POSITIVE_INFINITY);
+    Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+  }
+
+  /**
+   * Computes the statistics of the columns of the given matrix in a single
+   * pass.
+   */
+  public static ColumnStatistics of(DoubleMatrix matrix) {
+    ColumnStatistics stats = new ColumnStatistics(matrix.getColumnCount());
+    if (matrix instanceof DenseDoubleMatrix) {
+      // column major, so every column is a contiguous run
+      double[] values = ((DenseDoubleMatrix) matrix).getColumnMajorMatrix();
+      int rows = matrix.getRowCount();
+      for (int column = 0; column < stats.dimension; column++) {
+        int offset = column * rows;
+        for (int row = 0; row < rows; row++) {
+          stats.update(column, values[offset + row]);
+        }
+      }
+    } else {
+      for (int row : matrix.rowIndices()) {
+        stats.updateNonZero(matrix.getRowVector(row));
+      }
+    }
+    stats.count = matrix.getRowCount();
+    return stats;
+  }
+
+  /**
+   * @return a collector that accumulates the statistics of vectors with the
+   *         given dimension, merges the partial results of parallel streams.
+   */
+  public static Collector<DoubleVector, ?, ColumnStatistics> collector(
+      int dimension) {
+    return Collector.of(() -> new ColumnStatistics(dimension),
+        ColumnStatistics::add, ColumnStatistics::merge,
+        Collector.Characteristics.IDENTITY_FINISH);
+  }
+
+  /**
+   * Adds the given vector as a row, sparse vectors only update their non-zero
+   * columns.
+   *
+   * @return this accumulator.
+   */
+  public ColumnStatistics add(DoubleVector vector) {
+    if (vector.getDimension() != dimension) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + dimension + " != " + vector.getDimension());
+    }
+    if (vector.isSparse()) {
+      updateNonZero(vector);
+    } else if (vector instanceof DenseDoubleVector) {
+      double[] values = vector.toArray();
+      for (int i = 0; i < dimension; i++) {
+        update(i, values[i]);
+      }
+    } else {
+      for (int i = 0; i < dimension; i++) {
+        update(i, vector.get(i));
+      }
+    }
+    count++;
+    return this;
+  }
+
+  /**
+   * Merges the statistics of the other accumulator into this one.
+   *
+   * @return this accumulator.
+   */
+  public ColumnStatistics merge(ColumnStatistics other) {
+    if (other.dimension != dimension) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + dimension + " != " + other.dimension);
+    }
+    for (int i = 0; i < dimension; i++) {
+      long b = other.counts[i];
+      if (b == 0) {
+        continue;
+      }
+      long a = counts[i];
+      long n = a + b;
+      double delta = other.means[i] - means[i];
+      means[i] += delta * b / n;
+      m2[i] += other.m2[i] + delta * delta * ((double) a * b / n);
+      counts[i] = n;
+      mins[i] = Math.min(mins[i], other.mins[i]);
+      maxs[i] = Math.max(maxs[i], other.maxs[i]);
+    }
+    count += other.count;
+    return this;
+  }
+
+  /**
+   * @return the number of rows.
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * @return the dimension of the rows.
+   */
+  public int getDimension() {
+    return dimension;
+  }
+
+  /**
+   * @return the mean of the given column, NaN if there are no rows.
+   */
+  public double getMean(int column) {
+    if (count == 0) {
+      return Double.NaN;
+    }
+    return means[column] * ((double) counts[column] / count);
+  }
+
+  /**
+   * @return the population variance of the given column, NaN if there are no
+   *         rows.
+   */
+  public double getVariance(int column) {
+    return count == 0 ? Double.NaN : sumOfSquares(column) / count;
+  }
+
+  /**
+   * @return the sample variance of the given column, NaN if there are less
+   *         than two rows.
+   */
+  public double getSampleVariance(int column) {
+    return count < 2 ? Double.NaN : sumOfSquares(column) / (count - 1);
+  }
+
+  /**
+   * @return the minimum of the given column, NaN if there are no rows.
+   */
+  public double getMin(int column) {
+    if (count == 0) {
+      return Double.NaN;
+    }
+    return counts[column] < count ? Math.min(mins[column], 0d) : mins[column];
+  }
+
+  /**
+   * @return the maximum of the given column, NaN if there are no rows.
+   */
+  public double getMax(int column) {
+    if (count == 0) {
+      return Double.NaN;
+    }
+    return counts[column] < count ? Math.max(maxs[column], 0d) : maxs[column];
+  }
+
+  /**
+   * @return the means of all columns.
+   */
+  public DenseDoubleVector getMean() {
+    DenseDoubleVector result = new DenseDoubleVector(dimension);
+    for (int i = 0; i < dimension; i++) {
+      result.set(i, getMean(i));
+    }
+    return result;
+  }
+
+  /**
+   * @return the population variances of all columns.
+   */
+  public DenseDoubleVector getVariance() {
+    DenseDoubleVector result = new DenseDoubleVector(dimension);
+    for (int i = 0; i < dimension; i++) {
+      result.set(i, getVariance(i));
+    }
+    return result;
+  }
+
+  /**
+   * @return the sample variances of all columns.
+   */
+  public DenseDoubleVector getSampleVariance() {
+    DenseDoubleVector result = new DenseDoubleVector(dimension);
+    for (int i = 0; i < dimension; i++) {
+      result.set(i, getSampleVariance(i));
+    }
+    return result;
+  }
+
+  /**
+   * @return the population standard deviations of all columns.
+   */
+  public DenseDoubleVector getStandardDeviation() {
+    DenseDoubleVector result = new DenseDoubleVector(dimension);
+    for (int i = 0; i < dimension; i++) {
+      result.set(i, Math.sqrt(getVariance(i)));
+    }
+    return result;
+  }
+
+  /**
+   * @return the minimums of all columns.
+   */
+  public DenseDoubleVector getMin() {
+    DenseDoubleVector result = new DenseDoubleVector(dimension);
+    for (int i = 0; i < dimension; i++) {
+      result.set(i, getMin(i));
+    }
+    return result;
+  }
+
+  /**
+   * @return the maximums of all columns.
+   */
+  public DenseDoubleVector getMax() {
+    DenseDoubleVector result = new DenseDoubleVector(dimension);
+    for (int i = 0; i < dimension; i++) {
+      result.set(i, getMax(i));
+    }
+    return result;
+  }
+
+  // the sum of squared deviations from the mean, including the implicit zeros
+  private double sumOfSquares(int column) {
+    long seen = counts[column];
+    long zeros = count - seen;
+    double mean = means[column];
+    return m2[column] + mean * mean * ((double) seen * zeros / count);
+  }
+
+  private void updateNonZero(DoubleVector vector) {
+    Iterator<DoubleVectorElement> iterator = vector.iterateNonZero();
+    while (iterator.hasNext()) {
+      DoubleVectorElement next = iterator.next();
+      update(next.getIndex(), next.getValue());
+    }
+  }
+
+  private void update(int column, double value) {
+    long n = ++counts[column];
+    double delta = value - means[column];
+    means[column] += delta / n;
+    m2[column] += delta * (value - means[column]);
+    if (value < mins[column]) {
+      mins[column] = value;
+    }
+    if (value > maxs[column]) {
+      maxs[column] = value;
+    }
+  }
+
+}
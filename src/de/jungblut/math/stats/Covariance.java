@@ -0,0 +1,452 @@
+package de.jungblut.math.stats;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collector;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.sparse.SparseDoubleVector;
+
+/**
+ * Mergeable accumulator of the covariance and correlation matrix of a stream
+ * of vectors (the rows).
+ *
+ * The co-moments are accumulated as the outer products of shifted rows into the
+ * upper triangle of the matrix, which is cut into dense tiles of
+ * {@value #TILE_SIZE} x {@value #TILE_SIZE} that are only allocated once
+ * touched. If the first row is dense, all rows are shifted by it, which keeps
+ * the sums small and avoids the cancellation of the textbook formula for
+ * columns with a large mean. Otherwise nothing is shifted and sparse rows are
+ * added as sparse rank-1 updates that only touch the pairs of their non-zero
+ * columns.
+ *
+ * Accumulators of different threads are merged with the pairwise co-moment
+ * formula of Chan et al., {@link #of(List, ForkJoinPool)} does exactly that
+ * with one accumulator per thread. Every accumulator holds the full upper
+ * triangle, so for d columns each one takes up to 4 * d * d bytes.
+ *
+ * This class is not thread safe.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class Covariance {
+
+  /**
+   * The number of rows and columns of a tile.
+   */
+  public static final int TILE_SIZE = 64;
+
+  // the minimum number of rows per parallel task
+  private static final int MIN_ROWS_PER_TASK = 1024;
+
+  private final int dimension;
+  private final int numTiles;
+  // upper triangle tiles, row major inside, null until touched
+  private final double[][] tiles;
+  // sums of the shifted rows
+  private double[] sums;
+  // the shift of all rows, null if nothing is shifted
+  private double[] shift;
+  private long count;
+
+  // scratch space for the rows
+  private double[] deviation;
+  private int[] nonZeroIndices;
+  private double[] nonZeroValues;
+
+  /**
+   * Creates a new empty accumulator for vectors of the given dimension.
+   */
+  public Covariance(int dimension) {
+    if (dimension < 0) {
+      throw new IllegalArgumentException("Dimension must be >= 0, but was "
+          + dimension);
+    }
+    this.dimension = dimension;
+    this.numTiles = (dimension + TILE_SIZE - 1) / TILE_SIZE;
+    this.tiles = new double[numTiles * (numTiles + 1) / 2][];
+    this.sums = new double[dimension];
+  }
+
+  /**
+   * Accumulates the rows of the given matrix on the common pool, rows that
+   * are missing in sparse matrices count as zero rows.
+   */
+  public static Covariance of(DoubleMatrix matrix) {
+    int[] rowIndices = matrix.rowIndices();
+    DoubleVector[] rows = new DoubleVector[rowIndices.length];
+    for (int i = 0; i < rows.length; i++) {
+      rows[i] = matrix.getRowVector(rowIndices[i]);
+    }
+    Covariance result = of(Arrays.asList(rows), ForkJoinPool.commonPool());
+    SparseDoubleVector zero = new SparseDoubleVector(matrix.getColumnCount());
+    for (int i = rows.length; i < matrix.getRowCount(); i++) {
+      result.add(zero);
+    }
+    return result;
+  }
+
+  /**
+   * Accumulates the given rows in parallel, every thread of the pool fills its
+   * own accumulator over a contiguous range of rows and the partial results
+   * are merged.
+   *
+   * @param rows the rows, all must have the same dimension.
+   * @param pool the pool to accumulate in.
+   * @return the merged accumulator.
+   */
+  public static Covariance of(List<? extends DoubleVector> rows,
+      ForkJoinPool pool) {
+    if (rows.isEmpty()) {
+      return new Covariance(0);
+    }
+    int dimension = rows.get(0).getDimension();
+    int perTask = Math.max(MIN_ROWS_PER_TASK,
+        (rows.size() + pool.getParallelism() - 1) / pool.getParallelism());
+    return pool.invoke(new AccumulateTask(rows, 0, rows.size(), dimension,
+        perTask));
+  }
+
+  /**
+   * @return a collector that accumulates vectors with the given dimension,
+   *         merges the partial results of parallel streams.
+   */
+  public static Collector<DoubleVector, ?, Covariance> collector(int dimension) {
+    return Collector.of(() -> new Covariance(dimension), Covariance::add,
+        Covariance::merge, Collector.Characteristics.IDENTITY_FINISH);
+  }
+
+  /**
+   * Adds the given vector as a row.
+   *
+   * @return this accumulator.
+   */
+  public Covariance add(DoubleVector vector) {
+    if (vector.getDimension() != dimension) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + dimension + " != " + vector.getDimension());
+    }
+    if (count == 0 && shift == null && !vector.isSparse()) {
+      // shift by the first dense row, its deviation is zero
+      shift = vector.toArray().clone();
+      count = 1;
+      return this;
+    }
+    count++;
+    if (shift == null && vector.isSparse()) {
+      addSparse(vector);
+    } else {
+      addDense(vector);
+    }
+    return this;
+  }
+
+  /**
+   * Merges the other accumulator into this one.
+   *
+   * @return this accumulator.
+   */
+  public Covariance merge(Covariance other) {
+    if (other.dimension != dimension) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + dimension + " != " + other.dimension);
+    }
+    if (other.count == 0) {
+      return this;
+    }
+    if (shift == null && other.shift == null) {
+      // both are raw sums, that simply add up
+      for (int t = 0; t < tiles.length; t++) {
+        if (other.tiles[t] != null) {
+          double[] tile = tile(t);
+          double[] otherTile = other.tiles[t];
+          for (int i = 0; i < tile.length; i++) {
+            tile[i] += otherTile[i];
+          }
+        }
+      }
+      for (int i = 0; i < dimension; i++) {
+        sums[i] += other.sums[i];
+      }
+      count += other.count;
+      return this;
+    }
+    // center both around their mean and combine with the mean difference
+    long n = count + other.count;
+    double[] mean = getMeanArray();
+    double[] otherMean = other.getMeanArray();
+    double[] delta = new double[dimension];
+    for (int i = 0; i < dimension; i++) {
+      delta[i] = otherMean[i] - mean[i];
+    }
+    double weight = (double) count * other.count / n;
+    for (int bi = 0; bi < numTiles; bi++) {
+      for (int bj = bi; bj < numTiles; bj++) {
+        int t = tileIndex(bi, bj);
+        double[] tile = tile(t);
+        double[] otherTile = other.tiles[t];
+        int rowStart = bi * TILE_SIZE;
+        int columnStart = bj * TILE_SIZE;
+        int rowEnd = Math.min(rowStart + TILE_SIZE, dimension);
+        int columnEnd = Math.min(columnStart + TILE_SIZE, dimension);
+        for (int i = rowStart; i < rowEnd; i++) {
+          int offset = (i - rowStart) * TILE_SIZE - columnStart;
+          for (int j = bi == bj ? i : columnStart; j < columnEnd; j++) {
+            double comoment = tile[offset + j] - centering(i, j);
+            if (otherTile != null) {
+              comoment += otherTile[offset + j];
+            }
+            comoment -= other.centering(i, j);
+            tile[offset + j] = comoment + delta[i] * delta[j] * weight;
+          }
+        }
+      }
+    }
+    for (int i = 0; i < dimension; i++) {
+      mean[i] += delta[i] * other.count / n;
+    }
+    shift = mean;
+    sums = new double[dimension];
+    count = n;
+    return this;
+  }
+
+  /**
+   * @return the number of rows.
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * @return the dimension of the rows.
+   */
+  public int getDimension() {
+    return dimension;
+  }
+
+  /**
+   * @return the means of all columns.
+   */
+  public DenseDoubleVector getMean() {
+    return new DenseDoubleVector(getMeanArray());
+  }
+
+  /**
+   * @return the sample covariance matrix (normalized by n - 1), zero if there
+   *         are less than two rows.
+   */
+  public DenseDoubleMatrix getCovariance() {
+    return getCovariance(count - 1);
+  }
+
+  /**
+   * @return the population covariance matrix (normalized by n), zero if there
+   *         are no rows.
+   */
+  public DenseDoubleMatrix getPopulationCovariance() {
+    return getCovariance(count);
+  }
+
+  /**
+   * @return the correlation matrix. Columns without variance have a zero
+   *         correlation to all columns, including themselves.
+   */
+  public DenseDoubleMatrix getCorrelation() {
+    DenseDoubleMatrix covariance = getCovariance(1);
+    double[] values = covariance.getColumnMajorMatrix();
+    double[] scale = new double[dimension];
+    for (int i = 0; i < dimension; i++) {
+      double variance = values[i * dimension + i];
+      scale[i] = variance > 0d ? 1d / Math.sqrt(variance) : 0d;
+    }
+    for (int j = 0; j < dimension; j++) {
+      for (int i = 0; i < dimension; i++) {
+        double correlation = values[j * dimension + i] * scale[i] * scale[j];
+        // clamp the rounding errors
+        values[j * dimension + i] = Math.max(-1d, Math.min(1d, correlation));
+      }
+    }
+    return covariance;
+  }
+
+  private DenseDoubleMatrix getCovariance(long normalizer) {
+    int d = dimension;
+    double[] result = new double[d * d];
+    if (normalizer > 0) {
+      for (int bi = 0; bi < numTiles; bi++) {
+        for (int bj = bi; bj < numTiles; bj++) {
+          double[] tile = tiles[tileIndex(bi, bj)];
+          int rowStart = bi * TILE_SIZE;
+          int columnStart = bj * TILE_SIZE;
+          int rowEnd = Math.min(rowStart + TILE_SIZE, d);
+          int columnEnd = Math.min(columnStart + TILE_SIZE, d);
+          for (int i = rowStart; i < rowEnd; i++) {
+            int offset = (i - rowStart) * TILE_SIZE - columnStart;
+            for (int j = bi == bj ? i : columnStart; j < columnEnd; j++) {
+              double comoment = tile == null ? 0d : tile[offset + j];
+              double value = (comoment - centering(i, j)) / normalizer;
+              result[i * d + j] = value;
+              result[j * d + i] = value;
+            }
+          }
+        }
+      }
+    }
+    return new DenseDoubleMatrix(d, d, result);
+  }
+
+  // the correction of the raw co-moment of the shifted rows to the mean
+  private double centering(int i, int j) {
+    return count == 0 ? 0d : sums[i] * sums[j] / count;
+  }
+
+  private double[] getMeanArray() {
+    double[] mean = new double[dimension];
+    for (int i = 0; i < dimension; i++) {
+      double base = shift == null ? 0d : shift[i];
+      mean[i] = count == 0 ? base : base + sums[i] / count;
+    }
+    return mean;
+  }
+
+  private void addSparse(DoubleVector vector) {
+    if (nonZeroIndices == null) {
+      nonZeroIndices = new int[dimension];
+      nonZeroValues = new double[dimension];
+    }
+    int nnz = 0;
+    Iterator<DoubleVectorElement> iterator = vector.iterateNonZero();
+    while (iterator.hasNext()) {
+      DoubleVectorElement next = iterator.next();
+      nonZeroIndices[nnz] = next.getIndex();
+      nonZeroValues[nnz++] = next.getValue();
+    }
+    for (int p = 0; p < nnz; p++) {
+      int i = nonZeroIndices[p];
+      double value = nonZeroValues[p];
+      sums[i] += value;
+      for (int q = p; q < nnz; q++) {
+        int j = nonZeroIndices[q];
+        if (i <= j) {
+          addPair(i, j, value * nonZeroValues[q]);
+        } else {
+          addPair(j, i, value * nonZeroValues[q]);
+        }
+      }
+    }
+  }
+
+  private void addPair(int i, int j, double value) {
+    int bi = i / TILE_SIZE;
+    int bj = j / TILE_SIZE;
+    double[] tile = tile(tileIndex(bi, bj));
+    tile[(i - bi * TILE_SIZE) * TILE_SIZE + j - bj * TILE_SIZE] += value;
+  }
+
+  private void addDense(DoubleVector vector) {
+    if (deviation == null) {
+      deviation = new double[dimension];
+    }
+    double[] d = deviation;
+    if (vector.isSparse()) {
+      for (int i = 0; i < dimension; i++) {
+        d[i] = -shift[i];
+      }
+      Iterator<DoubleVectorElement> iterator = vector.iterateNonZero();
+      while (iterator.hasNext()) {
+        DoubleVectorElement next = iterator.next();
+        d[next.getIndex()] += next.getValue();
+      }
+    } else {
+      double[] values = vector.toArray();
+      for (int i = 0; i < dimension; i++) {
+        d[i] = shift == null ? values[i] : values[i] - shift[i];
+      }
+    }
+    for (int i = 0; i < dimension; i++) {
+      sums[i] += d[i];
+    }
+    // rank-1 update of the upper triangle, tile by tile
+    for (int bi = 0; bi < numTiles; bi++) {
+      int rowStart = bi * TILE_SIZE;
+      int rowEnd = Math.min(rowStart + TILE_SIZE, dimension);
+      for (int bj = bi; bj < numTiles; bj++) {
+        int columnStart = bj * TILE_SIZE;
+        int columnEnd = Math.min(columnStart + TILE_SIZE, dimension);
+        double[] tile = tile(tileIndex(bi, bj));
+        for (int i = rowStart; i < rowEnd; i++) {
+          double di = d[i];
+          if (di == 0d) {
+            continue;
+          }
+          int offset = (i - rowStart) * TILE_SIZE - columnStart;
+          for (int j = bi == bj ? i : columnStart; j < columnEnd; j++) {
+            tile[offset + j] += di * d[j];
+          }
+        }
+      }
+    }
+  }
+
+  private double[] tile(int index) {
+    double[] tile = tiles[index];
+    if (tile == null) {
+      tile = new double[TILE_SIZE * TILE_SIZE];
+      tiles[index] = tile;
+    }
+    return tile;
+  }
+
+  // index of the tile (bi, bj) with bi <= bj in the packed upper triangle
+  private int tileIndex(int bi, int bj) {
+    return bi * numTiles - bi * (bi - 1) / 2 + bj - bi;
+  }
+
+  private static final class AccumulateTask extends RecursiveTask<Covariance> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<? extends DoubleVector> rows;
+    private final int from;
+    private final int to;
+    private final int dimension;
+    private final int perTask;
+
+    AccumulateTask(List<? extends DoubleVector> rows, int from, int to,
+        int dimension, int perTask) {
+      this.rows = rows;
+      this.from = from;
+      this.to = to;
+      this.dimension = dimension;
+      this.perTask = perTask;
+    }
+
+    @Override
+    protected Covariance compute() {
+      if (to - from <= perTask) {
+        Covariance covariance = new Covariance(dimension);
+        for (int i = from; i < to; i++) {
+          covariance.add(rows.get(i));
+        }
+        return covariance;
+      }
+      int mid = (from + to) >>> 1;
+      AccumulateTask right = new AccumulateTask(rows, mid, to, dimension,
+          perTask);
+      right.fork();
+      Covariance left = new AccumulateTask(rows, from, mid, dimension,
+          perTask).compute();
+      return left.merge(right.join());
+    }
+  }
+
+}
@@ -0,0 +1,237 @@
+package de.jungblut.math.structured;
+
+import java.util.Arrays;
+
+import de.jungblut.math.DoubleMatrix;
+
+/**
+ * Banded matrix that only stores the diagonals from the lower bandwidth below
+ * to the upper bandwidth above the main diagonal. Every diagonal d = col - row
+ * is stored contiguously without padding, ordered from -lower to upper, so the
+ * products run over each diagonal with unit stride.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class BandedDoubleMatrix extends StructuredDoubleMatrix {
+
+  private final int lower;
+  private final int upper;
+  // the start of every diagonal in the values, by d + lower
+  private final int[] offsets;
+  private final double[] values;
+
+  /**
+   * Creates a new banded matrix of zeros with the same bandwidth below and
+   * above the diagonal.
+   *
+   * @param dimension the number of rows and columns.
+   * @param bandwidth the number of diagonals below and above the diagonal.
+   */
+  public BandedDoubleMatrix(int dimension, int bandwidth) {
+    this(dimension, bandwidth, bandwidth);
+  }
+
+  /**
+   * Creates a new banded matrix of zeros.
+   *
+   * @param dimension the number of rows and columns.
+   * @param lower the number of diagonals below the diagonal.
+   * @param upper the number of diagonals above the diagonal.
+   */
+  public BandedDoubleMatrix(int dimension, int lower, int upper) {
+    super(dimension);
+    if (lower < 0 || upper < 0) {
+      throw new IllegalArgumentException("Bandwidths must be >= 0, but were "
+          + lower + " and " + upper);
+    }
+    // wider bands than the matrix don't store anything more
+    this.lower = Math.min(lower, Math.max(0, dimension - 1));
+    this.upper = Math.min(upper, Math.max(0, dimension - 1));
+    this.offsets = new int[this.lower + this.upper + 2];
+    for (int d = -this.lower; d <= this.upper; d++) {
+      offsets[d + this.lower + 1] = offsets[d + this.lower]
+          + Math.max(0, dimension - Math.abs(d));
+    }
+    this.values = new double[offsets[offsets.length - 1]];
+  }
+
+  /**
+   * Copies the band of the given square matrix, the other elements are
+   * ignored.
+   */
+  public BandedDoubleMatrix(DoubleMatrix mat, int lower, int upper) {
+    this(mat.getRowCount(), lower, upper);
+    if (mat.getColumnCount() != dimension) {
+      throw new IllegalArgumentException("Matrix must be square, but was "
+          + mat.getRowCount() + "x" + mat.getColumnCount());
+    }
+    forEachEntry((row, col, index) -> values[index] = mat.get(row, col));
+  }
+
+  private BandedDoubleMatrix(BandedDoubleMatrix other, double[] values) {
+    super(other.dimension);
+    this.lower = other.lower;
+    this.upper = other.upper;
+    this.offsets = other.offsets;
+    this.values = values;
+  }
+
+  /**
+   * @return the number of diagonals below the diagonal.
+   */
+  public int getLowerBandwidth() {
+    return lower;
+  }
+
+  /**
+   * @return the number of diagonals above the diagonal.
+   */
+  public int getUpperBandwidth() {
+    return upper;
+  }
+
+  @Override
+  public double get(int row, int col) {
+    int d = col - row;
+    if (d < -lower || d > upper) {
+      return 0d;
+    }
+    return values[offsets[d + lower] + Math.min(row, col)];
+  }
+
+  /**
+   * Sets the element, the elements outside of the band can only be zero.
+   */
+  @Override
+  public void set(int row, int col, double value) {
+    int d = col - row;
+    if (d < -lower || d > upper) {
+      if (value != 0d) {
+        throw new IllegalArgumentException("Element (" + row + ", " + col
+            + ") is outside of the band.");
+      }
+      return;
+    }
+    values[offsets[d + lower] + Math.min(row, col)] = value;
+  }
+
+  /**
+   * Multiplies this matrix with the given matrix (A * B). The product of two
+   * banded matrices is banded with the sums of the bandwidths, every pair of
+   * diagonals adds up to one diagonal of the product.
+   *
+   * @return the result matrix.
+   */
+  @Override
+  public DoubleMatrix multiply(DoubleMatrix other) {
+    if (!(other instanceof BandedDoubleMatrix)
+        || other.getRowCount() != dimension) {
+      return super.multiply(other);
+    }
+    BandedDoubleMatrix b = (BandedDoubleMatrix) other;
+    BandedDoubleMatrix c = new BandedDoubleMatrix(dimension, lower + b.lower,
+        upper + b.upper);
+    for (int da = -lower; da <= upper; da++) {
+      for (int db = -b.lower; db <= b.upper; db++) {
+        int d = da + db;
+        // the rows i where (i, i + da) and (i + da, i + d) are in the matrix
+        int from = Math.max(0, Math.max(-da, -d));
+        int to = Math.min(dimension, Math.min(dimension - da, dimension - d));
+        if (from >= to) {
+          continue;
+        }
+        // the index of element t of diagonal d is at row t - min(0, d)
+        int aOffset = offsets[da + lower] + Math.min(0, da);
+        int bOffset = b.offsets[db + b.lower] + Math.min(0, db) + da;
+        int cOffset = c.offsets[d + c.lower] + Math.min(0, d);
+        for (int i = from; i < to; i++) {
+          c.values[cOffset + i] += values[aOffset + i]
+              * b.values[bOffset + i];
+        }
+      }
+    }
+    return c;
+  }
+
+  @Override
+  public BandedDoubleMatrix transpose() {
+    BandedDoubleMatrix t = new BandedDoubleMatrix(dimension, upper, lower);
+    // the diagonal d becomes -d, its elements keep their order
+    for (int d = -lower; d <= upper; d++) {
+      int from = offsets[d + lower];
+      System.arraycopy(values, from, t.values, t.offsets[-d + upper],
+          offsets[d + lower + 1] - from);
+    }
+    return t;
+  }
+
+  @Override
+  public BandedDoubleMatrix deepCopy() {
+    return (BandedDoubleMatrix) super.deepCopy();
+  }
+
+  @Override
+  void multiplyVector(double[] x, int xOffset, double[] y, int yOffset) {
+    Arrays.fill(y, yOffset, yOffset + dimension, 0d);
+    for (int d = -lower; d <= upper; d++) {
+      int offset = offsets[d + lower];
+      int length = offsets[d + lower + 1] - offset;
+      // element t of the diagonal is at (t - d, t) below and (t, t + d) above
+      int row = yOffset + Math.max(0, -d);
+      int col = xOffset + Math.max(0, d);
+      for (int t = 0; t < length; t++) {
+        y[row + t] += values[offset + t] * x[col + t];
+      }
+    }
+  }
+
+  @Override
+  void multiplyTransposedVector(double[] x, int xOffset, double[] y,
+      int yOffset) {
+    Arrays.fill(y, yOffset, yOffset + dimension, 0d);
+    for (int d = -lower; d <= upper; d++) {
+      int offset = offsets[d + lower];
+      int length = offsets[d + lower + 1] - offset;
+      int row = xOffset + Math.max(0, -d);
+      int col = yOffset + Math.max(0, d);
+      for (int t = 0; t < length; t++) {
+        y[col + t] += values[offset + t] * x[row + t];
+      }
+    }
+  }
+
+  @Override
+  double[] values() {
+    return values;
+  }
+
+  @Override
+  BandedDoubleMatrix withValues(double[] values) {
+    return new BandedDoubleMatrix(this, values);
+  }
+
+  @Override
+  void forEachEntry(EntryVisitor visitor) {
+    for (int d = -lower; d <= upper; d++) {
+      int offset = offsets[d + lower];
+      int length = offsets[d + lower + 1] - offset;
+      int row = Math.max(0, -d);
+      int col = Math.max(0, d);
+      for (int t = 0; t < length; t++) {
+        visitor.visit(row + t, col + t, offset + t);
+      }
+    }
+  }
+
+  @Override
+  boolean hasSameStructure(DoubleMatrix other) {
+    if (!(other instanceof BandedDoubleMatrix)) {
+      return false;
+    }
+    BandedDoubleMatrix banded = (BandedDoubleMatrix) other;
+    return banded.dimension == dimension && banded.lower == lower
+        && banded.upper == upper;
+  }
+
+}
@@ -0,0 +1,207 @@
+package de.jungblut.math.structured;
+
+import java.util.Arrays;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.sparse.SparseDoubleRowMatrix;
+
+/**
+ * Diagonal matrix that only stores its diagonal, e.g. for scaling or Jacobi
+ * preconditioners.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class DiagonalDoubleMatrix extends StructuredDoubleMatrix {
+
+  private final double[] values;
+
+  /**
+   * Creates a new diagonal matrix of zeros.
+   *
+   * @param dimension the number of rows and columns.
+   */
+  public DiagonalDoubleMatrix(int dimension) {
+    super(dimension);
+    this.values = new double[dimension];
+  }
+
+  /**
+   * Creates a new diagonal matrix on the given diagonal, which isn't copied.
+   */
+  public DiagonalDoubleMatrix(double[] diagonal) {
+    super(diagonal.length);
+    this.values = diagonal;
+  }
+
+  /**
+   * Creates a new diagonal matrix with the given vector as diagonal.
+   */
+  public DiagonalDoubleMatrix(DoubleVector diagonal) {
+    this(diagonal.toArray().clone());
+  }
+
+  /**
+   * @return the identity matrix of the given dimension.
+   */
+  public static DiagonalDoubleMatrix identity(int dimension) {
+    DiagonalDoubleMatrix identity = new DiagonalDoubleMatrix(dimension);
+    Arrays.fill(identity.values, 1d);
+    return identity;
+  }
+
+  /**
+   * @return the diagonal, not a copy.
+   */
+  public double[] getDiagonal() {
+    return values;
+  }
+
+  @Override
+  public double get(int row, int col) {
+    return row == col ? values[row] : 0d;
+  }
+
+  /**
+   * Sets the element, the elements outside of the diagonal can only be zero.
+   */
+  @Override
+  public void set(int row, int col, double value) {
+    if (row != col) {
+      if (value != 0d) {
+        throw new IllegalArgumentException("Element (" + row + ", " + col
+            + ") is outside of the diagonal.");
+      }
+      return;
+    }
+    values[row] = value;
+  }
+
+  /**
+   * Solves this * x = b.
+   *
+   * @return the dense solution x.
+   * @throws ArithmeticException if there is a zero on the diagonal.
+   */
+  public DenseDoubleVector solve(DoubleVector b) {
+    checkVector(b);
+    double[] x = new double[dimension];
+    for (int i = 0; i < dimension; i++) {
+      x[i] = b.get(i) / nonZero(i);
+    }
+    return new DenseDoubleVector(x);
+  }
+
+  /**
+   * @return the inverse of this matrix.
+   * @throws ArithmeticException if there is a zero on the diagonal.
+   */
+  public DiagonalDoubleMatrix inverse() {
+    double[] inverse = new double[dimension];
+    for (int i = 0; i < dimension; i++) {
+      inverse[i] = 1d / nonZero(i);
+    }
+    return new DiagonalDoubleMatrix(inverse);
+  }
+
+  /**
+   * Multiplies this matrix with the given matrix (D * B) by scaling the rows of
+   * B. The product keeps the structure of a diagonal, triangular or banded
+   * matrix B and the sparsity of a sparse matrix B.
+   *
+   * @return the result matrix.
+   */
+  @Override
+  public DoubleMatrix multiply(DoubleMatrix other) {
+    if (other.getRowCount() != dimension) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + dimension + " != " + other.getRowCount());
+    }
+    if (other instanceof StructuredDoubleMatrix
+        && !((StructuredDoubleMatrix) other).isSymmetric()) {
+      StructuredDoubleMatrix structured = (StructuredDoubleMatrix) other;
+      double[] scaled = structured.values().clone();
+      structured.forEachEntry(
+          (row, col, index) -> scaled[index] *= values[row]);
+      return structured.withValues(scaled);
+    }
+    int columns = other.getColumnCount();
+    if (other.isSparse()) {
+      SparseDoubleRowMatrix result = new SparseDoubleRowMatrix(dimension,
+          columns);
+      for (int row : other.rowIndices()) {
+        if (values[row] != 0d) {
+          result.setRowVector(row,
+              other.getRowVector(row).multiply(values[row]));
+        }
+      }
+      return result;
+    }
+    double[] scaled = columnMajorValues(other).clone();
+    for (int col = 0; col < columns; col++) {
+      int offset = col * dimension;
+      for (int row = 0; row < dimension; row++) {
+        scaled[offset + row] *= values[row];
+      }
+    }
+    return new DenseDoubleMatrix(dimension, columns, scaled);
+  }
+
+  @Override
+  public DiagonalDoubleMatrix transpose() {
+    return deepCopy();
+  }
+
+  @Override
+  public DiagonalDoubleMatrix deepCopy() {
+    return (DiagonalDoubleMatrix) super.deepCopy();
+  }
+
+  private double nonZero(int row) {
+    if (values[row] == 0d) {
+      throw new ArithmeticException("Matrix is singular, the diagonal is zero"
+          + " in row " + row);
+    }
+    return values[row];
+  }
+
+  @Override
+  void multiplyVector(double[] x, int xOffset, double[] y, int yOffset) {
+    for (int i = 0; i < dimension; i++) {
+      y[yOffset + i] = values[i] * x[xOffset + i];
+    }
+  }
+
+  @Override
+  void multiplyTransposedVector(double[] x, int xOffset, double[] y,
+      int yOffset) {
+    multiplyVector(x, xOffset, y, yOffset);
+  }
+
+  @Override
+  double[] values() {
+    return values;
+  }
+
+  @Override
+  DiagonalDoubleMatrix withValues(double[] values) {
+    return new DiagonalDoubleMatrix(values);
+  }
+
+  @Override
+  void forEachEntry(EntryVisitor visitor) {
+    for (int i = 0; i < dimension; i++) {
+      visitor.visit(i, i, i);
+    }
+  }
+
+  @Override
+  boolean hasSameStructure(DoubleMatrix other) {
+    return other instanceof DiagonalDoubleMatrix
+        && other.getRowCount() == dimension;
+  }
+
+}
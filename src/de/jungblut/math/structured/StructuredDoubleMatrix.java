@@ -0,0 +1,434 @@
+package de.jungblut.math.structured;
+
+import java.util.Iterator;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleVector;
+
+/**
+ * Base class for square matrices whose zeros follow a fixed structure (e.g.
+ * symmetric, triangular or banded), so only a part of the elements is stored
+ * in a packed array. Matrix-vector products and the element-wise operations
+ * that keep the structure work on the packed array in time linear to its
+ * length. Matrix products keep the structure where the product has one (a
+ * diagonal factor, banded times banded or triangular times triangular of the
+ * same side), otherwise they multiply every column of the dense operand. All
+ * other operations work on a dense copy and return a {@link DenseDoubleMatrix}.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public abstract class StructuredDoubleMatrix implements DoubleMatrix {
+
+  protected final int dimension;
+
+  protected StructuredDoubleMatrix(int dimension) {
+    if (dimension < 0) {
+      throw new IllegalArgumentException("Dimension must be >= 0, but was "
+          + dimension);
+    }
+    this.dimension = dimension;
+  }
+
+  /**
+   * Writes the product of this matrix with the vector in x[xOffset, xOffset +
+   * n) into y[yOffset, yOffset + n), overwriting the previous content.
+   */
+  abstract void multiplyVector(double[] x, int xOffset, double[] y,
+      int yOffset);
+
+  /**
+   * Writes the product of the transpose of this matrix with the vector in
+   * x[xOffset, xOffset + n) into y[yOffset, yOffset + n), overwriting the
+   * previous content.
+   */
+  abstract void multiplyTransposedVector(double[] x, int xOffset, double[] y,
+      int yOffset);
+
+  /**
+   * @return the packed elements, not a copy.
+   */
+  abstract double[] values();
+
+  /**
+   * @return a matrix with the structure of this matrix and the given packed
+   *         elements.
+   */
+  abstract StructuredDoubleMatrix withValues(double[] values);
+
+  /**
+   * Calls the visitor with every stored element and its index in the packed
+   * array.
+   */
+  abstract void forEachEntry(EntryVisitor visitor);
+
+  /**
+   * @return true if the other matrix has the same type and shape, so that the
+   *         packed arrays line up.
+   */
+  abstract boolean hasSameStructure(DoubleMatrix other);
+
+  @Override
+  public int getRowCount() {
+    return dimension;
+  }
+
+  @Override
+  public int getColumnCount() {
+    return dimension;
+  }
+
+  @Override
+  public DenseDoubleVector getColumnVector(int col) {
+    DenseDoubleVector v = new DenseDoubleVector(dimension);
+    for (int row = 0; row < dimension; row++) {
+      v.set(row, get(row, col));
+    }
+    return v;
+  }
+
+  @Override
+  public DenseDoubleVector getRowVector(int row) {
+    DenseDoubleVector v = new DenseDoubleVector(dimension);
+    for (int col = 0; col < dimension; col++) {
+      v.set(col, get(row, col));
+    }
+    return v;
+  }
+
+  @Override
+  public void setColumnVector(int col, DoubleVector column) {
+    for (int row = 0; row < dimension; row++) {
+      set(row, col, column.get(row));
+    }
+  }
+
+  @Override
+  public void setRowVector(int rowIndex, DoubleVector row) {
+    for (int col = 0; col < dimension; col++) {
+      set(rowIndex, col, row.get(col));
+    }
+  }
+
+  @Override
+  public StructuredDoubleMatrix multiply(double scalar) {
+    double[] values = values().clone();
+    for (int i = 0; i < values.length; i++) {
+      values[i] *= scalar;
+    }
+    return withValues(values);
+  }
+
+  /**
+   * Multiplies this matrix with the given matrix (A * B). A diagonal matrix B
+   * scales the columns and keeps the structure unless this matrix is
+   * symmetric, other matrices are multiplied column by column with the packed
+   * matrix-vector product.
+   *
+   * @return the result matrix.
+   */
+  @Override
+  public DoubleMatrix multiply(DoubleMatrix other) {
+    if (other.getRowCount() != dimension) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + dimension + " != " + other.getRowCount());
+    }
+    if (other instanceof DiagonalDoubleMatrix && !isSymmetric()) {
+      double[] diagonal = ((DiagonalDoubleMatrix) other).getDiagonal();
+      double[] values = values().clone();
+      forEachEntry((row, col, index) -> values[index] *= diagonal[col]);
+      return withValues(values);
+    }
+    int columns = other.getColumnCount();
+    double[] b = columnMajorValues(other);
+    double[] out = new double[dimension * columns];
+    for (int col = 0; col < columns; col++) {
+      multiplyVector(b, col * dimension, out, col * dimension);
+    }
+    return new DenseDoubleMatrix(dimension, columns, out);
+  }
+
+  @Override
+  public DoubleMatrix multiplyElementWise(DoubleMatrix other) {
+    checkOperand(other);
+    double[] values = values().clone();
+    if (hasSameStructure(other)) {
+      double[] otherValues = ((StructuredDoubleMatrix) other).values();
+      for (int i = 0; i < values.length; i++) {
+        values[i] *= otherValues[i];
+      }
+    } else {
+      // the zeros outside of the structure stay zero
+      forEachEntry((row, col, index) -> values[index] *= other.get(row, col));
+    }
+    return withValues(values);
+  }
+
+  /**
+   * @return the dense product of this matrix with the given column vector.
+   */
+  @Override
+  public DenseDoubleVector multiplyVectorRow(DoubleVector v) {
+    checkVector(v);
+    double[] y = new double[dimension];
+    multiplyVector(v.toArray(), 0, y, 0);
+    return new DenseDoubleVector(y);
+  }
+
+  /**
+   * @return the dense product of the given row vector with this matrix.
+   */
+  @Override
+  public DenseDoubleVector multiplyVectorColumn(DoubleVector v) {
+    checkVector(v);
+    double[] y = new double[dimension];
+    multiplyTransposedVector(v.toArray(), 0, y, 0);
+    return new DenseDoubleVector(y);
+  }
+
+  @Override
+  public DenseDoubleMatrix subtractBy(double amount) {
+    DenseDoubleMatrix dense = toDense();
+    return dense.subtractBy(amount, dense);
+  }
+
+  @Override
+  public DenseDoubleMatrix subtract(double amount) {
+    DenseDoubleMatrix dense = toDense();
+    return dense.subtract(amount, dense);
+  }
+
+  /**
+   * Subtracts the given matrix, the result keeps the structure if the other
+   * matrix has the same structure.
+   */
+  @Override
+  public DoubleMatrix subtract(DoubleMatrix other) {
+    checkOperand(other);
+    if (hasSameStructure(other)) {
+      double[] values = values().clone();
+      double[] otherValues = ((StructuredDoubleMatrix) other).values();
+      for (int i = 0; i < values.length; i++) {
+        values[i] -= otherValues[i];
+      }
+      return withValues(values);
+    }
+    DenseDoubleMatrix dense = toDense();
+    return dense.subtract(other, dense);
+  }
+
+  @Override
+  public DoubleMatrix subtract(DoubleVector vec) {
+    return toDense().subtract(vec);
+  }
+
+  @Override
+  public DoubleMatrix divide(DoubleVector vec) {
+    return toDense().divide(vec);
+  }
+
+  @Override
+  public DoubleMatrix divide(DoubleMatrix other) {
+    checkOperand(other);
+    DenseDoubleMatrix dense = toDense();
+    return dense.divide(other, dense);
+  }
+
+  @Override
+  public StructuredDoubleMatrix divide(double scalar) {
+    double[] values = values().clone();
+    for (int i = 0; i < values.length; i++) {
+      values[i] /= scalar;
+    }
+    return withValues(values);
+  }
+
+  /**
+   * Adds the given matrix, the result keeps the structure if the other matrix
+   * has the same structure.
+   */
+  @Override
+  public DoubleMatrix add(DoubleMatrix other) {
+    checkOperand(other);
+    if (hasSameStructure(other)) {
+      double[] values = values().clone();
+      double[] otherValues = ((StructuredDoubleMatrix) other).values();
+      for (int i = 0; i < values.length; i++) {
+        values[i] += otherValues[i];
+      }
+      return withValues(values);
+    }
+    DenseDoubleMatrix dense = toDense();
+    return dense.add(other, dense);
+  }
+
+  /**
+   * Raises every element to the given power, the result keeps the structure
+   * for positive powers as the zeros stay zero.
+   */
+  @Override
+  public DoubleMatrix pow(double x) {
+    if (!(x > 0d)) {
+      return toDense().pow(x);
+    }
+    double[] values = values().clone();
+    for (int i = 0; i < values.length; i++) {
+      values[i] = x == 2d ? values[i] * values[i] : Math.pow(values[i], x);
+    }
+    return withValues(values);
+  }
+
+  @Override
+  public double max(int column) {
+    return getColumnVector(column).max();
+  }
+
+  @Override
+  public double min(int column) {
+    return getColumnVector(column).min();
+  }
+
+  @Override
+  public double sum() {
+    double[] values = values();
+    double sum = 0d;
+    for (int i = 0; i < values.length; i++) {
+      sum += values[i];
+    }
+    return sum;
+  }
+
+  @Override
+  public int[] columnIndices() {
+    return rowIndices();
+  }
+
+  @Override
+  public int[] rowIndices() {
+    int[] indices = new int[dimension];
+    for (int i = 0; i < dimension; i++) {
+      indices[i] = i;
+    }
+    return indices;
+  }
+
+  @Override
+  public double[][] toArray() {
+    double[][] array = new double[dimension][dimension];
+    for (int row = 0; row < dimension; row++) {
+      for (int col = 0; col < dimension; col++) {
+        array[row][col] = get(row, col);
+      }
+    }
+    return array;
+  }
+
+  /**
+   * @return a dense copy of this matrix.
+   */
+  public DenseDoubleMatrix toDense() {
+    double[] values = values();
+    double[] columnMajor = new double[dimension * dimension];
+    boolean symmetric = isSymmetric();
+    forEachEntry((row, col, index) -> {
+      columnMajor[row + col * dimension] = values[index];
+      if (symmetric) {
+        columnMajor[col + row * dimension] = values[index];
+      }
+    });
+    return new DenseDoubleMatrix(dimension, dimension, columnMajor);
+  }
+
+  @Override
+  public boolean isSparse() {
+    return false;
+  }
+
+  @Override
+  public DoubleMatrix slice(int rows, int cols) {
+    return slice(0, rows, 0, cols);
+  }
+
+  @Override
+  public DoubleMatrix slice(int rowOffset, int rowMax, int colOffset,
+      int colMax) {
+    return toDense().slice(rowOffset, rowMax, colOffset, colMax);
+  }
+
+  @Override
+  public StructuredDoubleMatrix deepCopy() {
+    return withValues(values().clone());
+  }
+
+  @Override
+  public String toString() {
+    if (dimension * dimension < 100) {
+      return toDense().toString();
+    } else {
+      return sizeToString();
+    }
+  }
+
+  /**
+   * Returns the size of the matrix as string (ROWSxCOLUMNS).
+   */
+  public String sizeToString() {
+    return dimension + "x" + dimension;
+  }
+
+  /**
+   * @return true if the stored elements are mirrored at the diagonal.
+   */
+  boolean isSymmetric() {
+    return false;
+  }
+
+  void checkOperand(DoubleMatrix other) {
+    if (other.getRowCount() != dimension
+        || other.getColumnCount() != dimension) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + sizeToString() + " != " + other.getRowCount() + "x"
+          + other.getColumnCount());
+    }
+  }
+
+  void checkVector(DoubleVector v) {
+    if (v.getDimension() != dimension) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + dimension + " != " + v.getDimension());
+    }
+  }
+
+  static double[] columnMajorValues(DoubleMatrix other) {
+    if (other instanceof DenseDoubleMatrix) {
+      return ((DenseDoubleMatrix) other).getColumnMajorMatrix();
+    }
+    if (other instanceof StructuredDoubleMatrix) {
+      return ((StructuredDoubleMatrix) other).toDense().getColumnMajorMatrix();
+    }
+    int rows = other.getRowCount();
+    double[] values = new double[rows * other.getColumnCount()];
+    for (int row : other.rowIndices()) {
+      Iterator<DoubleVectorElement> iterateNonZero = other.getRowVector(row)
+          .iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        DoubleVectorElement e = iterateNonZero.next();
+        values[row + e.getIndex() * rows] = e.getValue();
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Visitor of the stored elements of a matrix.
+   */
+  static interface EntryVisitor {
+
+    void visit(int row, int col, int index);
+
+  }
+
+}
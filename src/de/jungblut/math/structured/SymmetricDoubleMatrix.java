@@ -0,0 +1,257 @@
+package de.jungblut.math.structured;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.dense.RowMajorDenseDoubleMatrix;
+
+/**
+ * Symmetric matrix that only stores its lower triangle, packed row by row: the
+ * element (i, j) with j <= i is at i * (i + 1) / 2 + j, the upper triangle is
+ * mirrored. This halves the memory of e.g. covariance, Gram or Hessian
+ * matrices.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class SymmetricDoubleMatrix extends StructuredDoubleMatrix {
+
+  private final double[] values;
+
+  /**
+   * Creates a new symmetric matrix of zeros.
+   *
+   * @param dimension the number of rows and columns.
+   */
+  public SymmetricDoubleMatrix(int dimension) {
+    super(dimension);
+    this.values = new double[packedLength(dimension)];
+  }
+
+  /**
+   * Creates a new symmetric matrix on the given packed lower triangle, which
+   * isn't copied.
+   *
+   * @param dimension the number of rows and columns.
+   * @param packed the lower triangle packed row by row.
+   */
+  public SymmetricDoubleMatrix(int dimension, double[] packed) {
+    super(dimension);
+    if (packed.length != packedLength(dimension)) {
+      throw new IllegalArgumentException("Packed array must have "
+          + packedLength(dimension) + " elements, but had " + packed.length);
+    }
+    this.values = packed;
+  }
+
+  /**
+   * Copies the lower triangle of the given square matrix, the upper triangle
+   * is ignored.
+   */
+  public SymmetricDoubleMatrix(DoubleMatrix mat) {
+    this(mat.getRowCount());
+    if (mat.getColumnCount() != dimension) {
+      throw new IllegalArgumentException("Matrix must be square, but was "
+          + mat.getRowCount() + "x" + mat.getColumnCount());
+    }
+    for (int row = 0; row < dimension; row++) {
+      int offset = offset(row);
+      for (int col = 0; col <= row; col++) {
+        values[offset + col] = mat.get(row, col);
+      }
+    }
+  }
+
+  /**
+   * @return the packed lower triangle, not a copy.
+   */
+  public double[] getPackedMatrix() {
+    return values;
+  }
+
+  @Override
+  public double get(int row, int col) {
+    return row >= col ? values[offset(row) + col] : values[offset(col) + row];
+  }
+
+  /**
+   * Sets the element (row, col) and its mirror (col, row).
+   */
+  @Override
+  public void set(int row, int col, double value) {
+    if (row >= col) {
+      values[offset(row) + col] = value;
+    } else {
+      values[offset(col) + row] = value;
+    }
+  }
+
+  /**
+   * Symmetric rank-k update: this = alpha * A * A^T + beta * this. For the Gram
+   * matrix of the columns of A pass its transpose.
+   *
+   * @param alpha the factor of the product.
+   * @param a a matrix with a row per row of this matrix.
+   * @param beta the factor of the previous values.
+   * @return this matrix.
+   */
+  public SymmetricDoubleMatrix rankUpdate(double alpha, DoubleMatrix a,
+      double beta) {
+    if (a.getRowCount() != dimension) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + dimension + " != " + a.getRowCount());
+    }
+    int k = a.getColumnCount();
+    double[] rows = rowMajorValues(a);
+    for (int i = 0; i < dimension; i++) {
+      int offset = offset(i);
+      int rowI = i * k;
+      for (int j = 0; j <= i; j++) {
+        int rowJ = j * k;
+        double dot = 0d;
+        for (int x = 0; x < k; x++) {
+          dot += rows[rowI + x] * rows[rowJ + x];
+        }
+        values[offset + j] = alpha * dot + beta * values[offset + j];
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Symmetric rank-1 update: this = this + alpha * x * x^T.
+   *
+   * @return this matrix.
+   */
+  public SymmetricDoubleMatrix rankUpdate(double alpha, DoubleVector x) {
+    checkVector(x);
+    double[] v = x.toArray();
+    for (int i = 0; i < dimension; i++) {
+      double scaled = alpha * v[i];
+      if (scaled != 0d) {
+        int offset = offset(i);
+        for (int j = 0; j <= i; j++) {
+          values[offset + j] += scaled * v[j];
+        }
+      }
+    }
+    return this;
+  }
+
+  @Override
+  public DoubleMatrix multiplyElementWise(DoubleMatrix other) {
+    if (other instanceof SymmetricDoubleMatrix) {
+      return super.multiplyElementWise(other);
+    }
+    checkOperand(other);
+    DenseDoubleMatrix dense = toDense();
+    return dense.multiplyElementWise(other, dense);
+  }
+
+  @Override
+  public SymmetricDoubleMatrix transpose() {
+    return deepCopy();
+  }
+
+  @Override
+  public SymmetricDoubleMatrix deepCopy() {
+    return (SymmetricDoubleMatrix) super.deepCopy();
+  }
+
+  @Override
+  public double sum() {
+    double sum = 0d;
+    for (int row = 0; row < dimension; row++) {
+      int offset = offset(row);
+      for (int col = 0; col < row; col++) {
+        sum += 2d * values[offset + col];
+      }
+      sum += values[offset + row];
+    }
+    return sum;
+  }
+
+  @Override
+  void multiplyVector(double[] x, int xOffset, double[] y, int yOffset) {
+    for (int i = 0; i < dimension; i++) {
+      int offset = offset(i);
+      double xi = x[xOffset + i];
+      double sum = 0d;
+      // row i of the lower and column i of the upper triangle at once
+      for (int j = 0; j < i; j++) {
+        double a = values[offset + j];
+        sum += a * x[xOffset + j];
+        y[yOffset + j] += a * xi;
+      }
+      y[yOffset + i] = sum + values[offset + i] * xi;
+    }
+  }
+
+  @Override
+  void multiplyTransposedVector(double[] x, int xOffset, double[] y,
+      int yOffset) {
+    multiplyVector(x, xOffset, y, yOffset);
+  }
+
+  @Override
+  double[] values() {
+    return values;
+  }
+
+  @Override
+  SymmetricDoubleMatrix withValues(double[] values) {
+    return new SymmetricDoubleMatrix(dimension, values);
+  }
+
+  @Override
+  void forEachEntry(EntryVisitor visitor) {
+    for (int row = 0; row < dimension; row++) {
+      int offset = offset(row);
+      for (int col = 0; col <= row; col++) {
+        visitor.visit(row, col, offset + col);
+      }
+    }
+  }
+
+  @Override
+  boolean hasSameStructure(DoubleMatrix other) {
+    return other instanceof SymmetricDoubleMatrix
+        && other.getRowCount() == dimension;
+  }
+
+  @Override
+  boolean isSymmetric() {
+    return true;
+  }
+
+  // computed in long, the int product overflows long before the offset does
+  static int offset(int row) {
+    return (int) ((long) row * (row + 1) / 2);
+  }
+
+  /**
+   * @return the number of elements of a packed triangle.
+   * @throws IllegalArgumentException if they don't fit into an array.
+   */
+  static int packedLength(int dimension) {
+    long length = (long) dimension * (dimension + 1) / 2;
+    if (length > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Dimension " + dimension
+          + " is too large, the packed triangle would have " + length
+          + " elements, but an array holds at most " + Integer.MAX_VALUE);
+    }
+    return (int) length;
+  }
+
+  private static double[] rowMajorValues(DoubleMatrix a) {
+    if (a instanceof RowMajorDenseDoubleMatrix) {
+      return ((RowMajorDenseDoubleMatrix) a).getRowMajorMatrix();
+    }
+    if (a instanceof DenseDoubleMatrix) {
+      return new RowMajorDenseDoubleMatrix((DenseDoubleMatrix) a)
+          .getRowMajorMatrix();
+    }
+    return new RowMajorDenseDoubleMatrix(a.toArray()).getRowMajorMatrix();
+  }
+
+}
@@ -0,0 +1,295 @@
+package de.jungblut.math.structured;
+
+import java.util.Arrays;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleVector;
+
+/**
+ * Lower or upper triangular matrix that only stores its triangle, packed row
+ * by row. Row i of a lower triangular matrix holds the columns [0, i], row i of
+ * an upper triangular matrix the columns [i, n). Besides the products it
+ * solves linear systems by forward or back substitution.
+ *
+ * @author thomas.jungblut
+ *
+ */
+public final class TriangularDoubleMatrix extends StructuredDoubleMatrix {
+
+  private final boolean upper;
+  private final double[] values;
+
+  /**
+   * Creates a new triangular matrix of zeros.
+   *
+   * @param dimension the number of rows and columns.
+   * @param upper true for an upper, false for a lower triangular matrix.
+   */
+  public TriangularDoubleMatrix(int dimension, boolean upper) {
+    this(dimension, upper, new double[SymmetricDoubleMatrix
+        .packedLength(dimension)]);
+  }
+
+  /**
+   * Creates a new triangular matrix on the given packed triangle, which isn't
+   * copied.
+   *
+   * @param dimension the number of rows and columns.
+   * @param upper true for an upper, false for a lower triangular matrix.
+   * @param packed the triangle packed row by row.
+   */
+  public TriangularDoubleMatrix(int dimension, boolean upper, double[] packed) {
+    super(dimension);
+    int length = SymmetricDoubleMatrix.packedLength(dimension);
+    if (packed.length != length) {
+      throw new IllegalArgumentException("Packed array must have " + length
+          + " elements, but had " + packed.length);
+    }
+    this.upper = upper;
+    this.values = packed;
+  }
+
+  /**
+   * Copies the lower or upper triangle of the given square matrix, the other
+   * elements are ignored.
+   */
+  public TriangularDoubleMatrix(DoubleMatrix mat, boolean upper) {
+    this(mat.getRowCount(), upper);
+    if (mat.getColumnCount() != dimension) {
+      throw new IllegalArgumentException("Matrix must be square, but was "
+          + mat.getRowCount() + "x" + mat.getColumnCount());
+    }
+    for (int row = 0; row < dimension; row++) {
+      for (int col = from(row); col < to(row); col++) {
+        values[index(row, col)] = mat.get(row, col);
+      }
+    }
+  }
+
+  /**
+   * @return true if this is an upper triangular matrix.
+   */
+  public boolean isUpper() {
+    return upper;
+  }
+
+  /**
+   * @return the packed triangle, not a copy.
+   */
+  public double[] getPackedMatrix() {
+    return values;
+  }
+
+  @Override
+  public double get(int row, int col) {
+    if (upper ? col < row : col > row) {
+      return 0d;
+    }
+    return values[index(row, col)];
+  }
+
+  /**
+   * Sets the element, the elements outside of the triangle can only be zero.
+   */
+  @Override
+  public void set(int row, int col, double value) {
+    if (upper ? col < row : col > row) {
+      if (value != 0d) {
+        throw new IllegalArgumentException("Element (" + row + ", " + col
+            + ") is outside of the triangle.");
+      }
+      return;
+    }
+    values[index(row, col)] = value;
+  }
+
+  /**
+   * Solves this * x = b by forward (lower) or back (upper) substitution.
+   *
+   * @return the dense solution x.
+   * @throws ArithmeticException if there is a zero on the diagonal.
+   */
+  public DenseDoubleVector solve(DoubleVector b) {
+    checkVector(b);
+    double[] x = b.toArray().clone();
+    solve(x, 0);
+    return new DenseDoubleVector(x);
+  }
+
+  /**
+   * Solves this * X = B for every column of B.
+   *
+   * @return the dense solution X.
+   * @throws ArithmeticException if there is a zero on the diagonal.
+   */
+  public DenseDoubleMatrix solve(DoubleMatrix b) {
+    if (b.getRowCount() != dimension) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + dimension + " != " + b.getRowCount());
+    }
+    double[] x = columnMajorValues(b).clone();
+    for (int col = 0; col < b.getColumnCount(); col++) {
+      solve(x, col * dimension);
+    }
+    return new DenseDoubleMatrix(dimension, b.getColumnCount(), x);
+  }
+
+  /**
+   * Multiplies this matrix with the given matrix (A * B). The product of two
+   * lower or two upper triangular matrices stays triangular and only visits
+   * the stored elements.
+   *
+   * @return the result matrix.
+   */
+  @Override
+  public DoubleMatrix multiply(DoubleMatrix other) {
+    if (!hasSameStructure(other)) {
+      return super.multiply(other);
+    }
+    double[] b = ((TriangularDoubleMatrix) other).values;
+    double[] c = new double[values.length];
+    for (int i = 0; i < dimension; i++) {
+      int rowOffset = index(i, from(i)) - from(i);
+      // row i of C adds up the rows k of B scaled by A(i, k)
+      for (int k = from(i); k < to(i); k++) {
+        double a = values[rowOffset + k];
+        if (a != 0d) {
+          int otherOffset = index(k, from(k)) - from(k);
+          for (int j = from(k); j < to(k); j++) {
+            c[rowOffset + j] += a * b[otherOffset + j];
+          }
+        }
+      }
+    }
+    return new TriangularDoubleMatrix(dimension, upper, c);
+  }
+
+  @Override
+  public TriangularDoubleMatrix transpose() {
+    TriangularDoubleMatrix t = new TriangularDoubleMatrix(dimension, !upper);
+    for (int row = 0; row < dimension; row++) {
+      for (int col = from(row); col < to(row); col++) {
+        t.values[t.index(col, row)] = values[index(row, col)];
+      }
+    }
+    return t;
+  }
+
+  @Override
+  public TriangularDoubleMatrix deepCopy() {
+    return (TriangularDoubleMatrix) super.deepCopy();
+  }
+
+  // solves in place for the column starting at the offset
+  private void solve(double[] x, int offset) {
+    if (upper) {
+      for (int i = dimension - 1; i >= 0; i--) {
+        int rowOffset = index(i, i) - i;
+        double sum = x[offset + i];
+        for (int j = i + 1; j < dimension; j++) {
+          sum -= values[rowOffset + j] * x[offset + j];
+        }
+        x[offset + i] = sum / diagonal(i, rowOffset + i);
+      }
+    } else {
+      for (int i = 0; i < dimension; i++) {
+        int rowOffset = index(i, 0);
+        double sum = x[offset + i];
+        for (int j = 0; j < i; j++) {
+          sum -= values[rowOffset + j] * x[offset + j];
+        }
+        x[offset + i] = sum / diagonal(i, rowOffset + i);
+      }
+    }
+  }
+
+  private double diagonal(int row, int index) {
+    double value = values[index];
+    if (value == 0d) {
+      throw new ArithmeticException("Matrix is singular, the diagonal is zero"
+          + " in row " + row);
+    }
+    return value;
+  }
+
+  @Override
+  void multiplyVector(double[] x, int xOffset, double[] y, int yOffset) {
+    for (int i = 0; i < dimension; i++) {
+      // the packed row starts at the column from(i)
+      int rowOffset = index(i, from(i)) - from(i);
+      double sum = 0d;
+      for (int j = from(i); j < to(i); j++) {
+        sum += values[rowOffset + j] * x[xOffset + j];
+      }
+      y[yOffset + i] = sum;
+    }
+  }
+
+  @Override
+  void multiplyTransposedVector(double[] x, int xOffset, double[] y,
+      int yOffset) {
+    Arrays.fill(y, yOffset, yOffset + dimension, 0d);
+    for (int i = 0; i < dimension; i++) {
+      double xi = x[xOffset + i];
+      if (xi != 0d) {
+        int rowOffset = index(i, from(i)) - from(i);
+        for (int j = from(i); j < to(i); j++) {
+          y[yOffset + j] += values[rowOffset + j] * xi;
+        }
+      }
+    }
+  }
+
+  @Override
+  double[] values() {
+    return values;
+  }
+
+  @Override
+  TriangularDoubleMatrix withValues(double[] values) {
+    return new TriangularDoubleMatrix(dimension, upper, values);
+  }
+
+  @Override
+  void forEachEntry(EntryVisitor visitor) {
+    for (int row = 0; row < dimension; row++) {
+      for (int col = from(row); col < to(row); col++) {
+        visitor.visit(row, col, index(row, col));
+      }
+    }
+  }
+
+  @Override
+  boolean hasSameStructure(DoubleMatrix other) {
+    return other instanceof TriangularDoubleMatrix
+        && ((TriangularDoubleMatrix) other).upper == upper
+        && other.getRowCount() == dimension;
+  }
+
+  // the first stored column of the row
+  private int from(int row) {
+    return upper ? row : 0;
+  }
+
+  // the end of the stored columns of the row
+  private int to(int row) {
+    return upper ? dimension : row + 1;
+  }
+
+  private int index(int row, int col) {
+    return index(dimension, upper, row, col);
+  }
+
+  static int index(int dimension, boolean upper, int row, int col) {
+    if (upper) {
+      // the rows before have n, n - 1, ... elements, computed in long as the
+      // products overflow before the index does
+      return (int) ((long) row * dimension - (long) row * (row - 1) / 2 + col
+          - row);
+    }
+    return SymmetricDoubleMatrix.offset(row) + col;
+  }
+
+}
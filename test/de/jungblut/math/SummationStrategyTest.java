@@ -0,0 +1,152 @@
+package de.jungblut.math;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.dense.RowMajorDenseDoubleMatrix;
+import de.jungblut.math.dense.ParallelVectorOps;
+import de.jungblut.math.sparse.SequentialSparseDoubleVector;
+import de.jungblut.math.sparse.SparseDoubleRowMatrix;
+import de.jungblut.math.sparse.SparseDoubleVector;
+
+public class SummationStrategyTest extends TestCase {
+
+  @Test
+  public void testAllStrategiesAgree() {
+    double[] values = random(10_001, new Random(0));
+    double[] other = random(10_001, new Random(1));
+    double exactSum = exactSum(values);
+    double exactDot = exactDot(values, other);
+    for (SummationStrategy strategy : SummationStrategy.values()) {
+      assertEquals(strategy.name(), exactSum, strategy.sum(values), 1e-9);
+      assertEquals(strategy.name(), exactDot,
+          strategy.dot(values, other, 0, values.length), 1e-9);
+      assertEquals(values[3] + values[4], strategy.sum(values, 3, 5), 0d);
+      assertEquals(0d, strategy.sum(values, 5, 5), 0d);
+    }
+  }
+
+  @Test
+  public void testCompensation() {
+    double[] values = new double[] { 1e16, 1, -1e16 };
+    assertEquals(0d, SummationStrategy.NAIVE.sum(values), 0d);
+    assertEquals(1d, SummationStrategy.KAHAN_BABUSKA.sum(values), 0d);
+
+    // many positive values, the naive error grows with the running sum
+    Random rnd = new Random(2);
+    double[] positive = new double[1_000_000];
+    for (int i = 0; i < positive.length; i++) {
+      positive[i] = rnd.nextDouble();
+    }
+    double exact = exactSum(positive);
+    double naiveError = Math.abs(SummationStrategy.NAIVE.sum(positive)
+        - exact);
+    double pairwiseError = Math.abs(SummationStrategy.PAIRWISE.sum(positive)
+        - exact);
+    assertTrue(pairwiseError < naiveError);
+    assertEquals(exact, SummationStrategy.KAHAN_BABUSKA.sum(positive), 0d);
+
+    // a sum that cancels almost completely
+    double[] cancelling = new double[1_000_000];
+    for (int i = 0; i < cancelling.length; i += 2) {
+      double x = rnd.nextDouble() * 1e10;
+      cancelling[i] = x;
+      cancelling[i + 1] = -x + rnd.nextDouble();
+    }
+    exact = exactSum(cancelling);
+    assertEquals(exact, SummationStrategy.KAHAN_BABUSKA.sum(cancelling),
+        Math.ulp(exact));
+  }
+
+  @Test
+  public void testCompensatedDot() {
+    // the products need more precision than a double can hold
+    double[] a = new double[] { 1 + Math.ulp(1d), 1e8, -1e8 };
+    double[] b = new double[] { 1 - Math.ulp(1d), 1e8, 1e8 };
+    assertEquals(exactDot(a, b),
+        SummationStrategy.KAHAN_BABUSKA.dot(a, b, 0, 3), 0d);
+  }
+
+  @Test
+  public void testVectorsAndMatrices() {
+    double[] values = new double[] { 1e16, 1, -1e16, 0, 2 };
+    DenseDoubleVector dense = new DenseDoubleVector(values);
+    SequentialSparseDoubleVector sequential = new SequentialSparseDoubleVector(
+        values);
+    SparseDoubleVector sparse = new SparseDoubleVector(values);
+    for (DoubleVector v : new DoubleVector[] { dense, sequential, sparse }) {
+      assertEquals(3d, v.sum(SummationStrategy.KAHAN_BABUSKA), 0d);
+      assertEquals(1e32 + 1 + 1e32 + 4, v.dot(dense,
+          SummationStrategy.KAHAN_BABUSKA), 0d);
+    }
+    assertEquals(3d, dense.dot(new DenseDoubleVector(5, 1),
+        SummationStrategy.KAHAN_BABUSKA), 0d);
+    assertEquals(3d, dense.dot(new SparseDoubleVector(dense.deepCopy()
+        .apply((i, x) -> 1)), SummationStrategy.KAHAN_BABUSKA), 0d);
+
+    double[][] arr = new double[][] { { 1e16, 1 }, { -1e16, -3 } };
+    assertEquals(-2d, new DenseDoubleMatrix(arr)
+        .signedSum(SummationStrategy.KAHAN_BABUSKA), 0d);
+    assertEquals(-2d, new RowMajorDenseDoubleMatrix(arr)
+        .signedSum(SummationStrategy.KAHAN_BABUSKA), 0d);
+    assertEquals(-2d, new SparseDoubleRowMatrix(arr)
+        .signedSum(SummationStrategy.KAHAN_BABUSKA), 0d);
+    // the plain sum of dense matrices sums the absolute values
+    assertEquals(2e16 + 4, new DenseDoubleMatrix(arr).sum(), 0d);
+  }
+
+  @Test
+  public void testParallel() {
+    DenseDoubleVector v = new DenseDoubleVector(random(500_000, new Random(3)));
+    DenseDoubleVector w = new DenseDoubleVector(random(500_000, new Random(4)));
+    double exactSum = exactSum(v.toArray());
+    double exactDot = exactDot(v.toArray(), w.toArray());
+    ForkJoinPool single = new ForkJoinPool(1);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      for (SummationStrategy strategy : SummationStrategy.values()) {
+        double sum = ParallelVectorOps.sum(v, strategy, single);
+        double dot = ParallelVectorOps.dot(v, w, strategy, single);
+        assertEquals(exactSum, sum, 1e-8);
+        assertEquals(exactDot, dot, 1e-8);
+        assertEquals(sum, ParallelVectorOps.sum(v, strategy, pool), 0d);
+        assertEquals(dot, ParallelVectorOps.dot(v, w, strategy, pool), 0d);
+      }
+    } finally {
+      single.shutdown();
+      pool.shutdown();
+    }
+  }
+
+  private static double exactSum(double[] values) {
+    BigDecimal sum = BigDecimal.ZERO;
+    for (double v : values) {
+      sum = sum.add(new BigDecimal(v));
+    }
+    return sum.doubleValue();
+  }
+
+  private static double exactDot(double[] a, double[] b) {
+    BigDecimal sum = BigDecimal.ZERO;
+    for (int i = 0; i < a.length; i++) {
+      sum = sum.add(new BigDecimal(a[i]).multiply(new BigDecimal(b[i])));
+    }
+    return sum.doubleValue();
+  }
+
+  private static double[] random(int length, Random rnd) {
+    double[] values = new double[length];
+    for (int i = 0; i < length; i++) {
+      values[i] = rnd.nextGaussian();
+    }
+    return values;
+  }
+
+}
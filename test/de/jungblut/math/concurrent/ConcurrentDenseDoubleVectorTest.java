@@ -0,0 +1,136 @@
+package de.jungblut.math.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.sparse.SequentialSparseDoubleVector;
+import de.jungblut.math.sparse.SparseDoubleVector;
+
+public class ConcurrentDenseDoubleVectorTest extends TestCase {
+
+  @Test
+  public void testSingleThreaded() {
+    ConcurrentDenseDoubleVector v = new ConcurrentDenseDoubleVector(
+        new double[] { 1, 2, 3 });
+    v.set(0, 5);
+    v.hogwildAdd(1, 1);
+    assertEquals(4d, v.addAndGet(2, 1));
+    assertTrue(v.compareAndSet(2, 4, 7));
+    assertFalse(v.compareAndSet(2, 4, 8));
+    assertEquals(new DenseDoubleVector(new double[] { 5, 3, 7 }), v.snapshot());
+
+    v.hogwildAxpy(2, new SparseDoubleVector(new double[] { 1, 0, -1 }));
+    v.axpy(-1, new DenseDoubleVector(new double[] { 1, 1, 1 }));
+    assertEquals(new DenseDoubleVector(new double[] { 6, 2, 4 }), v.snapshot());
+    assertEquals(12d, v.sum());
+    assertEquals(6d, v.max());
+    assertEquals(1, v.minIndex());
+    assertEquals(14d, v.dot(new DenseDoubleVector(new double[] { 1, 2, 1 })));
+    assertEquals(new DenseDoubleVector(new double[] { 7, 3, 5 }), v.add(1));
+    // toArray is a copy
+    v.toArray()[0] = 100;
+    assertEquals(6d, v.get(0));
+  }
+
+  @Test
+  public void testAtomicUpdatesDontGetLost() throws Exception {
+    final ConcurrentDenseDoubleVector v = new ConcurrentDenseDoubleVector(10);
+    runConcurrently(8, thread -> {
+      for (int i = 0; i < 10000; i++) {
+        v.addAndGet(i % 10, 1d);
+      }
+    });
+    for (int i = 0; i < 10; i++) {
+      assertEquals(8000d, v.get(i));
+    }
+  }
+
+  @Test
+  public void testStripedAxpy() throws Exception {
+    final int dimension = 5 * ConcurrentDenseDoubleVector.STRIPE_SIZE;
+    final ConcurrentDenseDoubleVector v = new ConcurrentDenseDoubleVector(
+        dimension);
+    // the same unordered sparse gradient and an ordered one from all threads
+    final SparseDoubleVector gradient = new SparseDoubleVector(dimension);
+    final SequentialSparseDoubleVector sequential = new SequentialSparseDoubleVector(
+        dimension);
+    for (int i = 0; i < dimension; i += 7) {
+      gradient.set(i, 1d);
+      sequential.set(i, 1d);
+    }
+    runConcurrently(4, thread -> {
+      for (int i = 0; i < 200; i++) {
+        v.axpy(0.5, thread % 2 == 0 ? gradient : sequential);
+      }
+    });
+    for (int i = 0; i < dimension; i++) {
+      assertEquals(i % 7 == 0 ? 400d : 0d, v.get(i));
+    }
+  }
+
+  @Test
+  public void testSnapshotSeesWholeStripes() throws Exception {
+    final int stripe = ConcurrentDenseDoubleVector.STRIPE_SIZE;
+    final ConcurrentDenseDoubleVector v = new ConcurrentDenseDoubleVector(
+        3 * stripe);
+    // every update adds one to all elements of the middle stripe
+    final DenseDoubleVector update = new DenseDoubleVector(3 * stripe);
+    for (int i = stripe; i < 2 * stripe; i++) {
+      update.set(i, 1d);
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    Future<?> writer = pool.submit(() -> {
+      for (int i = 0; i < 2000; i++) {
+        v.axpy(1d, update);
+      }
+    });
+    while (!writer.isDone()) {
+      DoubleVector snapshot = v.snapshot();
+      double first = snapshot.get(stripe);
+      for (int i = stripe; i < 2 * stripe; i++) {
+        assertEquals(first, snapshot.get(i));
+      }
+    }
+    writer.get();
+    pool.shutdown();
+    assertEquals(2000d, v.get(2 * stripe - 1));
+  }
+
+  @Test
+  public void testDimensionMismatch() {
+    ConcurrentDenseDoubleVector v = new ConcurrentDenseDoubleVector(3);
+    try {
+      v.axpy(1, new DenseDoubleVector(4));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private static void runConcurrently(int threads,
+      IntConsumer action) throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      final int thread = t;
+      futures.add(pool.submit(() -> action.accept(thread)));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    pool.shutdown();
+    pool.awaitTermination(1, TimeUnit.MINUTES);
+  }
+
+}
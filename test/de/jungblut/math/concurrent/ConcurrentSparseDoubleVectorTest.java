@@ -0,0 +1,115 @@
+package de.jungblut.math.concurrent;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.sparse.SequentialSparseDoubleVector;
+import de.jungblut.math.sparse.SparseDoubleVector;
+
+public class ConcurrentSparseDoubleVectorTest extends TestCase {
+
+  @Test
+  public void testSingleThreaded() {
+    ConcurrentSparseDoubleVector v = new ConcurrentSparseDoubleVector(100, 4);
+    assertTrue(v.isSparse());
+    v.set(50, 2);
+    assertEquals(3d, v.increment(7, 3));
+    assertEquals(5d, v.increment(7, 2));
+    // zeros are removed
+    assertEquals(0d, v.increment(50, -2));
+    assertEquals(1, v.getLength());
+
+    SparseDoubleVector gradient = new SparseDoubleVector(100);
+    gradient.set(1, 1);
+    gradient.set(99, -1);
+    v.increment(2d, gradient);
+    assertEquals(2d, v.get(1));
+    assertEquals(-2d, v.get(99));
+    assertEquals(5d, v.get(7));
+    assertEquals(0d, v.get(8));
+    assertEquals(5d, v.sum());
+    assertEquals(10d, v.dot(new DenseDoubleVector(100, 2d)));
+  }
+
+  @Test
+  public void testSnapshotIsOrdered() {
+    ConcurrentSparseDoubleVector v = new ConcurrentSparseDoubleVector(1000, 16);
+    for (int i = 999; i >= 0; i -= 3) {
+      v.set(i, i + 1);
+    }
+    SequentialSparseDoubleVector snapshot = v.snapshot();
+    assertEquals(1000, snapshot.getDimension());
+    assertEquals(334, snapshot.getLength());
+    int last = -1;
+    Iterator<DoubleVectorElement> iterator = snapshot.iterateNonZero();
+    while (iterator.hasNext()) {
+      DoubleVectorElement next = iterator.next();
+      assertTrue(next.getIndex() > last);
+      assertEquals(next.getIndex() + 1d, next.getValue());
+      last = next.getIndex();
+    }
+    // the snapshot is a copy
+    snapshot.set(0, 5);
+    assertEquals(1d, v.get(0));
+  }
+
+  @Test
+  public void testConcurrentIncrements() throws Exception {
+    final ConcurrentSparseDoubleVector v = new ConcurrentSparseDoubleVector(
+        10000);
+    final int threads = 8;
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      futures.add(pool.submit(() -> {
+        for (int i = 0; i < 100000; i++) {
+          v.increment(i % 1000 * 10, 1d);
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    pool.shutdown();
+    SequentialSparseDoubleVector snapshot = v.snapshot();
+    assertEquals(1000, snapshot.getLength());
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(800d, snapshot.get(i * 10));
+    }
+  }
+
+  @Test
+  public void testDrainLosesNothing() throws Exception {
+    final ConcurrentSparseDoubleVector v = new ConcurrentSparseDoubleVector(64);
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      futures.add(pool.submit(() -> {
+        for (int i = 0; i < 50000; i++) {
+          v.increment(i % 64, 1d);
+        }
+      }));
+    }
+    double drained = 0d;
+    for (Future<?> future : futures) {
+      while (!future.isDone()) {
+        drained += v.drain().sum();
+      }
+    }
+    pool.shutdown();
+    drained += v.drain().sum();
+    assertEquals(200000d, drained);
+    assertEquals(0, v.getLength());
+  }
+
+}
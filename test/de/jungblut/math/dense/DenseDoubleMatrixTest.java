@@ -2,6 +2,7 @@ package de.jungblut.math.dense;
 
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import junit.framework.TestCase;
 
@@ -11,10 +12,25 @@ import com.google.common.collect.Lists;
 
 import de.jungblut.math.DoubleMatrix;
 import de.jungblut.math.DoubleVector;
+import de.jungblut.math.sparse.SparseDoubleRowMatrix;
 import de.jungblut.math.sparse.SparseDoubleVector;
 
 public class DenseDoubleMatrixTest extends TestCase {
 
+  private ForkJoinPool pool;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    pool = new ForkJoinPool(4);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    pool.shutdown();
+    super.tearDown();
+  }
+
   @Test
   public void testConstructor() {
 
@@ -203,7 +219,7 @@ public class DenseDoubleMatrixTest extends TestCase {
     double[][] arr = new double[][] { { 1, 2, 3 }, { 4, 5, 6 } };
     double[][] result = new double[][] { { 1d, 1d, 1d }, { 1d, 1d, 1d } };
     DenseDoubleMatrix mat = new DenseDoubleMatrix(arr);
-    DenseDoubleMatrix multiply = (DenseDoubleMatrix) mat.divide(mat);
+    DenseDoubleMatrix multiply = mat.divide(mat);
     matrixEquals(multiply.toArray(), result);
 
     multiply = (DenseDoubleMatrix) mat.divide(new DenseDoubleVector(
@@ -211,7 +227,7 @@ public class DenseDoubleMatrixTest extends TestCase {
     result = new double[][] { { 0.5d, 1d, 1.5d }, { 2d, 2.5d, 3d } };
     matrixEquals(multiply.toArray(), result);
 
-    multiply = (DenseDoubleMatrix) mat.divide(2d);
+    multiply = mat.divide(2d);
     matrixEquals(multiply.toArray(), result);
 
   }
@@ -247,7 +263,7 @@ public class DenseDoubleMatrixTest extends TestCase {
     double[][] arr = new double[][] { { 1, 2, 3 }, { 4, 5, 6 } };
     DenseDoubleMatrix mat = new DenseDoubleMatrix(arr);
     double[][] result = new double[][] { { 2, 4, 6 }, { 8, 10, 12 } };
-    DenseDoubleMatrix add = (DenseDoubleMatrix) mat.add(mat);
+    DenseDoubleMatrix add = mat.add(mat);
     matrixEquals(result, add.toArray());
 
   }
@@ -268,6 +284,10 @@ public class DenseDoubleMatrixTest extends TestCase {
     assertEquals(4d, mat.max(0));
     assertEquals(5d, mat.max(1));
     assertEquals(6d, mat.max(2));
+
+    mat = new DenseDoubleMatrix(new double[][] { { -1, -5 }, { -4, -2 } });
+    assertEquals(-1d, mat.max(0));
+    assertEquals(-2d, mat.max(1));
   }
 
   @Test
@@ -368,4 +388,274 @@ public class DenseDoubleMatrixTest extends TestCase {
       assertEquals(left[i], right[i], 1e-5);
     }
   }
+
+  @Test
+  public void testOperationsWithResult() {
+    DenseDoubleMatrix mat = new DenseDoubleMatrix(new double[][] { { 1, 2, 3 },
+        { 4, 5, 6 } });
+    DenseDoubleVector row = new DenseDoubleVector(new double[] { 1, 0, -1 });
+    DenseDoubleVector column = new DenseDoubleVector(new double[] { 2, 1 });
+    DenseDoubleVector rowResult = new DenseDoubleVector(2);
+    DenseDoubleVector columnResult = new DenseDoubleVector(3);
+    assertSame(rowResult, mat.multiplyVectorRow(row, rowResult));
+    assertEquals(mat.multiplyVectorRow(row), rowResult);
+    assertEquals(mat.multiplyVectorColumn(column),
+        mat.multiplyVectorColumn(column, columnResult));
+    DenseDoubleMatrix result = new DenseDoubleMatrix(2, 3);
+    matrixEquals(mat.multiply(2d).toArray(), mat.multiply(2d, result)
+        .toArray());
+    mat.multiply(0.5, mat);
+    assertEquals(2.5d, mat.get(1, 1));
+    try {
+      mat.multiplyVectorRow(row, columnResult);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testElementWiseWithResult() {
+    DenseDoubleMatrix mat = new DenseDoubleMatrix(new double[][] { { 1, 2, 3 },
+        { 4, 5, 6 } });
+    DenseDoubleMatrix other = new DenseDoubleMatrix(new double[][] {
+        { 2, 0, 1 }, { 0, -1, 2 } });
+    SparseDoubleRowMatrix sparse = new SparseDoubleRowMatrix(other.toArray());
+    DenseDoubleMatrix result = new DenseDoubleMatrix(2, 3, 42d);
+
+    double[][] sum = new double[][] { { 3, 2, 4 }, { 4, 4, 8 } };
+    double[][] difference = new double[][] { { -1, 2, 2 }, { 4, 6, 4 } };
+    double[][] product = new double[][] { { 2, 0, 3 }, { 0, -5, 12 } };
+    matrixEquals(sum, mat.add(other).toArray());
+    assertSame(result, mat.add(other, result));
+    matrixEquals(sum, result.toArray());
+    matrixEquals(sum, mat.add(sparse, result).toArray());
+    matrixEquals(difference, mat.subtract(other, result).toArray());
+    matrixEquals(difference, mat.subtract(sparse, result).toArray());
+    matrixEquals(product, mat.multiplyElementWise(other, result).toArray());
+    matrixEquals(product, mat.multiplyElementWise(sparse, result).toArray());
+    matrixEquals(mat.divide(other).toArray(), mat.divide(sparse, result)
+        .toArray());
+    matrixEquals(mat.pow(2).toArray(), mat.pow(2, result).toArray());
+    matrixEquals(mat.subtract(1).toArray(), mat.subtract(1, result).toArray());
+    matrixEquals(mat.subtractBy(1).toArray(), mat.subtractBy(1, result)
+        .toArray());
+    matrixEquals(mat.divide(2).toArray(), mat.divide(2, result).toArray());
+
+    // in place, the result may be either operand
+    DenseDoubleMatrix copy = (DenseDoubleMatrix) mat.deepCopy();
+    copy.multiplyElementWise(sparse, copy);
+    matrixEquals(product, copy.toArray());
+    copy = (DenseDoubleMatrix) mat.deepCopy();
+    copy.add(-0.5, other, copy);
+    matrixEquals(new double[][] { { 0, 2, 2.5 }, { 4, 5.5, 5 } },
+        copy.toArray());
+    copy = (DenseDoubleMatrix) other.deepCopy();
+    mat.subtract(copy, copy);
+    matrixEquals(difference, copy.toArray());
+
+    try {
+      mat.add(new DenseDoubleMatrix(3, 2), result);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      mat.add(other, new DenseDoubleMatrix(3, 2));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testTranspose() {
+    Random rnd = new Random(11);
+    int[][] sizes = new int[][] { { 700, 301 }, { 33, 1 }, { 1, 65 },
+        { 97, 97 } };
+    for (int[] size : sizes) {
+      DenseDoubleMatrix mat = new DenseDoubleMatrix(size[0], size[1], rnd);
+      double[][] expected = new double[size[1]][size[0]];
+      for (int i = 0; i < size[0]; i++) {
+        for (int j = 0; j < size[1]; j++) {
+          expected[j][i] = mat.get(i, j);
+        }
+      }
+      matrixEquals(expected, mat.transpose().toArray());
+      DenseDoubleMatrix result = new DenseDoubleMatrix(size[1], size[0]);
+      matrixEquals(expected, mat.transpose(result, pool).toArray());
+      if (size[0] == size[1]) {
+        assertSame(mat, mat.transposeInPlace());
+        matrixEquals(expected, mat.toArray());
+      }
+    }
+    try {
+      new DenseDoubleMatrix(2, 3).transposeInPlace();
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    DenseDoubleMatrix square = new DenseDoubleMatrix(2, 2);
+    try {
+      square.transpose(square);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testGemvKernels() {
+    Random rnd = new Random(3);
+    int[][] sizes = new int[][] { { 5000, 21 }, { 21, 5000 }, { 7, 3 } };
+    for (int[] size : sizes) {
+      int rows = size[0];
+      int cols = size[1];
+      DenseDoubleMatrix mat = new DenseDoubleMatrix(rows, cols, rnd);
+      DenseDoubleVector x = new DenseDoubleVector(cols);
+      SparseDoubleVector sparseX = new SparseDoubleVector(cols);
+      DenseDoubleVector y = new DenseDoubleVector(rows);
+      SparseDoubleVector sparseY = new SparseDoubleVector(rows);
+      for (int i = 0; i < cols; i++) {
+        x.set(i, rnd.nextGaussian());
+        if (i % 3 == 0) {
+          sparseX.set(i, x.get(i));
+        }
+      }
+      for (int i = 0; i < rows; i++) {
+        y.set(i, rnd.nextGaussian());
+        if (i % 5 == 1) {
+          sparseY.set(i, y.get(i));
+        }
+      }
+      double[] ax = new double[rows];
+      double[] sparseAx = new double[rows];
+      double[] ya = new double[cols];
+      double[] sparseYa = new double[cols];
+      for (int i = 0; i < rows; i++) {
+        for (int j = 0; j < cols; j++) {
+          ax[i] += mat.get(i, j) * x.get(j);
+          sparseAx[i] += mat.get(i, j) * sparseX.get(j);
+          ya[j] += y.get(i) * mat.get(i, j);
+          sparseYa[j] += sparseY.get(i) * mat.get(i, j);
+        }
+      }
+      // results are written over the previous content
+      DenseDoubleVector rowResult = new DenseDoubleVector(rows, 42d);
+      DenseDoubleVector columnResult = new DenseDoubleVector(cols, 42d);
+      arrayEquals(ax, mat.multiplyVectorRow(x).toArray());
+      arrayEquals(ax, mat.multiplyVectorRow(x, rowResult, pool)
+          .toArray());
+      arrayEquals(sparseAx, mat.multiplyVectorRow(sparseX, rowResult)
+          .toArray());
+      arrayEquals(sparseAx,
+          mat.multiplyVectorRow(sparseX, rowResult, pool).toArray());
+      arrayEquals(ya, mat.multiplyVectorColumn(y).toArray());
+      arrayEquals(ya, mat.multiplyVectorColumn(y, columnResult, pool)
+          .toArray());
+      arrayEquals(sparseYa,
+          mat.multiplyVectorColumn(sparseY, columnResult).toArray());
+      arrayEquals(sparseYa,
+          mat.multiplyVectorColumn(sparseY, columnResult, pool).toArray());
+    }
+    // vectors of the wrong dimension are rejected instead of padded
+    DenseDoubleMatrix mat = new DenseDoubleMatrix(3, 4);
+    DoubleVector[] wrong = new DoubleVector[] { new DenseDoubleVector(3),
+        new DenseDoubleVector(5), new SparseDoubleVector(3),
+        new SparseDoubleVector(5) };
+    for (DoubleVector v : wrong) {
+      try {
+        mat.multiplyVectorRow(v);
+        fail();
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+    try {
+      mat.multiplyVectorColumn(new DenseDoubleVector(2));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    // the result must not alias the operands
+    DenseDoubleMatrix square = new DenseDoubleMatrix(3, 3, new Random(5));
+    DenseDoubleVector v = new DenseDoubleVector(3, 1d);
+    try {
+      square.multiplyVectorRow(v, v);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      square.multiplyVectorColumn(v, v, pool);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    DenseDoubleMatrix other = new DenseDoubleMatrix(3, 3, new Random(6));
+    try {
+      square.multiply(other, square);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      square.multiply(other, other, pool);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testMultiplySparse() {
+    Random rnd = new Random(5);
+    int[][] sizes = new int[][] { { 5000, 40, 30 }, { 6, 4, 9 } };
+    for (int[] size : sizes) {
+      DenseDoubleMatrix a = new DenseDoubleMatrix(size[0], size[1], rnd);
+      SparseDoubleRowMatrix b = new SparseDoubleRowMatrix(size[1], size[2]);
+      // every third row of b stays empty
+      for (int i = 0; i < size[1]; i++) {
+        for (int j = 0; j < size[2]; j++) {
+          if (i % 3 != 2 && rnd.nextInt(4) == 0) {
+            b.set(i, j, rnd.nextGaussian());
+          }
+        }
+      }
+      double[][] expected = new double[size[0]][size[2]];
+      for (int i = 0; i < size[0]; i++) {
+        for (int k = 0; k < size[1]; k++) {
+          for (int j = 0; j < size[2]; j++) {
+            expected[i][j] += a.get(i, k) * b.get(k, j);
+          }
+        }
+      }
+      matrixEquals(expected, a.multiply(b).toArray());
+      // results are written over the previous content
+      DenseDoubleMatrix result = new DenseDoubleMatrix(size[0], size[2], 42d);
+      matrixEquals(expected, a.multiply(b, result).toArray());
+      matrixEquals(expected, a.multiply(b, result, pool).toArray());
+      DenseDoubleMatrix denseB = new DenseDoubleMatrix(b.toArray());
+      matrixEquals(expected, a.multiply(denseB, result, pool).toArray());
+      // dense operands of either layout take the same contiguous kernels
+      matrixEquals(expected, a.multiply(denseB).toArray());
+      RowMajorDenseDoubleMatrix rowMajorB = new RowMajorDenseDoubleMatrix(
+          b.toArray());
+      matrixEquals(expected, a.multiply(rowMajorB).toArray());
+      matrixEquals(expected, a.multiply(rowMajorB, result, pool).toArray());
+    }
+    try {
+      new DenseDoubleMatrix(2, 3).multiply(new SparseDoubleRowMatrix(2, 2));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      new DenseDoubleMatrix(2, 3).multiply(new DenseDoubleMatrix(2, 2));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
 }
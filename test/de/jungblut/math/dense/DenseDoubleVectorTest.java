@@ -429,4 +429,41 @@ public class DenseDoubleVectorTest extends TestCase {
       assertEquals(left[i], right[i]);
     }
   }
+  @Test
+  public void testOperationsWithResult() {
+    DenseDoubleVector a = new DenseDoubleVector(new double[] { 1, 2, 3 });
+    DenseDoubleVector b = new DenseDoubleVector(new double[] { 4, 5, 6 });
+    SparseDoubleVector sparse = new SparseDoubleVector(3);
+    sparse.set(1, 2d);
+    DenseDoubleVector result = new DenseDoubleVector(3);
+
+    assertSame(result, a.add(b, result));
+    assertEquals(a.add(b), result);
+    assertEquals(a.add(sparse), a.add(sparse, result));
+    assertEquals(a.subtract(b), a.subtract(b, result));
+    assertEquals(a.subtract(sparse), a.subtract(sparse, result));
+    assertEquals(a.add(2d), a.add(2d, result));
+    assertEquals(a.subtract(2d), a.subtract(2d, result));
+    assertEquals(a.multiply(3d), a.multiply(3d, result));
+    assertEquals(a.multiply(b), a.multiply(b, result));
+    assertEquals(a.multiply(sparse), a.multiply(sparse, result));
+    assertEquals(a.apply((i, v) -> v * i), a.apply((i, v) -> v * i, result));
+    assertEquals(a.apply(b, (i, x, y) -> x - y),
+        a.apply(b, (i, x, y) -> x - y, result));
+
+    // in place
+    DenseDoubleVector expected = (DenseDoubleVector) a.multiply(sparse);
+    assertSame(a, a.multiply(sparse, a));
+    assertEquals(expected, a);
+    a.add(sparse, a);
+    assertEquals(new DenseDoubleVector(new double[] { 0, 6, 0 }), a);
+
+    try {
+      a.add(b, new DenseDoubleVector(4));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
 }
@@ -0,0 +1,111 @@
+package de.jungblut.math.dense;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.sparse.SparseDoubleVector;
+
+public class ParallelVectorOpsTest extends TestCase {
+
+  @Test
+  public void testDeterministicAcrossPools() {
+    DenseDoubleVector v = random(1_000_003, new Random(0));
+    DenseDoubleVector w = random(1_000_003, new Random(1));
+    ForkJoinPool single = new ForkJoinPool(1);
+    double sum;
+    double dot;
+    try {
+      sum = ParallelVectorOps.sum(v, single);
+      dot = ParallelVectorOps.dot(v, w, single);
+    } finally {
+      single.shutdown();
+    }
+    for (int threads = 2; threads <= 8; threads *= 2) {
+      ForkJoinPool pool = new ForkJoinPool(threads);
+      try {
+        for (int run = 0; run < 3; run++) {
+          assertEquals(sum, ParallelVectorOps.sum(v, pool), 0d);
+          assertEquals(dot, ParallelVectorOps.dot(v, w, pool), 0d);
+        }
+      } finally {
+        pool.shutdown();
+      }
+    }
+    assertEquals(v.sum(), sum, 1e-6);
+    assertEquals(v.dot(w), dot, 1e-6);
+  }
+
+  @Test
+  public void testSingleChunkEqualsSequential() {
+    DenseDoubleVector v = random(1000, new Random(2));
+    DenseDoubleVector w = random(1000, new Random(3));
+    assertEquals(v.sum(), ParallelVectorOps.sum(v), 0d);
+    assertEquals(v.dot(w), ParallelVectorOps.dot(v, w), 0d);
+    assertEquals(0d, ParallelVectorOps.sum(new DenseDoubleVector(0)), 0d);
+  }
+
+  @Test
+  public void testExtremes() {
+    DenseDoubleVector v = random(300_000, new Random(4));
+    v.set(12, 100);
+    v.set(250_000, 100);
+    v.set(70_000, -100);
+    v.set(200_000, -100);
+    assertEquals(100d, ParallelVectorOps.max(v), 0d);
+    assertEquals(12, ParallelVectorOps.maxIndex(v));
+    assertEquals(-100d, ParallelVectorOps.min(v), 0d);
+    assertEquals(70_000, ParallelVectorOps.minIndex(v));
+    assertEquals(v.maxIndex(), ParallelVectorOps.maxIndex(v));
+    assertEquals(v.minIndex(), ParallelVectorOps.minIndex(v));
+
+    DenseDoubleVector nan = new DenseDoubleVector(200_000, Double.NaN);
+    assertEquals(nan.maxIndex(), ParallelVectorOps.maxIndex(nan));
+    assertEquals(nan.max(), ParallelVectorOps.max(nan), 0d);
+    assertEquals(nan.min(), ParallelVectorOps.min(nan), 0d);
+  }
+
+  @Test
+  public void testApply() {
+    DenseDoubleVector v = random(200_000, new Random(5));
+    DenseDoubleVector w = random(200_000, new Random(6));
+    DoubleVector expected = v.apply((i, x) -> x * i);
+    DoubleVector actual = ParallelVectorOps.apply(v, (i, x) -> x * i);
+    for (int i = 0; i < v.getLength(); i++) {
+      assertEquals(expected.get(i), actual.get(i), 0d);
+    }
+    DoubleVector pairs = ParallelVectorOps.apply(v, w, (i, x, y) -> x - y);
+    for (int i = 0; i < v.getLength(); i++) {
+      assertEquals(v.get(i) - w.get(i), pairs.get(i), 0d);
+    }
+  }
+
+  @Test
+  public void testSparseDot() {
+    DenseDoubleVector v = random(100_000, new Random(7));
+    SparseDoubleVector s = new SparseDoubleVector(100_000);
+    s.set(5, 2);
+    s.set(99_999, 3);
+    assertEquals(v.get(5) * 2 + v.get(99_999) * 3,
+        ParallelVectorOps.dot(v, s), 1e-12);
+    try {
+      ParallelVectorOps.dot(v, new DenseDoubleVector(3));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private static DenseDoubleVector random(int length, Random rnd) {
+    DenseDoubleVector v = new DenseDoubleVector(length);
+    for (int i = 0; i < length; i++) {
+      v.set(i, rnd.nextGaussian());
+    }
+    return v;
+  }
+
+}
@@ -0,0 +1,200 @@
+package de.jungblut.math.dense;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.sparse.SparseDoubleRowMatrix;
+import de.jungblut.math.sparse.SparseDoubleVector;
+
+public class RowMajorDenseDoubleMatrixTest extends TestCase {
+
+  private ForkJoinPool pool;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    pool = new ForkJoinPool(4);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    pool.shutdown();
+    super.tearDown();
+  }
+
+  @Test
+  public void testLayout() {
+    double[][] arr = new double[][] { { 1, 2, 3 }, { 4, 5, 6 } };
+    RowMajorDenseDoubleMatrix mat = new RowMajorDenseDoubleMatrix(arr);
+    assertEquals(2, mat.getRowCount());
+    assertEquals(3, mat.getColumnCount());
+    arrayEquals(new double[] { 1, 2, 3, 4, 5, 6 }, mat.getRowMajorMatrix());
+    assertEquals(6d, mat.get(1, 2));
+    arrayEquals(new double[] { 4, 5, 6 }, mat.getRow(1));
+    arrayEquals(new double[] { 2, 5 }, mat.getColumn(1));
+    matrixEquals(arr, mat.toArray());
+
+    mat.setRowVector(0, new DenseDoubleVector(new double[] { 7, 8, 9 }));
+    SparseDoubleVector sparseRow = new SparseDoubleVector(3);
+    sparseRow.set(2, -1);
+    mat.setRowVector(1, sparseRow);
+    mat.setColumn(0, new double[] { 0, 3 });
+    matrixEquals(new double[][] { { 0, 8, 9 }, { 3, 0, -1 } }, mat.toArray());
+    assertEquals(8d, mat.max(1));
+    assertEquals(-1d, mat.min(2));
+  }
+
+  @Test
+  public void testConversion() {
+    Random rnd = new Random(13);
+    DenseDoubleMatrix columnMajor = new DenseDoubleMatrix(500, 301, rnd);
+    RowMajorDenseDoubleMatrix rowMajor = new RowMajorDenseDoubleMatrix(
+        columnMajor);
+    matrixEquals(columnMajor.toArray(), rowMajor.toArray());
+    matrixEquals(columnMajor.toArray(), new RowMajorDenseDoubleMatrix(
+        columnMajor, pool).toArray());
+    arrayEquals(columnMajor.getColumnMajorMatrix(), rowMajor.toColumnMajor()
+        .getColumnMajorMatrix());
+    arrayEquals(columnMajor.getColumnMajorMatrix(),
+        rowMajor.toColumnMajor(pool).getColumnMajorMatrix());
+
+    matrixEquals(columnMajor.transpose().toArray(), rowMajor.transpose()
+        .toArray());
+    matrixEquals(columnMajor.transpose().toArray(), rowMajor.transpose(pool)
+        .toArray());
+    RowMajorDenseDoubleMatrix square = rowMajor.slice(100, 200, 50, 150);
+    DoubleMatrix expected = columnMajor.slice(100, 200, 50, 150).transpose();
+    matrixEquals(expected.toArray(), square.transposeInPlace().toArray());
+  }
+
+  @Test
+  public void testMultiply() {
+    Random rnd = new Random(17);
+    int[][] sizes = new int[][] { { 300, 40, 50 }, { 5, 3, 7 } };
+    for (int[] size : sizes) {
+      RowMajorDenseDoubleMatrix a = new RowMajorDenseDoubleMatrix(size[0],
+          size[1], rnd);
+      DenseDoubleMatrix b = new DenseDoubleMatrix(size[1], size[2], rnd);
+      SparseDoubleRowMatrix sparseB = new SparseDoubleRowMatrix(size[1],
+          size[2]);
+      for (int i = 0; i < size[1]; i++) {
+        for (int j = 0; j < size[2]; j++) {
+          if (i % 3 != 1 && rnd.nextInt(4) == 0) {
+            sparseB.set(i, j, rnd.nextGaussian());
+          }
+        }
+      }
+      double[][] expected = naiveMultiply(a, b);
+      double[][] sparseExpected = naiveMultiply(a, sparseB);
+      RowMajorDenseDoubleMatrix rowMajorB = new RowMajorDenseDoubleMatrix(b);
+      RowMajorDenseDoubleMatrix result = new RowMajorDenseDoubleMatrix(
+          size[0], size[2], 42d);
+
+      matrixEquals(expected, a.multiply(b).toArray());
+      matrixEquals(expected, a.multiply(rowMajorB).toArray());
+      matrixEquals(expected, a.multiply(b, result, pool).toArray());
+      matrixEquals(expected, a.multiply(rowMajorB, result, pool).toArray());
+      matrixEquals(sparseExpected, a.multiply(sparseB).toArray());
+      matrixEquals(sparseExpected, a.multiply(sparseB, result, pool)
+          .toArray());
+    }
+    try {
+      new RowMajorDenseDoubleMatrix(2, 3).multiply(new DenseDoubleMatrix(2, 2));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testMultiplyVector() {
+    Random rnd = new Random(19);
+    DenseDoubleMatrix columnMajor = new DenseDoubleMatrix(3000, 30, rnd);
+    RowMajorDenseDoubleMatrix rowMajor = new RowMajorDenseDoubleMatrix(
+        columnMajor);
+    DenseDoubleVector x = new DenseDoubleVector(30);
+    SparseDoubleVector sparseX = new SparseDoubleVector(30);
+    DenseDoubleVector y = new DenseDoubleVector(3000);
+    for (int i = 0; i < 30; i++) {
+      x.set(i, rnd.nextGaussian());
+      if (i % 4 == 0) {
+        sparseX.set(i, x.get(i));
+      }
+    }
+    for (int i = 0; i < 3000; i++) {
+      y.set(i, rnd.nextGaussian());
+    }
+    arrayEquals(columnMajor.multiplyVectorRow(x).toArray(), rowMajor
+        .multiplyVectorRow(x).toArray());
+    arrayEquals(columnMajor.multiplyVectorRow(sparseX).toArray(), rowMajor
+        .multiplyVectorRow(sparseX, new DenseDoubleVector(3000), pool)
+        .toArray());
+    arrayEquals(columnMajor.multiplyVectorColumn(y).toArray(), rowMajor
+        .multiplyVectorColumn(y).toArray());
+    arrayEquals(columnMajor.multiplyVectorColumn(y).toArray(), rowMajor
+        .multiplyVectorColumn(y, new DenseDoubleVector(30), pool).toArray());
+  }
+
+  @Test
+  public void testElementWise() {
+    double[][] arr = new double[][] { { 1, 2, 3 }, { 4, 5, 6 } };
+    double[][] otherArr = new double[][] { { 2, 1, 1 }, { 1, -1, 2 } };
+    RowMajorDenseDoubleMatrix mat = new RowMajorDenseDoubleMatrix(arr);
+    DenseDoubleMatrix columnMajor = new DenseDoubleMatrix(arr);
+    DoubleMatrix[] others = new DoubleMatrix[] {
+        new RowMajorDenseDoubleMatrix(otherArr),
+        new DenseDoubleMatrix(otherArr), new SparseDoubleRowMatrix(otherArr) };
+    for (DoubleMatrix other : others) {
+      matrixEquals(columnMajor.add(other).toArray(), mat.add(other).toArray());
+      matrixEquals(columnMajor.subtract(other).toArray(), mat.subtract(other)
+          .toArray());
+      matrixEquals(columnMajor.multiplyElementWise(other).toArray(), mat
+          .multiplyElementWise(other).toArray());
+      matrixEquals(columnMajor.divide(other).toArray(), mat.divide(other)
+          .toArray());
+    }
+    DoubleVector vec = new DenseDoubleVector(new double[] { 1, 2 });
+    matrixEquals(columnMajor.subtract(vec).toArray(), mat.subtract(vec)
+        .toArray());
+    matrixEquals(columnMajor.divide(vec).toArray(), mat.divide(vec).toArray());
+    matrixEquals(columnMajor.pow(2).toArray(), mat.pow(2).toArray());
+    matrixEquals(columnMajor.subtractBy(1).toArray(), mat.subtractBy(1)
+        .toArray());
+    assertEquals(columnMajor.sum(), mat.sum());
+    mat.multiply(2, mat);
+    assertEquals(12d, mat.get(1, 2));
+  }
+
+  private static double[][] naiveMultiply(DoubleMatrix a, DoubleMatrix b) {
+    double[][] result = new double[a.getRowCount()][b.getColumnCount()];
+    for (int i = 0; i < a.getRowCount(); i++) {
+      for (int k = 0; k < a.getColumnCount(); k++) {
+        for (int j = 0; j < b.getColumnCount(); j++) {
+          result[i][j] += a.get(i, k) * b.get(k, j);
+        }
+      }
+    }
+    return result;
+  }
+
+  public void matrixEquals(double[][] left, double[][] right) {
+    assertEquals(left.length, right.length);
+    for (int i = 0; i < left.length; i++) {
+      arrayEquals(left[i], right[i]);
+    }
+  }
+
+  public void arrayEquals(double[] left, double[] right) {
+    assertEquals(left.length, right.length);
+    for (int i = 0; i < left.length; i++) {
+      assertEquals(left[i], right[i], 1e-5);
+    }
+  }
+
+}
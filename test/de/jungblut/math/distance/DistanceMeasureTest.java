@@ -0,0 +1,55 @@
+package de.jungblut.math.distance;
+
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.sparse.SequentialSparseDoubleVector;
+
+public class DistanceMeasureTest extends TestCase {
+
+  @Test
+  public void testOneToMany() {
+    DoubleVector query = new DenseDoubleVector(new double[] { 1, 0, 0 });
+    List<DoubleVector> vectors = Arrays.asList(new DenseDoubleVector(
+        new double[] { 1, 0, 0 }), new SequentialSparseDoubleVector(
+        new double[] { 0, 2, 0 }), new DenseDoubleVector(new double[] { 4, 0,
+        4 }));
+    for (DistanceMeasure measure : DistanceMeasure.values()) {
+      double[] out = new double[5];
+      assertSame(out, measure.distances(query, vectors, out, 2));
+      assertEquals(0d, out[0], 0d);
+      assertEquals(0d, out[1], 0d);
+      for (int i = 0; i < vectors.size(); i++) {
+        assertEquals(measure.distance(query, vectors.get(i)), out[i + 2], 0d);
+      }
+      double[] fromArray = measure.distances(query,
+          vectors.toArray(new DoubleVector[0]), new double[3]);
+      assertEquals(out[2], fromArray[0], 0d);
+      assertEquals(out[4], fromArray[2], 0d);
+    }
+    double[] out = DistanceMeasure.EUCLIDEAN.distances(query, vectors,
+        new double[3]);
+    assertEquals(0d, out[0], 0d);
+    assertEquals(Math.sqrt(5), out[1], 1e-12);
+    assertEquals(5d, out[2], 1e-12);
+  }
+
+  @Test
+  public void testOutputTooSmall() {
+    try {
+      DistanceMeasure.COSINE.distances(new DenseDoubleVector(1),
+          Arrays.asList(new DenseDoubleVector(1), new DenseDoubleVector(1)),
+          new double[1]);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+}
@@ -0,0 +1,168 @@
+package de.jungblut.math.distance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.named.KeyedDoubleVector;
+import de.jungblut.math.named.NamedDoubleVector;
+import de.jungblut.math.quantized.Int8DoubleVector;
+import de.jungblut.math.sparse.SequentialSparseDoubleVector;
+import de.jungblut.math.sparse.SparseBitVector;
+import de.jungblut.math.sparse.SparseDoubleVector;
+
+public class DistancesTest extends TestCase {
+
+  @Test
+  public void testAllTypeCombinations() {
+    Random rnd = new Random(0);
+    for (int run = 0; run < 20; run++) {
+      double[] x = randomSparseArray(50, rnd, run % 2 == 0);
+      double[] y = randomSparseArray(50, rnd, run % 2 == 0);
+      for (DoubleVector a : allTypes(x)) {
+        for (DoubleVector b : allTypes(y)) {
+          String msg = a.getClass().getSimpleName() + "/"
+              + b.getClass().getSimpleName();
+          double[] ax = a.toArray();
+          double[] bx = b.toArray();
+          assertEquals(msg, naive(ax, bx, 0), Distances.squaredEuclidean(a, b),
+              1e-9);
+          assertEquals(msg, Math.sqrt(naive(ax, bx, 0)),
+              Distances.euclidean(a, b), 1e-9);
+          assertEquals(msg, naive(ax, bx, 1), Distances.manhattan(a, b), 1e-9);
+          assertEquals(msg, naive(ax, bx, 2), Distances.chebyshev(a, b), 1e-9);
+          assertEquals(msg, naiveCosine(ax, bx),
+              Distances.cosineSimilarity(a, b), 1e-9);
+          assertEquals(msg, 1d - naiveCosine(ax, bx),
+              Distances.cosineDistance(a, b), 1e-9);
+          assertEquals(msg, naiveJaccard(ax, bx),
+              Distances.jaccardSimilarity(a, b), 1e-9);
+          assertEquals(msg, 1d - naiveJaccard(ax, bx),
+              Distances.jaccardDistance(a, b), 1e-9);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testDenseAndHashedSparse() {
+    Random rnd = new Random(1);
+    for (int run = 0; run < 10; run++) {
+      double[] x = randomSparseArray(500, rnd, false);
+      double[] y = randomSparseArray(500, rnd, run % 2 == 0);
+      // a dense vector with zeros where the sparse one has non-zeros
+      for (int i = 0; i < x.length; i += 7) {
+        x[i] = 0d;
+      }
+      DenseDoubleVector dense = new DenseDoubleVector(x);
+      SparseDoubleVector sparse = new SparseDoubleVector(y);
+      DenseDoubleVector generic = new DenseDoubleVector(y);
+      for (boolean denseFirst : new boolean[] { true, false }) {
+        DoubleVector a = denseFirst ? dense : sparse;
+        DoubleVector b = denseFirst ? sparse : dense;
+        DoubleVector ga = denseFirst ? dense : generic;
+        DoubleVector gb = denseFirst ? generic : dense;
+        assertEquals(Distances.squaredEuclidean(ga, gb),
+            Distances.squaredEuclidean(a, b), 1e-9);
+        assertEquals(Distances.manhattan(ga, gb), Distances.manhattan(a, b),
+            1e-9);
+        assertEquals(Distances.chebyshev(ga, gb), Distances.chebyshev(a, b),
+            1e-9);
+        assertEquals(Distances.cosineSimilarity(ga, gb),
+            Distances.cosineSimilarity(a, b), 1e-9);
+        assertEquals(Distances.jaccardSimilarity(ga, gb),
+            Distances.jaccardSimilarity(a, b), 1e-9);
+      }
+    }
+  }
+
+  @Test
+  public void testWrappedAndQuantized() {
+    DenseDoubleVector a = new DenseDoubleVector(new double[] { 1, 2, 3 });
+    DenseDoubleVector b = new DenseDoubleVector(new double[] { 3, 2, 1 });
+    assertEquals(8d, Distances.squaredEuclidean(new KeyedDoubleVector(1, a),
+        new NamedDoubleVector("b", b)), 0d);
+    Int8DoubleVector q = new Int8DoubleVector(a);
+    assertEquals(q.squaredEuclideanDistance(b), Distances.squaredEuclidean(q,
+        b), 0d);
+    assertEquals(q.squaredEuclideanDistance(b), Distances.squaredEuclidean(b,
+        q), 0d);
+  }
+
+  @Test
+  public void testEdgeCases() {
+    DenseDoubleVector zero = new DenseDoubleVector(3);
+    DenseDoubleVector a = new DenseDoubleVector(new double[] { 1, 2, 3 });
+    assertEquals(0d, Distances.cosineSimilarity(zero, a), 0d);
+    assertEquals(0d, Distances.jaccardSimilarity(zero, zero), 0d);
+    assertEquals(0d, Distances.chebyshev(a, a), 0d);
+    try {
+      Distances.euclidean(a, new DenseDoubleVector(4));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private static List<DoubleVector> allTypes(double[] arr) {
+    List<DoubleVector> list = new ArrayList<>();
+    list.add(new DenseDoubleVector(arr));
+    list.add(new SequentialSparseDoubleVector(arr));
+    list.add(new SparseDoubleVector(arr));
+    list.add(new NamedDoubleVector("x", new SequentialSparseDoubleVector(arr)));
+    boolean binary = true;
+    for (double d : arr) {
+      binary &= d == 0d || d == 1d;
+    }
+    if (binary) {
+      list.add(new SparseBitVector(arr));
+    }
+    return list;
+  }
+
+  private static double[] randomSparseArray(int length, Random rnd,
+      boolean binary) {
+    double[] arr = new double[length];
+    for (int i = 0; i < length; i++) {
+      if (rnd.nextDouble() < 0.3) {
+        arr[i] = binary ? 1d : rnd.nextGaussian();
+      }
+    }
+    return arr;
+  }
+
+  private static double naive(double[] a, double[] b, int kind) {
+    double acc = 0d;
+    for (int i = 0; i < a.length; i++) {
+      double d = Math.abs(a[i] - b[i]);
+      acc = kind == 0 ? acc + d * d : kind == 1 ? acc + d : Math.max(acc, d);
+    }
+    return acc;
+  }
+
+  private static double naiveCosine(double[] a, double[] b) {
+    double dot = 0d, na = 0d, nb = 0d;
+    for (int i = 0; i < a.length; i++) {
+      dot += a[i] * b[i];
+      na += a[i] * a[i];
+      nb += b[i] * b[i];
+    }
+    return na == 0d || nb == 0d ? 0d : dot / Math.sqrt(na * nb);
+  }
+
+  private static double naiveJaccard(double[] a, double[] b) {
+    int intersection = 0, union = 0;
+    for (int i = 0; i < a.length; i++) {
+      intersection += a[i] != 0d && b[i] != 0d ? 1 : 0;
+      union += a[i] != 0d || b[i] != 0d ? 1 : 0;
+    }
+    return union == 0 ? 0d : intersection / (double) union;
+  }
+
+}
@@ -0,0 +1,127 @@
+package de.jungblut.math.distance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.sparse.SparseDoubleVector;
+
+public class PairwiseEngineTest extends TestCase {
+
+  @Test
+  public void testAgainstDistances() {
+    List<DoubleVector> vectors = random(301, 37, new Random(0));
+    // a zero vector for the cosine edge case
+    vectors.add(new DenseDoubleVector(37));
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      PairwiseEngine engine = new PairwiseEngine(vectors, pool, 16);
+      assertEquals(302, engine.getNumRows());
+      assertEquals(37, engine.getDimension());
+      DenseDoubleMatrix gram = engine.gram();
+      DenseDoubleMatrix squared = engine.squaredEuclidean();
+      DenseDoubleMatrix euclidean = engine.euclidean();
+      DenseDoubleMatrix cosine = engine.cosine();
+      for (int i = 0; i < vectors.size(); i++) {
+        for (int j = 0; j < vectors.size(); j++) {
+          DoubleVector a = vectors.get(i);
+          DoubleVector b = vectors.get(j);
+          assertEquals(a.dot(b), gram.get(i, j), 1e-9);
+          assertEquals(Distances.squaredEuclidean(a, b), squared.get(i, j),
+              1e-9);
+          assertEquals(Distances.euclidean(a, b), euclidean.get(i, j), 1e-6);
+          assertEquals(Distances.cosineSimilarity(a, b), cosine.get(i, j),
+              1e-9);
+        }
+        assertEquals(0d, squared.get(i, i), 0d);
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testFromMatrixAndSparse() {
+    List<DoubleVector> vectors = random(50, 300, new Random(1));
+    DenseDoubleMatrix matrix = new DenseDoubleMatrix(vectors);
+    List<DoubleVector> sparse = new ArrayList<>();
+    for (DoubleVector v : vectors) {
+      sparse.add(new SparseDoubleVector(v));
+    }
+    DenseDoubleMatrix expected = (DenseDoubleMatrix) matrix.multiply(matrix
+        .transpose());
+    DenseDoubleMatrix fromMatrix = new PairwiseEngine(matrix).gram();
+    DenseDoubleMatrix fromSparse = new PairwiseEngine(sparse).gram();
+    for (int i = 0; i < 50; i++) {
+      for (int j = 0; j < 50; j++) {
+        assertEquals(expected.get(i, j), fromMatrix.get(i, j), 1e-9);
+        assertEquals(expected.get(i, j), fromSparse.get(i, j), 1e-9);
+      }
+    }
+  }
+
+  @Test
+  public void testStreamUpperTriangle() {
+    List<DoubleVector> vectors = random(45, 5, new Random(2));
+    PairwiseEngine engine = new PairwiseEngine(vectors, ForkJoinPool
+        .commonPool(), 10);
+    DenseDoubleMatrix full = engine.euclidean();
+    AtomicInteger tiles = new AtomicInteger();
+    AtomicInteger entries = new AtomicInteger();
+    engine.stream(PairwiseEngine.Measure.EUCLIDEAN, (rowStart, columnStart,
+        rows, columns, tile) -> {
+      assertTrue(rowStart <= columnStart);
+      tiles.incrementAndGet();
+      entries.addAndGet(rows * columns);
+      for (int r = 0; r < rows; r++) {
+        for (int c = 0; c < columns; c++) {
+          assertEquals(full.get(rowStart + r, columnStart + c), tile[r
+              * columns + c], 0d);
+        }
+      }
+    });
+    // 5 tile rows, 15 tiles in the upper triangle
+    assertEquals(15, tiles.get());
+    assertEquals(4 * 10 * 10 + 4 * 10 * 5 + 6 * 10 * 10 + 5 * 5,
+        entries.get());
+  }
+
+  @Test
+  public void testEmpty() {
+    PairwiseEngine engine = new PairwiseEngine(new ArrayList<DoubleVector>());
+    assertEquals(0, engine.gram().getRowCount());
+  }
+
+  @Test
+  public void testInvalidTileSize() {
+    try {
+      new PairwiseEngine(random(3, 2, new Random(3)),
+          ForkJoinPool.commonPool(), 1);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private static List<DoubleVector> random(int n, int dimension, Random rnd) {
+    List<DoubleVector> list = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      DenseDoubleVector v = new DenseDoubleVector(dimension);
+      for (int j = 0; j < dimension; j++) {
+        v.set(j, rnd.nextGaussian());
+      }
+      list.add(v);
+    }
+    return list;
+  }
+
+}
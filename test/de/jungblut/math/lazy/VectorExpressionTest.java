@@ -0,0 +1,142 @@
+package de.jungblut.math.lazy;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.sparse.SequentialSparseDoubleVector;
+import de.jungblut.math.sparse.SparseDoubleVector;
+
+public class VectorExpressionTest extends TestCase {
+
+  @Test
+  public void testStandardize() {
+    DoubleVector v = random(100, new Random(0));
+    DoubleVector mean = random(100, new Random(1));
+    DoubleVector std = random(100, new Random(2)).add(1);
+    double eager = v.subtract(mean).divide(std).pow(2).sum();
+    VectorExpression lazy = v.lazy().subtract(mean).divide(std).pow(2);
+    assertFalse(lazy.isSparse());
+    assertEquals(eager, lazy.sum(), 1e-9);
+    assertVector(v.subtract(mean).divide(std).pow(2), lazy.toVector());
+  }
+
+  @Test
+  public void testAllOperations() {
+    DoubleVector v = random(20, new Random(3)).abs().add(0.5);
+    DoubleVector w = random(20, new Random(4)).abs().add(0.5);
+    assertVector(v.add(3), v.lazy().add(3).toVector());
+    assertVector(v.add(w), v.lazy().add(w).toVector());
+    assertVector(v.subtract(3), v.lazy().subtract(3).toVector());
+    assertVector(v.subtract(w), v.lazy().subtract(w).toVector());
+    assertVector(v.subtractFrom(3), v.lazy().subtractFrom(3).toVector());
+    assertVector(v.multiply(3), v.lazy().multiply(3).toVector());
+    assertVector(v.multiply(w), v.lazy().multiply(w).toVector());
+    assertVector(v.divide(3), v.lazy().divide(3).toVector());
+    assertVector(v.divide(w), v.lazy().divide(w).toVector());
+    assertVector(v.divideFrom(3), v.lazy().divideFrom(3).toVector());
+    assertVector(v.pow(3), v.lazy().pow(3).toVector());
+    assertVector(v.abs(), v.lazy().abs().toVector());
+    assertVector(v.sqrt(), v.lazy().sqrt().toVector());
+    assertVector(v.log(), v.lazy().log().toVector());
+    assertVector(v.exp(), v.lazy().exp().toVector());
+    assertVector(v.apply((i, x) -> i * x),
+        v.lazy().apply((i, x) -> i * x).toVector());
+    assertEquals(v.dot(w), v.lazy().dot(w), 1e-9);
+    assertEquals(v.max(), v.lazy().max(), 0d);
+    assertEquals(v.min(), v.lazy().min(), 0d);
+    assertEquals(v.get(7) * 2, v.lazy().multiply(2).get(7), 0d);
+  }
+
+  @Test
+  public void testSparsityIsPreserved() {
+    SparseDoubleVector v = new SparseDoubleVector(1_000_000);
+    v.set(3, -2);
+    v.set(999_999, 4);
+    SequentialSparseDoubleVector w = new SequentialSparseDoubleVector(
+        1_000_000);
+    w.set(3, 5);
+    w.set(10, 1);
+
+    VectorExpression expr = v.lazy().multiply(2).pow(2).divide(4);
+    assertTrue(expr.isSparse());
+    assertEquals(4d + 16d, expr.sum(), 1e-12);
+    DoubleVector result = expr.toVector();
+    assertTrue(result.isSparse());
+    assertEquals(2, result.getLength());
+    assertEquals(16d, result.get(999_999), 1e-12);
+
+    VectorExpression union = v.lazy().add(w).abs();
+    assertTrue(union.isSparse());
+    assertEquals(3d + 1d + 4d, union.sum(), 1e-12);
+    assertEquals(3, union.toVector().getLength());
+
+    VectorExpression intersection = v.lazy().multiply(w);
+    assertTrue(intersection.isSparse());
+    assertEquals(-10d, intersection.sum(), 1e-12);
+    assertEquals(-10d, v.lazy().dot(w), 1e-12);
+
+    // implicit zeros count towards max and min
+    assertEquals(0d, v.lazy().add(2).multiply(-1).max(), 0d);
+    assertEquals(-4d, v.lazy().multiply(-1).min(), 0d);
+    assertEquals(2d, v.lazy().multiply(-1).max(), 0d);
+    assertEquals(0d, v.lazy().abs().min(), 0d);
+
+    // ops that don't preserve zeros become dense
+    assertFalse(v.lazy().add(1).isSparse());
+    assertFalse(v.lazy().exp().isSparse());
+    assertFalse(v.lazy().pow(0).isSparse());
+    assertFalse(v.lazy().divide(0).isSparse());
+    assertTrue(v.lazy().add(0).isSparse());
+    assertTrue(v.lazy().map(Math::sin, true).isSparse());
+  }
+
+  @Test
+  public void testToArray() {
+    SparseDoubleVector v = new SparseDoubleVector(5);
+    v.set(1, 3);
+    double[] out = new double[] { 9, 9, 9, 9, 9 };
+    v.lazy().multiply(2).toArray(out);
+    assertEquals(0d, out[0], 0d);
+    assertEquals(6d, out[1], 0d);
+    assertEquals(0d, out[4], 0d);
+  }
+
+  @Test
+  public void testIsLazy() {
+    DenseDoubleVector v = new DenseDoubleVector(new double[] { 1, 2 });
+    VectorExpression expr = v.lazy().multiply(2);
+    v.set(0, 5);
+    assertEquals(14d, expr.sum(), 0d);
+  }
+
+  @Test
+  public void testDimensionMismatch() {
+    try {
+      new DenseDoubleVector(3).lazy().add(new DenseDoubleVector(4));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private static void assertVector(DoubleVector expected, DoubleVector actual) {
+    assertEquals(expected.getDimension(), actual.getDimension());
+    for (int i = 0; i < expected.getDimension(); i++) {
+      assertEquals(expected.get(i), actual.get(i), 1e-9);
+    }
+  }
+
+  private static DoubleVector random(int dimension, Random rnd) {
+    DenseDoubleVector v = new DenseDoubleVector(dimension);
+    for (int i = 0; i < dimension; i++) {
+      v.set(i, rnd.nextGaussian());
+    }
+    return v;
+  }
+
+}
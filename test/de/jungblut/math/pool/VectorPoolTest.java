@@ -0,0 +1,113 @@
+package de.jungblut.math.pool;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleVector;
+
+public class VectorPoolTest extends TestCase {
+
+  @Test
+  public void testBorrowAndRelease() {
+    VectorPool pool = new VectorPool(2);
+    DenseDoubleVector v = pool.borrowVector(5);
+    v.set(3, 1d);
+    pool.release(v);
+    assertEquals(1, pool.getPooledVectors(5));
+    DenseDoubleVector reused = pool.borrowVector(5);
+    assertSame(v, reused);
+    assertEquals(0d, reused.get(3));
+    assertEquals(0, pool.getPooledVectors(5));
+    // a different dimension is a new vector
+    assertEquals(6, pool.borrowVector(6).getDimension());
+
+    // only two are kept
+    pool.release(new DenseDoubleVector(5));
+    pool.release(new DenseDoubleVector(5));
+    pool.release(new DenseDoubleVector(5));
+    assertEquals(2, pool.getPooledVectors(5));
+
+    DenseDoubleMatrix m = pool.borrowMatrix(2, 3);
+    m.set(1, 2, 5d);
+    pool.release(m);
+    assertEquals(0, pool.getPooledMatrices(3, 2));
+    DenseDoubleMatrix reusedMatrix = pool.borrowMatrix(2, 3);
+    assertSame(m, reusedMatrix);
+    assertEquals(0d, reusedMatrix.get(1, 2));
+  }
+
+  @Test
+  public void testArena() {
+    VectorPool pool = new VectorPool();
+    DenseDoubleVector second;
+    try (VectorPool.Arena arena = pool.openArena()) {
+      arena.borrowVector(3);
+      second = arena.borrowVector(3);
+      arena.borrowMatrix(4, 4);
+      try (VectorPool.Arena nested = pool.openArena()) {
+        nested.borrowVector(3);
+      }
+      assertEquals(1, pool.getPooledVectors(3));
+    }
+    assertEquals(3, pool.getPooledVectors(3));
+    assertEquals(1, pool.getPooledMatrices(4, 4));
+
+    // the steady state reuses the vectors, the last released comes first
+    VectorPool.Arena arena = pool.openArena();
+    DenseDoubleVector a = new DenseDoubleVector(new double[] { 1, 2, 3 });
+    DenseDoubleVector tmp = arena.borrowVector(3);
+    assertSame(second, tmp);
+    assertEquals(2, pool.getPooledVectors(3));
+    a.add(a, tmp);
+    assertEquals(6d, tmp.get(2));
+    arena.close();
+    try {
+      arena.borrowVector(3);
+      fail();
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    // closed arenas are not handed out again, so stale references stay closed
+    VectorPool.Arena next = pool.openArena();
+    assertNotSame(arena, next);
+    try {
+      arena.borrowMatrix(2, 2);
+      fail();
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    next.close();
+  }
+
+  @Test
+  public void testDoubleRelease() {
+    VectorPool pool = new VectorPool();
+    DenseDoubleVector v = pool.borrowVector(4);
+    pool.release(v);
+    try {
+      pool.release(v);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    assertEquals(1, pool.getPooledVectors(4));
+    DenseDoubleMatrix m = pool.borrowMatrix(2, 3);
+    pool.release(m);
+    try {
+      pool.release(m);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    assertEquals(1, pool.getPooledMatrices(2, 3));
+    assertNotSame(pool.borrowVector(4), pool.borrowVector(4));
+  }
+
+  @Test
+  public void testLocal() {
+    assertSame(VectorPool.local(), VectorPool.local());
+  }
+
+}
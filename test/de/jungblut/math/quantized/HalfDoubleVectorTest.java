@@ -0,0 +1,79 @@
+package de.jungblut.math.quantized;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+
+public class HalfDoubleVectorTest extends TestCase {
+
+  @Test
+  public void testHalfConversion() {
+    assertEquals(0d, Quantization.fromHalf(Quantization.toHalf(0d)));
+    assertEquals(1d, Quantization.fromHalf(Quantization.toHalf(1d)));
+    assertEquals(-2.5d, Quantization.fromHalf(Quantization.toHalf(-2.5d)));
+    assertEquals(65504d, Quantization.fromHalf(Quantization.toHalf(65504d)));
+    assertEquals(Double.POSITIVE_INFINITY,
+        Quantization.fromHalf(Quantization.toHalf(1e6)));
+    assertEquals(Double.NEGATIVE_INFINITY,
+        Quantization.fromHalf(Quantization.toHalf(Double.NEGATIVE_INFINITY)));
+    assertTrue(Double.isNaN(Quantization.fromHalf(Quantization
+        .toHalf(Double.NaN))));
+    // smallest subnormal
+    assertEquals(Math.pow(2, -24),
+        Quantization.fromHalf(Quantization.toHalf(Math.pow(2, -24))));
+    assertEquals(0d, Quantization.fromHalf(Quantization.toHalf(1e-10)));
+    // ties round to even: 2049 is exactly between 2048 and 2050
+    assertEquals(2048d, Quantization.fromHalf(Quantization.toHalf(2049d)));
+    assertEquals(2052d, Quantization.fromHalf(Quantization.toHalf(2051d)));
+
+    // every finite half must survive a round trip
+    for (int i = 0; i < (1 << 16); i++) {
+      short half = (short) i;
+      double d = Quantization.fromHalf(half);
+      if (!Double.isNaN(d)) {
+        assertEquals(d, Quantization.fromHalf(Quantization.toHalf(d)));
+      }
+    }
+  }
+
+  @Test
+  public void testVector() {
+    HalfDoubleVector v = new HalfDoubleVector(3);
+    v.set(1, 0.5d);
+    assertEquals(0.5d, v.get(1));
+    assertEquals(16, v.getBitsPerDimension());
+    assertEquals(1, v.maxIndex());
+
+    DoubleVector added = v.add(new DenseDoubleVector(new double[] { 1, 1, 1 }));
+    assertEquals(1.5d, added.get(1));
+  }
+
+  @Test
+  public void testKernels() {
+    Random r = new Random(0);
+    double[] a = new double[100];
+    double[] b = new double[100];
+    for (int i = 0; i < a.length; i++) {
+      a[i] = r.nextGaussian();
+      b[i] = r.nextGaussian();
+    }
+    HalfDoubleVector ha = Quantization.quantizeHalf(new DenseDoubleVector(a));
+    HalfDoubleVector hb = new HalfDoubleVector(b);
+
+    assertEquals(ha.dequantize().dot(hb.dequantize()), ha.dot(hb), 1e-9);
+    assertEquals(new DenseDoubleVector(a).dot(new DenseDoubleVector(b)),
+        ha.dot(new DenseDoubleVector(b)), 1e-2);
+
+    double expected = ha.dequantize().subtract(hb.dequantize()).pow(2).sum();
+    assertEquals(expected, ha.squaredEuclideanDistance(hb), 1e-9);
+    expected = ha.dequantize().subtract(new DenseDoubleVector(b)).pow(2).sum();
+    assertEquals(expected,
+        ha.squaredEuclideanDistance(new DenseDoubleVector(b)), 1e-9);
+  }
+
+}
@@ -0,0 +1,127 @@
+package de.jungblut.math.quantized;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.named.KeyedDoubleVector;
+import de.jungblut.math.sparse.SequentialSparseDoubleVector;
+
+public class Int8DoubleVectorTest extends TestCase {
+
+  @Test
+  public void testQuantizationRoundTrip() {
+    DoubleVector v = new DenseDoubleVector(new double[] { -1, -0.5, 0, 0.25,
+        1 });
+    Int8DoubleVector q = Quantization.quantizeInt8(v);
+    assertEquals(5, q.getDimension());
+    assertEquals(5, q.getLength());
+    assertEquals(8, q.getBitsPerDimension());
+    // one level is 2/255, so we can't be further off than half of it
+    double tolerance = 1d / 255d;
+    for (int i = 0; i < v.getDimension(); i++) {
+      assertEquals(v.get(i), q.get(i), tolerance);
+    }
+    assertEquals(-1d, q.min(), 1e-12);
+    assertEquals(1d, q.max(), 1e-12);
+    assertEquals(4, q.maxIndex());
+
+    DenseDoubleVector dequantized = Quantization.dequantize(q);
+    for (int i = 0; i < v.getDimension(); i++) {
+      assertEquals(q.get(i), dequantized.get(i));
+    }
+  }
+
+  @Test
+  public void testConstantVector() {
+    Int8DoubleVector q = new Int8DoubleVector(new double[] { 3, 3, 3 });
+    assertEquals(0d, q.getScale());
+    assertEquals(3d, q.get(0));
+    assertEquals(9d, q.sum(), 1e-12);
+  }
+
+  @Test
+  public void testDot() {
+    Random r = new Random(0);
+    double[] a = new double[257];
+    double[] b = new double[257];
+    for (int i = 0; i < a.length; i++) {
+      a[i] = r.nextGaussian();
+      b[i] = r.nextGaussian() * 5 + 1;
+    }
+    Int8DoubleVector qa = new Int8DoubleVector(a);
+    Int8DoubleVector qb = new Int8DoubleVector(b);
+
+    // the quantized kernel must match the dequantized dot product
+    double expected = qa.dequantize().dot(qb.dequantize());
+    assertEquals(expected, qa.dot(qb), 1e-9);
+    assertEquals(expected, qa.dot(new KeyedDoubleVector(1, qb)), 1e-9);
+
+    DenseDoubleVector dense = new DenseDoubleVector(b);
+    assertEquals(qa.dequantize().dot(dense), qa.dot(dense), 1e-9);
+    // and stay close to the exact result
+    assertEquals(new DenseDoubleVector(a).dot(dense), qa.dot(dense), 0.5);
+
+    DoubleVector sparse = new SequentialSparseDoubleVector(new double[257]);
+    sparse.set(3, 2d);
+    sparse.set(100, -1d);
+    assertEquals(qa.get(3) * 2d - qa.get(100), qa.dot(sparse), 1e-12);
+  }
+
+  @Test
+  public void testSquaredEuclideanDistance() {
+    Random r = new Random(1);
+    double[] a = new double[64];
+    double[] b = new double[64];
+    for (int i = 0; i < a.length; i++) {
+      a[i] = r.nextDouble();
+      b[i] = r.nextDouble() * 2;
+    }
+    Int8DoubleVector qa = new Int8DoubleVector(a);
+    Int8DoubleVector qb = new Int8DoubleVector(b);
+    double expected = qa.dequantize().subtract(qb.dequantize()).pow(2).sum();
+    assertEquals(expected, qa.squaredEuclideanDistance(qb), 1e-9);
+    assertEquals(Math.sqrt(expected), qa.euclideanDistance(qb), 1e-9);
+
+    // shared scale uses the integer path
+    Int8DoubleVector qc = new Int8DoubleVector(qb.getQuantizedValues().clone(),
+        qa.getScale(), qa.getOffset() + 0.5);
+    expected = qa.dequantize().subtract(qc.dequantize()).pow(2).sum();
+    assertEquals(expected, qa.squaredEuclideanDistance(qc), 1e-9);
+
+    DenseDoubleVector dense = new DenseDoubleVector(b);
+    expected = qa.dequantize().subtract(dense).pow(2).sum();
+    assertEquals(expected, qa.squaredEuclideanDistance(dense), 1e-9);
+
+    DoubleVector sparse = new SequentialSparseDoubleVector(64);
+    sparse.set(5, 3d);
+    expected = qa.dequantize().subtract(sparse).pow(2).sum();
+    assertEquals(expected, qa.squaredEuclideanDistance(sparse), 1e-9);
+  }
+
+  @Test
+  public void testImmutable() {
+    Int8DoubleVector q = new Int8DoubleVector(new double[] { 1, 2 });
+    try {
+      q.set(0, 1d);
+      fail();
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testEqualsAndCopy() {
+    Int8DoubleVector q = new Int8DoubleVector(new double[] { 1, 2, 5 });
+    DoubleVector copy = q.deepCopy();
+    assertEquals(q, copy);
+    assertEquals(q.hashCode(), copy.hashCode());
+    assertNotSame(q.getQuantizedValues(),
+        ((Int8DoubleVector) copy).getQuantizedValues());
+  }
+
+}
@@ -0,0 +1,176 @@
+package de.jungblut.math.search;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.named.KeyedDoubleVector;
+import de.jungblut.math.quantized.Int8DoubleVector;
+
+public class HnswIndexTest extends TestCase {
+
+  @Test
+  public void testRecall() {
+    List<DoubleVector> vectors = randomVectors(2000, 16, new Random(0));
+    for (Metric metric : Metric.values()) {
+      HnswIndex index = new HnswIndex(metric, 16, 100, 64, 2000, 0L);
+      for (DoubleVector v : vectors) {
+        index.insert((KeyedDoubleVector) v);
+      }
+      assertEquals(2000, index.size());
+      assertRecall(vectors, index, metric, 0.9);
+    }
+  }
+
+  @Test
+  public void testConcurrentInserts() throws Exception {
+    List<DoubleVector> vectors = randomVectors(2000, 16, new Random(1));
+    HnswIndex index = new HnswIndex(Metric.EUCLIDEAN, 12, 100, 64, 2000, 1L);
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    List<Future<?>> futures = new ArrayList<>();
+    for (DoubleVector v : vectors) {
+      futures.add(pool.submit(() -> index.insert((KeyedDoubleVector) v)));
+    }
+    pool.shutdown();
+    assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+    // rethrows the exceptions of the inserts
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    assertEquals(2000, index.size());
+    assertTrue(index.contains(1999));
+    assertRecall(vectors, index, Metric.EUCLIDEAN, 0.9);
+  }
+
+  @Test
+  public void testDuplicateKeyAndCapacity() {
+    HnswIndex index = new HnswIndex(Metric.DOT, 4, 1);
+    index.insert(1, new DenseDoubleVector(new double[] { 1, 2 }));
+    try {
+      index.insert(1, new DenseDoubleVector(new double[] { 1, 2 }));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      index.insert(2, new DenseDoubleVector(new double[] { 1, 2 }));
+      fail();
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    // a failed insert doesn't claim a slot
+    HnswIndex other = new HnswIndex(Metric.EUCLIDEAN, 4, 2);
+    other.insert(1, new DenseDoubleVector(new double[] { 1, 2 }));
+    try {
+      other.insert(2, new DenseDoubleVector(new double[] { 1, 2, 3 }));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    assertEquals(1, other.size());
+    assertFalse(other.contains(2));
+    other.insert(3, new DenseDoubleVector(new double[] { 3, 4 }));
+    assertEquals(2, other.size());
+    try {
+      other.search(new DenseDoubleVector(new double[] { 1 }), 1);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      other.search(new DenseDoubleVector(new double[] { 1, 2, 3 }), 1);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+
+    SearchResult result = index.search(
+        new DenseDoubleVector(new double[] { 1, 1 }), 3);
+    assertEquals(1, result.size());
+    assertEquals(1, result.getKey(0));
+    assertEquals(3d, result.getScore(0), 1e-12);
+  }
+
+  @Test
+  public void testSaveAndLoadQuantized() throws Exception {
+    Random r = new Random(2);
+    List<DoubleVector> vectors = new ArrayList<>();
+    HnswIndex index = new HnswIndex(Metric.COSINE, 8, 64, 32, 500, 2L);
+    for (int i = 0; i < 500; i++) {
+      double[] arr = new double[12];
+      for (int j = 0; j < arr.length; j++) {
+        arr[j] = r.nextGaussian();
+      }
+      Int8DoubleVector v = new Int8DoubleVector(arr);
+      vectors.add(new KeyedDoubleVector(i * 3, v));
+      index.insert(i * 3, v);
+    }
+
+    File file = File.createTempFile("hnsw", ".idx");
+    file.deleteOnExit();
+    index.save(file);
+    HnswIndex loaded = HnswIndex.load(file, 600);
+    assertEquals(500, loaded.size());
+    assertTrue(loaded.getVector(3) instanceof Int8DoubleVector);
+    assertEquals(index.getVector(3), loaded.getVector(3));
+
+    for (int q = 0; q < 20; q++) {
+      DoubleVector query = vectors.get(q * 7);
+      SearchResult expected = index.search(query, 5);
+      SearchResult actual = loaded.search(query, 5);
+      for (int i = 0; i < 5; i++) {
+        assertEquals(expected.getKey(i), actual.getKey(i));
+        assertEquals(expected.getScore(i), actual.getScore(i), 1e-12);
+      }
+    }
+    // the loaded index can still grow
+    loaded.insert(10000, vectors.get(0));
+    assertEquals(501, loaded.size());
+  }
+
+  private static void assertRecall(List<DoubleVector> vectors,
+      HnswIndex index, Metric metric, double minRecall) {
+    KnnIndex exact = new KnnIndex(vectors, metric);
+    List<DoubleVector> queries = randomVectors(50, 16, new Random(42));
+    SearchResult[] expected = exact.search(queries, 10);
+    int hits = 0;
+    for (int q = 0; q < queries.size(); q++) {
+      SearchResult actual = index.search(queries.get(q), 10);
+      assertEquals(10, actual.size());
+      for (int i = 0; i < 10; i++) {
+        for (int j = 0; j < 10; j++) {
+          if (expected[q].getKey(i) == actual.getKey(j)) {
+            hits++;
+            break;
+          }
+        }
+      }
+    }
+    double recall = hits / (queries.size() * 10d);
+    assertTrue(metric + " recall was " + recall, recall >= minRecall);
+  }
+
+  private static List<DoubleVector> randomVectors(int n, int dim, Random r) {
+    List<DoubleVector> list = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      DoubleVector v = new DenseDoubleVector(dim);
+      for (int j = 0; j < dim; j++) {
+        v.set(j, r.nextGaussian());
+      }
+      list.add(new KeyedDoubleVector(i, v));
+    }
+    return list;
+  }
+
+}
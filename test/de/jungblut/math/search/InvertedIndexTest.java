@@ -0,0 +1,143 @@
+package de.jungblut.math.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.named.KeyedDoubleVector;
+import de.jungblut.math.sparse.SequentialSparseDoubleVector;
+
+public class InvertedIndexTest extends TestCase {
+
+  @Test
+  public void testAgainstExhaustive() {
+    Random rnd = new Random(0);
+    List<DoubleVector> docs = randomDocuments(20_000, 5_000, 30, false, rnd);
+    InvertedIndex index = new InvertedIndex(docs);
+    assertEquals(20_000, index.size());
+    assertEquals(5_000, index.getDimension());
+
+    long[] scored = new long[1];
+    for (int q = 0; q < 20; q++) {
+      DoubleVector query = randomDocuments(1, 5_000, 5, false, rnd).get(0);
+      SearchResult result = index.search(query, 10, scored);
+      assertExhaustive(docs, query, result, 10);
+    }
+    // block-max WAND must score only a fraction of the documents
+    assertTrue("scored " + scored[0], scored[0] < 20 * docs.size() / 10);
+  }
+
+  @Test
+  public void testNegativeWeights() {
+    Random rnd = new Random(1);
+    List<DoubleVector> docs = randomDocuments(3_000, 300, 10, true, rnd);
+    InvertedIndex index = new InvertedIndex(docs);
+    for (int q = 0; q < 20; q++) {
+      DoubleVector query = randomDocuments(1, 300, 6, true, rnd).get(0);
+      assertExhaustive(docs, query, index.search(query, 5), 5);
+    }
+  }
+
+  @Test
+  public void testBatchAndKeys() {
+    List<DoubleVector> docs = new ArrayList<>();
+    docs.add(new KeyedDoubleVector(100, new SequentialSparseDoubleVector(
+        new double[] { 1, 0, 2 })));
+    docs.add(new KeyedDoubleVector(200, new SequentialSparseDoubleVector(
+        new double[] { 0, 3, 0 })));
+    docs.add(new KeyedDoubleVector(300, new SequentialSparseDoubleVector(
+        new double[] { 0, 0, 0 })));
+    InvertedIndex index = new InvertedIndex(docs);
+    assertEquals(3, index.getNumPostings());
+    SearchResult[] results = index.search(Arrays.asList(
+        new DenseDoubleVector(new double[] { 0, 0, 1 }),
+        new DenseDoubleVector(new double[] { 1, 1, 0 })), 5);
+    assertEquals(1, results[0].size());
+    assertEquals(100, results[0].getKey(0));
+    assertEquals(2d, results[0].getScore(0), 1e-12);
+    assertEquals(2, results[1].size());
+    assertEquals(200, results[1].getKey(0));
+    assertEquals(3d, results[1].getScore(0), 1e-12);
+    assertEquals(100, results[1].getKey(1));
+  }
+
+  @Test
+  public void testBitPacking() {
+    Random rnd = new Random(2);
+    long[] data = new long[200];
+    int[] widths = new int[500];
+    int[] values = new int[500];
+    long offset = 0;
+    for (int i = 0; i < values.length; i++) {
+      widths[i] = rnd.nextInt(31);
+      values[i] = widths[i] == 0 ? 0 : rnd.nextInt(1 << widths[i]);
+      InvertedIndex.write(data, offset, widths[i], values[i]);
+      offset += widths[i];
+    }
+    offset = 0;
+    for (int i = 0; i < values.length; i++) {
+      assertEquals(values[i], InvertedIndex.read(data, offset, widths[i]));
+      offset += widths[i];
+    }
+  }
+
+  @Test
+  public void testCompression() {
+    List<DoubleVector> docs = randomDocuments(10_000, 100, 20, false,
+        new Random(3));
+    InvertedIndex index = new InvertedIndex(docs);
+    // dense posting lists have small gaps, far below 32 bits per document
+    assertTrue(index.getCompressedDocIdBytes() < index.getNumPostings());
+  }
+
+  private static void assertExhaustive(List<DoubleVector> docs,
+      DoubleVector query, SearchResult result, int k) {
+    TopKHeap heap = new TopKHeap(k);
+    for (int i = 0; i < docs.size(); i++) {
+      DoubleVector doc = docs.get(i);
+      boolean shared = false;
+      Iterator<DoubleVectorElement> it = doc.iterateNonZero();
+      while (it.hasNext() && !shared) {
+        shared = query.get(it.next().getIndex()) != 0d;
+      }
+      if (shared) {
+        heap.offer(i, doc.dot(query));
+      }
+    }
+    int[] ids = new int[heap.size()];
+    double[] scores = new double[heap.size()];
+    heap.drain(ids, scores);
+    assertEquals(ids.length, result.size());
+    for (int i = 0; i < ids.length; i++) {
+      assertEquals(scores[i], result.getScore(i), 1e-9);
+      assertEquals(scores[i], docs.get(result.getKey(i)).dot(query), 1e-9);
+    }
+  }
+
+  private static List<DoubleVector> randomDocuments(int n, int dimension,
+      int length, boolean negative, Random rnd) {
+    List<DoubleVector> list = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      SequentialSparseDoubleVector v = new SequentialSparseDoubleVector(
+          dimension);
+      for (int j = 0; j < length; j++) {
+        // skewed term distribution, like words in a text
+        int term = (int) (dimension * Math.pow(rnd.nextDouble(), 3));
+        double weight = negative ? rnd.nextGaussian() : rnd.nextDouble() * 5;
+        v.set(term, weight);
+      }
+      list.add(v);
+    }
+    return list;
+  }
+
+}
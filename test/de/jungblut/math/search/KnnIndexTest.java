@@ -0,0 +1,133 @@
+package de.jungblut.math.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.named.KeyedDoubleVector;
+import de.jungblut.math.sparse.SequentialSparseDoubleVector;
+import de.jungblut.math.sparse.SparseDoubleVector;
+
+public class KnnIndexTest extends TestCase {
+
+  @Test
+  public void testDenseAgainstNaive() {
+    List<DoubleVector> vectors = randomVectors(5000, 16, false, new Random(0));
+    List<DoubleVector> queries = randomVectors(7, 16, false, new Random(1));
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      for (Metric metric : Metric.values()) {
+        KnnIndex index = new KnnIndex(vectors, metric, pool);
+        assertFalse(index.isSparse());
+        assertEquals(5000, index.size());
+        SearchResult[] results = index.search(queries, 5);
+        for (int q = 0; q < queries.size(); q++) {
+          assertNaive(vectors, queries.get(q), metric, results[q], 5);
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testSparseAgainstNaive() {
+    List<DoubleVector> vectors = randomVectors(3000, 50, true, new Random(2));
+    List<DoubleVector> queries = randomVectors(3, 50, true, new Random(3));
+    // mix in a dense query
+    queries.add(randomVectors(1, 50, false, new Random(4)).get(0));
+    for (Metric metric : Metric.values()) {
+      KnnIndex index = new KnnIndex(vectors, metric);
+      assertTrue(index.isSparse());
+      SearchResult[] results = index.search(queries, 10);
+      for (int q = 0; q < queries.size(); q++) {
+        assertNaive(vectors, queries.get(q), metric, results[q], 10);
+      }
+    }
+  }
+
+  @Test
+  public void testKeyedVectors() {
+    List<DoubleVector> vectors = new ArrayList<>();
+    vectors.add(new KeyedDoubleVector(42, new DenseDoubleVector(new double[] {
+        1, 0 })));
+    vectors.add(new KeyedDoubleVector(7, new DenseDoubleVector(new double[] {
+        0, 1 })));
+    KnnIndex index = new KnnIndex(vectors, Metric.EUCLIDEAN);
+    SearchResult result = index.search(
+        new DenseDoubleVector(new double[] { 0, 2 }), 5);
+    assertEquals(2, result.size());
+    assertEquals(7, result.getKey(0));
+    assertEquals(1d, result.getScore(0), 1e-12);
+    assertEquals(42, result.getKey(1));
+    assertEquals(Math.sqrt(5), result.getScore(1), 1e-12);
+    assertEquals(7, result.toList().get(0).getFirst().intValue());
+  }
+
+  @Test
+  public void testDimensionMismatch() {
+    List<DoubleVector> vectors = randomVectors(10, 4, false, new Random(0));
+    KnnIndex index = new KnnIndex(vectors, Metric.DOT);
+    try {
+      index.search(new DenseDoubleVector(3), 1);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private static void assertNaive(List<DoubleVector> vectors,
+      DoubleVector query, Metric metric, SearchResult result, int k) {
+    TopKHeap heap = new TopKHeap(k);
+    for (int i = 0; i < vectors.size(); i++) {
+      DoubleVector v = vectors.get(i);
+      double score;
+      switch (metric) {
+        case COSINE:
+          score = v.dot(query)
+              / (Math.sqrt(v.dot(v)) * Math.sqrt(query.dot(query)));
+          break;
+        case EUCLIDEAN:
+          score = -Math.sqrt(new DenseDoubleVector(v.toArray())
+              .subtract(query).pow(2).sum());
+          break;
+        default:
+          score = v.dot(query);
+      }
+      heap.offer(i, score);
+    }
+    int[] ids = new int[k];
+    double[] scores = new double[k];
+    heap.drain(ids, scores);
+    assertEquals(k, result.size());
+    for (int i = 0; i < k; i++) {
+      double expected = metric == Metric.EUCLIDEAN ? -scores[i] : scores[i];
+      assertEquals(expected, result.getScore(i), 1e-9);
+      assertEquals(ids[i], result.getKey(i));
+    }
+  }
+
+  private static List<DoubleVector> randomVectors(int n, int dim,
+      boolean sparse, Random r) {
+    List<DoubleVector> list = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      DoubleVector v = sparse ? (i % 2 == 0 ? new SparseDoubleVector(dim)
+          : new SequentialSparseDoubleVector(dim)) : new DenseDoubleVector(dim);
+      for (int j = 0; j < dim; j++) {
+        if (!sparse || r.nextDouble() < 0.2) {
+          v.set(j, r.nextGaussian());
+        }
+      }
+      list.add(v);
+    }
+    return list;
+  }
+
+}
@@ -0,0 +1,146 @@
+package de.jungblut.math.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.named.KeyedDoubleVector;
+import de.jungblut.math.sparse.SparseBitVector;
+import de.jungblut.math.sparse.SparseDoubleVector;
+
+public class LshIndexTest extends TestCase {
+
+  @Test
+  public void testMinHashFindsNearDuplicates() {
+    Random rnd = new Random(0);
+    int dimension = 1_000_000;
+    List<DoubleVector> vectors = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      SparseBitVector v = new SparseBitVector(dimension);
+      for (int j = 0; j < 50; j++) {
+        v.set(rnd.nextInt(dimension), 1);
+      }
+      vectors.add(v);
+    }
+    ForkJoinPool pool = new ForkJoinPool(4);
+    LshIndex index = new LshIndex(new MinHash(64, 1L), 16, pool);
+    try {
+      index.addAll(vectors);
+    } finally {
+      pool.shutdown();
+    }
+    assertEquals(2000, index.size());
+    assertEquals(4, index.getRows());
+
+    int found = 0;
+    for (int i = 0; i < 100; i++) {
+      // flip a few bits of an indexed vector
+      DoubleVector query = vectors.get(i).deepCopy();
+      for (int j = 0; j < 3; j++) {
+        query.set(rnd.nextInt(dimension), 1);
+      }
+      int[] candidates = index.candidates(query);
+      // candidate generation must be sublinear for random data
+      assertTrue(candidates.length < 100);
+      SearchResult result = index.search(query, 1);
+      if (result.size() == 1 && result.getKey(0) == i) {
+        found++;
+        assertTrue(result.getScore(0) > 0.9);
+      }
+    }
+    assertTrue("found " + found, found >= 95);
+  }
+
+  @Test
+  public void testSimHashCosine() {
+    Random rnd = new Random(1);
+    int dimension = 100_000;
+    List<DoubleVector> vectors = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      SparseDoubleVector v = new SparseDoubleVector(dimension);
+      for (int j = 0; j < 30; j++) {
+        v.set(rnd.nextInt(dimension), rnd.nextGaussian());
+      }
+      vectors.add(new KeyedDoubleVector(i + 10_000, v));
+    }
+    LshIndex index = new LshIndex(new SimHash(128, 2L), 16);
+    index.addAll(vectors);
+
+    int found = 0;
+    for (int i = 0; i < 50; i++) {
+      DoubleVector original = ((KeyedDoubleVector) vectors.get(i)).getVector();
+      DoubleVector query = original.multiply(2);
+      query.set(rnd.nextInt(dimension), 0.1);
+      SearchResult result = index.search(query, 3);
+      if (result.size() > 0 && result.getKey(0) == i + 10_000) {
+        found++;
+      }
+      for (int r = 1; r < result.size(); r++) {
+        assertTrue(result.getScore(r - 1) >= result.getScore(r));
+      }
+    }
+    assertTrue("found " + found, found >= 48);
+  }
+
+  @Test
+  public void testAddAndDuplicates() {
+    LshIndex index = new LshIndex(new MinHash(8, 0L), 4);
+    index.add(5, MinHashTest.bits(10, 1, 2, 3));
+    index.add(new KeyedDoubleVector(6, MinHashTest.bits(10, 1, 2, 3)));
+    SearchResult result = index.search(MinHashTest.bits(10, 1, 2, 3), 5);
+    assertEquals(2, result.size());
+    assertEquals(5, result.getKey(0));
+    assertEquals(6, result.getKey(1));
+    assertEquals(1d, result.getScore(0), 1e-9);
+
+    try {
+      index.add(5, MinHashTest.bits(10, 4));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      index.addAll(Arrays.asList(
+          new KeyedDoubleVector(7, MinHashTest.bits(10, 4)),
+          new KeyedDoubleVector(7, MinHashTest.bits(10, 5))));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    assertEquals(2, index.size());
+
+    // single inserts unwrap keyed vectors like addAll, the given key wins
+    index.add(8, new KeyedDoubleVector(9, MinHashTest.bits(10, 1, 2, 3)));
+    result = index.search(MinHashTest.bits(10, 1, 2, 3), 5);
+    assertEquals(3, result.size());
+    assertEquals(8, result.getKey(2));
+    assertEquals(1d, result.getScore(2), 1e-9);
+  }
+
+  @Test
+  public void testBandsMustDivideSignature() {
+    try {
+      new LshIndex(new MinHash(10, 0L), 3);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testCandidateProbability() {
+    LshIndex index = new LshIndex(new MinHash(20, 0L), 5);
+    assertEquals(0d, index.candidateProbability(0d), 1e-12);
+    assertEquals(1d, index.candidateProbability(1d), 1e-12);
+    assertEquals(1d - Math.pow(1d - Math.pow(0.5, 4), 5),
+        index.candidateProbability(0.5), 1e-12);
+  }
+
+}
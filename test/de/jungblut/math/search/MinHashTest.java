@@ -0,0 +1,73 @@
+package de.jungblut.math.search;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.sparse.SparseBitVector;
+
+public class MinHashTest extends TestCase {
+
+  @Test
+  public void testJaccard() {
+    MinHash hash = new MinHash(16, 0L);
+    SparseBitVector a = bits(1000, 0, 1, 2, 3);
+    SparseBitVector b = bits(1000, 2, 3, 4, 5, 6, 7);
+    assertEquals(2d / 8d, hash.similarity(a, b), 1e-9);
+    assertEquals(1d, hash.similarity(a, a), 1e-9);
+    assertEquals(0d, hash.similarity(new SparseBitVector(10),
+        new SparseBitVector(10)), 1e-9);
+    // dense vectors are treated as the set of their non-zero indices
+    DenseDoubleVector dense = new DenseDoubleVector(1000);
+    dense.set(2, 5);
+    dense.set(4, 1);
+    assertEquals(1d / 5d, hash.similarity(a, dense), 1e-9);
+  }
+
+  @Test
+  public void testEstimatesJaccard() {
+    MinHash hash = new MinHash(512, 42L);
+    SparseBitVector a = new SparseBitVector(1_000_000);
+    SparseBitVector b = new SparseBitVector(1_000_000);
+    for (int i = 0; i < 300; i++) {
+      a.set(i * 1000, 1);
+    }
+    for (int i = 100; i < 400; i++) {
+      b.set(i * 1000, 1);
+    }
+    int[] sa = new int[512];
+    int[] sb = new int[512];
+    hash.signature(a, sa);
+    hash.signature(b, sb);
+    int agree = 0;
+    for (int i = 0; i < sa.length; i++) {
+      if (sa[i] == sb[i]) {
+        agree++;
+      }
+    }
+    // exact jaccard is 200/400
+    assertEquals(0.5, agree / 512d, 0.08);
+  }
+
+  @Test
+  public void testDeterministic() {
+    SparseBitVector a = bits(100, 3, 17, 42);
+    int[] s1 = new int[8];
+    int[] s2 = new int[8];
+    new MinHash(8, 7L).signature(a, s1);
+    new MinHash(8, 7L).signature(a.deepCopy(), s2);
+    for (int i = 0; i < s1.length; i++) {
+      assertEquals(s1[i], s2[i]);
+    }
+  }
+
+  static SparseBitVector bits(int dimension, int... indices) {
+    SparseBitVector v = new SparseBitVector(dimension);
+    for (int i : indices) {
+      v.set(i, 1);
+    }
+    return v;
+  }
+
+}
@@ -0,0 +1,65 @@
+package de.jungblut.math.search;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.sparse.SparseDoubleVector;
+
+public class SimHashTest extends TestCase {
+
+  @Test
+  public void testCosine() {
+    SimHash hash = new SimHash(64, 0L);
+    DoubleVector a = new DenseDoubleVector(new double[] { 1, 0, 1 });
+    DoubleVector b = new DenseDoubleVector(new double[] { 0, 2, 2 });
+    assertEquals(0.5, hash.similarity(a, b), 1e-9);
+    assertEquals(0d, hash.similarity(a, new DenseDoubleVector(3)), 1e-9);
+  }
+
+  @Test
+  public void testEstimatesAngle() {
+    int bits = 1000;
+    SimHash hash = new SimHash(bits, 1L);
+    Random rnd = new Random(0);
+    SparseDoubleVector a = new SparseDoubleVector(100_000);
+    SparseDoubleVector b = new SparseDoubleVector(100_000);
+    for (int i = 0; i < 200; i++) {
+      int index = rnd.nextInt(100_000);
+      double value = rnd.nextGaussian();
+      a.set(index, value);
+      b.set(index, value + rnd.nextGaussian());
+    }
+    int[] sa = new int[bits];
+    int[] sb = new int[bits];
+    hash.signature(a, sa);
+    hash.signature(b, sb);
+    int disagree = 0;
+    for (int i = 0; i < bits; i++) {
+      assertTrue(sa[i] == 0 || sa[i] == 1);
+      if (sa[i] != sb[i]) {
+        disagree++;
+      }
+    }
+    double theta = Math.acos(hash.similarity(a, b));
+    assertEquals(theta / Math.PI, disagree / (double) bits, 0.05);
+  }
+
+  @Test
+  public void testScaleInvariant() {
+    SimHash hash = new SimHash(100, 3L);
+    DoubleVector a = new DenseDoubleVector(new double[] { 1, -2, 3, 0.5 });
+    int[] s1 = new int[100];
+    int[] s2 = new int[100];
+    hash.signature(a, s1);
+    hash.signature(a.multiply(7), s2);
+    for (int i = 0; i < s1.length; i++) {
+      assertEquals(s1[i], s2[i]);
+    }
+  }
+
+}
@@ -0,0 +1,64 @@
+package de.jungblut.math.search;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+public class TopKHeapTest extends TestCase {
+
+  @Test
+  public void testTopK() {
+    TopKHeap heap = new TopKHeap(3);
+    assertTrue(heap.offer(0, 1d));
+    assertTrue(heap.offer(1, 5d));
+    assertTrue(heap.offer(2, 3d));
+    assertTrue(heap.isFull());
+    assertEquals(1d, heap.peekScore());
+    assertFalse(heap.offer(3, 0.5d));
+    assertTrue(heap.offer(4, 4d));
+    assertEquals(3d, heap.peekScore());
+
+    int[] ids = new int[3];
+    double[] scores = new double[3];
+    assertEquals(3, heap.drain(ids, scores));
+    assertTrue(Arrays.equals(new int[] { 1, 4, 2 }, ids));
+    assertTrue(Arrays.equals(new double[] { 5d, 4d, 3d }, scores));
+    assertEquals(0, heap.size());
+  }
+
+  @Test
+  public void testTiesPreferSmallerIds() {
+    TopKHeap heap = new TopKHeap(2);
+    heap.offer(5, 1d);
+    heap.offer(3, 1d);
+    heap.offer(4, 1d);
+    heap.offer(1, 1d);
+    int[] ids = new int[2];
+    heap.drain(ids, new double[2]);
+    assertTrue(Arrays.equals(new int[] { 1, 3 }, ids));
+  }
+
+  @Test
+  public void testMergeMatchesSort() {
+    Random r = new Random(0);
+    double[] all = new double[1000];
+    TopKHeap left = new TopKHeap(10);
+    TopKHeap right = new TopKHeap(10);
+    for (int i = 0; i < all.length; i++) {
+      all[i] = r.nextDouble();
+      (i % 2 == 0 ? left : right).offer(i, all[i]);
+    }
+    left.merge(right);
+    double[] scores = new double[10];
+    left.drain(new int[10], scores);
+    double[] sorted = all.clone();
+    Arrays.sort(sorted);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(sorted[sorted.length - 1 - i], scores[i]);
+    }
+  }
+
+}
@@ -0,0 +1,178 @@
+package de.jungblut.math.sparse;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.sparse.AdaptiveDoubleVector.Representation;
+
+public class AdaptiveDoubleVectorTest extends TestCase {
+
+  @Test
+  public void testRepresentationSwitches() {
+    AdaptiveDoubleVector v = new AdaptiveDoubleVector(1000, 0.3, 0.1);
+    assertEquals(Representation.SORTED, v.getRepresentation());
+    assertTrue(v.isSparse());
+    // appends keep the sorted arrays
+    for (int i = 0; i < 200; i += 2) {
+      v.set(i, i + 1);
+    }
+    assertEquals(Representation.SORTED, v.getRepresentation());
+    // random inserts switch to a hash map
+    v.set(1, 5);
+    assertEquals(Representation.HASH, v.getRepresentation());
+    v.compact();
+    assertEquals(Representation.SORTED, v.getRepresentation());
+    v.set(3, 5);
+    assertEquals(Representation.HASH, v.getRepresentation());
+    assertEquals(0.102, v.getFillRatio(), 1e-9);
+
+    for (int i = 500; i < 697; i++) {
+      v.set(i, 1);
+    }
+    assertEquals(Representation.HASH, v.getRepresentation());
+    v.set(697, 1);
+    assertEquals(Representation.DENSE, v.getRepresentation());
+    assertFalse(v.isSparse());
+    assertEquals(0.3, v.getFillRatio(), 1e-9);
+
+    // hysteresis: stays dense until the fill ratio drops below 0.1
+    for (int i = 500; i < 698; i++) {
+      v.set(i, 0);
+    }
+    assertEquals(Representation.DENSE, v.getRepresentation());
+    assertEquals(0.102, v.getFillRatio(), 1e-9);
+    v.set(0, 0);
+    v.set(2, 0);
+    assertEquals(Representation.DENSE, v.getRepresentation());
+    v.set(4, 0);
+    assertEquals(Representation.SORTED, v.getRepresentation());
+    assertEquals(99, v.getLength());
+    assertEquals(5d, v.get(1));
+    assertEquals(199d, v.get(198));
+    assertEquals(0d, v.get(4));
+  }
+
+  @Test
+  public void testOperations() {
+    Random rnd = new Random(23);
+    for (double fill : new double[] { 0.05, 0.2, 0.8 }) {
+      DenseDoubleVector expected = new DenseDoubleVector(300);
+      SparseDoubleVector other = new SparseDoubleVector(300);
+      for (int i = 0; i < 300; i++) {
+        if (rnd.nextDouble() < fill) {
+          expected.set(i, rnd.nextGaussian());
+        }
+        if (rnd.nextDouble() < fill) {
+          other.set(i, rnd.nextGaussian() + 2);
+        }
+      }
+      AdaptiveDoubleVector v = new AdaptiveDoubleVector(expected);
+      DenseDoubleVector denseOther = new DenseDoubleVector(other);
+      // dense inputs only become sparse below the sparse ratio
+      assertEquals(fill > 0.1, v.getRepresentation() == Representation.DENSE);
+
+      arrayEquals(expected.add(2).toArray(), v.add(2).toArray());
+      arrayEquals(expected.subtract(2).toArray(), v.subtract(2).toArray());
+      arrayEquals(expected.subtractFrom(2).toArray(), v.subtractFrom(2)
+          .toArray());
+      arrayEquals(expected.multiply(3).toArray(), v.multiply(3).toArray());
+      arrayEquals(expected.divide(4).toArray(), v.divide(4).toArray());
+      arrayEquals(expected.pow(2).toArray(), v.pow(2).toArray());
+      arrayEquals(expected.abs().toArray(), v.abs().toArray());
+      arrayEquals(expected.exp().toArray(), v.exp().toArray());
+      arrayEquals(expected.add(denseOther).toArray(), v.add(other).toArray());
+      arrayEquals(expected.add(denseOther).toArray(), v.add(denseOther)
+          .toArray());
+      arrayEquals(expected.subtract(denseOther).toArray(), v.subtract(other)
+          .toArray());
+      arrayEquals(expected.multiply(denseOther).toArray(), v.multiply(other)
+          .toArray());
+      arrayEquals(expected.apply((i, x) -> x + i).toArray(),
+          v.apply((i, x) -> x + i).toArray());
+      arrayEquals(expected.slice(10, 50).toArray(), v.slice(10, 50).toArray());
+      assertEquals(40, v.slice(10, 50).getDimension());
+      arrayEquals(expected.sliceByLength(10, 30).toArray(),
+          v.sliceByLength(10, 30).toArray());
+      assertEquals(30, v.sliceByLength(10, 30).getDimension());
+      assertEquals(expected.dot(denseOther), v.dot(denseOther), 1e-9);
+      assertEquals(expected.dot(denseOther), v.dot(other), 1e-9);
+      assertEquals(expected.sum(), v.sum(), 1e-9);
+      assertEquals(expected.max(), v.max(), 1e-9);
+      assertEquals(expected.min(), v.min(), 1e-9);
+    }
+  }
+
+  @Test
+  public void testResultsAdapt() {
+    SparseDoubleVector sparse = new SparseDoubleVector(100);
+    sparse.set(3, 1);
+    AdaptiveDoubleVector v = new AdaptiveDoubleVector(sparse);
+    assertEquals(Representation.HASH, v.getRepresentation());
+    DoubleVector added = v.add(1);
+    assertEquals(Representation.DENSE,
+        ((AdaptiveDoubleVector) added).getRepresentation());
+    DoubleVector zeros = added.multiply(0);
+    assertEquals(Representation.SORTED,
+        ((AdaptiveDoubleVector) zeros).getRepresentation());
+    assertEquals(0, zeros.getLength());
+
+    // copies don't share the storage
+    AdaptiveDoubleVector copy = (AdaptiveDoubleVector) v.deepCopy();
+    copy.set(3, 2);
+    assertEquals(1d, v.get(3));
+    assertEquals(1d, sparse.get(3));
+    try {
+      new AdaptiveDoubleVector(10, 0.1, 0.2);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testExtremesInEveryRepresentation() {
+    double[][] cases = new double[][] { { 0, 0, 0, -2, 0, 0, 0, 0, 0, 0 },
+        { 0, 1, 0, 0, 0, 2, 0, 0, 0, 0 }, { -1, 0, 0, 0, -3, 0, 0, 0, 0, 0 },
+        { 0, 0, 4, 0, 0, 0, -4, 0, 0, 0 }, { 3, 0, 0, 0, 0, 0, 3, 0, 0, 0 } };
+    for (double[] values : cases) {
+      DenseDoubleVector expected = new DenseDoubleVector(values);
+
+      AdaptiveDoubleVector sorted = new AdaptiveDoubleVector(10);
+      AdaptiveDoubleVector dense = new AdaptiveDoubleVector(10);
+      // fill the tail to switch to dense storage, then clear it again
+      for (int i = 7; i < 10; i++) {
+        dense.set(i, 1);
+      }
+      for (int i = 0; i < values.length; i++) {
+        sorted.set(i, values[i]);
+        dense.set(i, values[i]);
+      }
+      AdaptiveDoubleVector hash = new AdaptiveDoubleVector(
+          new SparseDoubleVector(expected));
+      assertEquals(Representation.SORTED, sorted.getRepresentation());
+      assertEquals(Representation.HASH, hash.getRepresentation());
+      assertEquals(Representation.DENSE, dense.getRepresentation());
+
+      for (AdaptiveDoubleVector v : new AdaptiveDoubleVector[] { sorted,
+          hash, dense }) {
+        assertEquals(expected.max(), v.max());
+        assertEquals(expected.min(), v.min());
+        assertEquals(expected.maxIndex(), v.maxIndex());
+        assertEquals(expected.minIndex(), v.minIndex());
+      }
+    }
+  }
+
+  public void arrayEquals(double[] left, double[] right) {
+    assertEquals(left.length, right.length);
+    for (int i = 0; i < left.length; i++) {
+      assertEquals(left[i], right[i], 1e-9);
+    }
+  }
+
+}
@@ -0,0 +1,179 @@
+package de.jungblut.math.sparse;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleVector;
+
+public class BlockSparseDoubleMatrixTest extends TestCase {
+
+  @Test
+  public void testConversion() {
+    DenseDoubleMatrix dense = new DenseDoubleMatrix(new double[][] {
+        { 1, 2, 0, 0, 0 }, { 3, 4, 0, 0, 0 }, { 0, 0, 0, 0, 0.1 },
+        { 0, 0, 0, 0, 0 }, { 0, 0, 5, 0, 0 } });
+    BlockSparseDoubleMatrix mat = new BlockSparseDoubleMatrix(dense, 2);
+    assertEquals(2, mat.getBlockSize());
+    assertEquals(3, mat.getBlockCount());
+    assertEquals(5, mat.getRowCount());
+    assertEquals(5, mat.getColumnCount());
+    matrixEquals(dense.toArray(), mat.toArray());
+    assertEquals(4d, mat.get(1, 1));
+    assertEquals(0d, mat.get(3, 3));
+    assertTrue(mat.isSparse());
+    assertEquals(15.1d, mat.sum(), 1e-9);
+    assertEquals(5, mat.rowIndices().length);
+
+    // the block with 0.1 is pruned
+    BlockSparseDoubleMatrix pruned = new BlockSparseDoubleMatrix(dense, 2, 0.5);
+    assertEquals(2, pruned.getBlockCount());
+    assertEquals(0d, pruned.get(2, 4));
+    assertEquals(5d, pruned.get(4, 2));
+
+    mat.set(3, 3, 7);
+    mat.set(0, 4, 0);
+    assertEquals(4, mat.getBlockCount());
+    assertEquals(7d, mat.get(3, 3));
+    assertEquals(4d, mat.get(1, 1));
+    mat.setRowVector(1, new DenseDoubleVector(new double[] { 0, 0, 0, 0, 9 }));
+    assertEquals(0d, mat.get(1, 0));
+    assertEquals(9d, mat.get(1, 4));
+    assertEquals(9d, mat.max(4));
+    // the minimum of a sparse column is taken over its non-zeros
+    assertEquals(0.1d, mat.min(4));
+    arrayEquals(new double[] { 0, 0, 0, 0, 5 }, mat.getColumnVector(2)
+        .toArray());
+
+    matrixEquals(new double[][] { { 0, 0 }, { 0, 7 }, { 5, 0 } },
+        mat.slice(2, 5, 2, 4).toArray());
+    matrixEquals(mat.toArray(), new BlockSparseDoubleMatrix(
+        new SparseDoubleRowMatrix(mat.toArray()), 3).toArray());
+    try {
+      new BlockSparseDoubleMatrix(2, 2, 0);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testMultiplyVector() {
+    Random rnd = new Random(3);
+    int[] blockSizes = new int[] { 1, 4, 8 };
+    for (int blockSize : blockSizes) {
+      DenseDoubleMatrix dense = blockMatrix(rnd, 37, 29, blockSize);
+      BlockSparseDoubleMatrix mat = new BlockSparseDoubleMatrix(dense,
+          blockSize);
+      DenseDoubleVector x = new DenseDoubleVector(29);
+      DenseDoubleVector y = new DenseDoubleVector(37);
+      for (int i = 0; i < 29; i++) {
+        x.set(i, rnd.nextGaussian());
+      }
+      for (int i = 0; i < 37; i++) {
+        y.set(i, rnd.nextGaussian());
+      }
+      arrayEquals(dense.multiplyVectorRow(x).toArray(), mat
+          .multiplyVectorRow(x).toArray());
+      arrayEquals(dense.multiplyVectorRow(x).toArray(), mat
+          .multiplyVectorRow(new SparseDoubleVector(x)).toArray());
+      arrayEquals(dense.multiplyVectorColumn(y).toArray(), mat
+          .multiplyVectorColumn(y).toArray());
+    }
+  }
+
+  @Test
+  public void testMultiply() {
+    Random rnd = new Random(5);
+    DenseDoubleMatrix dense = blockMatrix(rnd, 30, 21, 4);
+    BlockSparseDoubleMatrix mat = new BlockSparseDoubleMatrix(dense, 4);
+    DenseDoubleMatrix other = new DenseDoubleMatrix(21, 13, rnd);
+    double[][] expected = dense.multiply(other).toArray();
+    matrixEquals(expected, mat.multiply(other).toArray());
+    matrixEquals(expected, mat.multiply(new SparseDoubleRowMatrix(other))
+        .toArray());
+    matrixEquals(expected, mat.multiply(new BlockSparseDoubleMatrix(other, 4))
+        .toArray());
+
+    matrixEquals(dense.transpose().toArray(), mat.transpose().toArray());
+    matrixEquals(dense.transpose().toArray(), new BlockSparseDoubleMatrix(
+        dense.transpose(), 4).toArray());
+    try {
+      mat.multiply(new DenseDoubleMatrix(20, 2));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testElementWise() {
+    Random rnd = new Random(11);
+    DenseDoubleMatrix dense = blockMatrix(rnd, 10, 9, 2);
+    DenseDoubleMatrix otherDense = blockMatrix(rnd, 10, 9, 2);
+    BlockSparseDoubleMatrix mat = new BlockSparseDoubleMatrix(dense, 2);
+    BlockSparseDoubleMatrix other = new BlockSparseDoubleMatrix(otherDense, 2);
+
+    DoubleMatrix sum = mat.add(other);
+    assertTrue(sum instanceof BlockSparseDoubleMatrix);
+    matrixEquals(dense.add(otherDense).toArray(), sum.toArray());
+    matrixEquals(dense.subtract(otherDense).toArray(), mat.subtract(other)
+        .toArray());
+    matrixEquals(dense.add(otherDense).toArray(), mat.add(otherDense)
+        .toArray());
+    matrixEquals(dense.subtract(otherDense).toArray(), mat
+        .subtract(otherDense).toArray());
+    matrixEquals(dense.multiplyElementWise(otherDense).toArray(), mat
+        .multiplyElementWise(other).toArray());
+    matrixEquals(dense.multiply(3).toArray(), mat.multiply(3).toArray());
+    matrixEquals(dense.divide(2).toArray(), mat.divide(2).toArray());
+    matrixEquals(dense.pow(2).toArray(), mat.pow(2).toArray());
+    matrixEquals(dense.subtract(1).toArray(), mat.subtract(1).toArray());
+    matrixEquals(dense.subtractBy(1).toArray(), mat.subtractBy(1).toArray());
+    DoubleVector vec = DenseDoubleVector.ones(10).multiply(2);
+    matrixEquals(dense.subtract(vec).toArray(), mat.subtract(vec).toArray());
+    matrixEquals(dense.divide(vec).toArray(), mat.divide(vec).toArray());
+
+    BlockSparseDoubleMatrix copy = mat.deepCopy();
+    copy.set(0, 0, 42);
+    assertFalse(mat.get(0, 0) == 42d);
+  }
+
+  // a matrix with random dense blocks, roughly a third of them is non-zero
+  private static DenseDoubleMatrix blockMatrix(Random rnd, int rows,
+      int columns, int blockSize) {
+    DenseDoubleMatrix mat = new DenseDoubleMatrix(rows, columns);
+    for (int i = 0; i < rows; i += blockSize) {
+      for (int j = 0; j < columns; j += blockSize) {
+        if (rnd.nextInt(3) == 0) {
+          for (int r = i; r < Math.min(rows, i + blockSize); r++) {
+            for (int c = j; c < Math.min(columns, j + blockSize); c++) {
+              mat.set(r, c, rnd.nextGaussian());
+            }
+          }
+        }
+      }
+    }
+    return mat;
+  }
+
+  public void matrixEquals(double[][] left, double[][] right) {
+    assertEquals(left.length, right.length);
+    for (int i = 0; i < left.length; i++) {
+      arrayEquals(left[i], right[i]);
+    }
+  }
+
+  public void arrayEquals(double[] left, double[] right) {
+    assertEquals(left.length, right.length);
+    for (int i = 0; i < left.length; i++) {
+      assertEquals(left[i], right[i], 1e-9);
+    }
+  }
+
+}
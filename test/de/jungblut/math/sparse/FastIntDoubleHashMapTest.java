@@ -0,0 +1,163 @@
+package de.jungblut.math.sparse;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+public class FastIntDoubleHashMapTest extends TestCase {
+
+  @Test
+  public void testPutGetRemove() {
+    FastIntDoubleHashMap map = new FastIntDoubleHashMap();
+    assertTrue(map.isEmpty());
+    assertEquals(0d, map.put(0, 1d));
+    assertEquals(0d, map.put(-5, 2d));
+    assertEquals(0d, map.put(Integer.MAX_VALUE, 3d));
+    assertEquals(2d, map.put(-5, 4d));
+    assertEquals(3, map.size());
+    assertEquals(1d, map.get(0));
+    assertEquals(4d, map.get(-5));
+    assertEquals(0d, map.get(7));
+    assertTrue(map.containsKey(0));
+    assertFalse(map.containsKey(7));
+
+    assertEquals(1d, map.remove(0));
+    assertFalse(map.containsKey(0));
+    assertEquals(0d, map.remove(0));
+    assertEquals(3d, map.add(Integer.MAX_VALUE, 0d));
+    assertEquals(0d, map.add(Integer.MAX_VALUE, -3d));
+    assertFalse(map.containsKey(Integer.MAX_VALUE));
+    assertEquals(2d, map.add(0, 2d));
+    assertEquals(2, map.size());
+    assertEquals("{-5=4.0, 0=2.0}", map.toString());
+    map.clear();
+    assertTrue(map.isEmpty());
+    assertEquals(0d, map.get(-5));
+  }
+
+  @Test
+  public void testRandomized() {
+    Random rnd = new Random(42);
+    FastIntDoubleHashMap map = new FastIntDoubleHashMap(0);
+    Map<Integer, Double> expected = new HashMap<>();
+    for (int i = 0; i < 100000; i++) {
+      // few distinct keys, so there are many collisions and removals
+      int key = (rnd.nextInt(2000) - 1000) * 1024;
+      int op = rnd.nextInt(4);
+      if (op == 0) {
+        Double previous = expected.remove(key);
+        assertEquals(previous == null ? 0d : previous, map.remove(key));
+      } else if (op == 1) {
+        double value = map.add(key, 1d);
+        assertEquals(value, expected.merge(key, 1d, Double::sum));
+      } else {
+        double value = rnd.nextDouble();
+        Double previous = expected.put(key, value);
+        assertEquals(previous == null ? 0d : previous, map.put(key, value));
+      }
+      assertEquals(expected.size(), map.size());
+    }
+    assertMapEquals(expected, map);
+  }
+
+  @Test
+  public void testGrowAndShrink() {
+    FastIntDoubleHashMap map = new FastIntDoubleHashMap(10);
+    int initial = map.capacity();
+    for (int i = 1; i <= 10; i++) {
+      map.put(i, i);
+    }
+    assertEquals(initial, map.capacity());
+    for (int i = 11; i <= 10000; i++) {
+      map.put(i, i);
+    }
+    int grown = map.capacity();
+    assertTrue(grown >= 20000);
+    for (int i = 1; i <= 9990; i++) {
+      assertEquals((double) i, map.remove(i));
+    }
+    assertTrue(map.capacity() < grown / 64);
+    assertEquals(10, map.size());
+    for (int i = 9991; i <= 10000; i++) {
+      assertEquals((double) i, map.get(i));
+    }
+
+    map = new FastIntDoubleHashMap(1000);
+    map.put(1, 1d);
+    map.trimToSize();
+    assertEquals(4, map.capacity());
+    assertEquals(1d, map.get(1));
+  }
+
+  @Test
+  public void testCopy() {
+    FastIntDoubleHashMap map = new FastIntDoubleHashMap(new int[] { 0, 3, 9 },
+        new double[] { 1, 2, 3 });
+    FastIntDoubleHashMap copy = map.fastDeepCopy();
+    assertEquals(map, copy);
+    assertEquals(map.hashCode(), copy.hashCode());
+    copy.put(3, 5d);
+    assertEquals(2d, map.get(3));
+    assertFalse(map.equals(copy));
+
+    FastIntDoubleHashMap target = new FastIntDoubleHashMap(3);
+    target.put(42, 1d);
+    assertEquals(map.capacity(), target.capacity());
+    map.copyInto(target);
+    assertEquals(map, target);
+    assertFalse(target.containsKey(42));
+    target.put(9, 0.5d);
+    assertEquals(3d, map.get(9));
+  }
+
+  @Test
+  public void testMerge() {
+    FastIntDoubleHashMap left = new FastIntDoubleHashMap(new int[] { 0, 1, 2 },
+        new double[] { 1, 2, 3 });
+    FastIntDoubleHashMap right = new FastIntDoubleHashMap(
+        new int[] { 0, 2, 5 }, new double[] { 1, 1.5, 4 });
+    left.merge(right, -2d);
+    assertEquals("{0=-1.0, 1=2.0, 5=-8.0}", left.toString());
+    left.merge(left, -1d);
+    assertTrue(left.isEmpty());
+  }
+
+  @Test
+  public void testIteration() {
+    Random rnd = new Random(7);
+    FastIntDoubleHashMap map = new FastIntDoubleHashMap();
+    Map<Integer, Double> expected = new HashMap<>();
+    for (int i = 0; i < 500; i++) {
+      int key = rnd.nextInt(1000) - 100;
+      double value = rnd.nextDouble() + 1;
+      map.put(key, value);
+      expected.put(key, value);
+    }
+    Map<Integer, Double> cursorEntries = new HashMap<>();
+    FastIntDoubleHashMap.Cursor cursor = map.cursor();
+    while (cursor.advance()) {
+      assertNull(cursorEntries.put(cursor.key(), cursor.value()));
+    }
+    assertFalse(cursor.advance());
+    assertEquals(expected, cursorEntries);
+
+    Map<Integer, Double> consumerEntries = new HashMap<>();
+    map.forEach((key, value) -> consumerEntries.put(key, value));
+    assertEquals(expected, consumerEntries);
+  }
+
+  private static void assertMapEquals(Map<Integer, Double> expected,
+      FastIntDoubleHashMap map) {
+    assertEquals(expected.size(), map.size());
+    for (Entry<Integer, Double> entry : expected.entrySet()) {
+      assertTrue(map.containsKey(entry.getKey()));
+      assertEquals(entry.getValue(), map.get(entry.getKey()));
+    }
+  }
+
+}
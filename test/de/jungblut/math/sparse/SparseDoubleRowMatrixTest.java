@@ -1,6 +1,8 @@
 package de.jungblut.math.sparse;
 
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import junit.framework.TestCase;
 
@@ -111,6 +113,64 @@ public class SparseDoubleRowMatrixTest extends TestCase {
 
   }
 
+  @Test
+  public void testMultiplyDense() {
+    Random rnd = new Random(7);
+    int[][] sizes = new int[][] { { 3000, 50, 25 }, { 5, 4, 3 } };
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      for (int[] size : sizes) {
+        SparseDoubleRowMatrix a = new SparseDoubleRowMatrix(size[0], size[1]);
+        // every fourth row of a stays empty, integers keep the sums exact
+        for (int i = 0; i < size[0]; i++) {
+          for (int j = 0; j < size[1]; j++) {
+            if (i % 4 != 3 && rnd.nextInt(3) == 0) {
+              a.set(i, j, rnd.nextInt(10) - 5);
+            }
+          }
+        }
+        DenseDoubleMatrix b = new DenseDoubleMatrix(size[1], size[2]);
+        for (int i = 0; i < size[1]; i++) {
+          for (int j = 0; j < size[2]; j++) {
+            b.set(i, j, rnd.nextInt(10) - 5);
+          }
+        }
+        double[][] expected = new double[size[0]][size[2]];
+        for (int i = 0; i < size[0]; i++) {
+          for (int k = 0; k < size[1]; k++) {
+            for (int j = 0; j < size[2]; j++) {
+              expected[i][j] += a.get(i, k) * b.get(k, j);
+            }
+          }
+        }
+        DoubleMatrix multiply = a.multiply(b);
+        assertFalse(multiply.isSparse());
+        matrixEquals(expected, multiply.toArray());
+        // results are written over the previous content
+        DenseDoubleMatrix result = new DenseDoubleMatrix(size[0], size[2], 42d);
+        matrixEquals(expected, a.multiply(b, result).toArray());
+        result = new DenseDoubleMatrix(size[0], size[2], 42d);
+        matrixEquals(expected, a.multiply(b, result, pool).toArray());
+      }
+    } finally {
+      pool.shutdown();
+    }
+    try {
+      new SparseDoubleRowMatrix(2, 3).multiply(new DenseDoubleMatrix(2, 2));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    // the result must not be B, it is cleared before B is read
+    DenseDoubleMatrix square = new DenseDoubleMatrix(2, 2, 1d);
+    try {
+      new SparseDoubleRowMatrix(2, 2).multiply(square, square);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
   @Test
   public void testMultiplyVector() {
     double[][] arr = new double[][] { { 1, 2, 3 }, { 4, 5, 6 } };
@@ -314,13 +374,57 @@ public class SparseDoubleRowMatrixTest extends TestCase {
   public void testToString() {
     SparseDoubleRowMatrix mat = new SparseDoubleRowMatrix(new double[][] {
         { 1, 2 }, { 3, 4 } });
-    assertEquals("{1={1=4.0, 0=3.0},0={1=2.0, 0=1.0}}", mat.toString());
+    assertEquals("{0={0=1.0, 1=2.0},1={0=3.0, 1=4.0}}", mat.toString());
 
     mat = new SparseDoubleRowMatrix(100, 102);
     assertEquals("100x102", mat.toString());
 
   }
 
+  @Test
+  public void testRowStorage() {
+    double[][] arr = new double[][] { { 0, 0, 0 }, { 2, 0, 1 }, { 0, 0, 0 },
+        { 0, 3, 0 } };
+    for (SparseDoubleRowMatrix.RowType type : SparseDoubleRowMatrix.RowType
+        .values()) {
+      SparseDoubleRowMatrix mat = new SparseDoubleRowMatrix(4, 3, type);
+      for (int i = 0; i < arr.length; i++) {
+        for (int j = 0; j < arr[i].length; j++) {
+          mat.set(i, j, arr[i][j]);
+        }
+      }
+      assertEquals(type, mat.getRowType());
+      assertEquals(2, mat.getStoredRowCount());
+      assertEquals(1, mat.nextStoredRow(0));
+      assertEquals(3, mat.nextStoredRow(2));
+      assertEquals(-1, mat.nextStoredRow(4));
+      arrayEquals(new double[] { 1, 3 }, toDouble(mat.rowIndices()));
+
+      SparseDoubleRowMatrix copy = (SparseDoubleRowMatrix) mat.deepCopy();
+      assertEquals(type, copy.getRowType());
+      // bit rows store every non-zero as one
+      boolean bit = type == SparseDoubleRowMatrix.RowType.BIT;
+      assertEquals(bit ? 1d : 2d, copy.get(1, 0));
+      assertEquals(bit ? 1d : 3d, copy.get(3, 1));
+      matrixEquals(new double[][] { { 0, 0 }, { bit ? 1 : 3, 0 } }, mat
+          .slice(2, 4, 1, 3).toArray());
+
+      mat.set(3, 1, 0);
+      assertEquals(0d, mat.get(3, 1));
+      mat.removeRow(1);
+      assertEquals(1, mat.getStoredRowCount());
+      assertEquals(3, mat.nextStoredRow(0));
+    }
+  }
+
+  private static double[] toDouble(int[] arr) {
+    double[] result = new double[arr.length];
+    for (int i = 0; i < arr.length; i++) {
+      result[i] = arr[i];
+    }
+    return result;
+  }
+
   public void matrixEquals(double[][] left, double[][] right) {
     assertEquals(left.length, right.length);
     for (int i = 0; i < left.length; i++) {
@@ -324,7 +324,7 @@ public class SparseDoubleVectorTest extends TestCase {
   public void testToString() {
     double[] arr = new double[] { 1, 2, 3, 4, 5 };
     SparseDoubleVector vec = new SparseDoubleVector(arr);
-    assertEquals("{4=5.0, 3=4.0, 2=3.0, 1=2.0, 0=1.0}", vec.toString());
+    assertEquals("{0=1.0, 1=2.0, 2=3.0, 3=4.0, 4=5.0}", vec.toString());
     vec = new SparseDoubleVector(new DenseDoubleVector(51, 1d));
     assertEquals("51x1", vec.toString());
 
@@ -373,4 +373,33 @@ public class SparseDoubleVectorTest extends TestCase {
     }
   }
 
+  @Test
+  public void testAddSubtractWithResult() {
+    SparseDoubleVector a = new SparseDoubleVector(100);
+    SparseDoubleVector b = new SparseDoubleVector(100);
+    for (int i = 0; i < 100; i += 3) {
+      a.set(i, i);
+      b.set(i / 2, 1);
+    }
+    SparseDoubleVector result = new SparseDoubleVector(100);
+    assertSame(result, a.add(b, result));
+    assertEquals(a.add(b), result);
+    // the result is reused with its previous content overwritten
+    assertEquals(a.subtract(b), a.subtract(b, result));
+    assertEquals(a.getLength(), new SparseDoubleVector(a).getLength());
+    // in place
+    DoubleVector expected = a.add(b);
+    a.add(b, a);
+    assertEquals(expected, a);
+    // the other vector as result is read before it is overwritten
+    expected = a.add(b);
+    assertSame(b, a.add(b, b));
+    assertEquals(expected, b);
+    expected = a.subtract(b);
+    assertSame(b, a.subtract(b, b));
+    assertEquals(expected, b);
+    expected = a.add(a);
+    assertEquals(expected, a.add(a, a));
+  }
+
 }
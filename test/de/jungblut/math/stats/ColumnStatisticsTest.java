@@ -0,0 +1,157 @@
+package de.jungblut.math.stats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.sparse.SparseDoubleRowMatrix;
+import de.jungblut.math.sparse.SparseDoubleVector;
+
+public class ColumnStatisticsTest extends TestCase {
+
+  @Test
+  public void testDenseVectors() {
+    ColumnStatistics stats = new ColumnStatistics(2);
+    stats.add(new DenseDoubleVector(new double[] { 1, -4 }));
+    stats.add(new DenseDoubleVector(new double[] { 2, -6 }));
+    stats.add(new DenseDoubleVector(new double[] { 3, -8 }));
+    assertEquals(3, stats.getCount());
+    assertEquals(2d, stats.getMean(0), 1e-12);
+    assertEquals(-6d, stats.getMean(1), 1e-12);
+    assertEquals(2d / 3d, stats.getVariance(0), 1e-12);
+    assertEquals(1d, stats.getSampleVariance(0), 1e-12);
+    assertEquals(4d, stats.getSampleVariance(1), 1e-12);
+    assertEquals(1d, stats.getMin(0));
+    assertEquals(3d, stats.getMax(0));
+    assertEquals(-8d, stats.getMin(1));
+    assertEquals(-4d, stats.getMax(1));
+  }
+
+  @Test
+  public void testSparseVectorsMatchDense() {
+    Random rnd = new Random(0);
+    List<DoubleVector> dense = new ArrayList<>();
+    ColumnStatistics sparseStats = new ColumnStatistics(20);
+    ColumnStatistics denseStats = new ColumnStatistics(20);
+    for (int i = 0; i < 500; i++) {
+      DenseDoubleVector v = new DenseDoubleVector(20);
+      for (int j = 0; j < 20; j++) {
+        // column 19 is always zero, column 18 only negative
+        if (j < 18 && rnd.nextDouble() < 0.2) {
+          v.set(j, rnd.nextGaussian() + j);
+        } else if (j == 18 && rnd.nextDouble() < 0.5) {
+          v.set(j, -rnd.nextDouble() - 1);
+        }
+      }
+      dense.add(v);
+      denseStats.add(v);
+      sparseStats.add(new SparseDoubleVector(v));
+    }
+    assertStatsEquals(denseStats, sparseStats);
+    assertEquals(0d, sparseStats.getMax(18));
+    assertEquals(0d, sparseStats.getMin(19));
+    assertEquals(0d, sparseStats.getMax(19));
+    assertEquals(0d, sparseStats.getVariance(19));
+
+    // against the two pass definition
+    for (int j = 0; j < 20; j++) {
+      double mean = 0d;
+      for (DoubleVector v : dense) {
+        mean += v.get(j);
+      }
+      mean /= dense.size();
+      double variance = 0d;
+      for (DoubleVector v : dense) {
+        variance += (v.get(j) - mean) * (v.get(j) - mean);
+      }
+      variance /= dense.size();
+      assertEquals(mean, sparseStats.getMean(j), 1e-12);
+      assertEquals(variance, sparseStats.getVariance(j), 1e-10);
+    }
+  }
+
+  @Test
+  public void testMergeAndParallelCollector() {
+    Random rnd = new Random(1);
+    List<DoubleVector> vectors = new ArrayList<>();
+    for (int i = 0; i < 10000; i++) {
+      DenseDoubleVector v = new DenseDoubleVector(5);
+      for (int j = 0; j < 5; j++) {
+        v.set(j, rnd.nextGaussian() * (j + 1) + 1e6);
+      }
+      vectors.add(i % 2 == 0 ? v : new SparseDoubleVector(v));
+    }
+    ColumnStatistics sequential = new ColumnStatistics(5);
+    ColumnStatistics left = new ColumnStatistics(5);
+    ColumnStatistics right = new ColumnStatistics(5);
+    for (int i = 0; i < vectors.size(); i++) {
+      sequential.add(vectors.get(i));
+      (i < 3000 ? left : right).add(vectors.get(i));
+    }
+    assertStatsEquals(sequential, left.merge(right));
+    assertStatsEquals(sequential,
+        vectors.parallelStream().collect(ColumnStatistics.collector(5)));
+    // the large offset doesn't destroy the variance
+    for (int j = 0; j < 5; j++) {
+      assertEquals((j + 1) * (j + 1), sequential.getVariance(j), 0.1 * (j + 1)
+          * (j + 1));
+    }
+  }
+
+  @Test
+  public void testMatrices() {
+    double[][] arr = new double[][] { { 1, 0, -3 }, { 4, 0, -6 },
+        { -2, 5, 0 } };
+    DenseDoubleMatrix dense = new DenseDoubleMatrix(arr);
+    SparseDoubleRowMatrix sparse = new SparseDoubleRowMatrix(dense);
+    ColumnStatistics expected = new ColumnStatistics(3);
+    for (double[] row : arr) {
+      expected.add(new DenseDoubleVector(row));
+    }
+    assertStatsEquals(expected, ColumnStatistics.of(dense));
+    assertStatsEquals(expected, ColumnStatistics.of(sparse));
+    // a sparse matrix with an empty row
+    SparseDoubleRowMatrix empty = new SparseDoubleRowMatrix(4, 3);
+    empty.setRowVector(0, new SparseDoubleVector(new double[] { 2, 0, -2 }));
+    ColumnStatistics stats = ColumnStatistics.of(empty);
+    assertEquals(4, stats.getCount());
+    assertEquals(0.5d, stats.getMean(0), 1e-12);
+    assertEquals(0.75d, stats.getVariance(0), 1e-12);
+    assertEquals(-2d, stats.getMin(2));
+    assertEquals(0d, stats.getMax(2));
+  }
+
+  @Test
+  public void testEmptyAndInvalid() {
+    ColumnStatistics stats = new ColumnStatistics(2);
+    assertTrue(Double.isNaN(stats.getMean(0)));
+    assertTrue(Double.isNaN(stats.getMax(1)));
+    try {
+      stats.add(new DenseDoubleVector(3));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private static void assertStatsEquals(ColumnStatistics expected,
+      ColumnStatistics actual) {
+    assertEquals(expected.getCount(), actual.getCount());
+    for (int j = 0; j < expected.getDimension(); j++) {
+      double scale = Math.max(1d, Math.abs(expected.getMean(j)));
+      assertEquals(expected.getMean(j), actual.getMean(j), 1e-12 * scale);
+      assertEquals(expected.getVariance(j), actual.getVariance(j), 1e-9
+          * Math.max(1d, expected.getVariance(j)));
+      assertEquals(expected.getMin(j), actual.getMin(j));
+      assertEquals(expected.getMax(j), actual.getMax(j));
+    }
+  }
+
+}
@@ -0,0 +1,173 @@
+package de.jungblut.math.stats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.sparse.SparseDoubleRowMatrix;
+import de.jungblut.math.sparse.SparseDoubleVector;
+
+public class CovarianceTest extends TestCase {
+
+  @Test
+  public void testSmallDense() {
+    Covariance cov = new Covariance(2);
+    cov.add(new DenseDoubleVector(new double[] { 1, 2 }));
+    cov.add(new DenseDoubleVector(new double[] { 2, 4 }));
+    cov.add(new DenseDoubleVector(new double[] { 3, 3 }));
+    DenseDoubleMatrix covariance = cov.getCovariance();
+    assertEquals(1d, covariance.get(0, 0), 1e-12);
+    assertEquals(0.5d, covariance.get(0, 1), 1e-12);
+    assertEquals(0.5d, covariance.get(1, 0), 1e-12);
+    assertEquals(1d, covariance.get(1, 1), 1e-12);
+    DenseDoubleMatrix correlation = cov.getCorrelation();
+    assertEquals(1d, correlation.get(0, 0), 1e-12);
+    assertEquals(0.5d, correlation.get(0, 1), 1e-12);
+    assertEquals(2d, cov.getMean().get(0), 1e-12);
+    assertEquals(3d, cov.getMean().get(1), 1e-12);
+  }
+
+  @Test
+  public void testSparseAndDenseAgainstTwoPass() {
+    Random rnd = new Random(0);
+    List<DoubleVector> dense = random(700, 150, 0.05, rnd, 0d);
+    List<DoubleVector> sparse = new ArrayList<>();
+    for (DoubleVector v : dense) {
+      sparse.add(new SparseDoubleVector(v));
+    }
+    double[][] expected = twoPass(dense);
+    assertMatrixEquals(expected, add(dense).getCovariance(), 1e-12);
+    assertMatrixEquals(expected, add(sparse).getCovariance(), 1e-12);
+    // mixed: sparse first keeps the raw sums, dense first shifts
+    List<DoubleVector> mixed = new ArrayList<>();
+    for (int i = 0; i < dense.size(); i++) {
+      mixed.add(i % 3 == 0 ? sparse.get(i) : dense.get(i));
+    }
+    assertMatrixEquals(expected, add(mixed).getCovariance(), 1e-12);
+    mixed.add(0, dense.get(0));
+    mixed.remove(1);
+    assertMatrixEquals(expected, add(mixed).getCovariance(), 1e-12);
+  }
+
+  @Test
+  public void testParallelMerge() {
+    Random rnd = new Random(1);
+    List<DoubleVector> rows = random(5000, 70, 1d, rnd, 1e4);
+    List<DoubleVector> mixed = new ArrayList<>();
+    for (int i = 0; i < rows.size(); i++) {
+      // sparse partials get merged with shifted dense partials
+      mixed.add(i < 2500 ? new SparseDoubleVector(rows.get(i)) : rows.get(i));
+    }
+    double[][] expected = twoPass(rows);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    Covariance parallel;
+    try {
+      parallel = Covariance.of(mixed, pool);
+    } finally {
+      pool.shutdown();
+    }
+    assertEquals(5000, parallel.getCount());
+    assertMatrixEquals(expected, parallel.getCovariance(), 1e-6);
+    assertMatrixEquals(expected,
+        rows.parallelStream().collect(Covariance.collector(70))
+            .getCovariance(), 1e-6);
+    DoubleVector mean = parallel.getMean();
+    for (int j = 0; j < 70; j++) {
+      assertEquals(1e4, mean.get(j), 1d);
+    }
+  }
+
+  @Test
+  public void testMatrices() {
+    double[][] arr = new double[][] { { 1, 0, -3 }, { 4, 0, -6 },
+        { -2, 5, 0 }, { 0, 0, 0 } };
+    DenseDoubleMatrix dense = new DenseDoubleMatrix(arr);
+    SparseDoubleRowMatrix sparse = new SparseDoubleRowMatrix(3 + 1, 3);
+    for (int i = 0; i < 3; i++) {
+      sparse.setRowVector(i, new SparseDoubleVector(arr[i]));
+    }
+    List<DoubleVector> rows = new ArrayList<>();
+    for (double[] row : arr) {
+      rows.add(new DenseDoubleVector(row));
+    }
+    double[][] expected = twoPass(rows);
+    assertMatrixEquals(expected, Covariance.of(dense).getCovariance(), 1e-12);
+    Covariance fromSparse = Covariance.of((DoubleMatrix) sparse);
+    assertEquals(4, fromSparse.getCount());
+    assertMatrixEquals(expected, fromSparse.getCovariance(), 1e-12);
+  }
+
+  @Test
+  public void testCorrelationWithConstantColumn() {
+    Covariance cov = new Covariance(3);
+    cov.add(new DenseDoubleVector(new double[] { 1, 7, 2 }));
+    cov.add(new DenseDoubleVector(new double[] { 2, 7, 4 }));
+    cov.add(new DenseDoubleVector(new double[] { 4, 7, 8 }));
+    DenseDoubleMatrix correlation = cov.getCorrelation();
+    assertEquals(1d, correlation.get(0, 2), 1e-12);
+    assertEquals(0d, correlation.get(1, 1));
+    assertEquals(0d, correlation.get(0, 1));
+  }
+
+  private static Covariance add(List<DoubleVector> rows) {
+    Covariance cov = new Covariance(rows.get(0).getDimension());
+    for (DoubleVector v : rows) {
+      cov.add(v);
+    }
+    return cov;
+  }
+
+  private static double[][] twoPass(List<DoubleVector> rows) {
+    int d = rows.get(0).getDimension();
+    double[] mean = new double[d];
+    for (DoubleVector v : rows) {
+      for (int j = 0; j < d; j++) {
+        mean[j] += v.get(j) / rows.size();
+      }
+    }
+    double[][] result = new double[d][d];
+    for (DoubleVector v : rows) {
+      for (int i = 0; i < d; i++) {
+        for (int j = 0; j < d; j++) {
+          result[i][j] += (v.get(i) - mean[i]) * (v.get(j) - mean[j])
+              / (rows.size() - 1);
+        }
+      }
+    }
+    return result;
+  }
+
+  private static List<DoubleVector> random(int n, int d, double density,
+      Random rnd, double offset) {
+    List<DoubleVector> rows = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      DenseDoubleVector v = new DenseDoubleVector(d);
+      for (int j = 0; j < d; j++) {
+        if (rnd.nextDouble() < density) {
+          v.set(j, rnd.nextGaussian() + offset);
+        }
+      }
+      rows.add(v);
+    }
+    return rows;
+  }
+
+  private static void assertMatrixEquals(double[][] expected,
+      DenseDoubleMatrix actual, double delta) {
+    for (int i = 0; i < expected.length; i++) {
+      for (int j = 0; j < expected.length; j++) {
+        assertEquals(expected[i][j], actual.get(i, j), delta);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,100 @@
+package de.jungblut.math.structured;
+
+import static de.jungblut.math.structured.SymmetricDoubleMatrixTest.*;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleVector;
+
+public class BandedDoubleMatrixTest extends TestCase {
+
+  @Test
+  public void testAccessors() {
+    BandedDoubleMatrix mat = new BandedDoubleMatrix(4, 1);
+    assertEquals(1, mat.getLowerBandwidth());
+    assertEquals(1, mat.getUpperBandwidth());
+    for (int i = 0; i < 4; i++) {
+      mat.set(i, i, 2);
+      if (i > 0) {
+        mat.set(i, i - 1, -1);
+        mat.set(i - 1, i, -1);
+      }
+    }
+    matrixEquals(new double[][] { { 2, -1, 0, 0 }, { -1, 2, -1, 0 },
+        { 0, -1, 2, -1 }, { 0, 0, -1, 2 } }, mat.toArray());
+    assertEquals(2d, mat.sum());
+    try {
+      mat.set(0, 2, 1);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    mat.set(0, 3, 0);
+    assertEquals(3, new BandedDoubleMatrix(4, 5, 0).getLowerBandwidth());
+    // the bandwidths of a product are clamped to the matrix
+    BandedDoubleMatrix product = (BandedDoubleMatrix) mat.multiply(mat
+        .multiply(mat));
+    assertEquals(3, product.getLowerBandwidth());
+    DenseDoubleMatrix dense = mat.toDense();
+    matrixEquals(dense.multiply(dense).multiply(dense).toArray(),
+        product.toArray());
+  }
+
+  @Test
+  public void testProducts() {
+    Random rnd = new Random(6);
+    int[][] bands = new int[][] { { 0, 0 }, { 2, 1 }, { 0, 3 }, { 4, 0 } };
+    for (int[] band : bands) {
+      DenseDoubleMatrix dense = new DenseDoubleMatrix(15, 15, rnd);
+      BandedDoubleMatrix mat = new BandedDoubleMatrix(dense, band[0], band[1]);
+      for (int i = 0; i < 15; i++) {
+        for (int j = 0; j < 15; j++) {
+          if (j - i < -band[0] || j - i > band[1]) {
+            dense.set(i, j, 0);
+          }
+        }
+      }
+      matrixEquals(dense.toArray(), mat.toArray());
+      DenseDoubleVector x = new DenseDoubleVector(15);
+      for (int i = 0; i < 15; i++) {
+        x.set(i, rnd.nextGaussian());
+      }
+      arrayEquals(dense.multiplyVectorRow(x).toArray(), mat
+          .multiplyVectorRow(x).toArray());
+      arrayEquals(dense.multiplyVectorColumn(x).toArray(), mat
+          .multiplyVectorColumn(x).toArray());
+      DenseDoubleMatrix other = new DenseDoubleMatrix(15, 4, rnd);
+      matrixEquals(dense.multiply(other).toArray(), mat.multiply(other)
+          .toArray());
+
+      BandedDoubleMatrix transpose = mat.transpose();
+      assertEquals(band[1], transpose.getLowerBandwidth());
+      matrixEquals(dense.transpose().toArray(), transpose.toArray());
+
+      BandedDoubleMatrix otherBanded = new BandedDoubleMatrix(
+          new DenseDoubleMatrix(15, 15, rnd), band[1], 2);
+      DoubleMatrix bandedProduct = mat.multiply(otherBanded);
+      assertTrue(bandedProduct instanceof BandedDoubleMatrix);
+      assertEquals(Math.min(14, band[0] + band[1]),
+          ((BandedDoubleMatrix) bandedProduct).getLowerBandwidth());
+      assertEquals(band[1] + 2,
+          ((BandedDoubleMatrix) bandedProduct).getUpperBandwidth());
+      matrixEquals(dense.multiply(otherBanded.toDense()).toArray(),
+          bandedProduct.toArray());
+
+      DoubleMatrix difference = mat.subtract(mat.multiply(3));
+      assertTrue(difference instanceof BandedDoubleMatrix);
+      matrixEquals(dense.multiply(-2).toArray(), difference.toArray());
+      matrixEquals(dense.add(dense.transpose()).toArray(), mat.add(transpose)
+          .toArray());
+      matrixEquals(dense.divide(2).toArray(), mat.divide(2).toArray());
+    }
+  }
+
+}
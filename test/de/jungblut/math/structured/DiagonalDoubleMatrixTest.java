@@ -0,0 +1,92 @@
+package de.jungblut.math.structured;
+
+import static de.jungblut.math.structured.SymmetricDoubleMatrixTest.*;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.sparse.SparseDoubleRowMatrix;
+
+public class DiagonalDoubleMatrixTest extends TestCase {
+
+  @Test
+  public void testDiagonal() {
+    DiagonalDoubleMatrix mat = new DiagonalDoubleMatrix(new double[] { 1, 2,
+        4 });
+    matrixEquals(new double[][] { { 1, 0, 0 }, { 0, 2, 0 }, { 0, 0, 4 } },
+        mat.toArray());
+    assertEquals(7d, mat.sum());
+    assertEquals(0d, mat.get(0, 1));
+    try {
+      mat.set(0, 1, 1);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+
+    DenseDoubleVector x = new DenseDoubleVector(new double[] { 3, -1, 2 });
+    arrayEquals(new double[] { 3, -2, 8 }, mat.multiplyVectorRow(x)
+        .toArray());
+    arrayEquals(new double[] { 3, -2, 8 }, mat.multiplyVectorColumn(x)
+        .toArray());
+    arrayEquals(new double[] { 3, -0.5, 0.5 }, mat.solve(x).toArray());
+    matrixEquals(DiagonalDoubleMatrix.identity(3).toArray(), mat
+        .multiply(mat.inverse()).toArray());
+
+    Random rnd = new Random(8);
+    DenseDoubleMatrix other = new DenseDoubleMatrix(3, 5, rnd);
+    matrixEquals(mat.toDense().multiply(other).toArray(), mat.multiply(other)
+        .toArray());
+    DenseDoubleMatrix square = new DenseDoubleMatrix(3, 3, rnd);
+    DoubleMatrix product = mat.multiplyElementWise(square);
+    assertTrue(product instanceof DiagonalDoubleMatrix);
+    matrixEquals(mat.toDense().multiplyElementWise(square).toArray(),
+        product.toArray());
+    matrixEquals(mat.toDense().add(square).toArray(), mat.add(square)
+        .toArray());
+    matrixEquals(mat.toDense().pow(3).toArray(), mat.pow(3).toArray());
+
+    // products keep the structure of the operand
+    DiagonalDoubleMatrix squared = (DiagonalDoubleMatrix) mat.multiply(mat);
+    arrayEquals(new double[] { 1, 4, 16 }, squared.getDiagonal());
+    TriangularDoubleMatrix lower = new TriangularDoubleMatrix(square, false);
+    DoubleMatrix scaled = mat.multiply(lower);
+    assertTrue(scaled instanceof TriangularDoubleMatrix);
+    matrixEquals(mat.toDense().multiply(lower.toDense()).toArray(),
+        scaled.toArray());
+    DoubleMatrix columnScaled = lower.multiply(mat);
+    assertTrue(columnScaled instanceof TriangularDoubleMatrix);
+    matrixEquals(lower.toDense().multiply(mat.toDense()).toArray(),
+        columnScaled.toArray());
+    BandedDoubleMatrix banded = new BandedDoubleMatrix(square, 1, 0);
+    assertTrue(mat.multiply(banded) instanceof BandedDoubleMatrix);
+    matrixEquals(mat.toDense().multiply(banded.toDense()).toArray(), mat
+        .multiply(banded).toArray());
+    SymmetricDoubleMatrix symmetric = new SymmetricDoubleMatrix(square);
+    matrixEquals(mat.toDense().multiply(symmetric.toDense()).toArray(), mat
+        .multiply(symmetric).toArray());
+    matrixEquals(symmetric.toDense().multiply(mat.toDense()).toArray(),
+        symmetric.multiply(mat).toArray());
+    SparseDoubleRowMatrix sparse = new SparseDoubleRowMatrix(3, 4);
+    sparse.set(1, 3, 2);
+    sparse.set(2, 0, -1);
+    DoubleMatrix sparseProduct = mat.multiply(sparse);
+    assertTrue(sparseProduct.isSparse());
+    matrixEquals(new double[][] { { 0, 0, 0, 0 }, { 0, 0, 0, 4 },
+        { -4, 0, 0, 0 } }, sparseProduct.toArray());
+
+    try {
+      new DiagonalDoubleMatrix(2).inverse();
+      fail();
+    } catch (ArithmeticException e) {
+      // expected
+    }
+  }
+
+}
@@ -0,0 +1,151 @@
+package de.jungblut.math.structured;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleVector;
+
+public class SymmetricDoubleMatrixTest extends TestCase {
+
+  @Test
+  public void testAccessors() {
+    SymmetricDoubleMatrix mat = new SymmetricDoubleMatrix(3);
+    mat.set(0, 0, 1);
+    mat.set(0, 2, 2);
+    mat.set(2, 1, 3);
+    arrayEquals(new double[] { 1, 0, 0, 2, 3, 0 }, mat.getPackedMatrix());
+    matrixEquals(new double[][] { { 1, 0, 2 }, { 0, 0, 3 }, { 2, 3, 0 } },
+        mat.toArray());
+    assertEquals(11d, mat.sum());
+    assertEquals(3d, mat.max(1));
+    matrixEquals(mat.toArray(), mat.toDense().toArray());
+    matrixEquals(mat.toArray(), mat.transpose().toArray());
+    try {
+      new SymmetricDoubleMatrix(3, new double[5]);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testPackedLengthBoundary() {
+    // the largest dimension whose packed triangle fits into an array
+    assertEquals(2147450880, SymmetricDoubleMatrix.packedLength(65535));
+    assertEquals(1250025000, SymmetricDoubleMatrix.offset(50000));
+    assertEquals(2147385345, SymmetricDoubleMatrix.offset(65534));
+    try {
+      SymmetricDoubleMatrix.packedLength(65536);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      new SymmetricDoubleMatrix(65536);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testProducts() {
+    Random rnd = new Random(1);
+    DenseDoubleMatrix dense = symmetric(rnd, 25);
+    SymmetricDoubleMatrix mat = new SymmetricDoubleMatrix(dense);
+    DenseDoubleVector x = new DenseDoubleVector(25);
+    for (int i = 0; i < 25; i++) {
+      x.set(i, rnd.nextGaussian());
+    }
+    arrayEquals(dense.multiplyVectorRow(x).toArray(), mat.multiplyVectorRow(x)
+        .toArray());
+    arrayEquals(dense.multiplyVectorColumn(x).toArray(), mat
+        .multiplyVectorColumn(x).toArray());
+    DenseDoubleMatrix other = new DenseDoubleMatrix(25, 7, rnd);
+    matrixEquals(dense.multiply(other).toArray(), mat.multiply(other)
+        .toArray());
+  }
+
+  @Test
+  public void testElementWise() {
+    Random rnd = new Random(2);
+    DenseDoubleMatrix dense = symmetric(rnd, 6);
+    DenseDoubleMatrix otherDense = symmetric(rnd, 6);
+    SymmetricDoubleMatrix mat = new SymmetricDoubleMatrix(dense);
+    SymmetricDoubleMatrix other = new SymmetricDoubleMatrix(otherDense);
+
+    DoubleMatrix sum = mat.add(other);
+    assertTrue(sum instanceof SymmetricDoubleMatrix);
+    matrixEquals(dense.add(otherDense).toArray(), sum.toArray());
+    matrixEquals(dense.subtract(otherDense).toArray(), mat.subtract(other)
+        .toArray());
+    matrixEquals(dense.multiplyElementWise(otherDense).toArray(), mat
+        .multiplyElementWise(other).toArray());
+    DenseDoubleMatrix random = new DenseDoubleMatrix(6, 6, rnd);
+    matrixEquals(dense.multiplyElementWise(random).toArray(), mat
+        .multiplyElementWise(random).toArray());
+    matrixEquals(dense.add(random).toArray(), mat.add(random).toArray());
+    matrixEquals(dense.multiply(2).toArray(), mat.multiply(2).toArray());
+    matrixEquals(dense.pow(2).toArray(), mat.pow(2).toArray());
+    matrixEquals(dense.subtract(1).toArray(), mat.subtract(1).toArray());
+    double expectedSum = 0d;
+    for (double[] row : dense.toArray()) {
+      for (double value : row) {
+        expectedSum += value;
+      }
+    }
+    assertEquals(expectedSum, mat.sum(), 1e-9);
+  }
+
+  @Test
+  public void testRankUpdate() {
+    Random rnd = new Random(3);
+    DenseDoubleMatrix a = new DenseDoubleMatrix(10, 4, rnd);
+    DenseDoubleMatrix c = symmetric(rnd, 10);
+    SymmetricDoubleMatrix mat = new SymmetricDoubleMatrix(c);
+    DoubleMatrix expected = a.multiply(a.transpose()).multiply(2).add(
+        c.multiply(0.5));
+    matrixEquals(expected.toArray(), mat.rankUpdate(2, a, 0.5).toArray());
+
+    DenseDoubleVector x = new DenseDoubleVector(10);
+    for (int i = 0; i < 10; i++) {
+      x.set(i, rnd.nextGaussian());
+    }
+    DoubleMatrix outer = new DenseDoubleMatrix(x).transpose().multiply(
+        new DenseDoubleMatrix(x));
+    expected = expected.add(outer.multiply(-1));
+    matrixEquals(expected.toArray(), mat.rankUpdate(-1, x).toArray());
+  }
+
+  static DenseDoubleMatrix symmetric(Random rnd, int n) {
+    DenseDoubleMatrix mat = new DenseDoubleMatrix(n, n);
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j <= i; j++) {
+        double value = rnd.nextGaussian();
+        mat.set(i, j, value);
+        mat.set(j, i, value);
+      }
+    }
+    return mat;
+  }
+
+  static void matrixEquals(double[][] left, double[][] right) {
+    assertEquals(left.length, right.length);
+    for (int i = 0; i < left.length; i++) {
+      arrayEquals(left[i], right[i]);
+    }
+  }
+
+  static void arrayEquals(double[] left, double[] right) {
+    assertEquals(left.length, right.length);
+    for (int i = 0; i < left.length; i++) {
+      assertEquals(left[i], right[i], 1e-9);
+    }
+  }
+
+}
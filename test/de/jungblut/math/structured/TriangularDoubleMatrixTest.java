@@ -0,0 +1,122 @@
+package de.jungblut.math.structured;
+
+import static de.jungblut.math.structured.SymmetricDoubleMatrixTest.*;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleVector;
+
+public class TriangularDoubleMatrixTest extends TestCase {
+
+  @Test
+  public void testAccessors() {
+    TriangularDoubleMatrix lower = new TriangularDoubleMatrix(3, false);
+    lower.set(2, 0, 4);
+    lower.set(1, 1, 2);
+    lower.set(0, 2, 0);
+    assertEquals(0d, lower.get(0, 2));
+    assertEquals(4d, lower.get(2, 0));
+    arrayEquals(new double[] { 0, 0, 2, 4, 0, 0 }, lower.getPackedMatrix());
+    try {
+      lower.set(0, 1, 1);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    TriangularDoubleMatrix upper = lower.transpose();
+    assertTrue(upper.isUpper());
+    assertEquals(4d, upper.get(0, 2));
+    assertEquals(0d, upper.get(2, 0));
+    matrixEquals(lower.toDense().transpose().toArray(), upper.toArray());
+  }
+
+  @Test
+  public void testLargeDimensions() {
+    // the last element of the largest triangles that fit into an array
+    assertEquals(2147450879,
+        TriangularDoubleMatrix.index(65535, false, 65534, 65534));
+    assertEquals(2147450879,
+        TriangularDoubleMatrix.index(65535, true, 65534, 65534));
+    assertEquals(1250024999,
+        TriangularDoubleMatrix.index(50000, true, 49999, 49999));
+    try {
+      new TriangularDoubleMatrix(65536, true);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testProductsAndSolve() {
+    Random rnd = new Random(4);
+    for (boolean isUpper : new boolean[] { false, true }) {
+      DenseDoubleMatrix dense = triangular(rnd, 20, isUpper);
+      TriangularDoubleMatrix mat = new TriangularDoubleMatrix(dense, isUpper);
+      matrixEquals(dense.toArray(), mat.toArray());
+      DenseDoubleVector x = new DenseDoubleVector(20);
+      for (int i = 0; i < 20; i++) {
+        x.set(i, rnd.nextGaussian());
+      }
+      arrayEquals(dense.multiplyVectorRow(x).toArray(), mat
+          .multiplyVectorRow(x).toArray());
+      arrayEquals(dense.multiplyVectorColumn(x).toArray(), mat
+          .multiplyVectorColumn(x).toArray());
+      DenseDoubleMatrix other = new DenseDoubleMatrix(20, 5, rnd);
+      matrixEquals(dense.multiply(other).toArray(), mat.multiply(other)
+          .toArray());
+
+      TriangularDoubleMatrix otherTriangular = new TriangularDoubleMatrix(
+          triangular(rnd, 20, isUpper), isUpper);
+      DoubleMatrix triangularProduct = mat.multiply(otherTriangular);
+      assertTrue(triangularProduct instanceof TriangularDoubleMatrix);
+      matrixEquals(dense.multiply(otherTriangular.toDense()).toArray(),
+          triangularProduct.toArray());
+      TriangularDoubleMatrix transpose = mat.transpose();
+      matrixEquals(dense.multiply(transpose.toDense()).toArray(), mat
+          .multiply(transpose).toArray());
+
+      arrayEquals(x.toArray(), mat.solve(mat.multiplyVectorRow(x)).toArray());
+      matrixEquals(other.toArray(), mat.solve(mat.multiply(other)).toArray());
+
+      DoubleMatrix sum = mat.add(mat.multiply(2));
+      assertTrue(sum instanceof TriangularDoubleMatrix);
+      matrixEquals(dense.multiply(3).toArray(), sum.toArray());
+      DenseDoubleMatrix random = new DenseDoubleMatrix(20, 20, rnd);
+      DoubleMatrix product = mat.multiplyElementWise(random);
+      assertTrue(product instanceof TriangularDoubleMatrix);
+      matrixEquals(dense.multiplyElementWise(random).toArray(),
+          product.toArray());
+    }
+    TriangularDoubleMatrix singular = new TriangularDoubleMatrix(2, true);
+    try {
+      singular.solve(new DenseDoubleVector(2));
+      fail();
+    } catch (ArithmeticException e) {
+      // expected
+    }
+  }
+
+  // a well conditioned triangular matrix
+  private static DenseDoubleMatrix triangular(Random rnd, int n,
+      boolean isUpper) {
+    DenseDoubleMatrix mat = new DenseDoubleMatrix(n, n);
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < n; j++) {
+        if (i == j) {
+          mat.set(i, j, 2 + rnd.nextDouble());
+        } else if (isUpper ? j > i : j < i) {
+          mat.set(i, j, rnd.nextGaussian() / n);
+        }
+      }
+    }
+    return mat;
+  }
+
+}